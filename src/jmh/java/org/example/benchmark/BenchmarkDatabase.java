@@ -0,0 +1,71 @@
+package org.example.benchmark;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.example.domain.model.Academy;
+import org.example.domain.model.Student;
+import org.example.persistence.ormanager.ORManager;
+import org.example.persistence.utilities.Utils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * A fresh in-memory H2 database per benchmark trial, with the Academy and Student tables registered.
+ */
+class BenchmarkDatabase implements AutoCloseable {
+    final HikariDataSource dataSource;
+    final ORManager manager;
+
+    BenchmarkDatabase() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        manager = Utils.withDataSource(dataSource);
+        manager.register(Academy.class, Student.class);
+    }
+
+    /**
+     * Persists one academy and the given number of students attending it.
+     *
+     * @param students number of student rows to insert.
+     * @return the persisted academy.
+     */
+    Academy seed(int students) {
+        Academy academy = new Academy("SoftServe");
+        manager.persist(academy);
+        for (int i = 0; i < students; i++) {
+            Student student = newStudent(i);
+            student.setAcademy(academy);
+            manager.persist(student);
+        }
+        return academy;
+    }
+
+    static Student newStudent(int i) {
+        return new Student("First" + i, "Second" + i, 18 + i % 50, LocalDate.of(2020, 1, 1).plusDays(i % 1000));
+    }
+
+    void truncate(String tableName) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("SET REFERENTIAL_INTEGRITY FALSE");
+            stmt.executeUpdate("TRUNCATE TABLE " + tableName + " RESTART IDENTITY");
+            stmt.executeUpdate("SET REFERENTIAL_INTEGRITY TRUE");
+        }
+    }
+
+    void dropAll() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("DROP ALL OBJECTS");
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        dropAll();
+        dataSource.close();
+    }
+}
@@ -0,0 +1,113 @@
+package org.example.benchmark;
+
+import org.example.domain.model.Student;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same statements the ORM issues, written by hand over plain JDBC on the same pool.
+ * The gap between these numbers and the ORM ones is the mapping overhead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JdbcBaselineBenchmark {
+    //language=H2
+    private static final String INSERT = "INSERT INTO students (first_name, second_name, age, graduate_academy, academy_id) values(?, ?, ?, ?, ?)";
+    //language=H2
+    private static final String SELECT_BY_ID = "SELECT * FROM students WHERE id=?";
+    //language=H2
+    private static final String SELECT_ALL = "SELECT * FROM students";
+    //language=H2
+    private static final String UPDATE = "UPDATE students SET first_name = ?, second_name = ?, age = ?, graduate_academy = ?, academy_id = ? WHERE id = ?";
+
+    @Param({"100", "1000", "10000"})
+    int tableSize;
+
+    BenchmarkDatabase db;
+    long academyId;
+    int counter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        db = new BenchmarkDatabase();
+        academyId = db.seed(tableSize).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        db.close();
+    }
+
+    @Benchmark
+    public long insert() throws SQLException {
+        Student student = BenchmarkDatabase.newStudent(counter++);
+        try (Connection connection = db.dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)) {
+            bind(ps, student);
+            ps.executeUpdate();
+            try (ResultSet rs = ps.getGeneratedKeys()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+
+    @Benchmark
+    public Student findById() throws SQLException {
+        long id = ThreadLocalRandom.current().nextLong(1, tableSize + 1);
+        try (Connection connection = db.dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(SELECT_BY_ID)) {
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? read(rs) : null;
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Student> findAll() throws SQLException {
+        List<Student> students = new ArrayList<>();
+        try (Connection connection = db.dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(SELECT_ALL);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                students.add(read(rs));
+            }
+        }
+        return students;
+    }
+
+    @Benchmark
+    public int update() throws SQLException {
+        Student student = BenchmarkDatabase.newStudent(counter++);
+        try (Connection connection = db.dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(UPDATE)) {
+            bind(ps, student);
+            ps.setLong(6, 1);
+            return ps.executeUpdate();
+        }
+    }
+
+    private void bind(PreparedStatement ps, Student student) throws SQLException {
+        ps.setString(1, student.getFirstName());
+        ps.setString(2, student.getSecondName());
+        ps.setInt(3, student.getAge());
+        ps.setDate(4, Date.valueOf(student.getGraduateAcademy()));
+        ps.setLong(5, academyId);
+    }
+
+    private static Student read(ResultSet rs) throws SQLException {
+        Student student = new Student(rs.getString(2), rs.getString(3), rs.getInt(4), rs.getDate(5).toLocalDate());
+        student.setId(rs.getLong(1));
+        return student;
+    }
+}
@@ -0,0 +1,55 @@
+package org.example.benchmark;
+
+import org.example.domain.model.Student;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * findById, findAll and refresh against a students table of several sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadBenchmark {
+    @Param({"100", "1000", "10000"})
+    int tableSize;
+
+    BenchmarkDatabase db;
+    Student loaded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        db = new BenchmarkDatabase();
+        db.seed(tableSize);
+        loaded = db.manager.findById(1L, Student.class).get();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        db.close();
+    }
+
+    @Benchmark
+    public Optional<Student> findById() {
+        long id = ThreadLocalRandom.current().nextLong(1, tableSize + 1);
+        return db.manager.findById(id, Student.class);
+    }
+
+    @Benchmark
+    public List<Student> findAll() {
+        return db.manager.findAll(Student.class);
+    }
+
+    @Benchmark
+    public Student refresh() {
+        return db.manager.refresh(loaded);
+    }
+}
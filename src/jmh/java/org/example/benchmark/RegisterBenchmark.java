@@ -0,0 +1,41 @@
+package org.example.benchmark;
+
+import org.example.domain.model.Academy;
+import org.example.domain.model.Student;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * register of the Academy and Student tables on an empty schema.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegisterBenchmark {
+    BenchmarkDatabase db;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        db = new BenchmarkDatabase();
+    }
+
+    @Setup(Level.Invocation)
+    public void dropTables() throws SQLException {
+        db.dropAll();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        db.close();
+    }
+
+    @Benchmark
+    public void register() {
+        db.manager.register(Academy.class, Student.class);
+    }
+}
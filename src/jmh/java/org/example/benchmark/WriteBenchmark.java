@@ -0,0 +1,94 @@
+package org.example.benchmark;
+
+import org.example.domain.model.Academy;
+import org.example.domain.model.Student;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * persist, save, update and delete(Object...) on the students table.
+ * The table is emptied before every iteration so inserts don't measure an ever growing index.
+ * Only delete has rows written before every call, by its own {@link RowsToDelete} state.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteBenchmark {
+    static final int DELETE_BATCH = 10;
+
+    BenchmarkDatabase db;
+    Academy academy;
+    Student existing;
+    int counter;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        db = new BenchmarkDatabase();
+    }
+
+    @Setup(Level.Iteration)
+    public void emptyTables() throws SQLException {
+        db.truncate("students");
+        db.truncate("academies");
+        academy = db.seed(1);
+        existing = BenchmarkDatabase.newStudent(0);
+        db.manager.persist(existing);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        db.close();
+    }
+
+    @Benchmark
+    public Student persist() {
+        Student student = BenchmarkDatabase.newStudent(counter++);
+        student.setAcademy(academy);
+        db.manager.persist(student);
+        return student;
+    }
+
+    @Benchmark
+    public Student saveNew() {
+        return db.manager.save(BenchmarkDatabase.newStudent(counter++));
+    }
+
+    @Benchmark
+    public Student saveExisting() {
+        existing.setAge(18 + counter++ % 50);
+        return db.manager.save(existing);
+    }
+
+    @Benchmark
+    public Student update() {
+        existing.setFirstName("First" + counter++);
+        return db.manager.update(existing);
+    }
+
+    @Benchmark
+    public void delete(RowsToDelete rows) {
+        db.manager.delete((Object[]) rows.students);
+    }
+
+    /**
+     * Fresh rows for every call of delete. Invocation level setup is costly for JMH itself and skews microsecond
+     * results, so it is kept out of the state of the other benchmarks.
+     */
+    @State(Scope.Thread)
+    public static class RowsToDelete {
+        Student[] students = new Student[DELETE_BATCH];
+
+        @Setup(Level.Invocation)
+        public void persistRows(WriteBenchmark benchmark) {
+            for (int i = 0; i < DELETE_BATCH; i++) {
+                students[i] = BenchmarkDatabase.newStudent(i);
+                benchmark.db.manager.persist(students[i]);
+            }
+        }
+    }
+}
@@ -21,7 +21,7 @@ public class Student implements Serializable {
     private Integer age;
     @Column(name = "graduate_academy")
     private LocalDate graduateAcademy;
-    @ManyToOne(targetEntity = Academy.class, name = "academy_id")
+    @ManyToOne(targetEntity = Academy.class, name = "academy_id", fetch = FetchType.LAZY)
     private Academy academy;
 
     Student() {
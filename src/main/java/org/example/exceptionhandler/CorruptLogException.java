@@ -0,0 +1,11 @@
+package org.example.exceptionhandler;
+
+import java.nio.file.Path;
+
+public class CorruptLogException extends RuntimeException {
+
+    public CorruptLogException(Path file, long offset) {
+        super("\nThe checksum of the record doesn't match its content, the log file is damaged. " +
+                "\nFile: " + file + ", record offset: " + offset);
+    }
+}
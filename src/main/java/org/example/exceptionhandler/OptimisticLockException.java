@@ -0,0 +1,9 @@
+package org.example.exceptionhandler;
+
+public class OptimisticLockException extends RuntimeException {
+
+    public OptimisticLockException(Object o) {
+        super("\nThe row of the entity was updated or deleted by someone else since the entity was read. " +
+                "\nRead the entity again before changing it: " + o);
+    }
+}
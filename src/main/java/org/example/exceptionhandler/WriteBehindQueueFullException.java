@@ -0,0 +1,11 @@
+package org.example.exceptionhandler;
+
+import java.time.Duration;
+
+public class WriteBehindQueueFullException extends RuntimeException {
+
+    public WriteBehindQueueFullException(int capacity, Duration waited) {
+        super("\nThe write-behind queue stayed full of " + capacity + " entities for " + waited.toMillis() + " ms. " +
+                "\nThe DB can't keep up with the writes; flush more often or give the queue more room.");
+    }
+}
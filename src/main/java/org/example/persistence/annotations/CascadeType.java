@@ -0,0 +1,23 @@
+package org.example.persistence.annotations;
+
+/**
+ * Operations on an entity which an association passes on to the entities it references.
+ */
+public enum CascadeType {
+    /**
+     * Persisting or saving the entity also inserts the new referenced entities.
+     */
+    PERSIST,
+    /**
+     * Saving the entity also inserts the new referenced entities and updates the existing ones.
+     */
+    MERGE,
+    /**
+     * Deleting the entity also deletes the referenced entities.
+     */
+    REMOVE,
+    /**
+     * All of the above.
+     */
+    ALL
+}
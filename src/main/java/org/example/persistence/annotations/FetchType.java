@@ -0,0 +1,15 @@
+package org.example.persistence.annotations;
+
+/**
+ * When the entity referenced by an association is read from the DB.
+ */
+public enum FetchType {
+    /**
+     * Together with the owning entity.
+     */
+    EAGER,
+    /**
+     * On the first method call on the referenced entity. Until then only its ID is known.
+     */
+    LAZY
+}
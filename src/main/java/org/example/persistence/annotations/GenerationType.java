@@ -0,0 +1,21 @@
+package org.example.persistence.annotations;
+
+/**
+ * Where the ID of a new entity comes from.
+ */
+public enum GenerationType {
+    /**
+     * The DB generates it on insert, the ORM reads it back as generated key.
+     */
+    IDENTITY,
+    /**
+     * The ORM takes it from a DB sequence, reserving a block of {@link Id#allocationSize()} IDs with each call,
+     * and inserts it with the row.
+     */
+    SEQUENCE,
+    /**
+     * The ORM makes it up from the clock: 64 bit IDs increasing with the time of the insert, without asking the DB.
+     * They are unique per ID node, so managers writing to the same tables need different nodes. Needs a Long ID.
+     */
+    TIME_ORDERED
+}
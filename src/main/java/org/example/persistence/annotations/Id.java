@@ -8,4 +8,13 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Id {
 
+    /**
+     * @return how the IDs of new entities are generated.
+     */
+    GenerationType strategy() default GenerationType.IDENTITY;
+
+    /**
+     * @return IDs reserved by one call of the {@link GenerationType#SEQUENCE} sequence.
+     */
+    int allocationSize() default 50;
 }
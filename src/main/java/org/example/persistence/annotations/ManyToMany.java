@@ -5,10 +5,29 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * A list of entities linked through a join table with two ID columns. The side without mappedBy owns the
+ * join table: only changes to its lists are written. The other side names the owning field in mappedBy.
+ */
 @Target({ElementType.METHOD, ElementType.FIELD})
 @Retention(RetentionPolicy.RUNTIME)
 public @interface ManyToMany {
     Class targetEntity() default void.class;
 
     String mappedBy() default "";
-}
\ No newline at end of file
+
+    /**
+     * @return name of the join table; by default the table names of both sides joined by an underscore.
+     */
+    String joinTable() default "";
+
+    /**
+     * @return join table column referencing the owning side; by default its class name and "_id".
+     */
+    String joinColumn() default "";
+
+    /**
+     * @return join table column referencing the list elements; by default their class name and "_id".
+     */
+    String inverseJoinColumn() default "";
+}
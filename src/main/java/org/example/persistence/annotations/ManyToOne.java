@@ -14,4 +14,11 @@ public @interface ManyToOne {
 
     boolean nullable() default true;
 
+    FetchType fetch() default FetchType.EAGER;
+
+    /**
+     * @return operations passed on to the referenced entity.
+     */
+    CascadeType[] cascade() default {};
+
 }
@@ -10,4 +10,9 @@ import java.lang.annotation.Target;
 public @interface OneToMany {
     String mappedBy() default "";
 
+    /**
+     * @return operations passed on to the elements of the list.
+     */
+    CascadeType[] cascade() default {};
+
 }
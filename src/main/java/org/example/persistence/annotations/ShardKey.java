@@ -0,0 +1,16 @@
+package org.example.persistence.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the field whose value chooses the shard a new entity is stored on, by hash.
+ * Without it new entities are spread over the shards in turns.
+ */
+@Target({ElementType.FIELD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ShardKey {
+
+}
@@ -0,0 +1,17 @@
+package org.example.persistence.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the version field (Integer, Long or LocalDateTime) used for optimistic locking.
+ * Update and delete only affect the row if its version is still the one the entity was read with,
+ * and every write sets the next version.
+ */
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Version {
+
+}
@@ -0,0 +1,125 @@
+package org.example.persistence.bulk;
+
+import org.example.persistence.annotations.Id;
+import org.example.persistence.annotations.ManyToOne;
+import org.example.persistence.utilities.AnnotationUtils;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns CSV records into entities, matching the header names with the column names of the entity
+ * (case-insensitive). The ID column is ignored because the DB generates the IDs. A @ManyToOne column holds the ID
+ * of the referenced entity. A null field, like an unquoted empty one of {@link CsvReader}, sets null.
+ */
+public class CsvMapper<T> {
+    private final Class<T> cls;
+    private final Field[] fieldsByPosition;
+    private final List<String> columnNames = new ArrayList<>();
+
+    public CsvMapper(Class<T> cls, List<String> header) {
+        this.cls = cls;
+        this.fieldsByPosition = new Field[header.size()];
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i) == null ? "" : header.get(i).trim();
+            Field field = findColumnField(cls, name);
+            if (field == null) {
+                throw new IllegalArgumentException("No column " + name + " in " + AnnotationUtils.getTableName(cls));
+            }
+            if (!field.isAnnotationPresent(Id.class)) {
+                field.setAccessible(true);
+                fieldsByPosition[i] = field;
+                columnNames.add(AnnotationUtils.getColumnName(field));
+            }
+        }
+    }
+
+    private static Field findColumnField(Class<?> cls, String columnName) {
+        for (Field declaredField : cls.getDeclaredFields()) {
+            if (!AnnotationUtils.isCollection(declaredField)
+                    && AnnotationUtils.getColumnName(declaredField).equalsIgnoreCase(columnName)) {
+                return declaredField;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the names of the imported columns, in the order of the header.
+     */
+    public List<String> getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * @param values Fields of one record.
+     * @return new entity with the values of the record.
+     * @throws IllegalArgumentException if the record has another number of fields than the header,
+     *                                  or a value doesn't fit the type of its field.
+     */
+    public T toEntity(List<String> values) {
+        if (values.size() != fieldsByPosition.length) {
+            throw new IllegalArgumentException("Expected " + fieldsByPosition.length + " fields but found " + values.size());
+        }
+        T entity = newInstance(cls);
+        for (int i = 0; i < fieldsByPosition.length; i++) {
+            Field field = fieldsByPosition[i];
+            if (field == null) {
+                continue;
+            }
+            String value = values.get(i);
+            try {
+                field.set(entity, value == null ? null : fromText(field, value));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid value '" + value + "' for column "
+                        + AnnotationUtils.getColumnName(field) + ": " + e.getMessage(), e);
+            }
+        }
+        return entity;
+    }
+
+    private static Object fromText(Field field, String value) throws IllegalAccessException {
+        if (field.isAnnotationPresent(ManyToOne.class)) {
+            Object reference = newInstance(field.getType());
+            for (Field referenceField : field.getType().getDeclaredFields()) {
+                if (referenceField.isAnnotationPresent(Id.class)) {
+                    referenceField.setAccessible(true);
+                    referenceField.set(reference, fromText(referenceField.getType(), value));
+                }
+            }
+            return reference;
+        }
+        return fromText(field.getType(), value);
+    }
+
+    private static Object fromText(Class<?> type, String value) {
+        return switch (type.getSimpleName()) {
+            case "String" -> value;
+            case "Long", "long" -> Long.valueOf(value.trim());
+            case "Integer", "int" -> Integer.valueOf(value.trim());
+            case "Boolean", "boolean" -> Boolean.valueOf(value.trim());
+            case "Double", "double" -> Double.valueOf(value.trim());
+            case "LocalDate" -> LocalDate.parse(value.trim());
+            case "LocalDateTime" -> LocalDateTime.parse(value.trim().replace(' ', 'T'));
+            default -> throw new IllegalArgumentException("No conversion from text to " + type.getSimpleName());
+        };
+    }
+
+    private static <E> E newInstance(Class<E> cls) {
+        try {
+            Constructor<E> constructor = cls.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor.newInstance();
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException |
+                 InvocationTargetException e) {
+            throw new IllegalStateException("No no-args constructor in " + cls, e);
+        }
+    }
+}
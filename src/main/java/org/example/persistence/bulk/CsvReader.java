@@ -0,0 +1,113 @@
+package org.example.persistence.bulk;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the records of a comma separated file (RFC 4180): fields may be quoted, a quoted field may contain commas,
+ * line breaks and quotes written twice. An empty field is null unless it is quoted. The first record is the header.
+ */
+public class CsvReader implements Iterator<List<String>>, Closeable {
+    private final BufferedReader reader;
+    private final List<String> header;
+    private List<String> next;
+
+    public CsvReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader bufferedReader ? bufferedReader : new BufferedReader(reader);
+        this.header = readRecord();
+        this.next = header == null ? null : readRecord();
+    }
+
+    /**
+     * @return the names in the first record, empty for an empty file.
+     */
+    public List<String> getHeader() {
+        return header == null ? List.of() : header;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public List<String> next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        List<String> current = next;
+        next = readRecord();
+        return current;
+    }
+
+    /**
+     * @return the fields of the next record, or null at the end of the input. Blank lines are skipped.
+     */
+    private List<String> readRecord() {
+        try {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean inQuotes = false;
+            boolean fieldQuoted = false;
+            int c;
+            while ((c = reader.read()) != -1) {
+                if (inQuotes) {
+                    if (c != '"') {
+                        field.append((char) c);
+                        continue;
+                    }
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        field.append('"');
+                    } else {
+                        reader.reset();
+                        inQuotes = false;
+                    }
+                } else if (c == '"') {
+                    inQuotes = true;
+                    fieldQuoted = true;
+                } else if (c == ',') {
+                    fields.add(fieldValue(field, fieldQuoted));
+                    field.setLength(0);
+                    fieldQuoted = false;
+                } else if (c == '\n' || c == '\r') {
+                    if (c == '\r') {
+                        reader.mark(1);
+                        if (reader.read() != '\n') {
+                            reader.reset();
+                        }
+                    }
+                    if (!fields.isEmpty() || fieldQuoted || field.length() > 0) {
+                        fields.add(fieldValue(field, fieldQuoted));
+                        return fields;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            }
+            if (!fields.isEmpty() || fieldQuoted || field.length() > 0) {
+                fields.add(fieldValue(field, fieldQuoted));
+                return fields;
+            }
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String fieldValue(StringBuilder field, boolean quoted) {
+        return field.length() == 0 && !quoted ? null : field.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
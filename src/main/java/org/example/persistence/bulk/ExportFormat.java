@@ -0,0 +1,111 @@
+package org.example.persistence.bulk;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Text formats of a table export, one line per row. Values are null, String, Number, Boolean,
+ * LocalDate or LocalDateTime.
+ */
+public enum ExportFormat {
+    /**
+     * Comma separated values with the column names as header, read back by {@link CsvReader}:
+     * null is an empty field, an empty string is quoted.
+     */
+    CSV {
+        @Override
+        public void writeHeader(Writer writer, List<String> columnNames) throws IOException {
+            for (int i = 0; i < columnNames.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeCsvField(writer, columnNames.get(i));
+            }
+            writer.write('\n');
+        }
+
+        @Override
+        public void writeRow(Writer writer, List<String> columnNames, Object[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                if (values[i] != null) {
+                    writeCsvField(writer, values[i].toString());
+                }
+            }
+            writer.write('\n');
+        }
+    },
+    /**
+     * One JSON object per line with the column names as keys.
+     */
+    JSON_LINES {
+        @Override
+        public void writeHeader(Writer writer, List<String> columnNames) {
+        }
+
+        @Override
+        public void writeRow(Writer writer, List<String> columnNames, Object[] values) throws IOException {
+            writer.write('{');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeJsonString(writer, columnNames.get(i));
+                writer.write(':');
+                Object value = values[i];
+                if (value == null || value instanceof Double d && (d.isNaN() || d.isInfinite())) {
+                    writer.write("null");
+                } else if (value instanceof Number || value instanceof Boolean) {
+                    writer.write(value.toString());
+                } else {
+                    writeJsonString(writer, value.toString());
+                }
+            }
+            writer.write("}\n");
+        }
+    };
+
+    public abstract void writeHeader(Writer writer, List<String> columnNames) throws IOException;
+
+    public abstract void writeRow(Writer writer, List<String> columnNames, Object[] values) throws IOException;
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        boolean quoted = value.isEmpty();
+        for (int i = 0; i < value.length() && !quoted; i++) {
+            char c = value.charAt(i);
+            quoted = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quoted) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static void writeJsonString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> writer.write("\\\"");
+                case '\\' -> writer.write("\\\\");
+                case '\n' -> writer.write("\\n");
+                case '\r' -> writer.write("\\r");
+                case '\t' -> writer.write("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        writer.write(c);
+                    }
+                }
+            }
+        }
+        writer.write('"');
+    }
+}
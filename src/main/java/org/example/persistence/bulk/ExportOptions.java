@@ -0,0 +1,42 @@
+package org.example.persistence.bulk;
+
+import java.util.List;
+
+/**
+ * Settings of a table export.
+ *
+ * @param columnNames         Exported columns in this order, all columns if empty.
+ * @param materializeEntities Whether every row is read into an entity first, so that the values are the field
+ *                            values; otherwise the values are taken straight from the result set.
+ * @param gzip                Whether the output is gzip compressed.
+ * @param fetchSize           Rows the driver fetches from the DB at a time.
+ */
+public record ExportOptions(List<String> columnNames, boolean materializeEntities, boolean gzip, int fetchSize) {
+
+    public ExportOptions {
+        columnNames = List.copyOf(columnNames);
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("Export fetch size must be positive");
+        }
+    }
+
+    public static ExportOptions defaults() {
+        return new ExportOptions(List.of(), false, false, 1000);
+    }
+
+    public ExportOptions withColumns(String... columnNames) {
+        return new ExportOptions(List.of(columnNames), materializeEntities, gzip, fetchSize);
+    }
+
+    public ExportOptions withMaterializedEntities(boolean materializeEntities) {
+        return new ExportOptions(columnNames, materializeEntities, gzip, fetchSize);
+    }
+
+    public ExportOptions withGzip(boolean gzip) {
+        return new ExportOptions(columnNames, materializeEntities, gzip, fetchSize);
+    }
+
+    public ExportOptions withFetchSize(int fetchSize) {
+        return new ExportOptions(columnNames, materializeEntities, gzip, fetchSize);
+    }
+}
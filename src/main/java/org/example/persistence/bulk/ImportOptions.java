@@ -0,0 +1,64 @@
+package org.example.persistence.bulk;
+
+import java.util.function.Consumer;
+
+/**
+ * Settings of a bulk import.
+ *
+ * @param batchSize          Rows per JDBC batch, also the unit handed from stage to stage.
+ * @param commitEveryBatches Batches a writer inserts before it commits.
+ * @param parserThreads      Threads turning source records into entities.
+ * @param writerThreads      Threads inserting, each on its own connection.
+ * @param queueCapacity      Batches waiting between two stages; a full queue makes the previous stage wait.
+ * @param progressEveryRows  Imported rows between two calls of the progress listener.
+ * @param progressListener   Gets the report of the import so far.
+ * @param nativeCsv          Whether a CSV file is read by the DB itself if the dialect can,
+ *                           which is faster but imports all rows or none.
+ */
+public record ImportOptions(int batchSize, int commitEveryBatches, int parserThreads, int writerThreads,
+                            int queueCapacity, long progressEveryRows, Consumer<ImportReport> progressListener,
+                            boolean nativeCsv) {
+
+    public ImportOptions {
+        if (batchSize < 1 || commitEveryBatches < 1 || parserThreads < 1 || writerThreads < 1 ||
+                queueCapacity < 1 || progressEveryRows < 1) {
+            throw new IllegalArgumentException("Import batch size, commit interval, threads, queue capacity " +
+                    "and progress interval must be positive");
+        }
+    }
+
+    public static ImportOptions defaults() {
+        return new ImportOptions(1000, 10, 1, 2, 8, 100_000, report -> {
+        }, false);
+    }
+
+    public ImportOptions withBatchSize(int batchSize) {
+        return new ImportOptions(batchSize, commitEveryBatches, parserThreads, writerThreads, queueCapacity,
+                progressEveryRows, progressListener, nativeCsv);
+    }
+
+    public ImportOptions withCommitEveryBatches(int commitEveryBatches) {
+        return new ImportOptions(batchSize, commitEveryBatches, parserThreads, writerThreads, queueCapacity,
+                progressEveryRows, progressListener, nativeCsv);
+    }
+
+    public ImportOptions withThreads(int parserThreads, int writerThreads) {
+        return new ImportOptions(batchSize, commitEveryBatches, parserThreads, writerThreads, queueCapacity,
+                progressEveryRows, progressListener, nativeCsv);
+    }
+
+    public ImportOptions withQueueCapacity(int queueCapacity) {
+        return new ImportOptions(batchSize, commitEveryBatches, parserThreads, writerThreads, queueCapacity,
+                progressEveryRows, progressListener, nativeCsv);
+    }
+
+    public ImportOptions withProgressListener(long progressEveryRows, Consumer<ImportReport> progressListener) {
+        return new ImportOptions(batchSize, commitEveryBatches, parserThreads, writerThreads, queueCapacity,
+                progressEveryRows, progressListener, nativeCsv);
+    }
+
+    public ImportOptions withNativeCsv(boolean nativeCsv) {
+        return new ImportOptions(batchSize, commitEveryBatches, parserThreads, writerThreads, queueCapacity,
+                progressEveryRows, progressListener, nativeCsv);
+    }
+}
@@ -0,0 +1,30 @@
+package org.example.persistence.bulk;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import, or its progress while it runs.
+ *
+ * @param rowsRead     Records taken from the source.
+ * @param rowsImported Rows committed to the DB.
+ * @param failedRows   Rows which couldn't be parsed or inserted.
+ * @param errors       The first failed rows with the reason.
+ * @param elapsed      Time since the import started.
+ * @param complete     False while the import runs, or if it stopped before the end of the source.
+ */
+public record ImportReport(long rowsRead, long rowsImported, long failedRows, List<RowError> errors,
+                           Duration elapsed, boolean complete) {
+
+    /**
+     * @param rowNumber Position of the row in the source, starting at 1 with the first data row.
+     * @param message   Why the row wasn't imported.
+     */
+    public record RowError(long rowNumber, String message) {
+    }
+
+    public double rowsPerSecond() {
+        long nanos = elapsed.toNanos();
+        return nanos == 0 ? 0 : rowsImported * 1_000_000_000.0 / nanos;
+    }
+}
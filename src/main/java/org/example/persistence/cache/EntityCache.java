@@ -0,0 +1,27 @@
+package org.example.persistence.cache;
+
+/**
+ * Entities kept in memory by ID, in the binary form of {@link org.example.persistence.codec.EntityCodec},
+ * so that every hit decodes an instance of its own which the caller can change.
+ * The ORM Manager reads findById from the cache and evicts entities it updates or deletes.
+ */
+public interface EntityCache {
+
+    /**
+     * @param cls Entity class.
+     * @param id  ID of the entity.
+     * @return the encoded entity, or null if it isn't cached.
+     */
+    byte[] get(Class<?> cls, long id);
+
+    void put(Class<?> cls, long id, byte[] entity);
+
+    void evict(Class<?> cls, long id);
+
+    /**
+     * Removes all cached entities of the class.
+     */
+    void clear(Class<?> cls);
+
+    long size(Class<?> cls);
+}
@@ -0,0 +1,77 @@
+package org.example.persistence.cache;
+
+import org.example.persistence.utilities.LongObjectMap;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Unbounded cache with a primitive long-keyed map per entity class, read concurrently and written one at a time.
+ */
+public class MapEntityCache implements EntityCache {
+    private final Map<Class<?>, ClassEntities> entities = new ConcurrentHashMap<>();
+
+    @Override
+    public byte[] get(Class<?> cls, long id) {
+        ClassEntities byId = entities.get(cls);
+        if (byId == null) {
+            return null;
+        }
+        byId.lock.readLock().lock();
+        try {
+            return byId.map.get(id);
+        } finally {
+            byId.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(Class<?> cls, long id, byte[] entity) {
+        ClassEntities byId = entities.computeIfAbsent(cls, c -> new ClassEntities());
+        byId.lock.writeLock().lock();
+        try {
+            byId.map.put(id, entity);
+        } finally {
+            byId.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void evict(Class<?> cls, long id) {
+        ClassEntities byId = entities.get(cls);
+        if (byId != null) {
+            byId.lock.writeLock().lock();
+            try {
+                byId.map.remove(id);
+            } finally {
+                byId.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public void clear(Class<?> cls) {
+        entities.remove(cls);
+    }
+
+    @Override
+    public long size(Class<?> cls) {
+        ClassEntities byId = entities.get(cls);
+        if (byId == null) {
+            return 0;
+        }
+        byId.lock.readLock().lock();
+        try {
+            return byId.map.size();
+        } finally {
+            byId.lock.readLock().unlock();
+        }
+    }
+
+    private static class ClassEntities {
+        private final LongObjectMap<byte[]> map = new LongObjectMap<>();
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    }
+}
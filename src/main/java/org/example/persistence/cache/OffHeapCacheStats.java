@@ -0,0 +1,25 @@
+package org.example.persistence.cache;
+
+/**
+ * Occupancy and effectiveness of an {@link OffHeapEntityCache}.
+ *
+ * @param capacityBytes Most off-heap bytes the entity rows may take.
+ * @param usedBytes     Off-heap bytes taken by the slabs of the rows so far.
+ * @param indexBytes    Off-heap bytes of the ID indexes, on top of the capacity.
+ * @param entries       Cached entities.
+ * @param hits          Gets which found the entity.
+ * @param misses        Gets which didn't.
+ * @param evictions     Entities removed to make room for others.
+ * @param rejected      Entities not cached because they were too large or their size had no room.
+ */
+public record OffHeapCacheStats(long capacityBytes, long usedBytes, long indexBytes, long entries, long hits,
+                                long misses, long evictions, long rejected) {
+
+    /**
+     * @return the share of gets which found the entity, 0 before the first get.
+     */
+    public double hitRate() {
+        long gets = hits + misses;
+        return gets == 0 ? 0 : (double) hits / gets;
+    }
+}
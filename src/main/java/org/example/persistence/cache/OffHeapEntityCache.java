@@ -0,0 +1,276 @@
+package org.example.persistence.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache keeping the encoded entities outside the Java heap, in direct buffers, so that millions of rows
+ * neither take heap nor lengthen GC pauses; an entity is decoded only when findById hits it.
+ * <p>
+ * The rows are stored in slabs of fixed-size slots, one slab per power-of-two slot size from 64 bytes to 64 KiB,
+ * each slot holding a header (ID, class, length) and the row. The slabs grow chunk by chunk until the capacity
+ * is reached; after that a row replaces an older one of the same slot size, chosen by a clock: the hand passes over
+ * the slots, clearing the referenced bit of the ones read since its last pass, and evicts the first one without it.
+ * The IDs are found through an off-heap hash index per entity class. Rows over 64 KiB aren't cached.
+ * One lock guards the cache; a get holds it only while copying the row.
+ * Direct buffers rather than memory segments, as the build targets Java 19, where the foreign memory API is a preview.
+ */
+public class OffHeapEntityCache implements EntityCache {
+    private static final int HEADER_BYTES = 16;
+    private static final int MIN_SLOT_BYTES = 64;
+    private static final int SIZE_CLASSES = 11;
+    private static final int MAX_CHUNK_BYTES = 1 << 20;
+    private static final byte USED = 1;
+    private static final byte REFERENCED = 2;
+
+    private final long capacityBytes;
+    private final Slab[] slabs = new Slab[SIZE_CLASSES];
+    private final Map<Class<?>, Integer> classTags = new IdentityHashMap<>();
+    private final List<OffHeapIndex> indexes = new ArrayList<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private long usedBytes;
+    private long entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long rejected;
+
+    /**
+     * @param capacityBytes Most off-heap bytes the rows may take; the ID indexes come on top of it.
+     */
+    public OffHeapEntityCache(long capacityBytes) {
+        if (capacityBytes < MIN_SLOT_BYTES) {
+            throw new IllegalArgumentException("Off-heap cache capacity too small: " + capacityBytes);
+        }
+        this.capacityBytes = capacityBytes;
+        for (int sizeClass = 0; sizeClass < SIZE_CLASSES; sizeClass++) {
+            int slotBytes = MIN_SLOT_BYTES << sizeClass;
+            long chunkBytes = Math.max(slotBytes, Math.min(MAX_CHUNK_BYTES, capacityBytes / 8));
+            slabs[sizeClass] = new Slab(slotBytes, (int) (chunkBytes / slotBytes));
+        }
+    }
+
+    @Override
+    public byte[] get(Class<?> cls, long id) {
+        lock.lock();
+        try {
+            Integer tag = classTags.get(cls);
+            long location = tag == null ? -1 : indexes.get(tag).get(id);
+            if (location < 0) {
+                misses++;
+                return null;
+            }
+            hits++;
+            Slab slab = slabs[sizeClass(location)];
+            int slot = slot(location);
+            slab.flags[slot] |= REFERENCED;
+            ByteBuffer chunk = slab.chunk(slot);
+            int offset = slab.offset(slot);
+            byte[] entity = new byte[chunk.getInt(offset + 12)];
+            chunk.get(offset + HEADER_BYTES, entity);
+            return entity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(Class<?> cls, long id, byte[] entity) {
+        lock.lock();
+        try {
+            int tag = classTags.computeIfAbsent(cls, c -> {
+                indexes.add(new OffHeapIndex());
+                return indexes.size() - 1;
+            });
+            OffHeapIndex index = indexes.get(tag);
+            long previous = index.remove(id);
+            if (previous >= 0) {
+                release(previous);
+            }
+            int sizeClass = sizeClassOf(HEADER_BYTES + entity.length);
+            long location = sizeClass < 0 ? -1 : allocate(sizeClass);
+            if (location < 0) {
+                rejected++;
+                return;
+            }
+            Slab slab = slabs[sizeClass];
+            int slot = slot(location);
+            ByteBuffer chunk = slab.chunk(slot);
+            int offset = slab.offset(slot);
+            chunk.putLong(offset, id);
+            chunk.putInt(offset + 8, tag);
+            chunk.putInt(offset + 12, entity.length);
+            chunk.put(offset + HEADER_BYTES, entity);
+            slab.flags[slot] = USED;
+            index.put(id, location);
+            entries++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void evict(Class<?> cls, long id) {
+        lock.lock();
+        try {
+            Integer tag = classTags.get(cls);
+            long location = tag == null ? -1 : indexes.get(tag).remove(id);
+            if (location >= 0) {
+                release(location);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clear(Class<?> cls) {
+        lock.lock();
+        try {
+            Integer tag = classTags.get(cls);
+            if (tag != null) {
+                for (long location : indexes.get(tag).locations()) {
+                    release(location);
+                }
+                indexes.set(tag, new OffHeapIndex());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long size(Class<?> cls) {
+        lock.lock();
+        try {
+            Integer tag = classTags.get(cls);
+            return tag == null ? 0 : indexes.get(tag).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public OffHeapCacheStats stats() {
+        lock.lock();
+        try {
+            long indexBytes = indexes.stream().mapToLong(OffHeapIndex::bytes).sum();
+            return new OffHeapCacheStats(capacityBytes, usedBytes, indexBytes, entries, hits, misses, evictions, rejected);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the location of a free slot of the size class: a released one, a new one, or the one of
+     * an evicted row; -1 if the size class has no slot and no room for one.
+     */
+    private long allocate(int sizeClass) {
+        Slab slab = slabs[sizeClass];
+        if (slab.freeCount > 0) {
+            return location(sizeClass, slab.free[--slab.freeCount]);
+        }
+        if (slab.slotCount == slab.chunks.size() * slab.slotsPerChunk) {
+            long chunkBytes = (long) slab.slotsPerChunk * slab.slotBytes;
+            if (usedBytes + chunkBytes <= capacityBytes) {
+                slab.addChunk();
+                usedBytes += chunkBytes;
+            } else if (slab.slotCount > 0) {
+                return location(sizeClass, evictOne(slab));
+            } else {
+                return -1;
+            }
+        }
+        return location(sizeClass, slab.slotCount++);
+    }
+
+    /**
+     * Moves the clock hand to the first used slot not referenced since the hand last passed it and evicts its row.
+     *
+     * @return the evicted slot, now free for the caller.
+     */
+    private int evictOne(Slab slab) {
+        while (true) {
+            int slot = slab.hand;
+            slab.hand = (slab.hand + 1) % slab.slotCount;
+            byte flags = slab.flags[slot];
+            if ((flags & REFERENCED) != 0) {
+                slab.flags[slot] = USED;
+            } else if (flags == USED) {
+                ByteBuffer chunk = slab.chunk(slot);
+                int offset = slab.offset(slot);
+                indexes.get(chunk.getInt(offset + 8)).remove(chunk.getLong(offset));
+                slab.flags[slot] = 0;
+                entries--;
+                evictions++;
+                return slot;
+            }
+        }
+    }
+
+    private void release(long location) {
+        Slab slab = slabs[sizeClass(location)];
+        int slot = slot(location);
+        slab.flags[slot] = 0;
+        slab.free[slab.freeCount++] = slot;
+        entries--;
+    }
+
+    private static int sizeClassOf(int bytes) {
+        for (int sizeClass = 0; sizeClass < SIZE_CLASSES; sizeClass++) {
+            if (bytes <= MIN_SLOT_BYTES << sizeClass) {
+                return sizeClass;
+            }
+        }
+        return -1;
+    }
+
+    private static long location(int sizeClass, int slot) {
+        return ((long) sizeClass << 32) | slot;
+    }
+
+    private static int sizeClass(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int slot(long location) {
+        return (int) location;
+    }
+
+    /**
+     * The slots of one size, in direct chunks, with their used and referenced bits and the released slots.
+     */
+    private static class Slab {
+        private final int slotBytes;
+        private final int slotsPerChunk;
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private byte[] flags = new byte[0];
+        private int[] free = new int[0];
+        private int freeCount;
+        private int slotCount;
+        private int hand;
+
+        Slab(int slotBytes, int slotsPerChunk) {
+            this.slotBytes = slotBytes;
+            this.slotsPerChunk = slotsPerChunk;
+        }
+
+        void addChunk() {
+            chunks.add(ByteBuffer.allocateDirect(slotsPerChunk * slotBytes));
+            flags = Arrays.copyOf(flags, chunks.size() * slotsPerChunk);
+            free = Arrays.copyOf(free, chunks.size() * slotsPerChunk);
+        }
+
+        ByteBuffer chunk(int slot) {
+            return chunks.get(slot / slotsPerChunk);
+        }
+
+        int offset(int slot) {
+            return (slot % slotsPerChunk) * slotBytes;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.example.persistence.cache;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Hash index from ID to slot location in a direct buffer: entries of two longs, the ID and the location plus one,
+ * so that 0 marks a free entry. Open addressing with linear probing, like
+ * {@link org.example.persistence.utilities.LongObjectMap}. Not thread-safe.
+ */
+class OffHeapIndex {
+    private static final int ENTRY_BYTES = 16;
+
+    private ByteBuffer entries;
+    private int capacity;
+    private int mask;
+    private int size;
+
+    OffHeapIndex() {
+        allocate(64);
+    }
+
+    /**
+     * @return the location of the ID, or -1 if it isn't indexed.
+     */
+    long get(long id) {
+        for (int i = slot(id); location(i) != 0; i = (i + 1) & mask) {
+            if (id(i) == id) {
+                return location(i) - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the previous location of the ID, or -1.
+     */
+    long put(long id, long location) {
+        int i = slot(id);
+        for (; location(i) != 0; i = (i + 1) & mask) {
+            if (id(i) == id) {
+                long previous = location(i) - 1;
+                setEntry(i, id, location + 1);
+                return previous;
+            }
+        }
+        setEntry(i, id, location + 1);
+        if (++size > capacity / 2) {
+            resize(capacity << 1);
+        }
+        return -1;
+    }
+
+    /**
+     * @return the removed location, or -1 if the ID wasn't indexed.
+     */
+    long remove(long id) {
+        for (int i = slot(id); location(i) != 0; i = (i + 1) & mask) {
+            if (id(i) == id) {
+                long removed = location(i) - 1;
+                shiftBack(i);
+                size--;
+                return removed;
+            }
+        }
+        return -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the locations of all indexed IDs.
+     */
+    long[] locations() {
+        long[] locations = new long[size];
+        int n = 0;
+        for (int i = 0; i < capacity; i++) {
+            if (location(i) != 0) {
+                locations[n++] = location(i) - 1;
+            }
+        }
+        return locations;
+    }
+
+    /**
+     * @return the off-heap bytes of the index.
+     */
+    long bytes() {
+        return (long) capacity * ENTRY_BYTES;
+    }
+
+    private void shiftBack(int gap) {
+        for (int i = (gap + 1) & mask; location(i) != 0; i = (i + 1) & mask) {
+            int home = slot(id(i));
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                setEntry(gap, id(i), location(i));
+                gap = i;
+            }
+        }
+        setEntry(gap, 0, 0);
+    }
+
+    private void resize(int newCapacity) {
+        ByteBuffer oldEntries = entries;
+        int oldCapacity = capacity;
+        allocate(newCapacity);
+        for (int i = 0; i < oldCapacity; i++) {
+            long location = oldEntries.getLong(i * ENTRY_BYTES + 8);
+            if (location != 0) {
+                long id = oldEntries.getLong(i * ENTRY_BYTES);
+                int j = slot(id);
+                while (location(j) != 0) {
+                    j = (j + 1) & mask;
+                }
+                setEntry(j, id, location);
+            }
+        }
+    }
+
+    private void allocate(int newCapacity) {
+        entries = ByteBuffer.allocateDirect(newCapacity * ENTRY_BYTES);
+        capacity = newCapacity;
+        mask = newCapacity - 1;
+    }
+
+    private long id(int i) {
+        return entries.getLong(i * ENTRY_BYTES);
+    }
+
+    private long location(int i) {
+        return entries.getLong(i * ENTRY_BYTES + 8);
+    }
+
+    private void setEntry(int i, long id, long locationPlusOne) {
+        entries.putLong(i * ENTRY_BYTES, id);
+        entries.putLong(i * ENTRY_BYTES + 8, locationPlusOne);
+    }
+
+    private int slot(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
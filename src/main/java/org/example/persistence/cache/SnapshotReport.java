@@ -0,0 +1,14 @@
+package org.example.persistence.cache;
+
+import java.time.Duration;
+
+/**
+ * Outcome of writing or loading the snapshot of a table.
+ *
+ * @param entityClass  Entity class of the table.
+ * @param rows         Rows written to the snapshot, or loaded from it into the cache.
+ * @param caughtUpRows Rows read from the DB after loading because they changed since the snapshot; 0 when writing.
+ * @param elapsed      Duration of the whole operation.
+ */
+public record SnapshotReport(Class<?> entityClass, long rows, long caughtUpRows, Duration elapsed) {
+}
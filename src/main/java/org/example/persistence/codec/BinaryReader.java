@@ -0,0 +1,83 @@
+package org.example.persistence.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the values written by {@link BinaryWriter} from a ByteBuffer, heap or direct (memory mapped).
+ * {@link #wrap(ByteBuffer)} points the same reader at the next buffer.
+ */
+public class BinaryReader {
+    private ByteBuffer buffer;
+
+    public BinaryReader() {
+        this(ByteBuffer.allocate(0));
+    }
+
+    public BinaryReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * @param buffer Buffer read from its position; the position moves past every value read.
+     * @return this reader.
+     */
+    public BinaryReader wrap(ByteBuffer buffer) {
+        this.buffer = buffer;
+        return this;
+    }
+
+    public boolean hasRemaining() {
+        return buffer.hasRemaining();
+    }
+
+    public int readByte() {
+        return buffer.get() & 0xFF;
+    }
+
+    public void readBytes(byte[] bytes) {
+        buffer.get(bytes);
+    }
+
+    public boolean readBoolean() {
+        return buffer.get() != 0;
+    }
+
+    public int readVarInt() {
+        long value = readUnsignedVarLong();
+        return (int) (value >>> 1) ^ -(int) (value & 1);
+    }
+
+    public long readVarLong() {
+        long value = readUnsignedVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public long readUnsignedVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Varint longer than 10 bytes at position " + buffer.position());
+    }
+
+    public double readDouble() {
+        return buffer.getDouble();
+    }
+
+    public String readString() {
+        int length = Math.toIntExact(readUnsignedVarLong());
+        if (buffer.hasArray()) {
+            String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
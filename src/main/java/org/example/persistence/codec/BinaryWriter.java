@@ -0,0 +1,105 @@
+package org.example.persistence.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes values into a ByteBuffer that grows when it is full. Ints and longs are zigzag varints, so small values
+ * of either sign take one byte. After {@link #reset()} the same buffer is used again, so one writer per thread
+ * encodes any number of entities without allocating.
+ */
+public class BinaryWriter {
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private ByteBuffer buffer;
+
+    public BinaryWriter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public BinaryWriter(int initialCapacity) {
+        this.buffer = ByteBuffer.allocate(Math.max(initialCapacity, 16));
+    }
+
+    /**
+     * Drops the written bytes and keeps the buffer.
+     *
+     * @return this writer.
+     */
+    public BinaryWriter reset() {
+        buffer.clear();
+        return this;
+    }
+
+    /**
+     * @return the written bytes, as a view that stays valid until the next write or reset.
+     */
+    public ByteBuffer buffer() {
+        return buffer.duplicate().flip();
+    }
+
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[buffer.position()];
+        buffer.get(0, bytes);
+        return bytes;
+    }
+
+    public int size() {
+        return buffer.position();
+    }
+
+    public void writeByte(int value) {
+        ensureRemaining(1);
+        buffer.put((byte) value);
+    }
+
+    public void writeBytes(byte[] bytes) {
+        ensureRemaining(bytes.length);
+        buffer.put(bytes);
+    }
+
+    public void writeBoolean(boolean value) {
+        writeByte(value ? 1 : 0);
+    }
+
+    public void writeVarInt(int value) {
+        writeUnsignedVarLong(Integer.toUnsignedLong((value << 1) ^ (value >> 31)));
+    }
+
+    public void writeVarLong(long value) {
+        writeUnsignedVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * @param value Length or count; negative values take ten bytes.
+     */
+    public void writeUnsignedVarLong(long value) {
+        ensureRemaining(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public void writeDouble(double value) {
+        ensureRemaining(Double.BYTES);
+        buffer.putDouble(value);
+    }
+
+    /**
+     * Writes the length of the UTF-8 bytes followed by the bytes.
+     */
+    public void writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeUnsignedVarLong(bytes.length);
+        writeBytes(bytes);
+    }
+
+    private void ensureRemaining(int bytes) {
+        if (buffer.remaining() < bytes) {
+            int capacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+            buffer = ByteBuffer.allocate(capacity).put(buffer.flip());
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package org.example.persistence.codec;
+
+import org.example.persistence.annotations.Id;
+import org.example.persistence.annotations.ManyToOne;
+import org.example.persistence.proxy.EntityProxy;
+import org.example.persistence.utilities.AnnotationUtils;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Binary form of an entity built from its column fields, in declaration order:
+ * the number of fields, a bitmap with a bit per null field, then the values of the non-null fields.
+ * Ints and longs are zigzag varints, LocalDate is the epoch day, LocalDateTime the epoch second and nanos in UTC,
+ * strings are length-prefixed UTF-8 and a @ManyToOne reference is the ID of the referenced entity, decoded as
+ * an instance with only the ID set. @OneToMany and @ManyToMany lists aren't written.
+ * <p>
+ * No class descriptors are written, so the reading side must have the same fields.
+ * A codec has no state besides its schema and can be shared between threads.
+ */
+public class EntityCodec<T> {
+    private static final Map<Class<?>, EntityCodec<?>> codecs = new ConcurrentHashMap<>();
+
+    private final Class<T> cls;
+    private final Constructor<T> constructor;
+    private final Field[] fields;
+    private final FieldKind[] kinds;
+    private final Field[] referenceIdFields;
+    private final int bitmapBytes;
+
+    private enum FieldKind {
+        STRING, LONG, INTEGER, BOOLEAN, DOUBLE, LOCAL_DATE, LOCAL_DATE_TIME, REFERENCE
+    }
+
+    private EntityCodec(Class<T> cls) {
+        this.cls = cls;
+        this.constructor = noArgsConstructor(cls);
+        List<Field> columnFields = new ArrayList<>();
+        for (Field declaredField : cls.getDeclaredFields()) {
+            if (!AnnotationUtils.isCollection(declaredField) && !declaredField.isSynthetic()
+                    && !Modifier.isStatic(declaredField.getModifiers())) {
+                declaredField.setAccessible(true);
+                columnFields.add(declaredField);
+            }
+        }
+        this.fields = columnFields.toArray(new Field[0]);
+        this.kinds = new FieldKind[fields.length];
+        this.referenceIdFields = new Field[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            kinds[i] = kindOf(fields[i]);
+            if (kinds[i] == FieldKind.REFERENCE) {
+                referenceIdFields[i] = idField(fields[i].getType());
+            }
+        }
+        this.bitmapBytes = (fields.length + 7) / 8;
+    }
+
+    /**
+     * @param cls Entity class.
+     * @return the codec of the class, built on the first call and shared after that.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> EntityCodec<T> of(Class<T> cls) {
+        return (EntityCodec<T>) codecs.computeIfAbsent(cls, EntityCodec::new);
+    }
+
+    public Class<T> getEntityClass() {
+        return cls;
+    }
+
+    /**
+     * @return the encoded fields, in the order they are written.
+     */
+    public List<Field> getFields() {
+        return List.of(fields);
+    }
+
+    /**
+     * @return the names and types of the encoded fields; data written under another schema can't be decoded.
+     */
+    public String schema() {
+        StringBuilder schema = new StringBuilder(cls.getName());
+        for (int i = 0; i < fields.length; i++) {
+            schema.append(i == 0 ? ':' : ',').append(fields[i].getName()).append(' ').append(kinds[i]);
+        }
+        return schema.toString();
+    }
+
+    /**
+     * @param entity Entity.
+     * @return a new array with the binary form of the entity.
+     */
+    public byte[] encode(T entity) {
+        BinaryWriter writer = new BinaryWriter();
+        encode(entity, writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Appends the binary form of the entity to the writer.
+     *
+     * @param entity Entity.
+     * @param writer Writer, which can be reused for the next entity after {@link BinaryWriter#reset()}.
+     */
+    public void encode(T entity, BinaryWriter writer) {
+        Object[] values = new Object[fields.length];
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                Object value = fields[i].get(entity);
+                if (value != null && kinds[i] == FieldKind.REFERENCE) {
+                    value = referencedId(value, referenceIdFields[i]);
+                }
+                values[i] = value;
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        encodeValues(values, writer);
+    }
+
+    /**
+     * Writes the binary form of an entity from its values, without an instance of the entity.
+     *
+     * @param values Values in the order of {@link #getFields()}, the ID for a @ManyToOne field.
+     * @param writer Writer.
+     */
+    public void encodeValues(Object[] values, BinaryWriter writer) {
+        byte[] nulls = new byte[bitmapBytes];
+        for (int i = 0; i < fields.length; i++) {
+            if (values[i] == null) {
+                nulls[i >>> 3] |= (byte) (1 << (i & 7));
+            }
+        }
+        writer.writeUnsignedVarLong(fields.length);
+        writer.writeBytes(nulls);
+        for (int i = 0; i < fields.length; i++) {
+            if (values[i] != null) {
+                write(kinds[i], values[i], writer);
+            }
+        }
+    }
+
+    /**
+     * @param bytes Binary form of one entity.
+     * @return new entity.
+     */
+    public T decode(byte[] bytes) {
+        return decode(new BinaryReader(ByteBuffer.wrap(bytes)));
+    }
+
+    /**
+     * @param buffer Buffer positioned at the binary form of an entity; its position moves past it.
+     * @return new entity.
+     */
+    public T decode(ByteBuffer buffer) {
+        return decode(new BinaryReader(buffer));
+    }
+
+    /**
+     * @param reader Reader positioned at the binary form of an entity.
+     * @return new entity.
+     * @throws IllegalArgumentException if the number of fields differs from the entity class.
+     */
+    public T decode(BinaryReader reader) {
+        long fieldCount = reader.readUnsignedVarLong();
+        if (fieldCount != fields.length) {
+            throw new IllegalArgumentException("Encoded " + cls.getSimpleName() + " has " + fieldCount
+                    + " fields, the class has " + fields.length);
+        }
+        byte[] nulls = new byte[bitmapBytes];
+        reader.readBytes(nulls);
+        T entity = newInstance(constructor);
+        try {
+            for (int i = 0; i < fields.length; i++) {
+                if ((nulls[i >>> 3] & (1 << (i & 7))) == 0) {
+                    Object value = read(kinds[i], reader);
+                    if (kinds[i] == FieldKind.REFERENCE) {
+                        value = reference(fields[i].getType(), referenceIdFields[i], value);
+                    }
+                    fields[i].set(entity, value);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+        return entity;
+    }
+
+    private static void write(FieldKind kind, Object value, BinaryWriter writer) {
+        switch (kind) {
+            case STRING -> writer.writeString((String) value);
+            case LONG -> writer.writeVarLong((Long) value);
+            case INTEGER -> writer.writeVarInt((Integer) value);
+            case BOOLEAN -> writer.writeBoolean((Boolean) value);
+            case DOUBLE -> writer.writeDouble((Double) value);
+            case LOCAL_DATE -> writer.writeVarLong(((LocalDate) value).toEpochDay());
+            case LOCAL_DATE_TIME -> {
+                LocalDateTime dateTime = (LocalDateTime) value;
+                writer.writeVarLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+                writer.writeVarInt(dateTime.getNano());
+            }
+            case REFERENCE -> writer.writeVarLong(((Number) value).longValue());
+        }
+    }
+
+    private static Object read(FieldKind kind, BinaryReader reader) {
+        return switch (kind) {
+            case STRING -> reader.readString();
+            case LONG -> reader.readVarLong();
+            case INTEGER -> reader.readVarInt();
+            case BOOLEAN -> reader.readBoolean();
+            case DOUBLE -> reader.readDouble();
+            case LOCAL_DATE -> LocalDate.ofEpochDay(reader.readVarLong());
+            case LOCAL_DATE_TIME -> LocalDateTime.ofEpochSecond(reader.readVarLong(), reader.readVarInt(), ZoneOffset.UTC);
+            case REFERENCE -> reader.readVarLong();
+        };
+    }
+
+    private static FieldKind kindOf(Field field) {
+        if (field.isAnnotationPresent(ManyToOne.class)) {
+            return FieldKind.REFERENCE;
+        }
+        return switch (field.getType().getSimpleName()) {
+            case "String" -> FieldKind.STRING;
+            case "Long", "long" -> FieldKind.LONG;
+            case "Integer", "int" -> FieldKind.INTEGER;
+            case "Boolean", "boolean" -> FieldKind.BOOLEAN;
+            case "Double", "double" -> FieldKind.DOUBLE;
+            case "LocalDate" -> FieldKind.LOCAL_DATE;
+            case "LocalDateTime" -> FieldKind.LOCAL_DATE_TIME;
+            default -> throw new IllegalArgumentException("No binary encoding for field " + field);
+        };
+    }
+
+    private static Object referencedId(Object reference, Field idField) throws IllegalAccessException {
+        if (reference instanceof EntityProxy proxy) {
+            return proxy.getLazyInitializer().getId();
+        }
+        return idField.get(reference);
+    }
+
+    private static Object reference(Class<?> type, Field idField, Object id) throws IllegalAccessException {
+        Object reference = newInstance(noArgsConstructor(type));
+        idField.set(reference, idField.getType() == Integer.class || idField.getType() == int.class
+                ? (Object) Math.toIntExact((Long) id) : id);
+        return reference;
+    }
+
+    private static Field idField(Class<?> cls) {
+        for (Field declaredField : cls.getDeclaredFields()) {
+            if (declaredField.isAnnotationPresent(Id.class)) {
+                declaredField.setAccessible(true);
+                return declaredField;
+            }
+        }
+        throw new IllegalArgumentException("No @Id field in " + cls + " referenced with @ManyToOne");
+    }
+
+    private static <E> Constructor<E> noArgsConstructor(Class<E> cls) {
+        try {
+            Constructor<E> constructor = cls.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("No no-args constructor in " + cls, e);
+        }
+    }
+
+    private static <E> E newInstance(Constructor<E> constructor) {
+        try {
+            return constructor.newInstance();
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.example.persistence.idgen;
+
+import java.sql.SQLException;
+
+/**
+ * Source of the IDs the ORM assigns to new entities itself, so that inserts need not read generated keys back.
+ * Implementations are thread-safe.
+ */
+public interface IdGenerator {
+
+    /**
+     * @return an ID never returned before.
+     * @throws SQLException if the DB was asked for more IDs and failed.
+     */
+    long nextId() throws SQLException;
+}
@@ -0,0 +1,77 @@
+package org.example.persistence.idgen;
+
+import org.example.persistence.sql.SQLLogger;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Pooled hi/lo generator: the DB sequence is incremented by the allocation size, so one call of it reserves the
+ * values from the returned one up to the next multiple, which are then handed out from memory. Several ORM managers
+ * on the same DB get disjoint blocks; the values of a block not used before shutdown are skipped.
+ * <p>
+ * With several nodes, like the shards of {@link org.example.persistence.ormanager.ShardedORManager}, every node has
+ * its own sequence and maps its value v to (v - 1) * nodes + node + 1, so node k of n makes k + 1, k + 1 + n and so on.
+ */
+public class SequenceIdGenerator implements IdGenerator {
+    private final DataSource dataSource;
+    private final SQLLogger sqlLogger;
+    private final String nextValueSql;
+    private final int allocationSize;
+    private final int node;
+    private final int nodes;
+    private long next;
+    private long limit;
+
+    /**
+     * @param dataSource     Data source of the DB with the sequence.
+     * @param sqlLogger      Logger of the executed statements.
+     * @param nextValueSql   Statement selecting the next value of the sequence.
+     * @param allocationSize Increment of the sequence.
+     * @param node           Index of this node, from 0.
+     * @param nodes          Number of nodes.
+     */
+    public SequenceIdGenerator(DataSource dataSource, SQLLogger sqlLogger, String nextValueSql, int allocationSize,
+                               int node, int nodes) {
+        if (allocationSize < 1) {
+            throw new IllegalArgumentException("allocationSize must be positive: " + allocationSize);
+        }
+        if (node < 0 || node >= nodes) {
+            throw new IllegalArgumentException("Node " + node + " out of " + nodes);
+        }
+        this.dataSource = dataSource;
+        this.sqlLogger = sqlLogger;
+        this.nextValueSql = nextValueSql;
+        this.allocationSize = allocationSize;
+        this.node = node;
+        this.nodes = nodes;
+    }
+
+    @Override
+    public synchronized long nextId() throws SQLException {
+        if (next == limit) {
+            next = nextSequenceValue();
+            limit = next + allocationSize;
+        }
+        return (next++ - 1) * nodes + node + 1;
+    }
+
+    /**
+     * Reads the sequence on a connection of its own, so that the block stays reserved whatever happens to the
+     * transaction the IDs are used in.
+     */
+    private long nextSequenceValue() throws SQLException {
+        long start = sqlLogger.start();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(nextValueSql);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            long value = rs.getLong(1);
+            sqlLogger.log(nextValueSql, new Object[0], 1, start);
+            return value;
+        }
+    }
+}
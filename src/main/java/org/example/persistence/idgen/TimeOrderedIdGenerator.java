@@ -0,0 +1,50 @@
+package org.example.persistence.idgen;
+
+import java.time.Clock;
+import java.time.Instant;
+
+/**
+ * Makes 64 bit IDs from the clock without asking the DB: the milliseconds since 2024 shifted left by 12 bits,
+ * plus a counter of the IDs made in the same millisecond, then spread over the nodes like
+ * {@link SequenceIdGenerator}: (value * nodes) + node + 1. The IDs of one generator always increase; a clock going
+ * back, or more than 4096 IDs in a millisecond, borrow from the next milliseconds instead of waiting.
+ * <p>
+ * The IDs are unique only per node: generators with the same node, e.g. two ORM managers left at the default node 0
+ * of 1, make the same IDs in the same millisecond. Give every manager writing to the same tables its own node with
+ * {@link org.example.persistence.ormanager.ORManagerImpl#setIdNode(int, int)}; there may be up to 1024 nodes,
+ * which leaves 41 bits or about 69 years for the time.
+ */
+public class TimeOrderedIdGenerator implements IdGenerator {
+    public static final int MAX_NODES = 1024;
+    private static final long EPOCH_MILLIS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final int COUNTER_BITS = 12;
+
+    private final Clock clock;
+    private final int node;
+    private final int nodes;
+    private long lastValue = -1;
+
+    /**
+     * @param node  Index of this node, from 0.
+     * @param nodes Number of nodes.
+     */
+    public TimeOrderedIdGenerator(int node, int nodes) {
+        this(Clock.systemUTC(), node, nodes);
+    }
+
+    TimeOrderedIdGenerator(Clock clock, int node, int nodes) {
+        if (nodes > MAX_NODES || node < 0 || node >= nodes) {
+            throw new IllegalArgumentException("Node " + node + " out of " + nodes + ", at most " + MAX_NODES);
+        }
+        this.clock = clock;
+        this.node = node;
+        this.nodes = nodes;
+    }
+
+    @Override
+    public synchronized long nextId() {
+        long value = (clock.millis() - EPOCH_MILLIS) << COUNTER_BITS;
+        lastValue = Math.max(value, lastValue + 1);
+        return lastValue * nodes + node + 1;
+    }
+}
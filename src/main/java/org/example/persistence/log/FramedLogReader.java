@@ -0,0 +1,237 @@
+package org.example.persistence.log;
+
+import org.example.exceptionhandler.CorruptLogException;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
+
+import static org.example.persistence.log.FramedLogWriter.FILE_HEADER_SIZE;
+import static org.example.persistence.log.FramedLogWriter.MAGIC;
+import static org.example.persistence.log.FramedLogWriter.RECORD_HEADER_SIZE;
+import static org.example.persistence.log.FramedLogWriter.VERSION;
+
+/**
+ * Reads the records of a log written by {@link FramedLogWriter}, either streamed through a buffer or from a
+ * memory mapping of the file. A record cut off at the end of the file, as a crash leaves it, ends the log;
+ * a checksum mismatch before the last record throws {@link CorruptLogException}.
+ */
+public class FramedLogReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private FramedLogReader() {
+    }
+
+    /**
+     * Reads the records one after the other, keeping only the current one in memory. The stream must be closed.
+     *
+     * @param file Log file.
+     * @return the payloads of the records in the order they were appended.
+     * @throws IOException if the file can't be opened or isn't a framed log.
+     */
+    public static Stream<byte[]> records(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long fileSize = channel.size();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+            readFileHeader(in, file);
+            Iterator<byte[]> iterator = new Iterator<>() {
+                private long offset = FILE_HEADER_SIZE;
+                private byte[] next = readNext();
+
+                private byte[] readNext() {
+                    try {
+                        if (fileSize - offset < RECORD_HEADER_SIZE) {
+                            return null;
+                        }
+                        int length = in.readInt();
+                        int checksum = in.readInt();
+                        long end = offset + RECORD_HEADER_SIZE + length;
+                        if (length < 0 || end > fileSize) {
+                            return null;
+                        }
+                        byte[] payload = new byte[length];
+                        in.readFully(payload);
+                        CRC32 crc = new CRC32();
+                        crc.update(payload);
+                        if ((int) crc.getValue() != checksum) {
+                            if (end == fileSize) {
+                                return null;
+                            }
+                            throw new CorruptLogException(file, offset);
+                        }
+                        offset = end;
+                        return payload;
+                    } catch (EOFException e) {
+                        return null;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public byte[] next() {
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    byte[] current = next;
+                    next = readNext();
+                    return current;
+                }
+            };
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .onClose(() -> {
+                        try {
+                            channel.close();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps the file into memory and returns the records as read-only views of the mapping, without copying them.
+     * The mapping stays valid while a record is in use, even after the file is closed.
+     *
+     * @param file Log file, at most 2 GB.
+     * @return the payloads of the records in the order they were appended.
+     * @throws IOException if the file can't be mapped or isn't a framed log.
+     */
+    public static Stream<ByteBuffer> mappedRecords(Path file) throws IOException {
+        ByteBuffer mapping;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Can't map " + file + " larger than 2 GB, read its records() instead");
+            }
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (mapping.remaining() < FILE_HEADER_SIZE || mapping.getInt(0) != MAGIC) {
+            throw new IOException(file + " isn't a framed log");
+        }
+        if (mapping.getInt(4) != VERSION) {
+            throw new IOException("Unsupported framed log version " + mapping.getInt(4) + " of " + file);
+        }
+        Iterator<ByteBuffer> iterator = new Iterator<>() {
+            private int offset = FILE_HEADER_SIZE;
+            private ByteBuffer next = readNext();
+
+            private ByteBuffer readNext() {
+                int fileSize = mapping.limit();
+                if (fileSize - offset < RECORD_HEADER_SIZE) {
+                    return null;
+                }
+                int length = mapping.getInt(offset);
+                int checksum = mapping.getInt(offset + 4);
+                long end = (long) offset + RECORD_HEADER_SIZE + length;
+                if (length < 0 || end > fileSize) {
+                    return null;
+                }
+                ByteBuffer payload = mapping.slice(offset + RECORD_HEADER_SIZE, length).asReadOnlyBuffer();
+                CRC32 crc = new CRC32();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    if (end == fileSize) {
+                        return null;
+                    }
+                    throw new CorruptLogException(file, offset);
+                }
+                offset = (int) end;
+                return payload;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public ByteBuffer next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                ByteBuffer current = next;
+                next = readNext();
+                return current;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private static void readFileHeader(DataInputStream in, Path file) throws IOException {
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " isn't a framed log");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported framed log version " + version + " of " + file);
+            }
+        } catch (EOFException e) {
+            throw new IOException(file + " isn't a framed log", e);
+        }
+    }
+
+    /**
+     * @param channel Open log file.
+     * @param file    Path of the log file, for the error.
+     * @return the length of the file up to the end of its last complete record with a valid checksum; only a record
+     * running into the end of the file is left out.
+     * @throws IOException          if the file can't be read or isn't a framed log.
+     * @throws CorruptLogException if a record before the last doesn't match its checksum.
+     */
+    static long validLength(FileChannel channel, Path file) throws IOException {
+        long fileSize = channel.size();
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+        if (fileSize < FILE_HEADER_SIZE || in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a framed log of version " + VERSION);
+        }
+        long offset = FILE_HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        byte[] payload = new byte[0];
+        while (fileSize - offset >= RECORD_HEADER_SIZE) {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length < 0 || offset + RECORD_HEADER_SIZE + length > fileSize) {
+                break;
+            }
+            if (payload.length < length) {
+                payload = new byte[length];
+            }
+            in.readFully(payload, 0, length);
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != checksum) {
+                if (offset + RECORD_HEADER_SIZE + length == fileSize) {
+                    break;
+                }
+                throw new CorruptLogException(file, offset);
+            }
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        return offset;
+    }
+}
@@ -0,0 +1,206 @@
+package org.example.persistence.log;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.exceptionhandler.CorruptLogException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Appends records to a file in the framed log format: a file header (magic number and format version) followed by
+ * records, each framed by its length and the CRC32 of its payload. Appends go through a buffer into a
+ * {@link FileChannel}; the {@link FsyncPolicy} decides when they are forced to the disk. Safe for use by many threads.
+ */
+@Slf4j
+public class FramedLogWriter implements Closeable {
+    static final int MAGIC = 0x4F524D4C;
+    static final int VERSION = 1;
+    static final int FILE_HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final FsyncPolicy fsyncPolicy;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+    private final CRC32 crc = new CRC32();
+    private long size;
+    private int recordsSinceSync;
+    private long lastSyncNanos = System.nanoTime();
+
+    private FramedLogWriter(FileChannel channel, FsyncPolicy fsyncPolicy, long size) {
+        this.channel = channel;
+        this.fsyncPolicy = fsyncPolicy;
+        this.size = size;
+    }
+
+    /**
+     * Opens the log for appending, creating it if it doesn't exist. A record torn by a crash at the end of the file
+     * is cut off; a damaged record before it leaves the file as it is.
+     *
+     * @param file        Log file.
+     * @param fsyncPolicy When appended records are forced to the disk.
+     * @return writer appending after the last complete record.
+     * @throws IOException          if the file can't be opened or isn't a framed log.
+     * @throws CorruptLogException if a record before the last doesn't match its checksum.
+     */
+    public static FramedLogWriter open(Path file, FsyncPolicy fsyncPolicy) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                return withNewHeader(channel, fsyncPolicy);
+            }
+            long validLength = FramedLogReader.validLength(channel, file);
+            if (validLength < channel.size()) {
+                log.atWarn().log("Cutting off {} bytes of a torn record at the end of {}", channel.size() - validLength, file);
+                channel.truncate(validLength);
+            }
+            channel.position(validLength);
+            return new FramedLogWriter(channel, fsyncPolicy, validLength);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates an empty log, replacing the file if it exists.
+     *
+     * @param file        Log file.
+     * @param fsyncPolicy When appended records are forced to the disk.
+     * @return writer appending to the empty log.
+     * @throws IOException if the file can't be created.
+     */
+    public static FramedLogWriter create(Path file, FsyncPolicy fsyncPolicy) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            return withNewHeader(channel, fsyncPolicy);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static FramedLogWriter withNewHeader(FileChannel channel, FsyncPolicy fsyncPolicy) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        return new FramedLogWriter(channel, fsyncPolicy, FILE_HEADER_SIZE);
+    }
+
+    /**
+     * @param payload Content of the record.
+     * @return the offset of the record in the file.
+     * @throws IOException if writing fails.
+     */
+    public long append(byte[] payload) throws IOException {
+        return append(ByteBuffer.wrap(payload));
+    }
+
+    /**
+     * @param payload Content of the record, from its position to its limit; the position is moved to the limit.
+     * @return the offset of the record in the file.
+     * @throws IOException if writing fails.
+     */
+    public synchronized long append(ByteBuffer payload) throws IOException {
+        if (!channel.isOpen()) {
+            throw new IOException("The log is closed");
+        }
+        long offset = size;
+        int length = payload.remaining();
+        crc.reset();
+        crc.update(payload.duplicate());
+        recordHeader.clear();
+        recordHeader.putInt(length).putInt((int) crc.getValue()).flip();
+        write(recordHeader);
+        write(payload);
+        size += RECORD_HEADER_SIZE + length;
+        recordsSinceSync++;
+        if (fsyncPolicy.isDue(recordsSinceSync, System.nanoTime() - lastSyncNanos)) {
+            sync();
+        }
+        return offset;
+    }
+
+    private void write(ByteBuffer data) throws IOException {
+        if (data.remaining() > buffer.remaining()) {
+            writeBuffer();
+            if (data.remaining() > buffer.capacity()) {
+                while (data.hasRemaining()) {
+                    channel.write(data);
+                }
+                return;
+            }
+        }
+        buffer.put(data);
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Hands the buffered records to the OS, where readers of the file see them.
+     *
+     * @throws IOException if writing fails.
+     */
+    public synchronized void flush() throws IOException {
+        writeBuffer();
+    }
+
+    /**
+     * Forces all appended records to the disk.
+     *
+     * @throws IOException if writing fails.
+     */
+    public synchronized void sync() throws IOException {
+        writeBuffer();
+        channel.force(false);
+        recordsSinceSync = 0;
+        lastSyncNanos = System.nanoTime();
+    }
+
+    /**
+     * @return the size of the log including the buffered records.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * @return whether records can still be appended.
+     */
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    /**
+     * Writes the buffered records and, unless the policy never syncs, forces them to the disk.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            if (fsyncPolicy.everyRecords() > 0 || fsyncPolicy.everyNanos() > 0) {
+                sync();
+            } else {
+                writeBuffer();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.example.persistence.log;
+
+import java.time.Duration;
+
+/**
+ * When a {@link FramedLogWriter} forces its records to the disk. Until then a crash of the machine can lose them,
+ * while a crash of the process only loses the records still in the writer's buffer.
+ *
+ * @param everyRecords Records appended between two syncs, 0 to never sync for a number of records.
+ * @param everyNanos   Time after the last sync when the next append syncs, 0 to never sync for the time.
+ */
+public record FsyncPolicy(int everyRecords, long everyNanos) {
+
+    public FsyncPolicy {
+        if (everyRecords < 0 || everyNanos < 0) {
+            throw new IllegalArgumentException("Fsync intervals can't be negative");
+        }
+    }
+
+    /**
+     * @return policy leaving it to the OS when the records reach the disk; close still flushes them to the OS.
+     */
+    public static FsyncPolicy never() {
+        return new FsyncPolicy(0, 0);
+    }
+
+    /**
+     * @return policy syncing after every record, so that append returns only when the record is on the disk.
+     */
+    public static FsyncPolicy always() {
+        return new FsyncPolicy(1, 0);
+    }
+
+    /**
+     * Group commit: one sync covers all the records appended since the last one.
+     *
+     * @param records  Records after which the append syncs.
+     * @param maxDelay Time after the last sync after which the next append syncs.
+     * @return policy syncing at whichever comes first.
+     */
+    public static FsyncPolicy group(int records, Duration maxDelay) {
+        return new FsyncPolicy(records, maxDelay.toNanos());
+    }
+
+    boolean isDue(int recordsSinceSync, long nanosSinceSync) {
+        return everyRecords > 0 && recordsSinceSync >= everyRecords
+                || everyNanos > 0 && recordsSinceSync > 0 && nanosSinceSync >= everyNanos;
+    }
+}
@@ -0,0 +1,336 @@
+package org.example.persistence.ormanager;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.exceptionhandler.CorruptLogException;
+import org.example.exceptionhandler.ExceptionHandler;
+import org.example.persistence.annotations.Id;
+import org.example.persistence.annotations.ManyToOne;
+import org.example.persistence.cache.EntityCache;
+import org.example.persistence.cache.SnapshotReport;
+import org.example.persistence.codec.BinaryReader;
+import org.example.persistence.codec.BinaryWriter;
+import org.example.persistence.codec.EntityCodec;
+import org.example.persistence.log.FramedLogReader;
+import org.example.persistence.log.FramedLogWriter;
+import org.example.persistence.log.FsyncPolicy;
+import org.example.persistence.sql.Dialect;
+import org.example.persistence.sql.SQLLogger;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.example.persistence.utilities.AnnotationUtils.getColumnName;
+import static org.example.persistence.utilities.AnnotationUtils.getTableName;
+import static org.example.persistence.utilities.AnnotationUtils.getVersionField;
+
+/**
+ * Writes tables to snapshot files and loads them into an {@link EntityCache}, so that a new node starts with a warm
+ * cache. A snapshot is a framed log ({@link FramedLogWriter}): a header with the schema of the entity and the
+ * high-water mark of the table, then one record per row with its ID and the entity as {@link EntityCodec} writes it.
+ * <p>
+ * The high-water mark is the largest value of the @Version column if it is a LocalDateTime, otherwise of the ID,
+ * read before the rows. After loading a snapshot only the rows above the mark are read from the DB:
+ * with a timestamp version these are the rows inserted or updated since the snapshot, with the ID only the inserted
+ * ones. Deleted rows stay in the cache until it evicts them.
+ */
+@Slf4j
+class CacheSnapshots {
+    private static final String FILE_SUFFIX = ".snapshot";
+    private static final int FETCH_SIZE = 1000;
+
+    private final DataSource dataSource;
+    private final Dialect dialect;
+    private final SQLLogger sqlLogger;
+    private final EntityCache cache;
+
+    CacheSnapshots(DataSource dataSource, Dialect dialect, SQLLogger sqlLogger, EntityCache cache) {
+        this.dataSource = dataSource;
+        this.dialect = dialect;
+        this.sqlLogger = sqlLogger;
+        this.cache = cache;
+    }
+
+    /**
+     * Writes the table to a temporary file and moves it over the previous snapshot, so a crash never leaves
+     * a half written snapshot behind.
+     *
+     * @param cls       Entity class.
+     * @param directory Directory of the snapshots.
+     * @return the number of written rows.
+     */
+    <T> SnapshotReport write(Class<T> cls, Path directory) {
+        long startNanos = System.nanoTime();
+        EntityCodec<T> codec = EntityCodec.of(cls);
+        Field markField = markField(cls);
+        Path file = snapshotFile(directory, cls);
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        long rows = 0;
+        try {
+            Files.createDirectories(directory);
+            try (Connection connection = dataSource.getConnection();
+                 FramedLogWriter snapshot = FramedLogWriter.create(temporaryFile, FsyncPolicy.never())) {
+                Long mark = readMark(connection, cls, markField);
+                BinaryWriter writer = new BinaryWriter();
+                writer.writeString(codec.schema());
+                writer.writeString(getColumnName(markField));
+                writer.writeBoolean(mark != null);
+                writer.writeVarLong(mark == null ? 0 : mark);
+                snapshot.append(writer.buffer());
+                rows = readRows(connection, cls, dialect.sqlSelectAllStatement(cls), null, null, (id, values) -> {
+                    writer.reset().writeVarLong(id);
+                    codec.encodeValues(values, writer);
+                    snapshot.append(writer.buffer());
+                });
+                snapshot.sync();
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (SQLException e) {
+            ExceptionHandler.sql(e);
+        } catch (IOException e) {
+            ExceptionHandler.inputOutput(e);
+        }
+        return new SnapshotReport(cls, rows, 0, Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * Loads the snapshots of the classes in parallel, one thread per table up to the number of processors.
+     *
+     * @param directory Directory of the snapshots.
+     * @param classes   Entity classes.
+     * @return the reports in the order of the classes.
+     */
+    List<SnapshotReport> load(Path directory, Class<?>... classes) {
+        int threads = Math.max(1, Math.min(classes.length, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ExecutorService loaders = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "orm-snapshot-loader-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<SnapshotReport>> futures = new ArrayList<>();
+            for (Class<?> cls : classes) {
+                futures.add(loaders.submit(() -> loadTable(directory, cls)));
+            }
+            List<SnapshotReport> reports = new ArrayList<>();
+            for (Future<SnapshotReport> future : futures) {
+                reports.add(future.get());
+            }
+            return reports;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading snapshots", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException ?
+                    runtimeException : new IllegalStateException(e.getCause());
+        } finally {
+            loaders.shutdownNow();
+        }
+    }
+
+    /**
+     * Puts the rows of the snapshot, read from a memory mapping of the file, into the cache and then reads
+     * the rows changed since. Without a usable snapshot the whole table is read from the DB.
+     */
+    private <T> SnapshotReport loadTable(Path directory, Class<T> cls) {
+        long startNanos = System.nanoTime();
+        EntityCodec<T> codec = EntityCodec.of(cls);
+        Field markField = markField(cls);
+        Path file = snapshotFile(directory, cls);
+        Long mark = null;
+        long rows = 0;
+        long caughtUpRows = 0;
+        if (Files.exists(file)) {
+            try (Stream<ByteBuffer> records = FramedLogReader.mappedRecords(file)) {
+                Iterator<ByteBuffer> iterator = records.iterator();
+                BinaryReader reader = new BinaryReader();
+                if (iterator.hasNext()) {
+                    reader.wrap(iterator.next());
+                    String schema = reader.readString();
+                    String markColumn = reader.readString();
+                    boolean hasMark = reader.readBoolean();
+                    long markValue = reader.readVarLong();
+                    if (schema.equals(codec.schema()) && markColumn.equals(getColumnName(markField))) {
+                        while (iterator.hasNext()) {
+                            ByteBuffer record = iterator.next();
+                            long id = reader.wrap(record).readVarLong();
+                            byte[] entity = new byte[record.remaining()];
+                            record.get(entity);
+                            cache.put(cls, id, entity);
+                            rows++;
+                        }
+                        mark = hasMark ? markValue : null;
+                    } else {
+                        log.atWarn().log("The snapshot {} was written for other fields of {}, reading the table instead",
+                                file, cls.getSimpleName());
+                    }
+                }
+            } catch (IOException | CorruptLogException e) {
+                log.atWarn().log("The snapshot {} can't be read, reading the table instead: {}", file, e.getMessage());
+                cache.clear(cls);
+                rows = 0;
+                mark = null;
+            }
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            String sql = mark == null ? dialect.sqlSelectAllStatement(cls)
+                    : dialect.sqlSelectGreaterThanStatement(cls, getColumnName(markField));
+            BinaryWriter writer = new BinaryWriter();
+            caughtUpRows = readRows(connection, cls, sql, markField, mark, (id, values) -> {
+                codec.encodeValues(values, writer.reset());
+                cache.put(cls, id, writer.toByteArray());
+            });
+        } catch (SQLException e) {
+            ExceptionHandler.sql(e);
+        } catch (IOException e) {
+            ExceptionHandler.inputOutput(e);
+        }
+        return new SnapshotReport(cls, rows, caughtUpRows, Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+
+    @FunctionalInterface
+    private interface RowConsumer {
+        void accept(long id, Object[] values) throws IOException;
+    }
+
+    /**
+     * Reads the rows of the statement from a forward-only result set, as the values {@link EntityCodec} encodes.
+     *
+     * @param markField Field whose column the statement compares with the mark.
+     * @param mark      High-water mark bound to the statement, null if it has no placeholder.
+     * @return the number of rows.
+     */
+    private long readRows(Connection connection, Class<?> cls, String sql, Field markField, Long mark,
+                          RowConsumer consumer) throws SQLException, IOException {
+        List<Field> fields = EntityCodec.of(cls).getFields();
+        int idIndex = 0;
+        while (!fields.get(idIndex).isAnnotationPresent(Id.class)) {
+            idIndex++;
+        }
+        long rows = 0;
+        long start = sqlLogger.start();
+        boolean autoCommit = connection.getAutoCommit();
+        // PostgreSQL only fetches in portions inside a transaction
+        connection.setAutoCommit(false);
+        try (PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(FETCH_SIZE);
+            Object[] params = new Object[0];
+            if (mark != null) {
+                Object boundMark = markValue(markField, mark);
+                ps.setObject(1, boundMark);
+                params = new Object[]{boundMark};
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                Object[] values = new Object[fields.size()];
+                while (rs.next()) {
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = columnValue(rs, fields.get(i));
+                    }
+                    consumer.accept(((Number) values[idIndex]).longValue(), values);
+                    rows++;
+                }
+            }
+            sqlLogger.log(sql, params, rows, start);
+        } finally {
+            connection.rollback();
+            connection.setAutoCommit(autoCommit);
+        }
+        return rows;
+    }
+
+    private Long readMark(Connection connection, Class<?> cls, Field markField) throws SQLException {
+        String sql = dialect.sqlMaxStatement(cls, getColumnName(markField));
+        long start = sqlLogger.start();
+        try (PreparedStatement ps = connection.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            Long mark = null;
+            if (rs.next()) {
+                Object max = markField.getType() == LocalDateTime.class ? rs.getTimestamp(1) : rs.getObject(1);
+                if (max instanceof Timestamp timestamp) {
+                    LocalDateTime dateTime = timestamp.toLocalDateTime();
+                    mark = ChronoUnit.MICROS.between(LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC), dateTime);
+                } else if (max != null) {
+                    mark = ((Number) max).longValue();
+                }
+            }
+            sqlLogger.log(sql, new Object[0], 1, start);
+            return mark;
+        }
+    }
+
+    /**
+     * @return the mark as the value bound for the column: a timestamp for a LocalDateTime version, else the number.
+     */
+    private static Object markValue(Field markField, long mark) {
+        if (markField.getType() == LocalDateTime.class) {
+            return Timestamp.valueOf(LocalDateTime.ofEpochSecond(0, 0, ZoneOffset.UTC).plus(mark, ChronoUnit.MICROS));
+        }
+        return mark;
+    }
+
+    private static Field markField(Class<?> cls) {
+        Field versionField = getVersionField(cls);
+        if (versionField != null && versionField.getType() == LocalDateTime.class) {
+            return versionField;
+        }
+        for (Field declaredField : cls.getDeclaredFields()) {
+            if (declaredField.isAnnotationPresent(Id.class)) {
+                return declaredField;
+            }
+        }
+        throw new IllegalArgumentException("No @Id field in " + cls);
+    }
+
+    private static Path snapshotFile(Path directory, Class<?> cls) {
+        return directory.resolve(getTableName(cls) + FILE_SUFFIX);
+    }
+
+    /**
+     * @return the value of the field's column in the current row, the ID of the referenced entity for a @ManyToOne.
+     */
+    private static Object columnValue(ResultSet rs, Field field) throws SQLException {
+        String columnName = getColumnName(field);
+        String type = field.isAnnotationPresent(ManyToOne.class) ? "Long" : field.getType().getSimpleName();
+        Object value = switch (type) {
+            case "String" -> rs.getString(columnName);
+            case "Long", "long" -> rs.getLong(columnName);
+            case "Integer", "int" -> rs.getInt(columnName);
+            case "Boolean", "boolean" -> rs.getBoolean(columnName);
+            case "Double", "double" -> rs.getDouble(columnName);
+            case "LocalDate" -> {
+                Date date = rs.getDate(columnName);
+                yield date == null ? null : date.toLocalDate();
+            }
+            case "LocalDateTime" -> {
+                Timestamp timestamp = rs.getTimestamp(columnName);
+                yield timestamp == null ? null : timestamp.toLocalDateTime();
+            }
+            default -> throw new IllegalArgumentException("No column type for field " + field);
+        };
+        return rs.wasNull() ? null : value;
+    }
+}
@@ -0,0 +1,341 @@
+package org.example.persistence.ormanager;
+
+import org.example.exceptionhandler.ExceptionHandler;
+import org.example.persistence.annotations.CascadeType;
+import org.example.persistence.annotations.Id;
+import org.example.persistence.annotations.ManyToOne;
+import org.example.persistence.annotations.OneToMany;
+import org.example.persistence.proxy.EntityProxyFactory;
+import org.example.persistence.proxy.PersistentList;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.example.persistence.proxy.EntityProxyFactory.getEntityClass;
+import static org.example.persistence.utilities.AnnotationUtils.getListType;
+import static org.example.persistence.utilities.AnnotationUtils.getManyToOneFieldReferencing;
+
+/**
+ * The entities a save, persist or delete reaches through the associations cascading it, and the order they are
+ * written in: new entities by depth, an entity after the new ones its @ManyToOne fields reference, so that their
+ * generated IDs are known when its foreign keys are bound; deleted entities before the ones they reference.
+ * Entities are compared by identity; references not loaded yet are left alone.
+ */
+class EntityGraph {
+    /**
+     * Operations cascaded by an association of the class, ALL expanded, read once per class.
+     */
+    private static final ClassValue<Set<CascadeType>> CASCADED = new ClassValue<>() {
+        @Override
+        protected Set<CascadeType> computeValue(Class<?> cls) {
+            Set<CascadeType> cascaded = EnumSet.noneOf(CascadeType.class);
+            for (Field field : cls.getDeclaredFields()) {
+                for (CascadeType type : CascadeType.values()) {
+                    if (contains(cascadeOf(field), type)) {
+                        cascaded.add(type);
+                    }
+                }
+            }
+            return Collections.unmodifiableSet(cascaded);
+        }
+    };
+
+    private final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Object> listed = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Object> upserted = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<Object> inserts = new ArrayList<>();
+    private final List<Object> updates = new ArrayList<>();
+    private final List<Object> deletes = new ArrayList<>();
+    private final CascadeType[] followed;
+
+    private EntityGraph(CascadeType... followed) {
+        this.followed = followed;
+    }
+
+    /**
+     * @param cls   Entity class.
+     * @param types Cascaded operations.
+     * @return whether an association of the class cascades one of the operations.
+     */
+    static boolean cascades(Class<?> cls, CascadeType... types) {
+        Set<CascadeType> cascaded = CASCADED.get(cls);
+        for (CascadeType type : types) {
+            if (cascaded.contains(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The entity is inserted, together with the new entities reached through PERSIST associations.
+     */
+    static EntityGraph forPersist(Object root) {
+        EntityGraph graph = new EntityGraph(CascadeType.PERSIST);
+        graph.seen.add(root);
+        graph.inserts.add(root);
+        graph.descend(root);
+        return graph;
+    }
+
+    /**
+     * The entities are inserted if new and updated otherwise, together with the new entities reached through PERSIST
+     * or MERGE associations and the existing ones reached through MERGE associations.
+     */
+    static EntityGraph forSave(Collection<?> roots) {
+        EntityGraph graph = new EntityGraph(CascadeType.PERSIST, CascadeType.MERGE);
+        for (Object root : roots) {
+            EntityProxyFactory.initialize(root);
+            graph.reach(root, true);
+        }
+        return graph;
+    }
+
+    /**
+     * Like {@link #forSave(Collection)}, but the roots are upserted by their unique key rather than inserted or
+     * updated by ID; the entities their associations reach are still inserted or updated.
+     */
+    static EntityGraph forUpsert(Collection<?> roots) {
+        EntityGraph graph = forSave(roots);
+        graph.upserted.addAll(roots);
+        return graph;
+    }
+
+    /**
+     * The entity is deleted, together with the entities reached through REMOVE associations.
+     */
+    static EntityGraph forDelete(Object root) {
+        EntityGraph graph = new EntityGraph(CascadeType.REMOVE);
+        graph.reachForRemoval(root);
+        return graph;
+    }
+
+    List<Object> inserts() {
+        return inserts;
+    }
+
+    List<Object> updates() {
+        return updates;
+    }
+
+    List<Object> deletes() {
+        return deletes;
+    }
+
+    /**
+     * @return whether the entity is a root of {@link #forUpsert(Collection)}.
+     */
+    boolean isUpserted(Object entity) {
+        return upserted.contains(entity);
+    }
+
+    /**
+     * @return whether the entity was reached through the @OneToMany list of another, so it is in that list already.
+     */
+    boolean isListed(Object entity) {
+        return listed.contains(entity);
+    }
+
+    /**
+     * @return the new entities in batches of one class, a batch after the ones with entities it references.
+     * @throws IllegalStateException if new entities reference each other in a cycle.
+     */
+    List<List<Object>> insertBatches() {
+        Set<Object> inserted = Collections.newSetFromMap(new IdentityHashMap<>());
+        inserted.addAll(inserts);
+        Map<Object, Integer> depths = new IdentityHashMap<>();
+        Map<Integer, Map<Class<?>, List<Object>>> byDepth = new TreeMap<>();
+        for (Object entity : inserts) {
+            byDepth.computeIfAbsent(depth(entity, inserted, depths), d -> new LinkedHashMap<>())
+                    .computeIfAbsent(getEntityClass(entity), c -> new ArrayList<>()).add(entity);
+        }
+        List<List<Object>> batches = new ArrayList<>();
+        byDepth.values().forEach(byClass -> batches.addAll(byClass.values()));
+        return batches;
+    }
+
+    /**
+     * @return the updated entities in batches of one class.
+     */
+    List<List<Object>> updateBatches() {
+        Map<Class<?>, List<Object>> byClass = new LinkedHashMap<>();
+        for (Object entity : updates) {
+            byClass.computeIfAbsent(getEntityClass(entity), c -> new ArrayList<>()).add(entity);
+        }
+        return new ArrayList<>(byClass.values());
+    }
+
+    /**
+     * @return the deleted entities in their order, split where the class changes.
+     */
+    List<List<Object>> deleteBatches() {
+        List<List<Object>> batches = new ArrayList<>();
+        Class<?> batchClass = null;
+        for (Object entity : deletes) {
+            if (getEntityClass(entity) != batchClass) {
+                batchClass = getEntityClass(entity);
+                batches.add(new ArrayList<>());
+            }
+            batches.get(batches.size() - 1).add(entity);
+        }
+        return batches;
+    }
+
+    /**
+     * @param merged Whether an existing entity is updated; otherwise only a new one is written.
+     */
+    private void reach(Object entity, boolean merged) {
+        if (entity == null || EntityProxyFactory.isUninitializedProxy(entity) || seen.contains(entity)) {
+            return;
+        }
+        if (id(entity) == null) {
+            inserts.add(entity);
+        } else if (merged) {
+            updates.add(entity);
+        } else {
+            return;
+        }
+        seen.add(entity);
+        descend(entity);
+    }
+
+    private void descend(Object entity) {
+        try {
+            for (Field field : getEntityClass(entity).getDeclaredFields()) {
+                CascadeType[] cascade = cascadeOf(field);
+                boolean merge = follows(CascadeType.MERGE) && contains(cascade, CascadeType.MERGE);
+                if (!merge && !(follows(CascadeType.PERSIST) && contains(cascade, CascadeType.PERSIST))) {
+                    continue;
+                }
+                field.setAccessible(true);
+                Object value = field.get(entity);
+                if (field.isAnnotationPresent(ManyToOne.class)) {
+                    reach(value, merge);
+                } else if (value instanceof List<?> list && !(list instanceof PersistentList<?> persistentList && !persistentList.isInitialized())) {
+                    Field backReference = getManyToOneFieldReferencing(getListType(field), getEntityClass(entity));
+                    for (Object element : list) {
+                        if (backReference != null && backReference.get(element) == null) {
+                            backReference.set(element, entity);
+                        }
+                        listed.add(element);
+                        reach(element, merge);
+                    }
+                }
+            }
+        } catch (IllegalAccessException e) {
+            ExceptionHandler.illegalAccess(e);
+        }
+    }
+
+    /**
+     * Adds the entity after the elements of its cascading lists and before the entities its cascading
+     * references point to.
+     */
+    private void reachForRemoval(Object entity) {
+        if (entity == null || seen.contains(entity)) {
+            return;
+        }
+        EntityProxyFactory.initialize(entity);
+        if (id(entity) == null) {
+            return;
+        }
+        seen.add(entity);
+        try {
+            Field[] fields = getEntityClass(entity).getDeclaredFields();
+            for (Field field : fields) {
+                if (field.isAnnotationPresent(OneToMany.class) && contains(cascadeOf(field), CascadeType.REMOVE)) {
+                    field.setAccessible(true);
+                    List<?> list = (List<?>) field.get(entity);
+                    if (list != null) {
+                        for (Object element : new ArrayList<>(list)) {
+                            reachForRemoval(element);
+                        }
+                    }
+                }
+            }
+            deletes.add(entity);
+            for (Field field : fields) {
+                if (field.isAnnotationPresent(ManyToOne.class) && contains(cascadeOf(field), CascadeType.REMOVE)) {
+                    field.setAccessible(true);
+                    reachForRemoval(field.get(entity));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            ExceptionHandler.illegalAccess(e);
+        }
+    }
+
+    private int depth(Object entity, Set<Object> inserted, Map<Object, Integer> depths) {
+        Integer known = depths.get(entity);
+        if (known != null) {
+            if (known < 0) {
+                throw new IllegalStateException("New entities reference each other in a cycle: " + getEntityClass(entity).getName());
+            }
+            return known;
+        }
+        depths.put(entity, -1);
+        int depth = 0;
+        try {
+            for (Field field : getEntityClass(entity).getDeclaredFields()) {
+                if (field.isAnnotationPresent(ManyToOne.class)) {
+                    field.setAccessible(true);
+                    Object reference = field.get(entity);
+                    if (reference != null && inserted.contains(reference)) {
+                        depth = Math.max(depth, depth(reference, inserted, depths) + 1);
+                    }
+                }
+            }
+        } catch (IllegalAccessException e) {
+            ExceptionHandler.illegalAccess(e);
+        }
+        depths.put(entity, depth);
+        return depth;
+    }
+
+    private boolean follows(CascadeType type) {
+        return Arrays.asList(followed).contains(type);
+    }
+
+    private static CascadeType[] cascadeOf(Field field) {
+        if (field.isAnnotationPresent(ManyToOne.class)) {
+            return field.getAnnotation(ManyToOne.class).cascade();
+        }
+        if (field.isAnnotationPresent(OneToMany.class)) {
+            return field.getAnnotation(OneToMany.class).cascade();
+        }
+        return new CascadeType[0];
+    }
+
+    private static boolean contains(CascadeType[] cascade, CascadeType type) {
+        for (CascadeType cascadeType : cascade) {
+            if (cascadeType == type || cascadeType == CascadeType.ALL) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Object id(Object entity) {
+        try {
+            for (Field field : getEntityClass(entity).getDeclaredFields()) {
+                if (field.isAnnotationPresent(Id.class)) {
+                    field.setAccessible(true);
+                    return field.get(entity);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            ExceptionHandler.illegalAccess(e);
+        }
+        return null;
+    }
+}
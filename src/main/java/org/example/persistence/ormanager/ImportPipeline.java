@@ -0,0 +1,349 @@
+package org.example.persistence.ormanager;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.exceptionhandler.ExceptionHandler;
+import org.example.persistence.annotations.Id;
+import org.example.persistence.bulk.ImportOptions;
+import org.example.persistence.bulk.ImportReport;
+import org.example.persistence.sql.BulkLoadStrategy;
+import org.example.persistence.sql.Dialect;
+import org.example.persistence.sql.SQLLogger;
+import org.example.persistence.utilities.AnnotationUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Bulk import in three stages connected by bounded queues: the calling thread reads the source in batches,
+ * parser threads turn the records into entities and writer threads insert them in JDBC batches,
+ * each on its own connection and committing every few batches. A batch the DB rejects is rolled back together
+ * with the other uncommitted ones, which are then inserted row by row to find the failing rows.
+ *
+ * @param <R> Type of the source records.
+ * @param <T> Entity type.
+ */
+@Slf4j
+class ImportPipeline<R, T> {
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    /**
+     * Binds the column values of an entity, as in the INSERT statement of the dialect.
+     */
+    @FunctionalInterface
+    interface RowBinder<T> {
+        void bind(T entity, PreparedStatement ps, int placeholdersBefore) throws SQLException;
+    }
+
+    private record RecordBatch<R>(long firstRowNumber, List<R> records) {
+    }
+
+    private record Row<T>(long number, T entity) {
+    }
+
+    private final DataSource dataSource;
+    private final Dialect dialect;
+    private final SQLLogger sqlLogger;
+    private final Class<T> cls;
+    private final ImportOptions options;
+    private final RowBinder<T> binder;
+    private final int columnCount;
+    private final RecordBatch<R> endOfRecords = new RecordBatch<>(0, List.of());
+    private final List<Row<T>> endOfRows = new ArrayList<>();
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong rowsImported = new AtomicLong();
+    private final AtomicLong failedRows = new AtomicLong();
+    private final AtomicLong nextProgressAt;
+    private final Queue<ImportReport.RowError> errors = new ConcurrentLinkedQueue<>();
+    private volatile boolean aborted;
+    private long startNanos;
+
+    ImportPipeline(DataSource dataSource, Dialect dialect, SQLLogger sqlLogger, Class<T> cls,
+                   ImportOptions options, RowBinder<T> binder) {
+        this.dataSource = dataSource;
+        this.dialect = dialect;
+        this.sqlLogger = sqlLogger;
+        this.cls = cls;
+        this.options = options;
+        this.binder = binder;
+        this.columnCount = (int) Arrays.stream(cls.getDeclaredFields())
+                .filter(f -> !f.isAnnotationPresent(Id.class) && !AnnotationUtils.isCollection(f))
+                .count() + (AnnotationUtils.isIdAssigned(cls) ? 1 : 0);
+        this.nextProgressAt = new AtomicLong(options.progressEveryRows());
+    }
+
+    /**
+     * @param source Records to import, read on the calling thread.
+     * @param parser Turns a record into an entity; an exception marks the row as failed.
+     * @return the report of the finished import.
+     */
+    ImportReport run(Iterator<R> source, Function<R, T> parser) {
+        startNanos = System.nanoTime();
+        BlockingQueue<RecordBatch<R>> recordQueue = new ArrayBlockingQueue<>(options.queueCapacity());
+        BlockingQueue<List<Row<T>>> rowQueue = new ArrayBlockingQueue<>(options.queueCapacity());
+        ExecutorService parsers = Executors.newFixedThreadPool(options.parserThreads(), threadFactory("orm-import-parser-"));
+        ExecutorService writers = Executors.newFixedThreadPool(options.writerThreads(), threadFactory("orm-import-writer-"));
+        AtomicInteger runningParsers = new AtomicInteger(options.parserThreads());
+        for (int i = 0; i < options.parserThreads(); i++) {
+            parsers.execute(() -> parse(recordQueue, rowQueue, parser, runningParsers));
+        }
+        for (int i = 0; i < options.writerThreads(); i++) {
+            writers.execute(() -> write(rowQueue));
+        }
+        try {
+            List<R> records = new ArrayList<>(options.batchSize());
+            long rowNumber = 0;
+            while (!aborted && source.hasNext()) {
+                records.add(source.next());
+                rowsRead.set(++rowNumber);
+                if (records.size() == options.batchSize()) {
+                    recordQueue.put(new RecordBatch<>(rowNumber - records.size() + 1, records));
+                    records = new ArrayList<>(options.batchSize());
+                }
+            }
+            if (!records.isEmpty() && !aborted) {
+                recordQueue.put(new RecordBatch<>(rowNumber - records.size() + 1, records));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            aborted = true;
+        } catch (RuntimeException e) {
+            log.atError().log("Reading the import source failed after row " + rowsRead.get(), e);
+            aborted = true;
+        } finally {
+            for (int i = 0; i < options.parserThreads(); i++) {
+                putUninterruptibly(recordQueue, endOfRecords);
+            }
+            awaitTermination(parsers);
+            awaitTermination(writers);
+        }
+        ImportReport report = report(!aborted);
+        log.atDebug().log("Imported {} of {} rows into {} in {} ms ({} rows/s)", report.rowsImported(), report.rowsRead(),
+                cls.getSimpleName(), report.elapsed().toMillis(), (long) report.rowsPerSecond());
+        return report;
+    }
+
+    private void parse(BlockingQueue<RecordBatch<R>> recordQueue, BlockingQueue<List<Row<T>>> rowQueue,
+                       Function<R, T> parser, AtomicInteger runningParsers) {
+        try {
+            for (RecordBatch<R> batch = take(recordQueue); batch != endOfRecords; batch = take(recordQueue)) {
+                List<Row<T>> rows = new ArrayList<>(batch.records().size());
+                for (int i = 0; i < batch.records().size(); i++) {
+                    long rowNumber = batch.firstRowNumber() + i;
+                    try {
+                        rows.add(new Row<>(rowNumber, parser.apply(batch.records().get(i))));
+                    } catch (RuntimeException e) {
+                        fail(rowNumber, e.getMessage());
+                    }
+                }
+                if (!rows.isEmpty()) {
+                    putUninterruptibly(rowQueue, rows);
+                }
+            }
+        } finally {
+            if (runningParsers.decrementAndGet() == 0) {
+                for (int i = 0; i < options.writerThreads(); i++) {
+                    putUninterruptibly(rowQueue, endOfRows);
+                }
+            }
+        }
+    }
+
+    private void write(BlockingQueue<List<Row<T>>> rowQueue) {
+        boolean endOfRowsTaken = false;
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            List<List<Row<T>>> uncommitted = new ArrayList<>();
+            for (List<Row<T>> rows = take(rowQueue); rows != endOfRows; rows = take(rowQueue)) {
+                if (!aborted) {
+                    uncommitted.add(rows);
+                    if (uncommitted.size() == options.commitEveryBatches()) {
+                        commit(connection, uncommitted);
+                    }
+                }
+            }
+            endOfRowsTaken = true;
+            if (!aborted && !uncommitted.isEmpty()) {
+                commit(connection, uncommitted);
+            }
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            ExceptionHandler.sql(e);
+            aborted = true;
+        }
+        // after an abort the queue is still drained so that the other stages can finish
+        while (!endOfRowsTaken) {
+            endOfRowsTaken = take(rowQueue) == endOfRows;
+        }
+    }
+
+    /**
+     * Inserts the uncommitted batches and commits them; falls back to one transaction per row if that fails.
+     */
+    private void commit(Connection connection, List<List<Row<T>>> uncommitted) {
+        try {
+            for (List<Row<T>> rows : uncommitted) {
+                insert(connection, rows);
+            }
+            connection.commit();
+            imported(uncommitted.stream().mapToLong(List::size).sum());
+        } catch (SQLException | RuntimeException e) {
+            log.atDebug().log("Import batch rejected, inserting its rows one by one: {}", e.getMessage());
+            try {
+                connection.rollback();
+                for (List<Row<T>> rows : uncommitted) {
+                    insertOneByOne(connection, rows);
+                }
+            } catch (SQLException ex) {
+                ExceptionHandler.sql(ex);
+                aborted = true;
+            }
+        }
+        uncommitted.clear();
+    }
+
+    private void insert(Connection connection, List<Row<T>> rows) throws SQLException {
+        if (dialect.bulkLoadStrategy() == BulkLoadStrategy.MULTI_ROW_INSERT && columnCount > 0) {
+            int rowsPerStatement = Math.max(1, Math.min(rows.size(), dialect.maxParameters() / columnCount));
+            int fullStatements = rows.size() / rowsPerStatement;
+            if (fullStatements > 0) {
+                executeBatch(connection, dialect.sqlMultiRowInsertStatement(cls, rowsPerStatement),
+                        rows.subList(0, fullStatements * rowsPerStatement), rowsPerStatement);
+            }
+            int remaining = rows.size() - fullStatements * rowsPerStatement;
+            if (remaining > 0) {
+                executeBatch(connection, dialect.sqlMultiRowInsertStatement(cls, remaining),
+                        rows.subList(rows.size() - remaining, rows.size()), remaining);
+            }
+        } else {
+            executeBatch(connection, dialect.sqlInsertStatement(cls), rows, 1);
+        }
+    }
+
+    private void executeBatch(Connection connection, String sql, List<Row<T>> rows, int rowsPerStatement) throws SQLException {
+        long start = sqlLogger.start();
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int from = 0; from < rows.size(); from += rowsPerStatement) {
+                for (int i = 0; i < rowsPerStatement; i++) {
+                    binder.bind(rows.get(from + i).entity(), ps, i * columnCount);
+                }
+                ps.addBatch();
+            }
+            int inserted = Arrays.stream(ps.executeBatch()).sum();
+            sqlLogger.log(sql, new Object[]{rows.size() + " entities"}, inserted, start);
+        }
+    }
+
+    private void insertOneByOne(Connection connection, List<Row<T>> rows) throws SQLException {
+        String sql = dialect.sqlInsertStatement(cls);
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (Row<T> row : rows) {
+                long start = sqlLogger.start();
+                try {
+                    binder.bind(row.entity(), ps, 0);
+                    int inserted = ps.executeUpdate();
+                    connection.commit();
+                    sqlLogger.log(sql, new Object[]{row.entity()}, inserted, start);
+                    imported(1);
+                } catch (SQLException | RuntimeException e) {
+                    connection.rollback();
+                    fail(row.number(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void imported(long rows) {
+        long imported = rowsImported.addAndGet(rows);
+        long progressAt = nextProgressAt.get();
+        if (imported >= progressAt && nextProgressAt.compareAndSet(progressAt,
+                (imported / options.progressEveryRows() + 1) * options.progressEveryRows())) {
+            options.progressListener().accept(report(false));
+        }
+    }
+
+    private void fail(long rowNumber, String message) {
+        if (failedRows.incrementAndGet() <= MAX_REPORTED_ERRORS) {
+            errors.add(new ImportReport.RowError(rowNumber, message));
+        }
+    }
+
+    private ImportReport report(boolean complete) {
+        List<ImportReport.RowError> sortedErrors = new ArrayList<>(errors);
+        sortedErrors.sort((e1, e2) -> Long.compare(e1.rowNumber(), e2.rowNumber()));
+        return new ImportReport(rowsRead.get(), rowsImported.get(), failedRows.get(), List.copyOf(sortedErrors),
+                Duration.ofNanos(System.nanoTime() - startNanos), complete);
+    }
+
+    private static ThreadFactory threadFactory(String namePrefix) {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        return runnable -> {
+            Thread thread = new Thread(runnable, namePrefix + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static <E> E take(BlockingQueue<E> queue) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return queue.take();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static <E> void putUninterruptibly(BlockingQueue<E> queue, E element) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    queue.put(element);
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.atDebug().log("Waiting for the import threads to finish");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,8 +1,24 @@
 package org.example.persistence.ormanager;
 
+import org.example.persistence.bulk.ExportFormat;
+import org.example.persistence.bulk.ExportOptions;
+import org.example.persistence.bulk.ImportOptions;
+import org.example.persistence.bulk.ImportReport;
+import org.example.persistence.cache.EntityCache;
+import org.example.persistence.cache.SnapshotReport;
+import org.example.persistence.query.Aggregation;
+import org.example.persistence.query.RowMapping;
+import org.example.persistence.writebehind.WriteBehindOptions;
+import org.example.persistence.writebehind.WriteBehindWriter;
+
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * The ORM manager works only with autogenerated at DB side Long or Integer ID's.
@@ -28,6 +44,25 @@ public interface ORManager {
      */
     <T> T save(T o);
 
+    /**
+     * Inserts the entity or updates its existing row with one native upsert statement
+     * (MERGE on H2, INSERT ... ON CONFLICT on PostgreSQL).
+     * The existing row is found by the first unique @Column of the entity or, if it has none, by its ID.
+     * The entity gets the ID of the inserted or updated row.
+     *
+     * @param o Generic object.
+     * @return the upserted object.
+     */
+    <T> T upsert(T o);
+
+    /**
+     * Upserts all the entities like {@link #upsert(Object)}, in JDBC batches on one connection and in one transaction.
+     *
+     * @param objects Entities, possibly of different classes.
+     * @return the upserted objects.
+     */
+    <T> List<T> saveAll(Collection<T> objects);
+
     /**
      * It is intended for a first save of a new entity to DB.
      * It assigns an identifier if entity doesn't exist in the DB.
@@ -45,12 +80,75 @@ public interface ORManager {
      */
     <T> Optional<T> findById(Serializable id, Class<T> cls);
 
+    /**
+     * Like {@link #findById(Serializable, Class)}, without boxing the ID.
+     *
+     * @param id  ID of a Long or Integer ID column.
+     * @param cls Class.
+     * @return the found object or empty optional.
+     */
+    <T> Optional<T> findById(long id, Class<T> cls);
+
+    /**
+     * Finds many entities by ID with one query per {@link org.example.persistence.sql.Dialect#maxParameters()} IDs,
+     * all on the same connection.
+     *
+     * @param ids Long or Integer ID numbers.
+     * @param cls Generic Class.
+     * @return the found objects in the order of the provided IDs. IDs that don't exist in the table are skipped.
+     */
+    <T> List<T> findAllById(Collection<? extends Serializable> ids, Class<T> cls);
+
     /**
      * @param cls Class.
      * @return a collection of all the objects, from the table, based on the provided class;
      */
     <T> List<T> findAll(Class<T> cls);
 
+    /**
+     * Reads the table like findAll, but cuts the ID range into parts read in parallel, each on its own connection.
+     * Faster for big tables when the DB and the pool have connections to spare.
+     *
+     * @param cls     Class.
+     * @param threads Threads and connections reading the table.
+     * @return all the objects of the table, ordered by ID.
+     */
+    <T> List<T> parallelFindAll(Class<T> cls, int threads);
+
+    /**
+     * Starts reading the table like {@link #parallelFindAll(Class, int)} and streams the objects as the parts arrive.
+     * The stream must be closed; closing it early stops the parts not read yet.
+     *
+     * @param cls     Class.
+     * @param threads Threads and connections reading the table.
+     * @return the objects of the table, ordered by ID.
+     */
+    <T> Stream<T> parallelScan(Class<T> cls, int threads);
+
+    /**
+     * Runs hand-written SQL, e.g. with window functions or hints, and maps its rows by column label: to entities,
+     * other classes with a no-args constructor, records, or a single column to a String, number or date.
+     * The mapping is planned on the first execution and reused for later ones, see {@link RowMapping}.
+     * The lists of returned entities are loaded on first access, like after findAll.
+     *
+     * @param sql    SELECT statement with ? placeholders.
+     * @param target Class of the mapped rows.
+     * @param params Values of the placeholders, in order.
+     * @return the mapped rows, in the order of the result.
+     */
+    <T> List<T> nativeQuery(String sql, Class<T> target, Object... params);
+
+    /**
+     * Computes counts, sums, minimums, maximums or averages in the DB, over the filtered rows of an entity's table
+     * and per group, instead of reading the rows. The result rows are mapped by label like by {@link #nativeQuery},
+     * e.g. to a record with a component per group field and aggregate, or to a number for a single aggregate.
+     *
+     * @param aggregation Groups, aggregates and filters.
+     * @param resultType  Class of the result rows.
+     * @return a row per group, ordered by the group fields; one row without groups.
+     */
+    <R> List<R> aggregate(Aggregation aggregation, Class<R> resultType);
+
     /**
      * Updates the existing object, and updates its row in the DB table.
      * If the object's identifier does not exist, it throws an exception.
@@ -81,6 +179,7 @@ public interface ORManager {
     /**
      * @param clss Class
      * @return the number of all records from the table, based on the provided class.
+     * @see #aggregate(Aggregation, Class)
      */
     public long recordsCount(Class<?> clss);
 
@@ -90,4 +189,103 @@ public interface ORManager {
      * @param objects An array of objects.
      */
     void delete(Object... objects);
-}
\ No newline at end of file
+
+    /**
+     * Inserts many new entities in large JDBC batches with the default {@link ImportOptions}.
+     * The IDs generated by the DB aren't set on the entities.
+     *
+     * @param cls      Entity class.
+     * @param entities New entities.
+     * @return the numbers of imported and failed rows, with the reasons of the failures.
+     */
+    <T> ImportReport importStream(Class<T> cls, Stream<T> entities);
+
+    /**
+     * Inserts many new entities: the entities are taken on the calling thread and handed over through bounded
+     * queues to writer threads, which insert them in JDBC batches on their own connections and commit periodically.
+     * A row the DB rejects is reported and the rest are still imported.
+     *
+     * @param cls      Entity class.
+     * @param entities New entities.
+     * @param options  Batch size, commit interval, threads and progress reporting.
+     * @return the numbers of imported and failed rows, with the reasons of the failures.
+     */
+    <T> ImportReport importStream(Class<T> cls, Iterator<T> entities, ImportOptions options);
+
+    /**
+     * Imports a CSV file with the default {@link ImportOptions}.
+     *
+     * @see #importCsv(Class, Path, ImportOptions)
+     */
+    <T> ImportReport importCsv(Class<T> cls, Path csvFile);
+
+    /**
+     * Imports a CSV file, whose header names the columns of the entity's table. The records are parsed on the
+     * parser threads and inserted like by {@link #importStream(Class, Iterator, ImportOptions)}, or read by the DB
+     * itself if {@link ImportOptions#nativeCsv()} is set and the dialect can.
+     *
+     * @param cls     Entity class.
+     * @param csvFile UTF-8 encoded CSV file.
+     * @param options Batch size, commit interval, threads and progress reporting.
+     * @return the numbers of imported and failed rows, with the reasons of the failures.
+     */
+    <T> ImportReport importCsv(Class<T> cls, Path csvFile, ImportOptions options);
+
+    /**
+     * Exports all columns of a table with the default {@link ExportOptions}.
+     *
+     * @see #export(Class, OutputStream, ExportFormat, ExportOptions)
+     */
+    <T> long export(Class<T> cls, OutputStream out, ExportFormat format);
+
+    /**
+     * Writes the rows of an entity's table to the stream while reading them, so that the memory use doesn't grow
+     * with the size of the table.
+     *
+     * @param cls     Entity class.
+     * @param out     Receives the export; it is flushed but not closed.
+     * @param format  CSV or JSON Lines.
+     * @param options Exported columns, whether rows are read into entities first, gzip compression and fetch size.
+     * @return the number of exported rows.
+     */
+    <T> long export(Class<T> cls, OutputStream out, ExportFormat format, ExportOptions options);
+
+    /**
+     * Starts a write-behind writer: entities saved through it are written later, in JDBC batches, and an entity
+     * saved many times before that is written once. Close it to write what is still waiting.
+     *
+     * @param options Queue capacity, batch size, flush interval and failure listener.
+     * @return the writer.
+     */
+    WriteBehindWriter writeBehind(WriteBehindOptions options);
+
+    /**
+     * Lets findById read entities from the cache and keep the ones it reads from the DB there.
+     * Entities updated, upserted or deleted by this ORM Manager are evicted.
+     *
+     * @param cache Entity cache, or null for no caching (the default).
+     */
+    void setEntityCache(EntityCache cache);
+
+    /**
+     * Writes all rows of an entity's table to a snapshot file in the directory, replacing the previous snapshot.
+     * Run periodically, e.g. from a ScheduledExecutorService, to keep the snapshots recent.
+     *
+     * @param cls       Entity class.
+     * @param directory Directory of the snapshots, created if missing.
+     * @return the number of written rows.
+     */
+    <T> SnapshotReport snapshot(Class<T> cls, Path directory);
+
+    /**
+     * Fills the entity cache before the application takes traffic: the snapshots of the classes are loaded in
+     * parallel from memory mappings of the files, then only the rows changed since each snapshot are read from the
+     * primary DB. A table without a usable snapshot is read from the primary in full.
+     *
+     * @param directory Directory of the snapshots.
+     * @param classes   Entity classes.
+     * @return per class, the rows loaded from the snapshot and the rows read from the DB.
+     * @throws IllegalStateException if no entity cache is set.
+     */
+    List<SnapshotReport> warmUp(Path directory, Class<?>... classes);
+}
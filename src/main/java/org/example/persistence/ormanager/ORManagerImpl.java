@@ -4,32 +4,116 @@ import lombok.extern.slf4j.Slf4j;
 import org.example.exceptionhandler.EntityAnnotationNotFoundException;
 import org.example.exceptionhandler.EntityNotFoundException;
 import org.example.exceptionhandler.ExceptionHandler;
+import org.example.exceptionhandler.OptimisticLockException;
+import org.example.persistence.annotations.CascadeType;
+import org.example.persistence.annotations.FetchType;
+import org.example.persistence.annotations.GenerationType;
 import org.example.persistence.annotations.Id;
+import org.example.persistence.annotations.ManyToMany;
 import org.example.persistence.annotations.ManyToOne;
 import org.example.persistence.annotations.OneToMany;
+import org.example.persistence.bulk.CsvMapper;
+import org.example.persistence.bulk.CsvReader;
+import org.example.persistence.bulk.ExportFormat;
+import org.example.persistence.bulk.ExportOptions;
+import org.example.persistence.bulk.ImportOptions;
+import org.example.persistence.bulk.ImportReport;
+import org.example.persistence.cache.EntityCache;
+import org.example.persistence.cache.SnapshotReport;
+import org.example.persistence.codec.EntityCodec;
+import org.example.persistence.idgen.IdGenerator;
+import org.example.persistence.idgen.SequenceIdGenerator;
+import org.example.persistence.idgen.TimeOrderedIdGenerator;
+import org.example.persistence.proxy.EntityProxyFactory;
+import org.example.persistence.proxy.PersistentList;
+import org.example.persistence.query.Aggregation;
+import org.example.persistence.query.RowMapping;
+import org.example.persistence.routing.ReplicaRouting;
+import org.example.persistence.sql.Dialect;
+import org.example.persistence.sql.SQLLogger;
+import org.example.persistence.utilities.AnnotationUtils;
+import org.example.persistence.utilities.LongObjectMap;
+import org.example.persistence.writebehind.WriteBehindOptions;
+import org.example.persistence.writebehind.WriteBehindWriter;
 
 import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.*;
-import java.time.LocalDate;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import static org.example.persistence.sql.SQLDialect.*;
+import static org.example.persistence.proxy.EntityProxyFactory.getEntityClass;
 import static org.example.persistence.utilities.AnnotationUtils.*;
 
 
 @Slf4j
 public class ORManagerImpl implements ORManager {
+    private static final Object[] NO_PARAMS = new Object[0];
+    /**
+     * Number of rows sent to the DB in one JDBC batch.
+     */
+    private static final int BATCH_SIZE = 500;
     private DataSource dataSource;
+    private final ReplicaRouting routing;
+    private final SQLLogger sqlLogger;
+    private final Dialect dialect;
+    private volatile EntityCache entityCache;
+    /**
+     * Generator of the IDs of each class, empty if the DB generates them.
+     */
+    private final Map<Class<?>, Optional<IdGenerator>> idGenerators = new ConcurrentHashMap<>();
+    private int idNode = 0;
+    private int idNodes = 1;
 
     public ORManagerImpl(DataSource dataSource) {
-        this.dataSource = dataSource;
+        this(dataSource, SQLLogger.defaultLogger());
+    }
+
+    public ORManagerImpl(DataSource dataSource, SQLLogger sqlLogger) {
+        this(dataSource, sqlLogger, Dialect.fromDataSource(dataSource));
+    }
+
+    public ORManagerImpl(DataSource dataSource, SQLLogger sqlLogger, Dialect dialect) {
+        this(new ReplicaRouting(dataSource, List.of()), sqlLogger, dialect);
+    }
+
+    /**
+     * @param routing   Primary DB for the writes and replicas for the reads.
+     * @param sqlLogger Logger of the executed statements.
+     * @param dialect   Dialect of the DBs.
+     */
+    public ORManagerImpl(ReplicaRouting routing, SQLLogger sqlLogger, Dialect dialect) {
+        this.dataSource = routing.primary();
+        this.routing = routing;
+        this.sqlLogger = sqlLogger;
+        this.dialect = dialect;
     }
 
     private static <T> Field getFieldWithOneToManyAnnotation(Class<T> clss) {
@@ -44,18 +128,33 @@ public class ORManagerImpl implements ORManager {
     @Override
     public void register(Class... entityClasses) {
         for (Class<?> cls : entityClasses) {
-            List<String> columnNames;
-            String tableName = getTableName(cls);
             if (entityAnnotationIsPresent(cls)) {
-                columnNames = declareColumnNamesFromEntityFields(cls);
-                String sqlCreateTable = String.format("%s %s%n(%n%s%n);", SQL_CREATE_TABLE, tableName,
-                        String.join(",\n", columnNames));
-                String fk = createForeignKeyIfAvailable(cls);
-
-                String registerTransaction = "BEGIN TRANSACTION;\n" + sqlCreateTable + (fk == null ? "" : fk) + "\nCOMMIT;";
-                log.atInfo().log(registerTransaction);
-                try (PreparedStatement prepStmt = dataSource.getConnection().prepareStatement(registerTransaction)) {
-                    prepStmt.executeUpdate();
+                List<String> statements = new ArrayList<>(List.of(dialect.sqlCreateTableStatement(cls)));
+                String fk = dialect.supportsAddForeignKey() ? createForeignKeyIfAvailable(cls) : null;
+                if (fk != null) {
+                    statements.add(fk);
+                }
+                String sqlCreateSequence = sqlCreateIdSequence(cls);
+                if (sqlCreateSequence != null) {
+                    statements.add(sqlCreateSequence);
+                }
+                try (Connection connection = dataSource.getConnection();
+                     Statement stmt = connection.createStatement()) {
+                    boolean autoCommit = connection.getAutoCommit();
+                    connection.setAutoCommit(false);
+                    try {
+                        for (String sql : statements) {
+                            long start = sqlLogger.start();
+                            stmt.executeUpdate(sql);
+                            sqlLogger.log(sql, NO_PARAMS, 0, start);
+                        }
+                        connection.commit();
+                    } catch (SQLException e) {
+                        connection.rollback();
+                        throw e;
+                    } finally {
+                        connection.setAutoCommit(autoCommit);
+                    }
                 } catch (SQLException e) {
                     ExceptionHandler.sql(e);
                 }
@@ -63,18 +162,50 @@ public class ORManagerImpl implements ORManager {
                 throw new EntityAnnotationNotFoundException(cls);
             }
         }
+        for (Class<?> cls : entityClasses) {
+            for (Field declaredField : cls.getDeclaredFields()) {
+                if (declaredField.isAnnotationPresent(ManyToMany.class) && getOwningManyToManyField(declaredField) == declaredField) {
+                    createJoinTable(declaredField);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the join table of an owning @ManyToMany field, after the tables of both sides, which it references.
+     */
+    private void createJoinTable(Field owningField) {
+        try (Connection connection = dataSource.getConnection();
+             Statement stmt = connection.createStatement()) {
+            for (String sql : List.of(dialect.sqlCreateJoinTableStatement(owningField), dialect.sqlCreateJoinIndexStatement(owningField))) {
+                long start = sqlLogger.start();
+                stmt.executeUpdate(sql);
+                sqlLogger.log(sql, NO_PARAMS, 0, start);
+            }
+        } catch (SQLException e) {
+            ExceptionHandler.sql(e);
+        }
     }
 
+    /**
+     * @param cls Entity class.
+     * @return the ALTER TABLE statement adding the foreign key of the entity if its table already exists, otherwise null.
+     */
     public String createForeignKeyIfAvailable(Class<?> cls) {
         String fk = null;
-        try (Statement stmt = dataSource.getConnection().createStatement()) {
-            ResultSet rs = stmt.executeQuery("SHOW TABLES;");
-            while (rs.next()) {
-                if (getTableName(cls).equalsIgnoreCase(rs.getString(1))) {
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String tableName = getTableName(cls);
+            if (metaData.storesUpperCaseIdentifiers()) {
+                tableName = tableName.toUpperCase();
+            } else if (metaData.storesLowerCaseIdentifiers()) {
+                tableName = tableName.toLowerCase();
+            }
+            try (ResultSet rs = metaData.getTables(null, null, tableName, new String[]{"TABLE"})) {
+                if (rs.next()) {
                     fk = createForeignKey(cls);
                 }
             }
-            rs.close();
         } catch (SQLException e) {
             ExceptionHandler.sql(e);
         }
@@ -83,28 +214,135 @@ public class ORManagerImpl implements ORManager {
 
     @Override
     public <T> Optional<T> findById(Serializable id, Class<T> cls) {
-        T entity = null;
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement ps = connection.prepareStatement(sqlSelectStatement(cls))) {
-            if (id.getClass().getSimpleName().equalsIgnoreCase("long")) {
-                ps.setLong(1, (Long) id);
-            } else {
-                ps.setInt(1, (Integer) id);
+        return findById(((Number) id).longValue(), cls);
+    }
+
+    @Override
+    public <T> Optional<T> findById(long id, Class<T> cls) {
+        EntityCache cache = entityCache;
+        if (cache != null) {
+            byte[] cached = cache.get(cls, id);
+            if (cached != null) {
+                return Optional.of(fromCache(cached, cls));
             }
+        }
+        T entity = null;
+        String sql = dialect.sqlSelectStatement(cls);
+        long start = sqlLogger.start();
+        DataSource source = routing.forRead();
+        try (Connection connection = source.getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setLong(1, id);
             ResultSet rs = ps.executeQuery();
-            log.atInfo().log("{}", ps);
+            int rows = 0;
+            ReadContext context = new ReadContext();
             while (rs.next()) {
-                entity = extractEntityFromResultSet(rs, cls);
+                entity = extractEntityFromResultSet(rs, cls, context);
+                rows++;
             }
             rs.close();
+            sqlLogger.log(sql, new Object[]{id}, rows, start);
         } catch (SQLException e) {
+            sqlLogger.logFailure(sql, new Object[]{id}, start, e);
             ExceptionHandler.sql(e);
         }
+        // a lagging replica may return a row older than the one just evicted, which the cache would keep
+        if (cache != null && entity != null && source == routing.primary()) {
+            cache.put(cls, id, EntityCodec.of(cls).encode(entity));
+        }
         return entity != null ? Optional.of(entity) : Optional.empty();
     }
 
+    /**
+     * @param cached Entity in the binary form of the cache.
+     * @param cls    Class.
+     * @return the decoded entity with its associations set up like for an entity read from the DB.
+     */
+    private <T> T fromCache(byte[] cached, Class<T> cls) {
+        T entity = EntityCodec.of(cls).decode(cached);
+        ReadContext context = new ReadContext();
+        try {
+            context.add(cls, getFieldWithIdAnnotation(cls).get(entity), entity);
+            for (Field declaredField : cls.getDeclaredFields()) {
+                declaredField.setAccessible(true);
+                if (declaredField.isAnnotationPresent(ManyToOne.class) && declaredField.get(entity) != null) {
+                    Object referencedId = getFieldWithIdAnnotation(declaredField.getType()).get(declaredField.get(entity));
+                    declaredField.set(entity, findReference(declaredField, ((Number) referencedId).longValue(), context));
+                } else if (declaredField.isAnnotationPresent(OneToMany.class)) {
+                    declaredField.set(entity, context.batchFor(declaredField, this::findOneToManyElements).newList(entity));
+                } else if (declaredField.isAnnotationPresent(ManyToMany.class)) {
+                    declaredField.set(entity, context.batchFor(declaredField, this::findManyToManyElements).newList(entity));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            ExceptionHandler.illegalAccess(e);
+        }
+        return entity;
+    }
+
+    private void evictFromCache(Object o) {
+        EntityCache cache = entityCache;
+        if (cache == null) {
+            return;
+        }
+        try {
+            Object id = getFieldWithIdAnnotation(getEntityClass(o)).get(o);
+            if (id != null) {
+                cache.evict(getEntityClass(o), ((Number) id).longValue());
+            }
+        } catch (IllegalAccessException e) {
+            ExceptionHandler.illegalAccess(e);
+        }
+    }
+
+    @Override
+    public <T> List<T> findAllById(Collection<? extends Serializable> ids, Class<T> cls) {
+        List<Serializable> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        LongObjectMap<T> entitiesById = new LongObjectMap<>(distinctIds.size());
+        ReadContext context = new ReadContext();
+        try (Connection connection = routing.forRead().getConnection()) {
+            Field idField = getFieldWithIdAnnotation(cls);
+            int maxParameters = dialect.maxParameters();
+            for (int from = 0; from < distinctIds.size(); from += maxParameters) {
+                List<Serializable> chunk = distinctIds.subList(from, Math.min(from + maxParameters, distinctIds.size()));
+                String sql = dialect.sqlSelectWhereInStatement(cls, "id", chunk.size());
+                long start = sqlLogger.start();
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        bindId(ps, i + 1, chunk.get(i));
+                    }
+                    int rows = 0;
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            T entity = extractEntityFromResultSet(rs, cls, context);
+                            entitiesById.put(((Number) idField.get(entity)).longValue(), entity);
+                            rows++;
+                        }
+                    }
+                    sqlLogger.log(sql, chunk.toArray(), rows, start);
+                }
+            }
+        } catch (SQLException e) {
+            ExceptionHandler.sql(e);
+        } catch (IllegalAccessException e) {
+            ExceptionHandler.illegalAccess(e);
+        }
+        List<T> found = new ArrayList<>(ids.size());
+        for (Serializable id : ids) {
+            T entity = entitiesById.get(((Number) id).longValue());
+            if (entity != null) {
+                found.add(entity);
+            }
+        }
+        return found;
+    }
+
     @Override
     public <T> T save(T o) {
+        if (EntityGraph.cascades(getEntityClass(o), CascadeType.PERSIST, CascadeType.MERGE)) {
+            flush(EntityGraph.forSave(List.of(o)));
+            return o;
+        }
         if (objectIdIsNotNull(o)) {
             return update(o);
         }
@@ -114,19 +352,57 @@ public class ORManagerImpl implements ORManager {
 
     @Override
     public <T> T update(T o) {
+        EntityProxyFactory.initialize(o);
+        routing.recordWrite();
+        String sql = dialect.sqlUpdateStatement(getEntityClass(o));
+        long start = sqlLogger.start();
         try (Connection conn = dataSource.getConnection();
-             PreparedStatement ps = conn.prepareStatement(sqlUpdateStatement(o.getClass()))) {
-            replacePlaceholdersInStatement(o, ps);
-            int placeholderPositionForId = o.getClass().getDeclaredFields().length;
-            Field fieldWithIdAnnotation = getFieldWithIdAnnotation(o.getClass());
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+            Field fieldWithIdAnnotation = getFieldWithIdAnnotation(getEntityClass(o));
             if (fieldWithIdAnnotation.get(o) == null) {
                 throw new EntityNotFoundException(o);
             }
-            ps.setString(placeholderPositionForId, fieldWithIdAnnotation.get(o).toString());
-            ps.executeUpdate();
+            Field versionField = getVersionField(getEntityClass(o));
+            Object readVersion = versionField == null ? null : versionField.get(o);
+            int rows;
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                if (versionField != null) {
+                    versionField.set(o, nextVersion(readVersion, versionField.getType()));
+                }
+                List<Object> params = replacePlaceholdersInStatement(o, ps);
+                int placeholderPositionForId = params.size() + 1;
+                bindId(ps, placeholderPositionForId, fieldWithIdAnnotation.get(o));
+                params.add(fieldWithIdAnnotation.get(o));
+                if (versionField != null) {
+                    ps.setObject(placeholderPositionForId + 1, readVersion);
+                    params.add(readVersion);
+                }
+                try {
+                    rows = ps.executeUpdate();
+                } catch (SQLException e) {
+                    sqlLogger.logFailure(sql, params.toArray(), start, e);
+                    throw e;
+                }
+                sqlLogger.log(sql, params.toArray(), rows, start);
+                if (versionField != null && rows == 0) {
+                    throw new OptimisticLockException(o);
+                }
+                writeLinks(conn, getEntityClass(o), List.of(o), false);
+                conn.commit();
+            } catch (SQLException | IllegalAccessException | RuntimeException e) {
+                conn.rollback();
+                if (versionField != null) {
+                    versionField.set(o, readVersion);
+                }
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+            evictFromCache(o);
             removeObjectToOneToManyField(o);
             addObjectToOneToManyField(o);
-            log.atInfo().log("{}", ps);
         } catch (SQLException ex) {
             ExceptionHandler.sql(ex);
         } catch (IllegalAccessException e) {
@@ -135,26 +411,520 @@ public class ORManagerImpl implements ORManager {
         return o;
     }
 
+    @Override
+    public <T> T upsert(T o) {
+        saveAll(List.of(o));
+        return o;
+    }
+
+    @Override
+    public <T> List<T> saveAll(Collection<T> objects) {
+        if (objects.stream().anyMatch(o -> EntityGraph.cascades(getEntityClass(o), CascadeType.PERSIST, CascadeType.MERGE))) {
+            flush(EntityGraph.forUpsert(objects));
+            return new ArrayList<>(objects);
+        }
+        try {
+            upsertAll(objects);
+        } catch (SQLException e) {
+            ExceptionHandler.sql(e);
+        }
+        return new ArrayList<>(objects);
+    }
+
+    /**
+     * Upserts the objects in JDBC batches in one transaction.
+     *
+     * @throws SQLException if any of them failed; none is written then.
+     */
+    <T> void upsertAll(Collection<T> objects) throws SQLException {
+        routing.recordWrite();
+        Map<Class<?>, List<T>> objectsByClass = new LinkedHashMap<>();
+        Set<Object> newObjects = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (T o : objects) {
+            EntityProxyFactory.initialize(o);
+            objectsByClass.computeIfAbsent(getEntityClass(o), c -> new ArrayList<>()).add(o);
+            if (!objectIdIsNotNull(o)) {
+                newObjects.add(o);
+            }
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                for (Map.Entry<Class<?>, List<T>> entry : objectsByClass.entrySet()) {
+                    upsertInBatches(connection, entry.getKey(), entry.getValue());
+                }
+                for (Map.Entry<Class<?>, List<T>> entry : objectsByClass.entrySet()) {
+                    if (!getUpsertKeyField(entry.getKey()).isAnnotationPresent(Id.class)) {
+                        // A new entity may have matched an existing row by its unique key, links and all.
+                        writeLinks(connection, entry.getKey(), entry.getValue(), false);
+                        continue;
+                    }
+                    Map<Boolean, List<T>> byNew = entry.getValue().stream().collect(Collectors.partitioningBy(newObjects::contains));
+                    writeLinks(connection, entry.getKey(), byNew.get(true), true);
+                    writeLinks(connection, entry.getKey(), byNew.get(false), false);
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } catch (IllegalAccessException e) {
+                connection.rollback();
+                ExceptionHandler.illegalAccess(e);
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            objects.forEach(this::evictFromCache);
+        }
+    }
+
+    @Override
+    public WriteBehindWriter writeBehind(WriteBehindOptions options) {
+        return new WriteBehindWriter(this, this::upsertAll, options);
+    }
+
+    private <T> void upsertInBatches(Connection connection, Class<?> cls, List<T> objects) throws SQLException {
+        Field keyField = getUpsertKeyField(cls);
+        String sql = dialect.sqlUpsertStatement(cls, keyField);
+        Field fieldWithIdAnnotation = getFieldWithIdAnnotation(cls);
+        Field versionField = getVersionField(cls);
+        IdGenerator idGenerator = idGenerator(cls);
+        boolean idAssigned = isIdAssigned(cls);
+        try (PreparedStatement ps = idAssigned ? connection.prepareStatement(sql)
+                : connection.prepareStatement(sql, new String[]{getColumnName(fieldWithIdAnnotation)})) {
+            for (int from = 0; from < objects.size(); from += BATCH_SIZE) {
+                List<T> batch = objects.subList(from, Math.min(from + BATCH_SIZE, objects.size()));
+                List<T> newObjects = new ArrayList<>();
+                long start = sqlLogger.start();
+                for (T o : batch) {
+                    Object id = fieldWithIdAnnotation.get(o);
+                    if (id == null) {
+                        newObjects.add(o);
+                        if (idGenerator != null) {
+                            id = assignId(o, idGenerator);
+                        }
+                    }
+                    ps.setObject(1, id);
+                    if (versionField != null) {
+                        versionField.set(o, nextVersion(versionField.get(o), versionField.getType()));
+                    }
+                    replacePlaceholdersInStatement(o, ps, 1);
+                    ps.addBatch();
+                }
+                int rows = Arrays.stream(executeBatch(ps, sql, batch.size(), start)).sum();
+                sqlLogger.log(sql, new Object[]{batch.size() + " entities"}, rows, start);
+                if (!idAssigned) {
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        for (int i = 0; i < batch.size() && rs.next(); i++) {
+                            setAutoGeneratedId(batch.get(i), rs);
+                        }
+                    }
+                } else if (!keyField.isAnnotationPresent(Id.class)) {
+                    findIdsByKey(connection, cls, keyField, newObjects);
+                }
+                for (T o : newObjects) {
+                    addObjectToOneToManyField(o);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            ExceptionHandler.illegalAccess(e);
+        }
+    }
+
+    /**
+     * Sets the IDs of the rows new entities were upserted into, read with one IN query on their unique key: an entity
+     * matching an existing row keeps the row's ID, not the one assigned to it before the write.
+     */
+    private <T> void findIdsByKey(Connection connection, Class<?> cls, Field keyField, List<T> newObjects)
+            throws SQLException, IllegalAccessException {
+        if (newObjects.isEmpty()) {
+            return;
+        }
+        keyField.setAccessible(true);
+        Map<Object, T> byKey = new HashMap<>();
+        for (T o : newObjects) {
+            byKey.put(keyField.get(o), o);
+        }
+        Field fieldWithIdAnnotation = getFieldWithIdAnnotation(cls);
+        String sql = dialect.sqlSelectWhereInStatement(cls, getColumnName(keyField), byKey.size());
+        long start = sqlLogger.start();
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            int index = 1;
+            for (Object key : byKey.keySet()) {
+                ps.setObject(index++, key);
+            }
+            int rows = 0;
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    T o = byKey.get(rs.getObject(getColumnName(keyField), keyField.getType()));
+                    if (o != null) {
+                        String idColumn = getColumnName(fieldWithIdAnnotation);
+                        fieldWithIdAnnotation.set(o, fieldWithIdAnnotation.getType().getSimpleName().equals("Long")
+                                ? (Object) rs.getLong(idColumn) : (Object) rs.getInt(idColumn));
+                    }
+                    rows++;
+                }
+            }
+            sqlLogger.log(sql, byKey.keySet().toArray(), rows, start);
+        }
+    }
+
     @Override
     public void persist(Object o) {
+        if (EntityGraph.cascades(getEntityClass(o), CascadeType.PERSIST)) {
+            flush(EntityGraph.forPersist(o));
+            return;
+        }
+        routing.recordWrite();
+        setInitialVersion(o);
+        String sql = dialect.sqlInsertStatement(getEntityClass(o));
+        boolean idAssigned = isIdAssigned(getEntityClass(o));
+        long start = sqlLogger.start();
         try (Connection connection = dataSource.getConnection();
-             PreparedStatement ps = connection.prepareStatement(sqlInsertStatement(o.getClass()), Statement.RETURN_GENERATED_KEYS)) {
-            replacePlaceholdersInStatement(o, ps);
-            ps.executeUpdate();
-            log.atInfo().log("{}", ps);
-            ResultSet rs = ps.getGeneratedKeys();
-            while (rs.next()) {
-                setAutoGeneratedId(o, rs);
+             PreparedStatement ps = idAssigned ? connection.prepareStatement(sql)
+                     : connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                List<Object> params = replaceInsertPlaceholders(o, ps, 0);
+                int rows;
+                try {
+                    rows = ps.executeUpdate();
+                } catch (SQLException e) {
+                    sqlLogger.logFailure(sql, params.toArray(), start, e);
+                    throw e;
+                }
+                sqlLogger.log(sql, params.toArray(), rows, start);
+                if (!idAssigned) {
+                    ResultSet rs = ps.getGeneratedKeys();
+                    while (rs.next()) {
+                        setAutoGeneratedId(o, rs);
+                    }
+                    rs.close();
+                }
+                writeLinks(connection, getEntityClass(o), List.of(o), true);
+                connection.commit();
+            } catch (SQLException | IllegalAccessException | RuntimeException e) {
+                connection.rollback();
+                getFieldWithIdAnnotation(getEntityClass(o)).set(o, null);
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
             }
             addObjectToOneToManyField(o);
-            rs.close();
         } catch (SQLException e) {
             ExceptionHandler.sql(e);
+        } catch (IllegalAccessException e) {
+            ExceptionHandler.illegalAccess(e);
+        }
+    }
+
+    /**
+     * Writes the entities of the graph in one transaction: the new ones in a JDBC batch per class and depth,
+     * then the existing ones in a JDBC batch per class. The roots of {@link EntityGraph#forUpsert(Collection)} are
+     * upserted by their unique key in place of the insert or update. If any write fails, none is kept: the new
+     * entities get no ID and the updated ones their read version back.
+     */
+    private void flush(EntityGraph graph) {
+        routing.recordWrite();
+        Map<Object, Object> readVersions = new IdentityHashMap<>();
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                for (List<Object> batch : graph.insertBatches()) {
+                    Map<Boolean, List<Object>> byUpserted = batch.stream().collect(Collectors.partitioningBy(graph::isUpserted));
+                    if (!byUpserted.get(true).isEmpty()) {
+                        upsertInBatches(connection, getEntityClass(batch.get(0)), byUpserted.get(true));
+                    }
+                    if (!byUpserted.get(false).isEmpty()) {
+                        insertInBatches(connection, byUpserted.get(false));
+                    }
+                }
+                for (List<Object> batch : graph.updateBatches()) {
+                    Map<Boolean, List<Object>> byUpserted = batch.stream().collect(Collectors.partitioningBy(graph::isUpserted));
+                    if (!byUpserted.get(true).isEmpty()) {
+                        upsertInBatches(connection, getEntityClass(batch.get(0)), byUpserted.get(true));
+                    }
+                    if (!byUpserted.get(false).isEmpty()) {
+                        updateInBatches(connection, byUpserted.get(false), readVersions);
+                    }
+                }
+                for (List<Object> batch : graph.insertBatches()) {
+                    Class<?> cls = getEntityClass(batch.get(0));
+                    // a new root upserted by a unique column may have matched an existing row, links and all
+                    Map<Boolean, List<Object>> byUpserted = batch.stream().collect(Collectors.partitioningBy(graph::isUpserted));
+                    writeLinks(connection, cls, byUpserted.get(true), getUpsertKeyField(cls).isAnnotationPresent(Id.class));
+                    writeLinks(connection, cls, byUpserted.get(false), true);
+                }
+                for (List<Object> batch : graph.updateBatches()) {
+                    writeLinks(connection, getEntityClass(batch.get(0)), batch, false);
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                for (Object o : graph.inserts()) {
+                    getFieldWithIdAnnotation(getEntityClass(o)).set(o, null);
+                }
+                for (Map.Entry<Object, Object> readVersion : readVersions.entrySet()) {
+                    getVersionField(getEntityClass(readVersion.getKey())).set(readVersion.getKey(), readVersion.getValue());
+                }
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            ExceptionHandler.sql(e);
+            return;
+        } catch (IllegalAccessException e) {
+            ExceptionHandler.illegalAccess(e);
+            return;
+        }
+        for (Object o : graph.inserts()) {
+            if (!graph.isListed(o) && !graph.isUpserted(o)) {
+                addObjectToOneToManyField(o);
+            }
+        }
+        graph.updates().forEach(this::evictFromCache);
+        graph.inserts().stream().filter(graph::isUpserted).forEach(this::evictFromCache);
+    }
+
+    /**
+     * Inserts new entities of one class and sets their IDs.
+     */
+    private void insertInBatches(Connection connection, List<Object> objects) throws SQLException {
+        Class<?> cls = getEntityClass(objects.get(0));
+        String sql = dialect.sqlInsertStatement(cls);
+        boolean idAssigned = isIdAssigned(cls);
+        try (PreparedStatement ps = idAssigned ? connection.prepareStatement(sql)
+                : connection.prepareStatement(sql, new String[]{getColumnName(getFieldWithIdAnnotation(cls))})) {
+            for (int from = 0; from < objects.size(); from += BATCH_SIZE) {
+                List<Object> batch = objects.subList(from, Math.min(from + BATCH_SIZE, objects.size()));
+                long start = sqlLogger.start();
+                for (Object o : batch) {
+                    setInitialVersion(o);
+                    replaceInsertPlaceholders(o, ps, 0);
+                    ps.addBatch();
+                }
+                int rows = Arrays.stream(executeBatch(ps, sql, batch.size(), start)).sum();
+                sqlLogger.log(sql, new Object[]{batch.size() + " entities"}, rows, start);
+                if (!idAssigned) {
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        for (int i = 0; i < batch.size() && rs.next(); i++) {
+                            setAutoGeneratedId(batch.get(i), rs);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates existing entities of one class, checking their versions like {@link #update(Object)}.
+     *
+     * @param readVersions Gets the version every versioned entity had before.
+     */
+    private void updateInBatches(Connection connection, List<Object> objects, Map<Object, Object> readVersions)
+            throws SQLException, IllegalAccessException {
+        Class<?> cls = getEntityClass(objects.get(0));
+        String sql = dialect.sqlUpdateStatement(cls);
+        Field fieldWithIdAnnotation = getFieldWithIdAnnotation(cls);
+        Field versionField = getVersionField(cls);
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int from = 0; from < objects.size(); from += BATCH_SIZE) {
+                List<Object> batch = objects.subList(from, Math.min(from + BATCH_SIZE, objects.size()));
+                long start = sqlLogger.start();
+                for (Object o : batch) {
+                    Object readVersion = null;
+                    if (versionField != null) {
+                        readVersion = versionField.get(o);
+                        readVersions.put(o, readVersion);
+                        versionField.set(o, nextVersion(readVersion, versionField.getType()));
+                    }
+                    int placeholderPositionForId = replacePlaceholdersInStatement(o, ps).size() + 1;
+                    bindId(ps, placeholderPositionForId, fieldWithIdAnnotation.get(o));
+                    if (versionField != null) {
+                        ps.setObject(placeholderPositionForId + 1, readVersion);
+                    }
+                    ps.addBatch();
+                }
+                int[] rows = executeBatch(ps, sql, batch.size(), start);
+                sqlLogger.log(sql, new Object[]{batch.size() + " entities"}, Arrays.stream(rows).sum(), start);
+                for (int i = 0; i < rows.length; i++) {
+                    if (versionField != null && rows[i] == 0) {
+                        throw new OptimisticLockException(batch.get(i));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the entities of the graph in one transaction, in a JDBC batch per run of one class.
+     *
+     * @return whether any entity was deleted.
+     */
+    private boolean flushRemoval(EntityGraph graph) {
+        if (graph.deletes().isEmpty()) {
+            return false;
+        }
+        routing.recordWrite();
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                for (List<Object> batch : graph.deleteBatches()) {
+                    deleteInBatch(connection, batch);
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            for (Object o : graph.deletes()) {
+                evictFromCache(o);
+                getFieldWithIdAnnotation(getEntityClass(o)).set(o, null);
+            }
+            return true;
+        } catch (SQLException e) {
+            ExceptionHandler.sql(e);
+        } catch (IllegalAccessException e) {
+            ExceptionHandler.illegalAccess(e);
+        }
+        return false;
+    }
+
+    private void deleteInBatch(Connection connection, List<Object> objects) throws SQLException, IllegalAccessException {
+        Class<?> cls = getEntityClass(objects.get(0));
+        String sql = dialect.sqlDeleteStatement(cls);
+        Field fieldWithIdAnnotation = getFieldWithIdAnnotation(cls);
+        Field versionField = getVersionField(cls);
+        long start = sqlLogger.start();
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (Object o : objects) {
+                bindId(ps, 1, fieldWithIdAnnotation.get(o));
+                if (versionField != null) {
+                    ps.setObject(2, versionField.get(o));
+                }
+                ps.addBatch();
+            }
+            int[] rows = executeBatch(ps, sql, objects.size(), start);
+            sqlLogger.log(sql, new Object[]{objects.size() + " entities"}, Arrays.stream(rows).sum(), start);
+            for (int i = 0; i < rows.length; i++) {
+                if (versionField != null && rows[i] == 0) {
+                    throw new OptimisticLockException(objects.get(i));
+                }
+            }
+        }
+    }
+
+    @Override
+    public <T> ImportReport importStream(Class<T> cls, Stream<T> entities) {
+        try (entities) {
+            return importStream(cls, entities.iterator(), ImportOptions.defaults());
+        }
+    }
+
+    @Override
+    public <T> ImportReport importStream(Class<T> cls, Iterator<T> entities, ImportOptions options) {
+        return this.<T, T>importPipeline(cls, options).run(entities, Function.identity());
+    }
+
+    @Override
+    public <T> ImportReport importCsv(Class<T> cls, Path csvFile) {
+        return importCsv(cls, csvFile, ImportOptions.defaults());
+    }
+
+    @Override
+    public <T> ImportReport importCsv(Class<T> cls, Path csvFile, ImportOptions options) {
+        try (CsvReader csvReader = new CsvReader(Files.newBufferedReader(csvFile, StandardCharsets.UTF_8))) {
+            CsvMapper<T> csvMapper = new CsvMapper<>(cls, csvReader.getHeader());
+            String nativeImport = dialect.sqlCsvImportStatement(cls, csvMapper.getColumnNames(),
+                    csvFile.toAbsolutePath().toString());
+            if (options.nativeCsv() && nativeImport != null && !isIdAssigned(cls)) {
+                return importCsvNatively(nativeImport);
+            }
+            return this.<List<String>, T>importPipeline(cls, options).run(csvReader, csvMapper::toEntity);
+        } catch (IOException e) {
+            ExceptionHandler.inputOutput(e);
+        }
+        return new ImportReport(0, 0, 0, List.of(), Duration.ZERO, false);
+    }
+
+    private ImportReport importCsvNatively(String sql) {
+        routing.recordWrite();
+        long startNanos = System.nanoTime();
+        long start = sqlLogger.start();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
+            int rows = ps.executeUpdate();
+            sqlLogger.log(sql, NO_PARAMS, rows, start);
+            return new ImportReport(rows, rows, 0, List.of(), Duration.ofNanos(System.nanoTime() - startNanos), true);
+        } catch (SQLException e) {
+            ExceptionHandler.sql(e);
+            return new ImportReport(0, 0, 0, List.of(new ImportReport.RowError(0, e.getMessage())),
+                    Duration.ofNanos(System.nanoTime() - startNanos), false);
+        }
+    }
+
+    private <R, T> ImportPipeline<R, T> importPipeline(Class<T> cls, ImportOptions options) {
+        if (!entityAnnotationIsPresent(cls)) {
+            throw new EntityAnnotationNotFoundException(cls);
+        }
+        routing.recordWrite();
+        return new ImportPipeline<>(dataSource, dialect, sqlLogger, cls, options, (o, ps, placeholdersBefore) -> {
+            setInitialVersion(o);
+            replaceInsertPlaceholders(o, ps, placeholdersBefore);
+        });
+    }
+
+    @Override
+    public <T> long export(Class<T> cls, OutputStream out, ExportFormat format) {
+        return export(cls, out, format, ExportOptions.defaults());
+    }
+
+    @Override
+    public <T> long export(Class<T> cls, OutputStream out, ExportFormat format, ExportOptions options) {
+        if (!entityAnnotationIsPresent(cls)) {
+            throw new EntityAnnotationNotFoundException(cls);
+        }
+        // a new context per row: the rows aren't kept, so neither should the entities they reference
+        return new TableExporter<>(routing.forRead(), dialect, sqlLogger, cls,
+                rs -> extractEntityFromResultSet(rs, cls, new ReadContext()))
+                .export(out, format, options);
+    }
+
+    @Override
+    public void setEntityCache(EntityCache cache) {
+        this.entityCache = cache;
+    }
+
+    @Override
+    public <T> SnapshotReport snapshot(Class<T> cls, Path directory) {
+        if (!entityAnnotationIsPresent(cls)) {
+            throw new EntityAnnotationNotFoundException(cls);
+        }
+        return new CacheSnapshots(routing.forRead(), dialect, sqlLogger, entityCache).write(cls, directory);
+    }
+
+    @Override
+    public List<SnapshotReport> warmUp(Path directory, Class<?>... classes) {
+        EntityCache cache = entityCache;
+        if (cache == null) {
+            throw new IllegalStateException("No entity cache to warm up, set one with setEntityCache first");
+        }
+        for (Class<?> cls : classes) {
+            if (!entityAnnotationIsPresent(cls)) {
+                throw new EntityAnnotationNotFoundException(cls);
+            }
         }
+        return new CacheSnapshots(routing.primary(), dialect, sqlLogger, cache).load(directory, classes);
     }
 
     public <T> void addObjectToOneToManyField(T o) {
-        Field[] declaredFields = o.getClass().getDeclaredFields();
+        Field[] declaredFields = getEntityClass(o).getDeclaredFields();
         for (int i = 0; i < declaredFields.length; i++) {
             declaredFields[i].setAccessible(true);
             if (declaredFields[i].isAnnotationPresent(ManyToOne.class)) {
@@ -162,9 +932,12 @@ public class ORManagerImpl implements ORManager {
                 Field fieldWIthOneToManyAnnotation = getFieldWithOneToManyAnnotation(declaredFields[i].getType());
                 List<T> list;
                 try {
-                    if (declaredFields[i].get(o) != null) {
+                    // the list of a not yet loaded reference is read from the DB together with it
+                    if (declaredFields[i].get(o) != null && !EntityProxyFactory.isUninitializedProxy(declaredFields[i].get(o))) {
                         list = (List<T>) fieldWIthOneToManyAnnotation.get(declaredFields[i].get(o));
-                        fieldWIthOneToManyAnnotation.set(declaredFields[i].get(o), list);
+                        if (list instanceof PersistentList<T> persistentList && !persistentList.isInitialized()) {
+                            continue;
+                        }
                         list.add(o);
                     }
                 } catch (IllegalAccessException e) {
@@ -175,7 +948,7 @@ public class ORManagerImpl implements ORManager {
     }
 
     public <T> void removeObjectToOneToManyField(T o) {
-        Field[] declaredFields = o.getClass().getDeclaredFields();
+        Field[] declaredFields = getEntityClass(o).getDeclaredFields();
         for (int i = 0; i < declaredFields.length; i++) {
             declaredFields[i].setAccessible(true);
             if (declaredFields[i].isAnnotationPresent(ManyToOne.class)) {
@@ -183,9 +956,12 @@ public class ORManagerImpl implements ORManager {
                 Field fieldWIthOneToManyAnnotation = getFieldWithOneToManyAnnotation(declaredFields[i].getType());
                 List<T> list;
                 try {
-                    if (declaredFields[i].get(o) != null) {
+                    // the list of a not yet loaded reference is read from the DB together with it
+                    if (declaredFields[i].get(o) != null && !EntityProxyFactory.isUninitializedProxy(declaredFields[i].get(o))) {
                         list = (List<T>) fieldWIthOneToManyAnnotation.get(declaredFields[i].get(o));
-                        fieldWIthOneToManyAnnotation.set(declaredFields[i].get(o), list);
+                        if (list instanceof PersistentList<T> persistentList && !persistentList.isInitialized()) {
+                            continue;
+                        }
                         list.remove(o);
                     }
                 } catch (IllegalAccessException e) {
@@ -198,30 +974,127 @@ public class ORManagerImpl implements ORManager {
     @Override
     public <T> List<T> findAll(Class<T> cls) {
         List<T> records = new ArrayList<>();
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement st = connection.prepareStatement(sqlSelectAllStatement(cls))) {
-            log.atInfo().log("{}", st);
+        String sql = dialect.sqlSelectAllStatement(cls);
+        long start = sqlLogger.start();
+        try (Connection connection = routing.forRead().getConnection();
+             PreparedStatement st = connection.prepareStatement(sql)) {
             ResultSet rs = st.executeQuery();
+            ReadContext context = new ReadContext();
             while (rs.next()) {
-                records.add(extractEntityFromResultSet(rs, cls));
+                records.add(extractEntityFromResultSet(rs, cls, context));
             }
             rs.close();
+            sqlLogger.log(sql, NO_PARAMS, records.size(), start);
         } catch (SQLException e) {
             ExceptionHandler.sql(e);
         }
         return records;
     }
 
+    @Override
+    public <T> List<T> parallelFindAll(Class<T> cls, int threads) {
+        try (Stream<T> entities = parallelScan(cls, threads)) {
+            return entities.collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    @Override
+    public <T> Stream<T> parallelScan(Class<T> cls, int threads) {
+        if (!entityAnnotationIsPresent(cls)) {
+            throw new EntityAnnotationNotFoundException(cls);
+        }
+        // a context per part: a context isn't shared between threads
+        return new ParallelScan<>(routing::forRead, dialect, sqlLogger, cls, () -> {
+            ReadContext context = new ReadContext();
+            return rs -> extractEntityFromResultSet(rs, cls, context);
+        }).scan(threads);
+    }
+
+    @Override
+    public <T> List<T> nativeQuery(String sql, Class<T> target, Object... params) {
+        List<T> rows = new ArrayList<>();
+        ReadContext context = new ReadContext();
+        boolean entity = entityAnnotationIsPresent(target);
+        List<Field> collectionFields = entity
+                ? Arrays.stream(target.getDeclaredFields()).filter(AnnotationUtils::isCollection).toList() : List.of();
+        long start = sqlLogger.start();
+        try (Connection connection = routing.forRead().getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                RowMapping<T> mapping = null;
+                while (rs.next()) {
+                    if (mapping == null) {
+                        mapping = RowMapping.of(sql, target, rs);
+                    }
+                    T row = mapping.map(rs, (field, id) -> findReference(field, id, context));
+                    if (entity) {
+                        Object id = getFieldWithIdAnnotation(target).get(row);
+                        if (id != null) {
+                            context.add(target, id, row);
+                            setUpCollections(row, collectionFields, context);
+                        }
+                    }
+                    rows.add(row);
+                }
+            }
+            sqlLogger.log(sql, params, rows.size(), start);
+        } catch (SQLException e) {
+            sqlLogger.logFailure(sql, params, start, e);
+            ExceptionHandler.sql(e);
+        } catch (IllegalAccessException e) {
+            ExceptionHandler.illegalAccess(e);
+        }
+        return rows;
+    }
+
+    @Override
+    public <R> List<R> aggregate(Aggregation aggregation, Class<R> resultType) {
+        return nativeQuery(dialect.sqlAggregateStatement(aggregation), resultType, aggregation.parameters().toArray());
+    }
+
+    /**
+     * @return the rows of the aggregation as read, the group values and then the aggregates.
+     */
+    List<Object[]> aggregateRows(Aggregation aggregation) throws SQLException {
+        String sql = dialect.sqlAggregateStatement(aggregation);
+        Object[] params = aggregation.parameters().toArray();
+        List<Object[]> rows = new ArrayList<>();
+        long start = sqlLogger.start();
+        try (Connection connection = routing.forRead().getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            int columns = aggregation.labels().size();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Object[] row = new Object[columns];
+                    for (int column = 0; column < columns; column++) {
+                        row[column] = rs.getObject(column + 1);
+                    }
+                    rows.add(row);
+                }
+            }
+        }
+        sqlLogger.log(sql, params, rows.size(), start);
+        return rows;
+    }
+
     @Override
     public long recordsCount(Class<?> clss) {
         long count = 0;
-        try (Connection connection = dataSource.getConnection();
-             PreparedStatement ps = connection.prepareStatement(sqlCountStatement(clss))) {
+        String sql = dialect.sqlCountStatement(clss);
+        long start = sqlLogger.start();
+        try (Connection connection = routing.forRead().getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql)) {
             ResultSet rs = ps.executeQuery();
-            log.atInfo().log("{}", ps);
             if (rs.next()) {
                 count = rs.getLong(1);
             }
+            sqlLogger.log(sql, NO_PARAMS, 1, start);
         } catch (SQLException e) {
             ExceptionHandler.sql(e);
         }
@@ -230,45 +1103,34 @@ public class ORManagerImpl implements ORManager {
 
     @Override
     public <T> T refresh(T o) {
-        Field[] declaredFields = o.getClass().getDeclaredFields();
-        for (int i = 0; i < declaredFields.length; i++) {
-            declaredFields[i].setAccessible(true);
-        }
+        Class<?> cls = getEntityClass(o);
+        String sql = dialect.sqlSelectStatement(cls);
+        long start = sqlLogger.start();
         try (Connection conn = dataSource.getConnection();
-             PreparedStatement st = conn.prepareStatement(sqlSelectStatement(o.getClass()), Statement.RETURN_GENERATED_KEYS)) {
-            Object valueOfIDField = getFieldWithIdAnnotation(o.getClass()).get(o);
+             PreparedStatement st = conn.prepareStatement(sql)) {
+            Object valueOfIDField = getFieldWithIdAnnotation(cls).get(o);
             if (valueOfIDField != null) {
-                st.setString(1, valueOfIDField.toString());
-                log.atInfo().log("{}", st);
-                ResultSet rs = st.executeQuery();
-                ResultSetMetaData rsMt = rs.getMetaData();
-                while (rs.next()) {
-                    for (int i = 1; i < rsMt.getColumnCount(); i++) {
-                        if (rsMt.getColumnName(i).equalsIgnoreCase("id")) {
-                            continue;
-                        }
-                        switch (rsMt.getColumnTypeName(i)) {
-                            case "CHARACTER VARYING" ->
-                                    declaredFields[i - 1].set(o, rs.getString(rsMt.getColumnName(i)));
-                            case "INTEGER" -> declaredFields[i - 1].set(o, rs.getInt(rsMt.getColumnName(i)));
-                            case "BIGINT" -> declaredFields[i - 1].set(o, rs.getLong(rsMt.getColumnName(i)));
-                            case "DOUBLE PRECISION" ->
-                                    declaredFields[i - 1].set(o, rs.getDouble(rsMt.getColumnName(i)));
-                            case "BOOLEAN" -> declaredFields[i - 1].set(o, rs.getBoolean(rsMt.getColumnName(i)));
-                            case "DATE" -> {
-                                Date sqlDate = rs.getDate(rsMt.getColumnName(i));
-                                if (sqlDate != null) {
-                                    LocalDate sqlLocalDate = sqlDate.toLocalDate();
-                                    declaredFields[i - 1].set(o, sqlLocalDate);
-                                }
+                bindId(st, 1, valueOfIDField);
+                int rows = 0;
+                try (ResultSet rs = st.executeQuery()) {
+                    while (rs.next()) {
+                        rows++;
+                        Object current = extractEntityFromResultSet(rs, cls, new ReadContext());
+                        // the columns are read like any other entity; the associations are left as they are
+                        for (Field declaredField : cls.getDeclaredFields()) {
+                            if (!isCollection(declaredField) && !declaredField.isAnnotationPresent(ManyToOne.class)) {
+                                declaredField.setAccessible(true);
+                                declaredField.set(o, declaredField.get(current));
                             }
                         }
                     }
                 }
+                sqlLogger.log(sql, new Object[]{valueOfIDField}, rows, start);
             } else {
                 throw new EntityNotFoundException(o);
             }
         } catch (SQLException e) {
+            sqlLogger.logFailure(sql, NO_PARAMS, start, e);
             ExceptionHandler.sql(e);
         } catch (IllegalAccessException e) {
             ExceptionHandler.illegalAccess(e);
@@ -276,6 +1138,17 @@ public class ORManagerImpl implements ORManager {
         return o;
     }
 
+    /**
+     * Binds an ID with the setter of its type, so that the DB compares it with the ID column without a conversion.
+     */
+    private static void bindId(PreparedStatement ps, int parameterIndex, Object id) throws SQLException {
+        if (id instanceof Integer intId) {
+            ps.setInt(parameterIndex, intId);
+        } else {
+            ps.setLong(parameterIndex, ((Number) id).longValue());
+        }
+    }
+
     private static <T> Field getFieldWithIdAnnotation(Class<T> clss) {
         Optional<Field> firstFoundField = Arrays.stream(clss.getDeclaredFields())
                 .filter(f -> f.isAnnotationPresent(Id.class))
@@ -294,18 +1167,35 @@ public class ORManagerImpl implements ORManager {
 
     @Override
     public boolean delete(Object o) {
-        Field fieldWithIdAnnotation = getFieldWithIdAnnotation(o.getClass());
+        if (EntityGraph.cascades(getEntityClass(o), CascadeType.REMOVE)) {
+            return flushRemoval(EntityGraph.forDelete(o));
+        }
+        routing.recordWrite();
+        Field fieldWithIdAnnotation = getFieldWithIdAnnotation(getEntityClass(o));
+        String sql = dialect.sqlDeleteStatement(getEntityClass(o));
+        long start = sqlLogger.start();
         try (Connection connection = dataSource.getConnection();
-             PreparedStatement ps = connection.prepareStatement(sqlDeleteStatement(o.getClass()))) {
+             PreparedStatement ps = connection.prepareStatement(sql)) {
             if (fieldWithIdAnnotation.get(o) == null) {
                 return false;
             }
-            ps.setString(1, fieldWithIdAnnotation.get(o).toString());
-            ps.executeUpdate();
-            log.atInfo().log("{}", ps);
+            bindId(ps, 1, fieldWithIdAnnotation.get(o));
+            Field versionField = getVersionField(getEntityClass(o));
+            Object[] params = {fieldWithIdAnnotation.get(o)};
+            if (versionField != null) {
+                ps.setObject(2, versionField.get(o));
+                params = new Object[]{fieldWithIdAnnotation.get(o), versionField.get(o)};
+            }
+            int rows = ps.executeUpdate();
+            sqlLogger.log(sql, params, rows, start);
+            if (versionField != null && rows == 0) {
+                throw new OptimisticLockException(o);
+            }
+            evictFromCache(o);
             fieldWithIdAnnotation.set(o, null);
             return true;
         } catch (SQLException e) {
+            sqlLogger.logFailure(sql, NO_PARAMS, start, e);
             ExceptionHandler.sql(e);
         } catch (IllegalAccessException e) {
             ExceptionHandler.illegalAccess(e);
@@ -316,7 +1206,7 @@ public class ORManagerImpl implements ORManager {
     private <T> boolean objectIdIsNotNull(T o) {
         boolean exists = false;
         try {
-            Field fieldWithIdAnnotation = getFieldWithIdAnnotation(o.getClass());
+            Field fieldWithIdAnnotation = getFieldWithIdAnnotation(getEntityClass(o));
             exists = fieldWithIdAnnotation.get(o) != null;
         } catch (IllegalAccessException e) {
             ExceptionHandler.illegalAccess(e);
@@ -330,14 +1220,26 @@ public class ORManagerImpl implements ORManager {
      *
      * @param o  The generic entity object which will be saved or updated in the DB.
      * @param ps Prepared statement for Insert and Update.
+     * @return the bound values in placeholder order.
      * @throws SQLException
      */
-    private <T> void replacePlaceholdersInStatement(T o, PreparedStatement ps) throws SQLException {
+    private <T> List<Object> replacePlaceholdersInStatement(T o, PreparedStatement ps) throws SQLException {
+        return replacePlaceholdersInStatement(o, ps, 0);
+    }
+
+    /**
+     * Like {@link #replacePlaceholdersInStatement(Object, PreparedStatement)}, for statements where
+     * the column placeholders come after other ones.
+     *
+     * @param placeholdersBefore Number of placeholders preceding the column values.
+     */
+    private <T> List<Object> replacePlaceholdersInStatement(T o, PreparedStatement ps, int placeholdersBefore) throws SQLException {
+        List<Object> params = new ArrayList<>();
         try {
-            Field[] declaredFields = o.getClass().getDeclaredFields();
-            int parameterIndex = 0;
+            Field[] declaredFields = getEntityClass(o).getDeclaredFields();
+            int parameterIndex = placeholdersBefore;
             for (int i = 0; i < declaredFields.length; i++) {
-                if (declaredFields[i].isAnnotationPresent(Id.class) || declaredFields[i].isAnnotationPresent(OneToMany.class)) {
+                if (declaredFields[i].isAnnotationPresent(Id.class) || isCollection(declaredFields[i])) {
                     continue;
                 }
                 declaredFields[i].setAccessible(true);
@@ -345,8 +1247,10 @@ public class ORManagerImpl implements ORManager {
                 parameterIndex += 1;
                 if (declaredFields[i].get(o) == null) {
                     ps.setObject(parameterIndex, null);
+                    params.add(null);
                     continue;
                 }
+                params.add(declaredFields[i].get(o));
                 switch (fieldTypeName) {
                     case "String" -> ps.setString(parameterIndex, declaredFields[i].get(o).toString());
                     case "Long", "long" -> ps.setLong(parameterIndex, (Long) declaredFields[i].get(o));
@@ -354,18 +1258,144 @@ public class ORManagerImpl implements ORManager {
                     case "Boolean", "boolean" -> ps.setBoolean(parameterIndex, (Boolean) declaredFields[i].get(o));
                     case "Double", "double" -> ps.setDouble(parameterIndex, (Double) declaredFields[i].get(o));
                     case "LocalDate" -> ps.setDate(parameterIndex, Date.valueOf(declaredFields[i].get(o).toString()));
+                    case "LocalDateTime" -> ps.setTimestamp(parameterIndex, Timestamp.valueOf((LocalDateTime) declaredFields[i].get(o)));
                     case "List", "ArrayList" -> {
                     }
                     default -> {
                         Field fieldWithIdAnnotation = getFieldWithIdAnnotation(declaredFields[i].getType());
                         Object objectFieldIdValue = fieldWithIdAnnotation.get(declaredFields[i].get(o));
                         ps.setObject(parameterIndex, objectFieldIdValue);
+                        params.set(params.size() - 1, objectFieldIdValue);
                     }
                 }
             }
         } catch (IllegalAccessException e) {
             ExceptionHandler.illegalAccess(e);
         }
+        return params;
+    }
+
+    /**
+     * Sets the @Version field of a new entity to its first value, if the entity is versioned and the field is empty.
+     *
+     * @param o The generic entity object which is about to be inserted.
+     */
+    private void setInitialVersion(Object o) {
+        Field versionField = getVersionField(getEntityClass(o));
+        try {
+            if (versionField != null && versionField.get(o) == null) {
+                versionField.set(o, nextVersion(null, versionField.getType()));
+            }
+        } catch (IllegalAccessException e) {
+            ExceptionHandler.illegalAccess(e);
+        }
+    }
+
+    /**
+     * @param current     Current value of the @Version field, null for a new entity.
+     * @param versionType Type of the @Version field.
+     * @return the version following the current one: numbers count up from 0,
+     * timestamps take the current time (in microseconds, as stored by the DB) but always move forward.
+     */
+    private static Object nextVersion(Object current, Class<?> versionType) {
+        return switch (versionType.getSimpleName()) {
+            case "Integer", "int" -> current == null ? 0 : (Integer) current + 1;
+            case "Long", "long" -> current == null ? 0L : (Long) current + 1;
+            case "LocalDateTime" -> {
+                LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+                yield current == null || now.isAfter((LocalDateTime) current) ?
+                        now : ((LocalDateTime) current).plus(1, ChronoUnit.MICROS);
+            }
+            default -> throw new IllegalArgumentException("@Version must be Integer, Long or LocalDateTime: " + versionType);
+        };
+    }
+
+    /**
+     * @return the statement creating the sequence of a {@link GenerationType#SEQUENCE} ID, null for other IDs.
+     * @throws UnsupportedOperationException if the DB has no sequences.
+     * @throws IllegalArgumentException      if a {@link GenerationType#TIME_ORDERED} ID isn't a Long.
+     */
+    private String sqlCreateIdSequence(Class<?> cls) {
+        Id id = getIdAnnotation(cls);
+        if (id.strategy() == GenerationType.TIME_ORDERED && getFieldWithIdAnnotation(cls).getType() != Long.class) {
+            throw new IllegalArgumentException("A TIME_ORDERED @Id must be a Long: " + cls.getName());
+        }
+        if (id.strategy() != GenerationType.SEQUENCE) {
+            return null;
+        }
+        String sql = dialect.sqlCreateSequenceStatement(cls, id.allocationSize());
+        if (sql == null) {
+            throw new UnsupportedOperationException("The SQL dialect has no sequences for the IDs of " + cls.getName() + ": " + dialect);
+        }
+        return sql;
+    }
+
+    /**
+     * Makes the IDs this manager assigns unique among several managers writing to the same tables, in one JVM or
+     * several, like the shards of a {@link ShardedORManager}: node k of n generates k + 1, k + 1 + n and so on.
+     * Without it every manager is node 0 of 1, and two of them can make the same TIME_ORDERED ID in the same
+     * millisecond. Must be called before the first entity is inserted.
+     *
+     * @param node  Index of this manager, from 0.
+     * @param nodes Number of managers, at most {@link TimeOrderedIdGenerator#MAX_NODES}.
+     * @throws IllegalArgumentException if the node isn't one of the nodes.
+     */
+    public void setIdNode(int node, int nodes) {
+        if (nodes < 1 || nodes > TimeOrderedIdGenerator.MAX_NODES || node < 0 || node >= nodes) {
+            throw new IllegalArgumentException("ID node " + node + " out of " + nodes + ", at most "
+                    + TimeOrderedIdGenerator.MAX_NODES + " nodes");
+        }
+        this.idNode = node;
+        this.idNodes = nodes;
+        idGenerators.clear();
+    }
+
+    /**
+     * @return the generator of the IDs of the class, or null if the DB generates them.
+     */
+    private IdGenerator idGenerator(Class<?> cls) {
+        return idGenerators.computeIfAbsent(cls, c -> {
+            Id id = getIdAnnotation(c);
+            return switch (id.strategy()) {
+                case IDENTITY -> Optional.<IdGenerator>empty();
+                case SEQUENCE -> Optional.of(new SequenceIdGenerator(dataSource, sqlLogger, dialect.sqlNextSequenceValueStatement(c),
+                        id.allocationSize(), idNode, idNodes));
+                case TIME_ORDERED -> Optional.of(new TimeOrderedIdGenerator(idNode, idNodes));
+            };
+        }).orElse(null);
+    }
+
+    /**
+     * Sets a new ID from the generator of the class.
+     *
+     * @return the ID.
+     */
+    private Object assignId(Object o, IdGenerator idGenerator) throws SQLException {
+        Field fieldWithIdAnnotation = getFieldWithIdAnnotation(getEntityClass(o));
+        long id = idGenerator.nextId();
+        Object value = fieldWithIdAnnotation.getType().getSimpleName().equals("Long") ? (Object) id : (Object) Math.toIntExact(id);
+        try {
+            fieldWithIdAnnotation.set(o, value);
+        } catch (IllegalAccessException e) {
+            ExceptionHandler.illegalAccess(e);
+        }
+        return value;
+    }
+
+    /**
+     * Binds the placeholders of {@link Dialect#sqlInsertStatement(Class)}: a new ID first if the ORM assigns the
+     * IDs of the class, then the columns.
+     */
+    private <T> List<Object> replaceInsertPlaceholders(T o, PreparedStatement ps, int placeholdersBefore) throws SQLException {
+        IdGenerator idGenerator = idGenerator(getEntityClass(o));
+        if (idGenerator == null) {
+            return replacePlaceholdersInStatement(o, ps, placeholdersBefore);
+        }
+        Object id = assignId(o, idGenerator);
+        bindId(ps, placeholdersBefore + 1, id);
+        List<Object> params = new ArrayList<>(List.of(id));
+        params.addAll(replacePlaceholdersInStatement(o, ps, placeholdersBefore + 1));
+        return params;
     }
 
     /**
@@ -376,7 +1406,7 @@ public class ORManagerImpl implements ORManager {
      * @throws SQLException
      */
     private <T> void setAutoGeneratedId(T o, ResultSet generatedKey) throws SQLException {
-        Field fieldWithIdAnnotation = getFieldWithIdAnnotation(o.getClass());
+        Field fieldWithIdAnnotation = getFieldWithIdAnnotation(getEntityClass(o));
         String fieldTypeSimpleName = fieldWithIdAnnotation.getType().getSimpleName();
         try {
             if (fieldTypeSimpleName.equals("Long")) {
@@ -390,19 +1420,26 @@ public class ORManagerImpl implements ORManager {
     }
 
     /**
-     * @param rs   ResultSet from SELECT sql statement.
-     * @param clss Class.
+     * @param rs      ResultSet from SELECT sql statement.
+     * @param clss    Class.
+     * @param context Entities and collections read by the same call.
      * @return Generic entity object with field values set from the DB record value.
      * @throws SQLException
      */
-    private <T> T extractEntityFromResultSet(ResultSet rs, Class<T> clss) throws SQLException {
+    private <T> T extractEntityFromResultSet(ResultSet rs, Class<T> clss, ReadContext context) throws SQLException {
         T entityToFind = createNewInstance(clss);
+        List<Field> collectionFields = new ArrayList<>();
         try {
             Field[] declaredFields = clss.getDeclaredFields();
+            int columnIndex = 0;
             for (int i = 0; i < declaredFields.length; i++) {
                 declaredFields[i].setAccessible(true);
                 String fieldTypeName = declaredFields[i].getType().getSimpleName();
-                int columnIndex = i + 1;
+                if (isCollection(declaredFields[i])) {
+                    collectionFields.add(declaredFields[i]);
+                    continue;
+                }
+                columnIndex++;
                 switch (fieldTypeName) {
                     case "String" -> declaredFields[i].set(entityToFind, rs.getString(columnIndex));
                     case "Long", "long" -> declaredFields[i].set(entityToFind, rs.getLong(columnIndex));
@@ -416,25 +1453,311 @@ public class ORManagerImpl implements ORManager {
                             declaredFields[i].set(entityToFind, rs.getDate(columnIndex));
                         }
                     }
+                    case "LocalDateTime" -> {
+                        Timestamp timestamp = rs.getTimestamp(columnIndex);
+                        declaredFields[i].set(entityToFind, timestamp != null ? timestamp.toLocalDateTime() : null);
+                    }
                     case "List", "ArrayList" -> {
                     }
                     default -> {
-                        Long columnValue = rs.getLong(columnIndex);
+                        long columnValue = rs.getLong(columnIndex);
                         if (columnValue != 0) {
-                            Object byId = findById(columnValue, declaredFields[i].getType()).get();
-                            declaredFields[i].set(entityToFind, byId);
+                            declaredFields[i].set(entityToFind, findReference(declaredFields[i], columnValue, context));
                         } else {
                             declaredFields[i].set(entityToFind, null);
                         }
                     }
                 }
             }
+            context.add(clss, getFieldWithIdAnnotation(clss).get(entityToFind), entityToFind);
+            setUpCollections(entityToFind, collectionFields, context);
         } catch (IllegalAccessException e) {
             ExceptionHandler.illegalAccess(e);
         }
         return entityToFind;
     }
 
+    /**
+     * Gives the entity lists loaded on first access, together with the lists of the other entities of the context.
+     */
+    private void setUpCollections(Object entity, List<Field> collectionFields, ReadContext context) throws IllegalAccessException {
+        for (Field collectionField : collectionFields) {
+            collectionField.setAccessible(true);
+            collectionField.set(entity, context.batchFor(collectionField, collectionField.isAnnotationPresent(OneToMany.class)
+                    ? this::findOneToManyElements : this::findManyToManyElements).newList(entity));
+        }
+    }
+
+    /**
+     * Reads the elements of a @OneToMany list for many owners at once, with one
+     * SELECT ... WHERE fk IN (...) per {@link Dialect#maxParameters()} owners.
+     * The @ManyToOne field of every element is set to its owner.
+     *
+     * @param oneToManyField The @OneToMany field of the owners.
+     * @param owners         Entities whose lists are loaded.
+     * @return the elements of each owner's list, with the owners compared by identity.
+     */
+    private Map<Object, List<Object>> findOneToManyElements(Field oneToManyField, List<Object> owners) {
+        Map<Object, List<Object>> elementsByOwner = new IdentityHashMap<>();
+        Class<?> ownerClass = oneToManyField.getDeclaringClass();
+        Class<?> elementClass = getListType(oneToManyField);
+        Field manyToOneField = getManyToOneFieldReferencing(elementClass, ownerClass);
+        if (manyToOneField == null) {
+            return elementsByOwner;
+        }
+        String fkColumnName = getColumnName(manyToOneField);
+        ReadContext context = new ReadContext();
+        List<Object> ownerIds = new ArrayList<>();
+        LongObjectMap<Object> ownersById = new LongObjectMap<>(owners.size());
+        try {
+            Field ownerIdField = getFieldWithIdAnnotation(ownerClass);
+            for (Object owner : owners) {
+                Object ownerId = ownerIdField.get(owner);
+                if (ownerId != null) {
+                    context.add(ownerClass, ownerId, owner);
+                    ownersById.put(((Number) ownerId).longValue(), owner);
+                    ownerIds.add(ownerId);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            ExceptionHandler.illegalAccess(e);
+        }
+        try (Connection connection = routing.forRead().getConnection()) {
+            int maxParameters = dialect.maxParameters();
+            for (int from = 0; from < ownerIds.size(); from += maxParameters) {
+                List<Object> chunk = ownerIds.subList(from, Math.min(from + maxParameters, ownerIds.size()));
+                String sql = dialect.sqlSelectWhereInStatement(elementClass, fkColumnName, chunk.size()) + " ORDER BY id";
+                long start = sqlLogger.start();
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        bindId(ps, i + 1, chunk.get(i));
+                    }
+                    int rows = 0;
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            Object element = extractEntityFromResultSet(rs, elementClass, context);
+                            Object owner = ownersById.get(rs.getLong(fkColumnName));
+                            elementsByOwner.computeIfAbsent(owner, o -> new ArrayList<>()).add(element);
+                            rows++;
+                        }
+                    }
+                    sqlLogger.log(sql, chunk.toArray(), rows, start);
+                }
+            }
+        } catch (SQLException e) {
+            ExceptionHandler.sql(e);
+        }
+        return elementsByOwner;
+    }
+
+    /**
+     * Reads the elements of a @ManyToMany list for many owners at once, with one SELECT joining the element
+     * table and the join table per {@link Dialect#maxParameters()} owners. An element linked to several owners
+     * is read once and shared by their lists.
+     *
+     * @param manyToManyField The @ManyToMany field of the owners, on either side.
+     * @param owners          Entities whose lists are loaded.
+     * @return the elements of each owner's list, with the owners compared by identity.
+     */
+    private Map<Object, List<Object>> findManyToManyElements(Field manyToManyField, List<Object> owners) {
+        Map<Object, List<Object>> elementsByOwner = new IdentityHashMap<>();
+        Class<?> elementClass = getListType(manyToManyField);
+        String elementIdColumnName = getColumnName(getFieldWithIdAnnotation(elementClass));
+        ReadContext context = new ReadContext();
+        List<Object> ownerIds = new ArrayList<>();
+        LongObjectMap<Object> ownersById = new LongObjectMap<>(owners.size());
+        try {
+            Field ownerIdField = getFieldWithIdAnnotation(manyToManyField.getDeclaringClass());
+            for (Object owner : owners) {
+                Object ownerId = ownerIdField.get(owner);
+                if (ownerId != null) {
+                    ownersById.put(((Number) ownerId).longValue(), owner);
+                    ownerIds.add(ownerId);
+                }
+            }
+        } catch (IllegalAccessException e) {
+            ExceptionHandler.illegalAccess(e);
+        }
+        try (Connection connection = routing.forRead().getConnection()) {
+            int maxParameters = dialect.maxParameters();
+            for (int from = 0; from < ownerIds.size(); from += maxParameters) {
+                List<Object> chunk = ownerIds.subList(from, Math.min(from + maxParameters, ownerIds.size()));
+                String sql = dialect.sqlSelectLinkedStatement(manyToManyField, chunk.size());
+                long start = sqlLogger.start();
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        bindId(ps, i + 1, chunk.get(i));
+                    }
+                    int rows = 0;
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            Object element = context.find(elementClass, rs.getLong(elementIdColumnName));
+                            if (element == null) {
+                                element = extractEntityFromResultSet(rs, elementClass, context);
+                            }
+                            Object owner = ownersById.get(rs.getLong(Dialect.LINK_OWNER_COLUMN));
+                            elementsByOwner.computeIfAbsent(owner, o -> new ArrayList<>()).add(element);
+                            rows++;
+                        }
+                    }
+                    sqlLogger.log(sql, chunk.toArray(), rows, start);
+                }
+            }
+        } catch (SQLException e) {
+            ExceptionHandler.sql(e);
+        }
+        return elementsByOwner;
+    }
+
+    /**
+     * Writes the changes of the owning @ManyToMany lists of the entities to their join tables: one JDBC batch
+     * deleting the removed links and one inserting the added ones, per field. The links before the change are the
+     * snapshot of a list read from the DB, none for entities just inserted, and else are read with one IN query.
+     * Lists not loaded yet can't have changed and are skipped.
+     *
+     * @param objects  Entities of one class, with IDs.
+     * @param inserted Whether the entities were just inserted.
+     * @throws IllegalStateException if a list holds an entity without ID.
+     */
+    private void writeLinks(Connection connection, Class<?> cls, Collection<?> objects, boolean inserted)
+            throws SQLException, IllegalAccessException {
+        Field idField = getFieldWithIdAnnotation(cls);
+        for (Field field : cls.getDeclaredFields()) {
+            if (!field.isAnnotationPresent(ManyToMany.class) || getOwningManyToManyField(field) != field) {
+                continue;
+            }
+            field.setAccessible(true);
+            Field elementIdField = getFieldWithIdAnnotation(getListType(field));
+            LongObjectMap<Set<Long>> currentLinks = new LongObjectMap<>(objects.size());
+            LongObjectMap<Set<Long>> writtenLinks = new LongObjectMap<>(objects.size());
+            List<Long> unknown = new ArrayList<>();
+            List<PersistentList<?>> written = new ArrayList<>();
+            for (Object o : objects) {
+                List<?> list = (List<?>) field.get(o);
+                if (list instanceof PersistentList<?> persistentList && !persistentList.isInitialized()) {
+                    continue;
+                }
+                long id = ((Number) idField.get(o)).longValue();
+                currentLinks.put(id, linkedIds(list, elementIdField, field));
+                if (list instanceof PersistentList<?> persistentList) {
+                    writtenLinks.put(id, linkedIds(persistentList.getSnapshot(), elementIdField, field));
+                    written.add(persistentList);
+                } else if (inserted) {
+                    writtenLinks.put(id, Set.of());
+                } else {
+                    unknown.add(id);
+                }
+            }
+            findLinks(connection, field, unknown, writtenLinks);
+            List<long[]> added = new ArrayList<>();
+            List<long[]> removed = new ArrayList<>();
+            currentLinks.forEach((id, current) -> {
+                Set<Long> before = writtenLinks.get(id);
+                current.stream().filter(elementId -> !before.contains(elementId)).forEach(elementId -> added.add(new long[]{id, elementId}));
+                before.stream().filter(elementId -> !current.contains(elementId)).forEach(elementId -> removed.add(new long[]{id, elementId}));
+            });
+            executeLinkBatch(connection, dialect.sqlDeleteLinkStatement(field), removed);
+            executeLinkBatch(connection, dialect.sqlInsertLinkStatement(field), added);
+            written.forEach(PersistentList::takeSnapshot);
+        }
+    }
+
+    private static Set<Long> linkedIds(List<?> elements, Field elementIdField, Field field) throws IllegalAccessException {
+        Set<Long> ids = new LinkedHashSet<>();
+        if (elements != null) {
+            for (Object element : elements) {
+                Object id = elementIdField.get(element);
+                if (id == null) {
+                    throw new IllegalStateException("Save the entities of " + field + " before linking them: " + element);
+                }
+                ids.add(((Number) id).longValue());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Puts the IDs linked to every owner in the join table of an owning @ManyToMany field into the links.
+     */
+    private void findLinks(Connection connection, Field owningField, List<Long> ownerIds, LongObjectMap<Set<Long>> links)
+            throws SQLException {
+        int maxParameters = dialect.maxParameters();
+        for (int from = 0; from < ownerIds.size(); from += maxParameters) {
+            List<Long> chunk = ownerIds.subList(from, Math.min(from + maxParameters, ownerIds.size()));
+            String sql = dialect.sqlSelectLinksStatement(owningField, chunk.size());
+            long start = sqlLogger.start();
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (int i = 0; i < chunk.size(); i++) {
+                    ps.setLong(i + 1, chunk.get(i));
+                }
+                int rows = 0;
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        links.computeIfAbsent(rs.getLong(1), id -> new HashSet<>()).add(rs.getLong(2));
+                        rows++;
+                    }
+                }
+                sqlLogger.log(sql, chunk.toArray(), rows, start);
+            }
+        }
+        for (long ownerId : ownerIds) {
+            if (!links.containsKey(ownerId)) {
+                links.put(ownerId, Set.of());
+            }
+        }
+    }
+
+    /**
+     * Executes the batch of the statement, logging it if it fails.
+     *
+     * @return the affected rows of every statement of the batch.
+     */
+    private int[] executeBatch(PreparedStatement ps, String sql, int size, long start) throws SQLException {
+        try {
+            return ps.executeBatch();
+        } catch (SQLException e) {
+            sqlLogger.logFailure(sql, new Object[]{size + " rows"}, start, e);
+            throw e;
+        }
+    }
+
+    private void executeLinkBatch(Connection connection, String sql, List<long[]> links) throws SQLException {
+        if (links.isEmpty()) {
+            return;
+        }
+        long start = sqlLogger.start();
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int from = 0; from < links.size(); from += BATCH_SIZE) {
+                for (long[] link : links.subList(from, Math.min(from + BATCH_SIZE, links.size()))) {
+                    ps.setLong(1, link[0]);
+                    ps.setLong(2, link[1]);
+                    ps.addBatch();
+                }
+                executeBatch(ps, sql, links.size(), start);
+            }
+        }
+        sqlLogger.log(sql, new Object[]{links.size() + " links"}, links.size(), start);
+    }
+
+    /**
+     * @param field   @ManyToOne field of the entity being read.
+     * @param id      Value of its foreign key column.
+     * @param context Entities already read by the same call.
+     * @return the referenced entity, or a proxy which loads it on first use if the association is lazy.
+     */
+    private Object findReference(Field field, long id, ReadContext context) {
+        Class<?> type = field.getType();
+        Object alreadyRead = context.find(type, id);
+        if (alreadyRead != null) {
+            return alreadyRead;
+        }
+        ManyToOne manyToOne = field.getAnnotation(ManyToOne.class);
+        if (manyToOne != null && manyToOne.fetch() == FetchType.LAZY) {
+            return EntityProxyFactory.createProxy(type, id, refId -> findById(refId, type));
+        }
+        return findById(id, type).get();
+    }
+
     /**
      * Create and initialize a new instance from the no-args constructor of the provided class.
      *
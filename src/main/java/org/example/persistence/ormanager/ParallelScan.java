@@ -0,0 +1,173 @@
+package org.example.persistence.ormanager;
+
+import org.example.exceptionhandler.ExceptionHandler;
+import org.example.persistence.annotations.Id;
+import org.example.persistence.sql.Dialect;
+import org.example.persistence.sql.SQLLogger;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.example.persistence.utilities.AnnotationUtils.getColumnName;
+
+/**
+ * Reads a whole table on several connections at once. The ID range between MIN(id) and MAX(id) is cut into
+ * ranges of equal width, a few more than threads so that a thread done with a sparse range takes the next one,
+ * and every range is read and turned into entities on its own thread and connection.
+ *
+ * @param <T> Entity type.
+ */
+class ParallelScan<T> {
+    /**
+     * Ranges per thread; more ranges even out gaps in the IDs.
+     */
+    private static final int RANGES_PER_THREAD = 4;
+    private static final int FETCH_SIZE = 1000;
+
+    private final Supplier<DataSource> dataSources;
+    private final Dialect dialect;
+    private final SQLLogger sqlLogger;
+    private final Class<T> cls;
+    private final Supplier<TableExporter.RowMapper<T>> rowMappers;
+
+    /**
+     * @param dataSources Gives the data source of every range, so that the ranges may be read from different replicas.
+     * @param rowMappers  Gives the reader of the entities of one range, used by one thread only.
+     */
+    ParallelScan(Supplier<DataSource> dataSources, Dialect dialect, SQLLogger sqlLogger, Class<T> cls,
+                 Supplier<TableExporter.RowMapper<T>> rowMappers) {
+        this.dataSources = dataSources;
+        this.dialect = dialect;
+        this.sqlLogger = sqlLogger;
+        this.cls = cls;
+        this.rowMappers = rowMappers;
+    }
+
+    /**
+     * Starts reading all ranges and returns at once.
+     *
+     * @param threads Threads and connections reading the table.
+     * @return the entities ordered by ID; closing the stream early stops the ranges not read yet.
+     */
+    Stream<T> scan(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        String idColumn = getColumnName(idField());
+        long[] bounds = idBounds(idColumn);
+        if (bounds == null) {
+            return Stream.empty();
+        }
+        List<long[]> ranges = ranges(bounds[0], bounds[1], threads * RANGES_PER_THREAD);
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        ExecutorService readers = Executors.newFixedThreadPool(Math.min(threads, ranges.size()), runnable -> {
+            Thread thread = new Thread(runnable, "orm-scan-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<List<T>>> futures = new ArrayList<>();
+        for (long[] range : ranges) {
+            // chosen on the calling thread, which a read-your-writes session belongs to
+            DataSource dataSource = dataSources.get();
+            futures.add(readers.submit(() -> readRange(dataSource, idColumn, range[0], range[1])));
+        }
+        // the submitted ranges still run, no more threads are started
+        readers.shutdown();
+        return futures.stream()
+                .flatMap(future -> join(future).stream())
+                .onClose(() -> futures.forEach(future -> future.cancel(true)));
+    }
+
+    /**
+     * Cuts [min, max] into at most the given number of ranges [from, to) of equal width.
+     */
+    static List<long[]> ranges(long min, long max, int count) {
+        List<long[]> ranges = new ArrayList<>();
+        long width = Math.max(1, (max - min) / count + 1);
+        for (long from = min; from <= max; from += width) {
+            long to = max - from < width ? max + 1 : from + width;
+            ranges.add(new long[]{from, to});
+            if (to > max) {
+                break;
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * @return MIN(id) and MAX(id), or null for an empty table.
+     */
+    private long[] idBounds(String idColumn) {
+        String sql = dialect.sqlMinMaxStatement(cls, idColumn);
+        long start = sqlLogger.start();
+        try (Connection connection = dataSources.get().getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            sqlLogger.log(sql, new Object[0], 1, start);
+            if (rs.next() && rs.getObject(1) != null) {
+                return new long[]{rs.getLong(1), rs.getLong(2)};
+            }
+        } catch (SQLException e) {
+            ExceptionHandler.sql(e);
+        }
+        return null;
+    }
+
+    private List<T> readRange(DataSource dataSource, String idColumn, long from, long to) {
+        List<T> entities = new ArrayList<>();
+        String sql = dialect.sqlSelectRangeStatement(cls, idColumn);
+        TableExporter.RowMapper<T> mapper = rowMappers.get();
+        long start = sqlLogger.start();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(FETCH_SIZE);
+            ps.setLong(1, from);
+            ps.setLong(2, to);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next() && !Thread.currentThread().isInterrupted()) {
+                    entities.add(mapper.map(rs));
+                }
+            }
+            sqlLogger.log(sql, new Object[]{from, to}, entities.size(), start);
+        } catch (SQLException e) {
+            ExceptionHandler.sql(e);
+        }
+        return entities;
+    }
+
+    private Field idField() {
+        for (Field declaredField : cls.getDeclaredFields()) {
+            if (declaredField.isAnnotationPresent(Id.class)) {
+                return declaredField;
+            }
+        }
+        throw new IllegalArgumentException("No @Id field in " + cls);
+    }
+
+    private static <E> List<E> join(Future<List<E>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while reading the table");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException ?
+                    runtimeException : new CompletionException(e.getCause());
+        }
+    }
+}
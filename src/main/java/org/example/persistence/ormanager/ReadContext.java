@@ -0,0 +1,34 @@
+package org.example.persistence.ormanager;
+
+import org.example.persistence.proxy.CollectionBatch;
+import org.example.persistence.utilities.LongObjectMap;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * State shared by the entities read in one ORM Manager call: the entities already read, so that a reference
+ * to one of them is not read from the DB again, and the batches in which their @OneToMany lists get loaded.
+ */
+class ReadContext {
+    private final Map<Class<?>, LongObjectMap<Object>> entities = new HashMap<>();
+    private final Map<Field, CollectionBatch> batches = new HashMap<>();
+
+    Object find(Class<?> cls, long id) {
+        LongObjectMap<Object> byId = entities.get(cls);
+        return byId == null ? null : byId.get(id);
+    }
+
+    void add(Class<?> cls, Object id, Object entity) {
+        if (id != null) {
+            entities.computeIfAbsent(cls, c -> new LongObjectMap<>()).put(((Number) id).longValue(), entity);
+        }
+    }
+
+    CollectionBatch batchFor(Field field, BiFunction<Field, List<Object>, Map<Object, List<Object>>> loader) {
+        return batches.computeIfAbsent(field, f -> new CollectionBatch(f, loader));
+    }
+}
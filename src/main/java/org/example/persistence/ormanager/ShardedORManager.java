@@ -0,0 +1,933 @@
+package org.example.persistence.ormanager;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.exceptionhandler.EntityAnnotationNotFoundException;
+import org.example.exceptionhandler.ExceptionHandler;
+import org.example.persistence.annotations.Id;
+import org.example.persistence.annotations.ManyToOne;
+import org.example.persistence.annotations.ShardKey;
+import org.example.persistence.bulk.CsvMapper;
+import org.example.persistence.bulk.CsvReader;
+import org.example.persistence.bulk.ExportFormat;
+import org.example.persistence.bulk.ExportOptions;
+import org.example.persistence.bulk.ImportOptions;
+import org.example.persistence.bulk.ImportReport;
+import org.example.persistence.cache.EntityCache;
+import org.example.persistence.cache.SnapshotReport;
+import org.example.persistence.proxy.EntityProxy;
+import org.example.persistence.query.Aggregation;
+import org.example.persistence.query.RowMapping;
+import org.example.persistence.sql.Dialect;
+import org.example.persistence.sql.SQLLogger;
+import org.example.persistence.utilities.LongObjectMap;
+import org.example.persistence.writebehind.WriteBehindOptions;
+import org.example.persistence.writebehind.WriteBehindWriter;
+
+import javax.sql.DataSource;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPOutputStream;
+
+import static org.example.persistence.proxy.EntityProxyFactory.getEntityClass;
+import static org.example.persistence.utilities.AnnotationUtils.entityAnnotationIsPresent;
+import static org.example.persistence.utilities.AnnotationUtils.getTableName;
+import static org.example.persistence.utilities.AnnotationUtils.getUpsertKeyField;
+import static org.example.persistence.utilities.AnnotationUtils.isIdAssigned;
+
+/**
+ * ORM Manager spreading the rows of every table over several databases, the shards.
+ * <p>
+ * Shard k of n generates the IDs k + 1, k + 1 + n, ..., so IDs are unique across the shards and every ID-based
+ * operation goes to the one shard the ID belongs to. A new entity is stored on the shard of the entity it references
+ * with @ManyToOne, as the foreign key needs it there; otherwise on the shard the hash of its {@link ShardKey} field
+ * chooses, or of its unique upsert key, so that upserting a key again finds the row; or else on the shards in turns.
+ * <p>
+ * findAll, findAllById, nativeQuery, aggregate, recordsCount, saveAll, snapshots and imports run on all shards in parallel and merge
+ * the results. Writes to several shards are committed per shard, not in one transaction.
+ * {@link #close()} stops the threads running them.
+ */
+@Slf4j
+public class ShardedORManager implements ORManager, AutoCloseable {
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final List<DataSource> dataSources;
+    private final List<ORManagerImpl> shards = new ArrayList<>();
+    private final SQLLogger sqlLogger;
+    private final Dialect dialect;
+    private final ExecutorService executor;
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    public ShardedORManager(List<DataSource> dataSources) {
+        this(dataSources, SQLLogger.defaultLogger(), Dialect.fromDataSource(dataSources.get(0)));
+    }
+
+    /**
+     * @param dataSources One data source per shard; the order must stay the same, as it decides where the IDs are.
+     * @param sqlLogger   Logger of the executed statements.
+     * @param dialect     Dialect of the shards.
+     */
+    public ShardedORManager(List<DataSource> dataSources, SQLLogger sqlLogger, Dialect dialect) {
+        if (dataSources.isEmpty()) {
+            throw new IllegalArgumentException("No shards");
+        }
+        this.dataSources = List.copyOf(dataSources);
+        this.sqlLogger = sqlLogger;
+        this.dialect = dialect;
+        for (DataSource dataSource : dataSources) {
+            ORManagerImpl shard = new ORManagerImpl(dataSource, sqlLogger, dialect);
+            shard.setIdNode(shards.size(), dataSources.size());
+            shards.add(shard);
+        }
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        this.executor = Executors.newFixedThreadPool(dataSources.size(), runnable -> {
+            Thread thread = new Thread(runnable, "orm-shard-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * @param index Index of the shard, from 0.
+     * @return the ORM Manager of a single shard.
+     */
+    public ORManager getShard(int index) {
+        return shards.get(index);
+    }
+
+    /**
+     * @param id ID of an entity.
+     * @return the index of the shard which generated the ID.
+     */
+    public int shardOf(Serializable id) {
+        return shardOf(((Number) id).longValue());
+    }
+
+    /**
+     * @param id ID of an entity.
+     * @return the index of the shard which generated the ID.
+     */
+    public int shardOf(long id) {
+        return (int) Math.floorMod(id - 1, (long) shards.size());
+    }
+
+    /**
+     * Creates the tables on every shard and sets up the ID generation of every new, empty table.
+     * A table which has rows already keeps its ID generation, which is checked to be the one of its shard.
+     *
+     * @throws UnsupportedOperationException if there are several shards and the dialect can't set up the IDs.
+     * @throws IllegalStateException         if a table has rows with IDs of another shard, e.g. rows added before
+     *                                       the DB became a shard, as its IDs can't be spread over the shards then.
+     */
+    @Override
+    public void register(Class... entityClasses) {
+        for (int shard = 0; shard < shards.size(); shard++) {
+            shards.get(shard).register(entityClasses);
+            for (Class<?> cls : entityClasses) {
+                if (entityAnnotationIsPresent(cls) && shards.size() > 1 && !isIdAssigned(cls)) {
+                    if (shards.get(shard).recordsCount(cls) == 0) {
+                        restartIdentity(cls, shard);
+                    } else {
+                        checkIdentity(cls, shard);
+                    }
+                }
+            }
+        }
+    }
+
+    private void checkIdentity(Class<?> cls, int shard) {
+        String sql = dialect.sqlCountForeignShardIdsStatement(cls, shard, shards.size());
+        long start = sqlLogger.start();
+        try (Connection connection = dataSources.get(shard).getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            long foreignIds = resultSet.getLong(1);
+            sqlLogger.log(sql, new Object[0], 1, start);
+            if (foreignIds > 0) {
+                throw new IllegalStateException(String.format(
+                        "Table %s of shard %d has %d rows with IDs of other shards, so it can't generate IDs unique "
+                                + "across the shards", getTableName(cls), shard, foreignIds));
+            }
+        } catch (SQLException e) {
+            sqlLogger.logFailure(sql, new Object[0], start, e);
+            ExceptionHandler.sql(e);
+        }
+    }
+
+    private void restartIdentity(Class<?> cls, int shard) {
+        String sql = dialect.sqlShardIdentityStatement(cls, shard, shards.size());
+        if (sql == null) {
+            throw new UnsupportedOperationException("The SQL dialect can't generate IDs unique across shards: " + dialect);
+        }
+        long start = sqlLogger.start();
+        try (Connection connection = dataSources.get(shard).getConnection();
+             Statement statement = connection.createStatement()) {
+            int rows = statement.executeUpdate(sql);
+            sqlLogger.log(sql, new Object[0], rows, start);
+        } catch (SQLException e) {
+            ExceptionHandler.sql(e);
+        }
+    }
+
+    @Override
+    public <T> T save(T o) {
+        return shardFor(o).save(o);
+    }
+
+    @Override
+    public <T> T upsert(T o) {
+        return shards.get(shardIndexForUpsert(o)).upsert(o);
+    }
+
+    @Override
+    public <T> List<T> saveAll(Collection<T> objects) {
+        Map<Integer, List<T>> objectsByShard = new HashMap<>();
+        for (T o : objects) {
+            objectsByShard.computeIfAbsent(shardIndexForUpsert(o), s -> new ArrayList<>()).add(o);
+        }
+        List<Callable<List<T>>> tasks = new ArrayList<>();
+        objectsByShard.forEach((shard, shardObjects) -> tasks.add(() -> shards.get(shard).saveAll(shardObjects)));
+        inParallel(tasks);
+        return new ArrayList<>(objects);
+    }
+
+    /**
+     * The entities of a batch are written on their shards in parallel, each shard in its own transaction.
+     */
+    @Override
+    public WriteBehindWriter writeBehind(WriteBehindOptions options) {
+        return new WriteBehindWriter(this, this::upsertOnShards, options);
+    }
+
+    private void upsertOnShards(List<Object> entities) throws SQLException {
+        Map<Integer, List<Object>> entitiesByShard = new HashMap<>();
+        for (Object o : entities) {
+            entitiesByShard.computeIfAbsent(shardIndexForUpsert(o), s -> new ArrayList<>()).add(o);
+        }
+        List<Callable<SQLException>> tasks = new ArrayList<>();
+        entitiesByShard.forEach((shard, shardEntities) -> tasks.add(() -> {
+            try {
+                shards.get(shard).upsertAll(shardEntities);
+                return null;
+            } catch (SQLException e) {
+                return e;
+            }
+        }));
+        for (SQLException failure : inParallel(tasks)) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    @Override
+    public void persist(Object o) {
+        shardFor(o).persist(o);
+    }
+
+    @Override
+    public <T> Optional<T> findById(Serializable id, Class<T> cls) {
+        return findById(((Number) id).longValue(), cls);
+    }
+
+    @Override
+    public <T> Optional<T> findById(long id, Class<T> cls) {
+        return shards.get(shardOf(id)).findById(id, cls);
+    }
+
+    @Override
+    public <T> List<T> findAllById(Collection<? extends Serializable> ids, Class<T> cls) {
+        Map<Integer, List<Serializable>> idsByShard = new HashMap<>();
+        for (Serializable id : ids) {
+            idsByShard.computeIfAbsent(shardOf(id), s -> new ArrayList<>()).add(id);
+        }
+        List<Callable<List<T>>> tasks = new ArrayList<>();
+        idsByShard.forEach((shard, shardIds) -> tasks.add(() -> shards.get(shard).findAllById(shardIds, cls)));
+        LongObjectMap<T> entitiesById = new LongObjectMap<>(ids.size());
+        Field idField = idField(cls);
+        for (List<T> found : inParallel(tasks)) {
+            for (T entity : found) {
+                entitiesById.put(((Number) fieldValue(idField, entity)).longValue(), entity);
+            }
+        }
+        List<T> result = new ArrayList<>(ids.size());
+        for (Serializable id : ids) {
+            T entity = entitiesById.get(((Number) id).longValue());
+            if (entity != null) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the table on all shards in parallel.
+     *
+     * @return the entities of all shards, ordered by ID.
+     */
+    @Override
+    public <T> List<T> findAll(Class<T> cls) {
+        Field idField = idField(cls);
+        try (Stream<T> entities = findAll(cls, Comparator.comparingLong(entity -> ((Number) fieldValue(idField, entity)).longValue()))) {
+            return entities.collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    /**
+     * Reads the table on all shards in parallel, sorts the entities of every shard and merges the sorted shards
+     * while the stream is consumed. The order is a Java comparator and can't become an ORDER BY, so every shard's
+     * whole table is read into a list before the first entity is returned: memory grows with the total row count,
+     * only the merge is lazy.
+     *
+     * @param cls   Entity class.
+     * @param order Order of the entities.
+     * @return the entities of all shards in the order.
+     */
+    public <T> Stream<T> findAll(Class<T> cls, Comparator<? super T> order) {
+        List<Callable<List<T>>> tasks = new ArrayList<>();
+        for (ORManagerImpl shard : shards) {
+            tasks.add(() -> {
+                List<T> entities = shard.findAll(cls);
+                entities.sort(order);
+                return entities;
+            });
+        }
+        return mergeSorted(inParallel(tasks), order);
+    }
+
+    /**
+     * Reads every shard with {@link ORManager#parallelFindAll(Class, int)}, all shards at once.
+     *
+     * @param threads Threads and connections reading each shard.
+     * @return the entities of all shards, ordered by ID.
+     */
+    @Override
+    public <T> List<T> parallelFindAll(Class<T> cls, int threads) {
+        try (Stream<T> entities = parallelScan(cls, threads)) {
+            return entities.collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    @Override
+    public <T> Stream<T> parallelScan(Class<T> cls, int threads) {
+        Field idField = idField(cls);
+        List<Callable<List<T>>> tasks = new ArrayList<>();
+        for (ORManagerImpl shard : shards) {
+            tasks.add(() -> shard.parallelFindAll(cls, threads));
+        }
+        return mergeSorted(inParallel(tasks), Comparator.comparingLong(entity -> ((Number) fieldValue(idField, entity)).longValue()));
+    }
+
+    /**
+     * Merges lists that are already held in memory; it saves the final sort, not the reading of the shards.
+     *
+     * @return a stream taking the next element from the shard list whose head comes first in the order.
+     */
+    private static <T> Stream<T> mergeSorted(List<List<T>> sortedLists, Comparator<? super T> order) {
+        PriorityQueue<PeekingIterator<T>> heads = new PriorityQueue<>((a, b) -> order.compare(a.peek(), b.peek()));
+        long size = 0;
+        for (List<T> sortedList : sortedLists) {
+            size += sortedList.size();
+            if (!sortedList.isEmpty()) {
+                heads.add(new PeekingIterator<>(sortedList.iterator()));
+            }
+        }
+        Iterator<T> merged = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                PeekingIterator<T> head = heads.poll();
+                if (head == null) {
+                    throw new NoSuchElementException();
+                }
+                T next = head.next();
+                if (head.hasNext()) {
+                    heads.add(head);
+                }
+                return next;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliterator(merged, size, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    private static class PeekingIterator<T> {
+        private final Iterator<T> iterator;
+        private T head;
+
+        PeekingIterator(Iterator<T> iterator) {
+            this.iterator = iterator;
+            this.head = iterator.next();
+        }
+
+        T peek() {
+            return head;
+        }
+
+        boolean hasNext() {
+            return head != null;
+        }
+
+        T next() {
+            T next = head;
+            head = iterator.hasNext() ? iterator.next() : null;
+            return next;
+        }
+    }
+
+    @Override
+    public <T> T update(T o) {
+        return shardFor(o).update(o);
+    }
+
+    @Override
+    public <T> T refresh(T o) {
+        return shardFor(o).refresh(o);
+    }
+
+    @Override
+    public boolean delete(Object o) {
+        return idOf(o) != null && shardFor(o).delete(o);
+    }
+
+    /**
+     * Runs the query on all shards in parallel; the rows of the shards follow each other in shard order, so
+     * ORDER BY, LIMIT and aggregates apply per shard.
+     */
+    @Override
+    public <T> List<T> nativeQuery(String sql, Class<T> target, Object... params) {
+        List<Callable<List<T>>> tasks = new ArrayList<>();
+        for (ORManagerImpl shard : shards) {
+            tasks.add(() -> shard.nativeQuery(sql, target, params));
+        }
+        List<T> rows = new ArrayList<>();
+        inParallel(tasks).forEach(rows::addAll);
+        return rows;
+    }
+
+    /**
+     * Aggregates on all shards in parallel and merges the rows of equal groups: counts and sums are added, the least
+     * minimum and the greatest maximum kept, and an average is divided from the sum and count the shards return for it.
+     */
+    @Override
+    public <R> List<R> aggregate(Aggregation aggregation, Class<R> resultType) {
+        Aggregation partial = partialAggregation(aggregation);
+        List<Callable<List<Object[]>>> tasks = new ArrayList<>();
+        for (ORManagerImpl shard : shards) {
+            tasks.add(() -> shard.aggregateRows(partial));
+        }
+        int groups = aggregation.groupBy().size();
+        Map<List<Object>, Object[]> rowsByGroup = new LinkedHashMap<>();
+        for (List<Object[]> rows : inParallel(tasks)) {
+            for (Object[] row : rows) {
+                Object[] merged = rowsByGroup.putIfAbsent(Arrays.asList(Arrays.copyOf(row, groups)), row);
+                if (merged != null) {
+                    for (int column = groups; column < row.length; column++) {
+                        merged[column] = mergeAggregates(partial.aggregates().get(column - groups).function(), merged[column], row[column]);
+                    }
+                }
+            }
+        }
+        List<Object[]> rows = new ArrayList<>(rowsByGroup.values());
+        rows.sort((a, b) -> compareGroups(a, b, groups));
+        RowMapping<R> mapping = RowMapping.of(dialect.sqlAggregateStatement(aggregation), resultType, aggregation.labels());
+        List<R> results = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            results.add(mapping.map(completeAggregates(aggregation, row), (field, id) -> findById((long) id, field.getType()).orElse(null)));
+        }
+        return results;
+    }
+
+    /**
+     * @return the aggregation with a sum and a count in place of every average, which the shards can't average alone.
+     */
+    private static Aggregation partialAggregation(Aggregation aggregation) {
+        Aggregation partial = new Aggregation(aggregation.entityClass(), aggregation.groupBy(), List.of(), aggregation.filters());
+        for (Aggregation.Aggregate aggregate : aggregation.aggregates()) {
+            String field = aggregate.field();
+            partial = switch (aggregate.function()) {
+                case COUNT -> field == null ? partial.count() : partial.count(field);
+                case SUM -> partial.sum(field);
+                case MIN -> partial.min(field);
+                case MAX -> partial.max(field);
+                case AVG -> partial.sum(field).as("partial" + partial.aggregates().size()).count(field);
+            };
+            partial = partial.as("partial" + (partial.aggregates().size() - 1));
+        }
+        return partial;
+    }
+
+    private static Object mergeAggregates(Aggregation.Function function, Object merged, Object value) {
+        if (merged == null || value == null) {
+            return merged == null ? value : merged;
+        }
+        return switch (function) {
+            case COUNT, SUM -> add((Number) merged, (Number) value);
+            case MIN -> compare(merged, value) <= 0 ? merged : value;
+            case MAX -> compare(merged, value) >= 0 ? merged : value;
+            case AVG -> throw new IllegalStateException("Averages are merged from sums and counts");
+        };
+    }
+
+    /**
+     * @return the group values and aggregates of a merged row, with the averages divided from their sums and counts.
+     */
+    private static Object[] completeAggregates(Aggregation aggregation, Object[] row) {
+        int groups = aggregation.groupBy().size();
+        Object[] values = Arrays.copyOf(row, groups + aggregation.aggregates().size());
+        int column = groups;
+        for (int i = 0; i < aggregation.aggregates().size(); i++) {
+            if (aggregation.aggregates().get(i).function() == Aggregation.Function.AVG) {
+                Number sum = (Number) row[column];
+                Number count = (Number) row[column + 1];
+                values[groups + i] = sum == null || count.longValue() == 0 ? null : sum.doubleValue() / count.longValue();
+                column += 2;
+            } else {
+                values[groups + i] = row[column++];
+            }
+        }
+        return values;
+    }
+
+    private static Number add(Number a, Number b) {
+        if (a instanceof BigDecimal || b instanceof BigDecimal) {
+            return new BigDecimal(a.toString()).add(new BigDecimal(b.toString()));
+        }
+        if (a instanceof Double || a instanceof Float || b instanceof Double || b instanceof Float) {
+            return a.doubleValue() + b.doubleValue();
+        }
+        return a.longValue() + b.longValue();
+    }
+
+    /**
+     * Orders rows by their group values, nulls first, like the ORDER BY of {@link Dialect#sqlAggregateStatement}.
+     */
+    private static int compareGroups(Object[] a, Object[] b, int groups) {
+        for (int i = 0; i < groups; i++) {
+            int order = a[i] == null ? (b[i] == null ? 0 : -1) : b[i] == null ? 1 : compare(a[i], b[i]);
+            if (order != 0) {
+                return order;
+            }
+        }
+        return 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object a, Object b) {
+        return ((Comparable<Object>) a).compareTo(b);
+    }
+
+    @Override
+    public long recordsCount(Class<?> clss) {
+        List<Callable<Long>> tasks = new ArrayList<>();
+        for (ORManagerImpl shard : shards) {
+            tasks.add(() -> shard.recordsCount(clss));
+        }
+        return inParallel(tasks).stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Override
+    public void delete(Object... objects) {
+        for (Object object : objects) {
+            delete(object);
+        }
+    }
+
+    @Override
+    public <T> ImportReport importStream(Class<T> cls, Stream<T> entities) {
+        try (entities) {
+            return importStream(cls, entities.iterator(), ImportOptions.defaults());
+        }
+    }
+
+    @Override
+    public <T> ImportReport importStream(Class<T> cls, Iterator<T> entities, ImportOptions options) {
+        return importIntoShards(cls, entities, Function.identity(), options);
+    }
+
+    @Override
+    public <T> ImportReport importCsv(Class<T> cls, Path csvFile) {
+        return importCsv(cls, csvFile, ImportOptions.defaults());
+    }
+
+    /**
+     * Imports the file like {@link #importStream(Class, Iterator, ImportOptions)}; the file is never read by the DBs.
+     */
+    @Override
+    public <T> ImportReport importCsv(Class<T> cls, Path csvFile, ImportOptions options) {
+        try (CsvReader csvReader = new CsvReader(Files.newBufferedReader(csvFile, StandardCharsets.UTF_8))) {
+            CsvMapper<T> csvMapper = new CsvMapper<>(cls, csvReader.getHeader());
+            return importIntoShards(cls, csvReader, csvMapper::toEntity, options);
+        } catch (IOException e) {
+            ExceptionHandler.inputOutput(e);
+        }
+        return new ImportReport(0, 0, 0, List.of(), Duration.ZERO, false);
+    }
+
+    /**
+     * Reads the source in chunks of as many rows as a writer commits at once, splits every chunk by shard and
+     * imports the parts on all shards in parallel. The row numbers of the failed rows are those of the source.
+     */
+    private <R, T> ImportReport importIntoShards(Class<T> cls, Iterator<R> records, Function<R, T> parser,
+                                                 ImportOptions options) {
+        if (!entityAnnotationIsPresent(cls)) {
+            throw new EntityAnnotationNotFoundException(cls);
+        }
+        long startNanos = System.nanoTime();
+        int chunkSize = options.batchSize() * options.commitEveryBatches() * shards.size();
+        ImportOptions shardOptions = options.withProgressListener(options.progressEveryRows(), report -> {
+        });
+        long rowsRead = 0;
+        long rowsImported = 0;
+        long failedRows = 0;
+        long nextProgressAt = options.progressEveryRows();
+        boolean complete = true;
+        List<ImportReport.RowError> errors = new ArrayList<>();
+        while (records.hasNext()) {
+            List<List<T>> entitiesByShard = new ArrayList<>();
+            List<List<Long>> rowNumbersByShard = new ArrayList<>();
+            for (int i = 0; i < shards.size(); i++) {
+                entitiesByShard.add(new ArrayList<>());
+                rowNumbersByShard.add(new ArrayList<>());
+            }
+            for (int i = 0; i < chunkSize && records.hasNext(); i++) {
+                rowsRead++;
+                try {
+                    T entity = parser.apply(records.next());
+                    int shard = shardIndexFor(entity);
+                    entitiesByShard.get(shard).add(entity);
+                    rowNumbersByShard.get(shard).add(rowsRead);
+                } catch (RuntimeException e) {
+                    failedRows++;
+                    if (errors.size() < MAX_REPORTED_ERRORS) {
+                        errors.add(new ImportReport.RowError(rowsRead, e.getMessage()));
+                    }
+                }
+            }
+            List<Callable<ImportReport>> tasks = new ArrayList<>();
+            for (int i = 0; i < shards.size(); i++) {
+                ORManagerImpl shard = shards.get(i);
+                List<T> entities = entitiesByShard.get(i);
+                tasks.add(() -> shard.importStream(cls, entities.iterator(), shardOptions));
+            }
+            List<ImportReport> reports = inParallel(tasks);
+            for (int i = 0; i < reports.size(); i++) {
+                ImportReport report = reports.get(i);
+                rowsImported += report.rowsImported();
+                failedRows += report.failedRows();
+                complete &= report.complete();
+                for (ImportReport.RowError error : report.errors()) {
+                    if (errors.size() < MAX_REPORTED_ERRORS) {
+                        errors.add(new ImportReport.RowError(rowNumbersByShard.get(i).get((int) error.rowNumber() - 1),
+                                error.message()));
+                    }
+                }
+            }
+            if (rowsImported >= nextProgressAt) {
+                nextProgressAt = (rowsImported / options.progressEveryRows() + 1) * options.progressEveryRows();
+                options.progressListener().accept(new ImportReport(rowsRead, rowsImported, failedRows, List.copyOf(errors),
+                        Duration.ofNanos(System.nanoTime() - startNanos), false));
+            }
+        }
+        errors.sort(Comparator.comparingLong(ImportReport.RowError::rowNumber));
+        return new ImportReport(rowsRead, rowsImported, failedRows, List.copyOf(errors),
+                Duration.ofNanos(System.nanoTime() - startNanos), complete);
+    }
+
+    @Override
+    public <T> long export(Class<T> cls, OutputStream out, ExportFormat format) {
+        return export(cls, out, format, ExportOptions.defaults());
+    }
+
+    /**
+     * Exports the shards one after the other into the stream, with a single CSV header and a single gzip stream.
+     * The rows are in the order of the shards.
+     */
+    @Override
+    public <T> long export(Class<T> cls, OutputStream out, ExportFormat format, ExportOptions options) {
+        long rows = 0;
+        try {
+            GZIPOutputStream gzip = options.gzip() ? new GZIPOutputStream(out, 64 * 1024) : null;
+            OutputStream target = gzip != null ? gzip : out;
+            ExportOptions shardOptions = options.withGzip(false);
+            for (int i = 0; i < shards.size(); i++) {
+                OutputStream shardTarget = i > 0 && format == ExportFormat.CSV ? new HeaderSkippingOutputStream(target) : target;
+                rows += shards.get(i).export(cls, shardTarget, format, shardOptions);
+            }
+            if (gzip != null) {
+                gzip.finish();
+            }
+            target.flush();
+        } catch (IOException e) {
+            ExceptionHandler.inputOutput(e);
+        }
+        return rows;
+    }
+
+    /**
+     * Drops everything up to and including the first line break.
+     */
+    private static class HeaderSkippingOutputStream extends FilterOutputStream {
+        private boolean skipping = true;
+
+        HeaderSkippingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (skipping) {
+                skipping = b != '\n';
+            } else {
+                out.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int from = off;
+            while (skipping && from < off + len) {
+                skipping = b[from++] != '\n';
+            }
+            if (from < off + len) {
+                out.write(b, from, off + len - from);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /**
+     * Sets the same cache on all shards; the IDs are unique across them.
+     */
+    @Override
+    public void setEntityCache(EntityCache cache) {
+        for (ORManagerImpl shard : shards) {
+            shard.setEntityCache(cache);
+        }
+    }
+
+    /**
+     * Writes the snapshot of every shard in parallel, into the subdirectory shard-&lt;index&gt;.
+     */
+    @Override
+    public <T> SnapshotReport snapshot(Class<T> cls, Path directory) {
+        long startNanos = System.nanoTime();
+        List<Callable<SnapshotReport>> tasks = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            ORManagerImpl shard = shards.get(i);
+            Path shardDirectory = shardDirectory(directory, i);
+            tasks.add(() -> shard.snapshot(cls, shardDirectory));
+        }
+        long rows = inParallel(tasks).stream().mapToLong(SnapshotReport::rows).sum();
+        return new SnapshotReport(cls, rows, 0, Duration.ofNanos(System.nanoTime() - startNanos));
+    }
+
+    @Override
+    public List<SnapshotReport> warmUp(Path directory, Class<?>... classes) {
+        long startNanos = System.nanoTime();
+        List<Callable<List<SnapshotReport>>> tasks = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            ORManagerImpl shard = shards.get(i);
+            Path shardDirectory = shardDirectory(directory, i);
+            tasks.add(() -> shard.warmUp(shardDirectory, classes));
+        }
+        List<List<SnapshotReport>> shardReports = inParallel(tasks);
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - startNanos);
+        List<SnapshotReport> reports = new ArrayList<>();
+        for (int c = 0; c < classes.length; c++) {
+            long rows = 0;
+            long caughtUpRows = 0;
+            for (List<SnapshotReport> shardReport : shardReports) {
+                rows += shardReport.get(c).rows();
+                caughtUpRows += shardReport.get(c).caughtUpRows();
+            }
+            reports.add(new SnapshotReport(classes[c], rows, caughtUpRows, elapsed));
+        }
+        return reports;
+    }
+
+    private static Path shardDirectory(Path directory, int shard) {
+        return directory.resolve("shard-" + shard);
+    }
+
+    private ORManagerImpl shardFor(Object o) {
+        return shards.get(shardIndexFor(o));
+    }
+
+    /**
+     * @return the shard of the entity's ID, or for a new entity the shard of its @ManyToOne reference,
+     * of the hash of its @ShardKey, of the hash of its unique upsert key or else the next one in turn.
+     */
+    private int shardIndexFor(Object o) {
+        Serializable id = idOf(o);
+        if (id != null) {
+            return shardOf(id);
+        }
+        Object shardKey = null;
+        boolean hasShardKey = false;
+        for (Field declaredField : getEntityClass(o).getDeclaredFields()) {
+            if (declaredField.isAnnotationPresent(ManyToOne.class)) {
+                Object reference = fieldValue(declaredField, o);
+                Serializable referencedId = reference == null ? null : idOf(reference);
+                if (referencedId != null) {
+                    return shardOf(referencedId);
+                }
+            } else if (declaredField.isAnnotationPresent(ShardKey.class)) {
+                shardKey = fieldValue(declaredField, o);
+                hasShardKey = true;
+            }
+        }
+        if (hasShardKey && shardKey != null) {
+            return shardOfKey(shardKey);
+        }
+        Field upsertKeyField = getUpsertKeyField(getEntityClass(o));
+        Object upsertKey = upsertKeyField.isAnnotationPresent(Id.class) ? null : fieldValue(upsertKeyField, o);
+        if (upsertKey != null) {
+            return shardOfKey(upsertKey);
+        }
+        return Math.floorMod(nextShard.getAndIncrement(), shards.size());
+    }
+
+    /**
+     * Like {@link #shardIndexFor(Object)}, making sure that a new entity upserted by a unique key lands on the
+     * shard of the row with that key, if there is one: on the shard of the hash of the key.
+     *
+     * @throws UnsupportedOperationException if the new entity has a unique upsert key, but its class is placed
+     *                                       by a @ManyToOne reference or another @ShardKey field.
+     */
+    private int shardIndexForUpsert(Object o) {
+        Class<?> cls = getEntityClass(o);
+        Field upsertKeyField = getUpsertKeyField(cls);
+        if (idOf(o) == null && !upsertKeyField.isAnnotationPresent(Id.class)) {
+            for (Field declaredField : cls.getDeclaredFields()) {
+                if (declaredField.isAnnotationPresent(ManyToOne.class)
+                        || (declaredField.isAnnotationPresent(ShardKey.class) && !declaredField.equals(upsertKeyField))) {
+                    throw new UnsupportedOperationException("Can't upsert a new " + cls.getName() + " by "
+                            + upsertKeyField.getName() + " on shards, as " + declaredField.getName() + " chooses its shard");
+                }
+            }
+        }
+        return shardIndexFor(o);
+    }
+
+    /**
+     * @param shardKey Value of a @ShardKey field.
+     * @return the shard chosen by the hash code of the value, spread with a multiplicative hash.
+     * Strings, numbers and dates have the same hash code in every JVM, so a value always lands on the same shard.
+     */
+    int shardOfKey(Object shardKey) {
+        long hash = shardKey.hashCode() * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(hash ^ (hash >>> 32), (long) shards.size());
+    }
+
+    private static Serializable idOf(Object o) {
+        if (o instanceof EntityProxy proxy) {
+            return proxy.getLazyInitializer().getId();
+        }
+        return (Serializable) fieldValue(idField(o.getClass()), o);
+    }
+
+    private static Field idField(Class<?> cls) {
+        for (Field declaredField : cls.getDeclaredFields()) {
+            if (declaredField.isAnnotationPresent(Id.class)) {
+                declaredField.setAccessible(true);
+                return declaredField;
+            }
+        }
+        throw new IllegalArgumentException("No @Id field in " + cls);
+    }
+
+    private static Object fieldValue(Field field, Object o) {
+        try {
+            field.setAccessible(true);
+            return field.get(o);
+        } catch (IllegalAccessException e) {
+            ExceptionHandler.illegalAccess(e);
+        }
+        return null;
+    }
+
+    /**
+     * Stops the shard threads. The data sources stay open, as they aren't created here.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.atWarn().log("The shard threads didn't stop within a minute");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs the tasks on the shard threads and waits for all of them.
+     *
+     * @return the results in the order of the tasks.
+     */
+    private <R> List<R> inParallel(List<Callable<R>> tasks) {
+        try {
+            List<R> results = new ArrayList<>();
+            for (Future<R> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the shards", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException ?
+                    runtimeException : new IllegalStateException(e.getCause());
+        }
+    }
+}
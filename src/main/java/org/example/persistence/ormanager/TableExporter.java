@@ -0,0 +1,211 @@
+package org.example.persistence.ormanager;
+
+import org.example.exceptionhandler.ExceptionHandler;
+import org.example.persistence.annotations.Id;
+import org.example.persistence.annotations.ManyToOne;
+import org.example.persistence.bulk.ExportFormat;
+import org.example.persistence.bulk.ExportOptions;
+import org.example.persistence.sql.Dialect;
+import org.example.persistence.sql.SQLLogger;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.example.persistence.proxy.EntityProxyFactory.getEntityClass;
+import static org.example.persistence.utilities.AnnotationUtils.getColumnName;
+import static org.example.persistence.utilities.AnnotationUtils.isCollection;
+
+/**
+ * Writes a table to a stream while reading it from a forward-only result set, so that only the rows of one fetch
+ * are in memory whatever the size of the table.
+ *
+ * @param <T> Entity type.
+ */
+class TableExporter<T> {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Reads the entity from the current row of a SELECT * result set.
+     */
+    @FunctionalInterface
+    interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    private final DataSource dataSource;
+    private final Dialect dialect;
+    private final SQLLogger sqlLogger;
+    private final Class<T> cls;
+    private final RowMapper<T> rowMapper;
+
+    TableExporter(DataSource dataSource, Dialect dialect, SQLLogger sqlLogger, Class<T> cls, RowMapper<T> rowMapper) {
+        this.dataSource = dataSource;
+        this.dialect = dialect;
+        this.sqlLogger = sqlLogger;
+        this.cls = cls;
+        this.rowMapper = rowMapper;
+    }
+
+    /**
+     * @param out     Receives the export; it is flushed but not closed.
+     * @param format  Text format.
+     * @param options Columns, materialization, compression and fetch size.
+     * @return the number of exported rows.
+     */
+    long export(OutputStream out, ExportFormat format, ExportOptions options) {
+        Map<String, Field> fields = exportedFields(options.columnNames());
+        List<String> columnNames = new ArrayList<>(fields.keySet());
+        String sql = options.materializeEntities() ? dialect.sqlSelectAllStatement(cls)
+                : dialect.sqlSelectColumnsStatement(cls, columnNames);
+        long rows = 0;
+        long start = sqlLogger.start();
+        try (Connection connection = dataSource.getConnection();
+             Writer writer = writer(out, options.gzip())) {
+            boolean autoCommit = connection.getAutoCommit();
+            // PostgreSQL only fetches in portions inside a transaction
+            connection.setAutoCommit(false);
+            try (PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                ps.setFetchSize(options.fetchSize());
+                try (ResultSet rs = ps.executeQuery()) {
+                    format.writeHeader(writer, columnNames);
+                    Object[] values = new Object[columnNames.size()];
+                    int[] sqlTypes = sqlTypes(rs.getMetaData());
+                    while (rs.next()) {
+                        if (options.materializeEntities()) {
+                            readFieldValues(rowMapper.map(rs), fields.values(), values);
+                        } else {
+                            readColumnValues(rs, sqlTypes, values);
+                        }
+                        format.writeRow(writer, columnNames, values);
+                        rows++;
+                    }
+                }
+            } finally {
+                connection.rollback();
+                connection.setAutoCommit(autoCommit);
+            }
+            sqlLogger.log(sql, new Object[0], rows, start);
+        } catch (SQLException e) {
+            ExceptionHandler.sql(e);
+        } catch (IOException e) {
+            ExceptionHandler.inputOutput(e);
+        } catch (IllegalAccessException e) {
+            ExceptionHandler.illegalAccess(e);
+        }
+        return rows;
+    }
+
+    /**
+     * @param columnNames Requested columns, empty for all.
+     * @return the fields of the exported columns by column name, in export order.
+     */
+    private Map<String, Field> exportedFields(List<String> columnNames) {
+        Map<String, Field> fieldsByColumn = new LinkedHashMap<>();
+        for (Field declaredField : cls.getDeclaredFields()) {
+            if (!isCollection(declaredField)) {
+                declaredField.setAccessible(true);
+                fieldsByColumn.put(getColumnName(declaredField), declaredField);
+            }
+        }
+        if (columnNames.isEmpty()) {
+            return fieldsByColumn;
+        }
+        Map<String, Field> projected = new LinkedHashMap<>();
+        for (String columnName : columnNames) {
+            Field field = fieldsByColumn.entrySet().stream()
+                    .filter(entry -> entry.getKey().equalsIgnoreCase(columnName))
+                    .map(Map.Entry::getValue)
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("No column " + columnName + " in " + cls.getSimpleName()));
+            projected.put(getColumnName(field), field);
+        }
+        return projected;
+    }
+
+    private static int[] sqlTypes(ResultSetMetaData metaData) throws SQLException {
+        int[] sqlTypes = new int[metaData.getColumnCount()];
+        for (int i = 0; i < sqlTypes.length; i++) {
+            sqlTypes[i] = metaData.getColumnType(i + 1);
+        }
+        return sqlTypes;
+    }
+
+    private static void readColumnValues(ResultSet rs, int[] sqlTypes, Object[] values) throws SQLException {
+        for (int i = 0; i < values.length; i++) {
+            values[i] = switch (sqlTypes[i]) {
+                case Types.DATE -> rs.getObject(i + 1, LocalDate.class);
+                case Types.TIMESTAMP -> rs.getObject(i + 1, LocalDateTime.class);
+                default -> rs.getObject(i + 1);
+            };
+        }
+    }
+
+    private static void readFieldValues(Object entity, Iterable<Field> fields, Object[] values) throws IllegalAccessException {
+        int i = 0;
+        for (Field field : fields) {
+            Object value = field.get(entity);
+            if (value != null && field.isAnnotationPresent(ManyToOne.class)) {
+                value = idOf(value);
+            }
+            values[i++] = value;
+        }
+    }
+
+    private static Object idOf(Object reference) throws IllegalAccessException {
+        for (Field declaredField : getEntityClass(reference).getDeclaredFields()) {
+            if (declaredField.isAnnotationPresent(Id.class)) {
+                declaredField.setAccessible(true);
+                return declaredField.get(reference);
+            }
+        }
+        return null;
+    }
+
+    private static Writer writer(OutputStream out, boolean gzip) throws IOException {
+        OutputStream target = new UnclosedOutputStream(out);
+        if (gzip) {
+            target = new GZIPOutputStream(target, BUFFER_SIZE);
+        }
+        return new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Lets the writer be closed, which finishes the gzip stream, without closing the stream of the caller.
+     */
+    private static class UnclosedOutputStream extends FilterOutputStream {
+
+        UnclosedOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.persistence.proxy;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.function.BiFunction;
+
+/**
+ * The not yet loaded lists of one @OneToMany or @ManyToMany field, for all the entities read by one query.
+ * Accessing any of the lists loads all of them with a single query for the whole batch,
+ * so reading the collections of N entities costs one round-trip instead of N.
+ */
+public class CollectionBatch {
+    private final Field field;
+    private final BiFunction<Field, List<Object>, Map<Object, List<Object>>> loader;
+    private List<PersistentList<Object>> pending = new ArrayList<>();
+
+    /**
+     * @param field  The @OneToMany or @ManyToMany field.
+     * @param loader Given the field and the owning entities, returns the elements of each owner's list
+     *               in a map compared by identity, as the owners' equals may look at the lists themselves.
+     */
+    public CollectionBatch(Field field, BiFunction<Field, List<Object>, Map<Object, List<Object>>> loader) {
+        this.field = field;
+        this.loader = loader;
+    }
+
+    /**
+     * @param owner Entity the list belongs to.
+     * @return new list which is loaded together with the rest of the batch.
+     */
+    public synchronized <E> List<E> newList(Object owner) {
+        PersistentList<Object> list = new PersistentList<>(owner, this);
+        pending.add(list);
+        return (List<E>) list;
+    }
+
+    synchronized void initialize() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<PersistentList<Object>> lists = pending;
+        pending = new ArrayList<>();
+        List<Object> owners = new ArrayList<>(lists.size());
+        for (PersistentList<Object> list : lists) {
+            owners.add(list.getOwner());
+        }
+        Map<Object, List<Object>> elementsByOwner = loader.apply(field, owners);
+        for (PersistentList<Object> list : lists) {
+            List<Object> elements = elementsByOwner.get(list.getOwner());
+            list.setElements(elements != null ? elements : new ArrayList<>());
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package org.example.persistence.proxy;
+
+/**
+ * Implemented by the generated subclasses standing in for lazily loaded entities.
+ */
+public interface EntityProxy {
+
+    LazyInitializer getLazyInitializer();
+}
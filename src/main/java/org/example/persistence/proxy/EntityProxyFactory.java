@@ -0,0 +1,131 @@
+package org.example.persistence.proxy;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.implementation.FieldAccessor;
+import net.bytebuddy.implementation.MethodDelegation;
+import org.example.exceptionhandler.ExceptionHandler;
+import org.example.exceptionhandler.IdAnnotationNotFoundException;
+import org.example.persistence.annotations.Id;
+
+import java.io.Serializable;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static net.bytebuddy.matcher.ElementMatchers.*;
+
+/**
+ * Creates lazy loading proxies for entities: generated subclasses which only know the entity's ID
+ * and load the rest of it on the first method call, except for the ID getter.
+ * The proxy classes are generated once per entity class, in the entity's own package,
+ * so entities with package-private no-args constructors can be proxied as well.
+ */
+public class EntityProxyFactory {
+    static final String INITIALIZER_FIELD = "$lazyInitializer";
+    private static final Map<Class<?>, Class<?>> proxyClasses = new ConcurrentHashMap<>();
+
+    private EntityProxyFactory() {
+    }
+
+    /**
+     * @param entityClass Class of the referenced entity.
+     * @param id          ID of the referenced entity.
+     * @param loader      Finds the entity by ID when the proxy is first used.
+     * @return an uninitialized proxy with only its ID field set.
+     */
+    public static <T> T createProxy(Class<T> entityClass, Serializable id, Function<Serializable, Optional<?>> loader) {
+        T proxy = null;
+        try {
+            Constructor<?> constructor = proxyClasses.computeIfAbsent(entityClass, EntityProxyFactory::generateProxyClass)
+                    .getDeclaredConstructor();
+            constructor.setAccessible(true);
+            proxy = entityClass.cast(constructor.newInstance());
+            Field idField = getIdField(entityClass);
+            idField.set(proxy, convertId(id, idField.getType()));
+            Field initializerField = proxy.getClass().getDeclaredField(INITIALIZER_FIELD);
+            initializerField.setAccessible(true);
+            initializerField.set(proxy, new LazyInitializer(entityClass, idField, id, loader));
+        } catch (NoSuchMethodException | InstantiationException | InvocationTargetException e) {
+            ExceptionHandler.newInstance(e);
+        } catch (IllegalAccessException | NoSuchFieldException e) {
+            ExceptionHandler.illegalAccess(e);
+        }
+        return proxy;
+    }
+
+    /**
+     * @param o Entity or proxy.
+     * @return the entity class, also when the object is a proxy.
+     */
+    public static Class<?> getEntityClass(Object o) {
+        return o instanceof EntityProxy proxy ? proxy.getLazyInitializer().getEntityClass() : o.getClass();
+    }
+
+    public static boolean isUninitializedProxy(Object o) {
+        return o instanceof EntityProxy proxy && !proxy.getLazyInitializer().isInitialized();
+    }
+
+    /**
+     * Loads the state of the object if it is an uninitialized proxy, otherwise does nothing.
+     *
+     * @param o Entity or proxy.
+     */
+    public static void initialize(Object o) {
+        if (o instanceof EntityProxy proxy) {
+            proxy.getLazyInitializer().initialize(o);
+        }
+    }
+
+    private static Class<?> generateProxyClass(Class<?> entityClass) {
+        try {
+            var builder = new ByteBuddy()
+                    .subclass(entityClass)
+                    .name(entityClass.getName() + "$LazyProxy")
+                    .defineField(INITIALIZER_FIELD, LazyInitializer.class, Visibility.PRIVATE)
+                    .implement(EntityProxy.class)
+                    .method(named("getLazyInitializer").and(takesArguments(0)))
+                    .intercept(FieldAccessor.ofField(INITIALIZER_FIELD))
+                    .method(not(isDeclaredBy(EntityProxy.class)).and(not(named("finalize"))))
+                    .intercept(MethodDelegation.withDefaultConfiguration()
+                            .filter(named("intercept"))
+                            .to(LazyLoadingInterceptor.class));
+            if (Serializable.class.isAssignableFrom(entityClass)) {
+                builder = builder.defineMethod("writeReplace", Object.class, Visibility.PROTECTED)
+                        .intercept(MethodDelegation.withDefaultConfiguration()
+                                .filter(named("writeReplace"))
+                                .to(LazyLoadingInterceptor.class));
+            }
+            return builder.make()
+                    .load(entityClass.getClassLoader(), ClassLoadingStrategy.UsingLookup
+                            .of(MethodHandles.privateLookupIn(entityClass, MethodHandles.lookup())))
+                    .getLoaded();
+        } catch (IllegalAccessException e) {
+            ExceptionHandler.illegalAccess(e);
+            throw new IllegalStateException("Cannot define a proxy class for " + entityClass, e);
+        }
+    }
+
+    private static Field getIdField(Class<?> entityClass) {
+        Field idField = Arrays.stream(entityClass.getDeclaredFields())
+                .filter(f -> f.isAnnotationPresent(Id.class))
+                .findFirst()
+                .orElseThrow(() -> new IdAnnotationNotFoundException(entityClass));
+        idField.setAccessible(true);
+        return idField;
+    }
+
+    private static Object convertId(Serializable id, Class<?> idType) {
+        if (id instanceof Number number) {
+            return idType == Integer.class || idType == int.class ? (Object) number.intValue() : (Object) number.longValue();
+        }
+        return id;
+    }
+}
@@ -0,0 +1,97 @@
+package org.example.persistence.proxy;
+
+import org.example.exceptionhandler.EntityNotFoundException;
+import org.example.exceptionhandler.ExceptionHandler;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Holds the ID of the entity behind a proxy and loads the entity the first time the proxy is used.
+ * The loaded state is copied into the proxy itself, so fields read by reflection see the same values as the getters.
+ */
+public class LazyInitializer {
+    private final Class<?> entityClass;
+    private final Serializable id;
+    private final String idGetterName;
+    private final Function<Serializable, Optional<?>> loader;
+    private volatile boolean initialized;
+
+    LazyInitializer(Class<?> entityClass, Field idField, Serializable id, Function<Serializable, Optional<?>> loader) {
+        this.entityClass = entityClass;
+        this.id = id;
+        this.idGetterName = "get" + Character.toUpperCase(idField.getName().charAt(0)) + idField.getName().substring(1);
+        this.loader = loader;
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    public Serializable getId() {
+        return id;
+    }
+
+    public boolean isInitialized() {
+        return initialized;
+    }
+
+    boolean isIdGetter(String methodName) {
+        return idGetterName.equals(methodName);
+    }
+
+    /**
+     * Loads the entity, once, and copies its state into the proxy.
+     *
+     * @param proxy The proxy this initializer belongs to.
+     */
+    public synchronized void initialize(Object proxy) {
+        if (initialized) {
+            return;
+        }
+        Object target = loader.apply(id)
+                .orElseThrow(() -> new EntityNotFoundException(entityClass.getSimpleName() + " with id " + id));
+        copyState(target, proxy);
+        initialized = true;
+    }
+
+    /**
+     * @param proxy The proxy this initializer belongs to.
+     * @return a plain instance of the entity class with the state of the initialized proxy.
+     */
+    Object toPlainEntity(Object proxy) {
+        initialize(proxy);
+        Object plain = null;
+        try {
+            Constructor<?> constructor = entityClass.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            plain = constructor.newInstance();
+            copyState(proxy, plain);
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException |
+                 InvocationTargetException e) {
+            ExceptionHandler.newInstance(e);
+        }
+        return plain;
+    }
+
+    private void copyState(Object from, Object to) {
+        try {
+            for (Class<?> cls = entityClass; cls != Object.class; cls = cls.getSuperclass()) {
+                for (Field field : cls.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    field.set(to, field.get(from));
+                }
+            }
+        } catch (IllegalAccessException e) {
+            ExceptionHandler.illegalAccess(e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package org.example.persistence.proxy;
+
+import net.bytebuddy.implementation.bind.annotation.*;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+
+/**
+ * Method bodies of the generated proxies. Public only because the proxies live in the entities' packages.
+ */
+public class LazyLoadingInterceptor {
+
+    private LazyLoadingInterceptor() {
+    }
+
+    @RuntimeType
+    public static Object intercept(@This Object proxy,
+                                   @Origin Method method,
+                                   @SuperCall Callable<?> superCall,
+                                   @FieldValue(EntityProxyFactory.INITIALIZER_FIELD) LazyInitializer initializer) throws Exception {
+        if (!initializer.isInitialized() && !initializer.isIdGetter(method.getName())) {
+            initializer.initialize(proxy);
+        }
+        return superCall.call();
+    }
+
+    /**
+     * Serializing a proxy writes the plain entity, so the stream can be read where the proxy class doesn't exist.
+     */
+    public static Object writeReplace(@This Object proxy,
+                                      @FieldValue(EntityProxyFactory.INITIALIZER_FIELD) LazyInitializer initializer) {
+        return initializer.toPlainEntity(proxy);
+    }
+}
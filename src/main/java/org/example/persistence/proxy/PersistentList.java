@@ -0,0 +1,96 @@
+package org.example.persistence.proxy;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The list set into a @OneToMany or @ManyToMany field of an entity read from the DB.
+ * Its elements are read on first access, together with the lists of all entities
+ * that were read by the same query (see {@link CollectionBatch}).
+ * It keeps a snapshot of the elements as read, so that only the changes since are written.
+ *
+ * @param <E> Type of the entities on the many side.
+ */
+public class PersistentList<E> extends AbstractList<E> implements Serializable {
+    private final transient Object owner;
+    private transient CollectionBatch batch;
+    private List<E> elements;
+    private transient List<E> snapshot;
+
+    PersistentList(Object owner, CollectionBatch batch) {
+        this.owner = owner;
+        this.batch = batch;
+    }
+
+    Object getOwner() {
+        return owner;
+    }
+
+    public boolean isInitialized() {
+        return elements != null;
+    }
+
+    void setElements(List<E> elements) {
+        this.elements = elements;
+        this.snapshot = new ArrayList<>(elements);
+        this.batch = null;
+    }
+
+    /**
+     * @return the elements as read from the DB or as last written, empty for a list not loaded yet.
+     */
+    public List<E> getSnapshot() {
+        return snapshot == null ? List.of() : snapshot;
+    }
+
+    /**
+     * Records the current elements as written to the DB.
+     */
+    public void takeSnapshot() {
+        snapshot = new ArrayList<>(elements());
+    }
+
+    private List<E> elements() {
+        CollectionBatch pendingBatch = batch;
+        if (elements == null && pendingBatch != null) {
+            pendingBatch.initialize();
+        }
+        return elements;
+    }
+
+    @Override
+    public E get(int index) {
+        return elements().get(index);
+    }
+
+    @Override
+    public int size() {
+        return elements().size();
+    }
+
+    @Override
+    public E set(int index, E element) {
+        return elements().set(index, element);
+    }
+
+    @Override
+    public void add(int index, E element) {
+        elements().add(index, element);
+        modCount++;
+    }
+
+    @Override
+    public E remove(int index) {
+        modCount++;
+        return elements().remove(index);
+    }
+
+    /**
+     * A serialized list is written as a plain ArrayList with the loaded elements.
+     */
+    private Object writeReplace() {
+        return new ArrayList<>(elements());
+    }
+}
@@ -0,0 +1,198 @@
+package org.example.persistence.query;
+
+import org.example.persistence.utilities.AnnotationUtils;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Aggregates computed by the database over the rows of an entity's table, optionally filtered and grouped, e.g.
+ * the average age of the students per academy:
+ * <pre>
+ * Aggregation.of(Student.class).groupBy("academy").avg("age").where("age", Operator.GREATER, 18)
+ * </pre>
+ * Fields are given by their Java names and read from their columns, like @Column and @ManyToOne name them.
+ * A result row has the group fields, labelled with their names, then the aggregates, labelled with their labels.
+ * Every method returns a new aggregation.
+ *
+ * @param entityClass Entity whose table is aggregated.
+ * @param groupBy     Fields the rows are grouped and ordered by.
+ * @param aggregates  Computed values.
+ * @param filters     Conditions all aggregated rows meet.
+ */
+public record Aggregation(Class<?> entityClass, List<String> groupBy, List<Aggregate> aggregates, List<Filter> filters) {
+
+    public enum Function {
+        COUNT, SUM, MIN, MAX, AVG
+    }
+
+    public enum Operator {
+        EQUALS("="), NOT_EQUALS("<>"), LESS("<"), LESS_OR_EQUAL("<="), GREATER(">"), GREATER_OR_EQUAL(">="), LIKE("LIKE");
+
+        private final String sql;
+
+        Operator(String sql) {
+            this.sql = sql;
+        }
+
+        public String sql() {
+            return sql;
+        }
+    }
+
+    /**
+     * @param function Aggregate function.
+     * @param field    Aggregated field, or null for COUNT(*).
+     * @param label    Label of the value in the result, written into the SQL as the column alias.
+     * @throws IllegalArgumentException if the label isn't a Java identifier.
+     */
+    public record Aggregate(Function function, String field, String label) {
+        public Aggregate {
+            if (!isIdentifier(label)) {
+                throw new IllegalArgumentException("Label " + label + " is not a Java identifier");
+            }
+        }
+    }
+
+    /**
+     * @param field    Compared field.
+     * @param operator Comparison.
+     * @param value    Value the field is compared with, bound as a parameter.
+     */
+    public record Filter(String field, Operator operator, Object value) {
+    }
+
+    /**
+     * @param entityClass Entity whose table is aggregated.
+     * @return an aggregation of all rows, without groups or aggregates yet.
+     * @throws IllegalArgumentException if the class isn't an entity.
+     */
+    public static Aggregation of(Class<?> entityClass) {
+        if (!AnnotationUtils.entityAnnotationIsPresent(entityClass)) {
+            throw new IllegalArgumentException(entityClass.getName() + " is not an @Entity");
+        }
+        return new Aggregation(entityClass, List.of(), List.of(), List.of());
+    }
+
+    /**
+     * Counts the rows, labelled "count".
+     */
+    public Aggregation count() {
+        return with(new Aggregate(Function.COUNT, null, "count"));
+    }
+
+    /**
+     * Counts the rows where the field isn't null, labelled "count" and the field name, e.g. "countAge".
+     */
+    public Aggregation count(String field) {
+        return with(Function.COUNT, field);
+    }
+
+    public Aggregation sum(String field) {
+        return with(Function.SUM, field);
+    }
+
+    public Aggregation min(String field) {
+        return with(Function.MIN, field);
+    }
+
+    public Aggregation max(String field) {
+        return with(Function.MAX, field);
+    }
+
+    /**
+     * Averages the field as a double, also for integer columns.
+     */
+    public Aggregation avg(String field) {
+        return with(Function.AVG, field);
+    }
+
+    /**
+     * Relabels the last added aggregate.
+     *
+     * @param label Label matching a property of the result type. It is written into the SQL as the column alias.
+     * @throws IllegalArgumentException if the label isn't a Java identifier.
+     */
+    public Aggregation as(String label) {
+        if (aggregates.isEmpty()) {
+            throw new IllegalStateException("No aggregate to label");
+        }
+        List<Aggregate> relabelled = new ArrayList<>(aggregates);
+        Aggregate last = relabelled.remove(relabelled.size() - 1);
+        relabelled.add(new Aggregate(last.function(), last.field(), label));
+        return new Aggregation(entityClass, groupBy, List.copyOf(relabelled), filters);
+    }
+
+    public Aggregation groupBy(String... fields) {
+        List<String> grouped = new ArrayList<>(groupBy);
+        for (String field : fields) {
+            field(field);
+            grouped.add(field);
+        }
+        return new Aggregation(entityClass, List.copyOf(grouped), aggregates, filters);
+    }
+
+    /**
+     * Aggregates only the rows whose field compares to the value, in addition to the other filters.
+     * A null value matches no row.
+     */
+    public Aggregation where(String field, Operator operator, Object value) {
+        field(field);
+        List<Filter> filtered = new ArrayList<>(filters);
+        filtered.add(new Filter(field, operator, value));
+        return new Aggregation(entityClass, groupBy, aggregates, List.copyOf(filtered));
+    }
+
+    /**
+     * @return the labels of the result columns: the group fields, then the aggregates.
+     */
+    public List<String> labels() {
+        List<String> labels = new ArrayList<>(groupBy);
+        aggregates.forEach(aggregate -> labels.add(aggregate.label()));
+        return labels;
+    }
+
+    /**
+     * @return the filter values, in the order of their placeholders.
+     */
+    public List<Object> parameters() {
+        return filters.stream().map(Filter::value).toList();
+    }
+
+    /**
+     * @param name Name of a field of the entity.
+     * @return the field, whose column the aggregation reads.
+     * @throws IllegalArgumentException if the entity has no such column field.
+     */
+    public Field field(String name) {
+        try {
+            Field field = entityClass.getDeclaredField(name);
+            if (AnnotationUtils.isCollection(field)) {
+                throw new IllegalArgumentException(name + " of " + entityClass.getName() + " is not a column");
+            }
+            return field;
+        } catch (NoSuchFieldException e) {
+            throw new IllegalArgumentException("No field " + name + " in " + entityClass.getName());
+        }
+    }
+
+    private static boolean isIdentifier(String label) {
+        if (label == null || label.isEmpty() || !Character.isJavaIdentifierStart(label.charAt(0))) {
+            return false;
+        }
+        return label.chars().skip(1).allMatch(Character::isJavaIdentifierPart);
+    }
+
+    private Aggregation with(Function function, String field) {
+        field(field);
+        return with(new Aggregate(function, field, function.name().toLowerCase()
+                + Character.toUpperCase(field.charAt(0)) + field.substring(1)));
+    }
+
+    private Aggregation with(Aggregate aggregate) {
+        List<Aggregate> added = new ArrayList<>(aggregates);
+        added.add(aggregate);
+        return new Aggregation(entityClass, groupBy, List.copyOf(added), filters);
+    }
+}
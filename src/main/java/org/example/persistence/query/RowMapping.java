@@ -0,0 +1,331 @@
+package org.example.persistence.query;
+
+import org.example.persistence.annotations.ManyToOne;
+import org.example.persistence.utilities.AnnotationUtils;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Plan mapping the rows of one query to objects of a target class: for every column of the result, the property
+ * it sets and how it is read. The plan is built from the labels in the {@link ResultSetMetaData} of the first
+ * execution of the query and cached per SQL and target class, so later executions map the rows without
+ * inspecting the metadata.
+ * <p>
+ * The target can be:
+ * <ul>
+ *     <li>a class with a no-args constructor, an entity or not: a column sets the field whose @Column or
+ *     @ManyToOne name, or else whose name, equals its label, ignoring case; a @ManyToOne column holds the ID
+ *     of the referenced entity;</li>
+ *     <li>a record: the columns are matched to the components the same way and passed to the canonical
+ *     constructor, components without a column get null, 0 or false; an entity component gets the entity
+ *     with the ID in its column;</li>
+ *     <li>String, a boxed primitive, BigDecimal, LocalDate or LocalDateTime: the first column is read.</li>
+ * </ul>
+ * Columns without a property are skipped. Plans are kept for the life of the JVM, so SQL should take its values
+ * as parameters instead of inlining them. A plan has no state besides its columns and can be shared between threads.
+ */
+public class RowMapping<T> {
+    private static final Map<Key, RowMapping<?>> plans = new ConcurrentHashMap<>();
+
+    private final Class<T> target;
+    private final Constructor<T> constructor;
+    private final boolean record;
+    private final boolean scalar;
+    private final int[] columns;
+    private final Field[] fields;
+    private final int[] components;
+    private final Kind[] kinds;
+    private final Object[] componentDefaults;
+
+    private record Key(String sql, Class<?> target) {
+    }
+
+    private enum Kind {
+        STRING, LONG, INTEGER, BOOLEAN, DOUBLE, BIG_DECIMAL, LOCAL_DATE, LOCAL_DATE_TIME, REFERENCE, OBJECT
+    }
+
+    /**
+     * Source of the column values of one row.
+     */
+    private interface Row {
+        Object get(int column, Kind kind, Class<?> type) throws SQLException;
+    }
+
+    private RowMapping(Class<T> target, String[] labels) {
+        this.target = target;
+        this.record = target.isRecord();
+        this.scalar = isScalar(target);
+        List<Integer> mappedColumns = new ArrayList<>();
+        List<Field> mappedFields = new ArrayList<>();
+        List<Integer> mappedComponents = new ArrayList<>();
+        List<Kind> mappedKinds = new ArrayList<>();
+        if (scalar) {
+            this.constructor = null;
+            this.componentDefaults = null;
+            mappedColumns.add(1);
+            mappedKinds.add(kindOf(target));
+        } else if (record) {
+            RecordComponent[] recordComponents = target.getRecordComponents();
+            Class<?>[] types = Arrays.stream(recordComponents).map(RecordComponent::getType).toArray(Class<?>[]::new);
+            this.constructor = constructor(target, types);
+            this.componentDefaults = new Object[recordComponents.length];
+            for (int i = 0; i < recordComponents.length; i++) {
+                componentDefaults[i] = defaultValue(types[i]);
+            }
+            for (int column = 1; column <= labels.length; column++) {
+                for (int i = 0; i < recordComponents.length; i++) {
+                    Field field = recordField(target, recordComponents[i]);
+                    if (matches(labels[column - 1], field) && !mappedComponents.contains(i)) {
+                        mappedColumns.add(column);
+                        mappedFields.add(field);
+                        mappedComponents.add(i);
+                        mappedKinds.add(AnnotationUtils.entityAnnotationIsPresent(types[i]) ? Kind.REFERENCE : kindOf(types[i]));
+                        break;
+                    }
+                }
+            }
+        } else {
+            this.constructor = constructor(target);
+            this.componentDefaults = null;
+            List<Field> properties = new ArrayList<>();
+            for (Field declaredField : target.getDeclaredFields()) {
+                if (!AnnotationUtils.isCollection(declaredField) && !declaredField.isSynthetic()
+                        && !Modifier.isStatic(declaredField.getModifiers())) {
+                    declaredField.setAccessible(true);
+                    properties.add(declaredField);
+                }
+            }
+            for (int column = 1; column <= labels.length; column++) {
+                for (Field property : properties) {
+                    if (matches(labels[column - 1], property) && !mappedFields.contains(property)) {
+                        mappedColumns.add(column);
+                        mappedFields.add(property);
+                        mappedKinds.add(property.isAnnotationPresent(ManyToOne.class) ? Kind.REFERENCE : kindOf(property.getType()));
+                        break;
+                    }
+                }
+            }
+        }
+        this.columns = mappedColumns.stream().mapToInt(Integer::intValue).toArray();
+        this.fields = mappedFields.toArray(new Field[0]);
+        this.components = mappedComponents.stream().mapToInt(Integer::intValue).toArray();
+        this.kinds = mappedKinds.toArray(new Kind[0]);
+    }
+
+    /**
+     * @param sql    The executed query.
+     * @param target Class of the mapped rows.
+     * @param rs     Result of the query; its metadata is read only if the plan isn't cached yet.
+     * @return the plan of the query, built on the first call and shared after that.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> RowMapping<T> of(String sql, Class<T> target, ResultSet rs) throws SQLException {
+        Key key = new Key(sql, target);
+        RowMapping<T> plan = (RowMapping<T>) plans.get(key);
+        if (plan == null) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            String[] labels = new String[metaData.getColumnCount()];
+            for (int column = 1; column <= labels.length; column++) {
+                labels[column - 1] = metaData.getColumnLabel(column);
+            }
+            plan = new RowMapping<>(target, labels);
+            RowMapping<T> concurrent = (RowMapping<T>) plans.putIfAbsent(key, plan);
+            plan = concurrent != null ? concurrent : plan;
+        }
+        return plan;
+    }
+
+    /**
+     * Like {@link #of(String, Class, ResultSet)}, for rows put together from other results.
+     *
+     * @param sql    The query the labels are the columns of.
+     * @param target Class of the mapped rows.
+     * @param labels Labels of the columns.
+     * @return the plan of the query, built on the first call and shared after that.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> RowMapping<T> of(String sql, Class<T> target, List<String> labels) {
+        return (RowMapping<T>) plans.computeIfAbsent(new Key(sql, target), key -> new RowMapping<>(target, labels.toArray(new String[0])));
+    }
+
+    public Class<T> getTarget() {
+        return target;
+    }
+
+    /**
+     * @return the result columns the plan reads, from 1.
+     */
+    public int[] getColumns() {
+        return columns.clone();
+    }
+
+    /**
+     * Maps the current row of the result.
+     *
+     * @param rs         Result positioned on a row.
+     * @param references Gives the entity of a @ManyToOne field from the ID in its column.
+     * @return a new object of the target class.
+     */
+    public T map(ResultSet rs, BiFunction<Field, Long, Object> references) throws SQLException {
+        return map((column, kind, type) -> read(rs, column, kind, type), references);
+    }
+
+    /**
+     * Maps a row of values, e.g. merged from the results of several databases.
+     *
+     * @param values     Values of the columns, from the first column.
+     * @param references Gives the entity of a @ManyToOne field from the ID in its column.
+     * @return a new object of the target class.
+     */
+    public T map(Object[] values, BiFunction<Field, Long, Object> references) {
+        try {
+            return map((column, kind, type) -> convert(values[column - 1], kind), references);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T map(Row row, BiFunction<Field, Long, Object> references) throws SQLException {
+        if (scalar) {
+            return (T) row.get(1, kinds[0], target);
+        }
+        try {
+            Object[] values = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                values[i] = row.get(columns[i], kinds[i], fields[i].getType());
+                if (kinds[i] == Kind.REFERENCE && values[i] != null) {
+                    values[i] = references.apply(fields[i], (Long) values[i]);
+                }
+            }
+            if (record) {
+                Object[] arguments = componentDefaults.clone();
+                for (int i = 0; i < columns.length; i++) {
+                    if (values[i] != null) {
+                        arguments[components[i]] = values[i];
+                    }
+                }
+                return constructor.newInstance(arguments);
+            }
+            T mapped = constructor.newInstance();
+            for (int i = 0; i < columns.length; i++) {
+                if (values[i] != null || !fields[i].getType().isPrimitive()) {
+                    fields[i].set(mapped, values[i]);
+                }
+            }
+            return mapped;
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Can't create " + target.getName(), e);
+        }
+    }
+
+    private static Object read(ResultSet rs, int column, Kind kind, Class<?> type) throws SQLException {
+        Object value = switch (kind) {
+            case STRING -> rs.getString(column);
+            case LONG, REFERENCE -> rs.getLong(column);
+            case INTEGER -> rs.getInt(column);
+            case BOOLEAN -> rs.getBoolean(column);
+            case DOUBLE -> rs.getDouble(column);
+            case BIG_DECIMAL -> rs.getBigDecimal(column);
+            case LOCAL_DATE -> {
+                Date date = rs.getDate(column);
+                yield date != null ? date.toLocalDate() : null;
+            }
+            case LOCAL_DATE_TIME -> {
+                Timestamp timestamp = rs.getTimestamp(column);
+                yield timestamp != null ? timestamp.toLocalDateTime() : null;
+            }
+            case OBJECT -> rs.getObject(column, type);
+        };
+        return rs.wasNull() ? null : value;
+    }
+
+    private static Object convert(Object value, Kind kind) {
+        if (value == null) {
+            return null;
+        }
+        return switch (kind) {
+            case STRING -> value.toString();
+            case LONG, REFERENCE -> ((Number) value).longValue();
+            case INTEGER -> ((Number) value).intValue();
+            case DOUBLE -> ((Number) value).doubleValue();
+            case BIG_DECIMAL -> value instanceof BigDecimal decimal ? decimal : new BigDecimal(value.toString());
+            case LOCAL_DATE -> value instanceof Date date ? date.toLocalDate() : value;
+            case LOCAL_DATE_TIME -> value instanceof Timestamp timestamp ? timestamp.toLocalDateTime() : value;
+            case BOOLEAN, OBJECT -> value;
+        };
+    }
+
+    private static Kind kindOf(Class<?> type) {
+        return switch (type.getSimpleName()) {
+            case "String" -> Kind.STRING;
+            case "Long", "long" -> Kind.LONG;
+            case "Integer", "int" -> Kind.INTEGER;
+            case "Boolean", "boolean" -> Kind.BOOLEAN;
+            case "Double", "double" -> Kind.DOUBLE;
+            case "BigDecimal" -> Kind.BIG_DECIMAL;
+            case "LocalDate" -> Kind.LOCAL_DATE;
+            case "LocalDateTime" -> Kind.LOCAL_DATE_TIME;
+            default -> Kind.OBJECT;
+        };
+    }
+
+    private static boolean isScalar(Class<?> type) {
+        return type == String.class || type == Long.class || type == Integer.class || type == Boolean.class
+                || type == Double.class || type == BigDecimal.class || type == LocalDate.class || type == LocalDateTime.class;
+    }
+
+    private static boolean matches(String label, Field field) {
+        return label.equalsIgnoreCase(AnnotationUtils.getColumnName(field)) || label.equalsIgnoreCase(field.getName());
+    }
+
+    private static Field recordField(Class<?> target, RecordComponent component) {
+        try {
+            return target.getDeclaredField(component.getName());
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException("No field of the component " + component, e);
+        }
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        return switch (type.getSimpleName()) {
+            case "long" -> 0L;
+            case "int" -> 0;
+            case "boolean" -> false;
+            case "double" -> 0.0;
+            case "float" -> 0f;
+            case "short" -> (short) 0;
+            case "byte" -> (byte) 0;
+            case "char" -> '\0';
+            default -> null;
+        };
+    }
+
+    private static <T> Constructor<T> constructor(Class<T> target, Class<?>... parameterTypes) {
+        try {
+            Constructor<T> constructor = target.getDeclaredConstructor(parameterTypes);
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(target.getName() + " has no constructor to map rows to", e);
+        }
+    }
+}
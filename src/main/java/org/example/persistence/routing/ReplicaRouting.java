@@ -0,0 +1,98 @@
+package org.example.persistence.routing;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends writes to the primary DB and spreads reads over the read replicas, taking them in turns.
+ * Without replicas everything goes to the primary.
+ * <p>
+ * Replicas lag behind the primary, so a read right after a write may not see it. Reads made inside a
+ * {@link RoutingSession} of the current thread go to the primary once the session wrote something
+ * ({@link #openSession()}), or always ({@link #openPrimarySession()}) for reads which must be consistent
+ * with the writes around them.
+ */
+public class ReplicaRouting {
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final ThreadLocal<RoutingSession> currentSession = new ThreadLocal<>();
+
+    /**
+     * @param primary  Data source of the primary DB.
+     * @param replicas Data sources of the read replicas, possibly none.
+     */
+    public ReplicaRouting(DataSource primary, List<DataSource> replicas) {
+        if (primary == null) {
+            throw new IllegalArgumentException("No primary data source");
+        }
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+    }
+
+    public DataSource primary() {
+        return primary;
+    }
+
+    public List<DataSource> replicas() {
+        return replicas;
+    }
+
+    /**
+     * @return the data source for the next read: the primary inside a session that reads from it,
+     * otherwise the next replica in turn.
+     */
+    public DataSource forRead() {
+        RoutingSession session = currentSession.get();
+        if (replicas.isEmpty() || session != null && session.readsFromPrimary()) {
+            return primary;
+        }
+        return replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+    }
+
+    /**
+     * Called before every write, so that the session of the current thread reads its own writes from then on.
+     */
+    public void recordWrite() {
+        RoutingSession session = currentSession.get();
+        if (session != null) {
+            session.recordWrite();
+        }
+    }
+
+    /**
+     * Starts a read-your-writes session on the current thread: reads go to the replicas until the first write
+     * and to the primary after it. Close the session to end it.
+     *
+     * @return the session.
+     */
+    public RoutingSession openSession() {
+        return open(false);
+    }
+
+    /**
+     * Starts a session on the current thread in which all reads go to the primary.
+     *
+     * @return the session.
+     */
+    public RoutingSession openPrimarySession() {
+        return open(true);
+    }
+
+    private RoutingSession open(boolean primaryOnly) {
+        RoutingSession session = new RoutingSession(this, currentSession.get(), primaryOnly);
+        currentSession.set(session);
+        return session;
+    }
+
+    void close(RoutingSession session) {
+        if (currentSession.get() == session) {
+            if (session.previous() == null) {
+                currentSession.remove();
+            } else {
+                currentSession.set(session.previous());
+            }
+        }
+    }
+}
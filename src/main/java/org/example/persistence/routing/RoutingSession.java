@@ -0,0 +1,42 @@
+package org.example.persistence.routing;
+
+/**
+ * Scope on one thread in which reads may be sent to the primary instead of a replica, see {@link ReplicaRouting}.
+ * Sessions can be nested; closing one makes the enclosing session current again.
+ */
+public class RoutingSession implements AutoCloseable {
+    private final ReplicaRouting routing;
+    private final RoutingSession previous;
+    private final boolean primaryOnly;
+    private boolean wrote;
+
+    RoutingSession(ReplicaRouting routing, RoutingSession previous, boolean primaryOnly) {
+        this.routing = routing;
+        this.previous = previous;
+        this.primaryOnly = primaryOnly;
+    }
+
+    /**
+     * @return whether the reads of the session go to the primary: if it is a primary session, wrote or is nested in a
+     * session whose reads go to the primary.
+     */
+    public boolean readsFromPrimary() {
+        return primaryOnly || wrote || previous != null && previous.readsFromPrimary();
+    }
+
+    void recordWrite() {
+        wrote = true;
+        if (previous != null) {
+            previous.recordWrite();
+        }
+    }
+
+    RoutingSession previous() {
+        return previous;
+    }
+
+    @Override
+    public void close() {
+        routing.close(this);
+    }
+}
@@ -0,0 +1,15 @@
+package org.example.persistence.sql;
+
+/**
+ * How a {@link Dialect} inserts many rows at once.
+ */
+public enum BulkLoadStrategy {
+    /**
+     * One single row INSERT, sent as a JDBC batch. Fastest for embedded databases.
+     */
+    JDBC_BATCH,
+    /**
+     * One INSERT with a VALUES list per row, so a batch of rows needs a single round trip.
+     */
+    MULTI_ROW_INSERT
+}
@@ -0,0 +1,259 @@
+package org.example.persistence.sql;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.example.persistence.query.Aggregation;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Everything the ORM says differently to different databases: DDL and column types, the SQL statements,
+ * how many placeholders one statement may have, upserts, pagination and the fastest way to load many rows.
+ * {@link SQLDialect} has the statements all supported databases share; the implementations override the rest.
+ */
+public interface Dialect {
+    /**
+     * Label of the owner ID in {@link #sqlSelectLinkedStatement(Field, int)}.
+     */
+    String LINK_OWNER_COLUMN = "orm_owner_id";
+
+    /**
+     * @param jdbcUrl JDBC URL of the database.
+     * @return the dialect of the database the URL points to.
+     */
+    static Dialect fromJdbcUrl(String jdbcUrl) {
+        if (jdbcUrl == null) {
+            throw new IllegalArgumentException("No JDBC URL to choose the SQL dialect from");
+        }
+        if (jdbcUrl.startsWith("jdbc:h2:")) {
+            return new H2Dialect();
+        } else if (jdbcUrl.startsWith("jdbc:postgresql:")) {
+            return new PostgreSQLDialect();
+        } else if (jdbcUrl.startsWith("jdbc:sqlite:")) {
+            return new SQLiteDialect();
+        }
+        throw new IllegalArgumentException("No SQL dialect for JDBC URL " + jdbcUrl);
+    }
+
+    /**
+     * @param dataSource Data source of the database.
+     * @return the dialect of the database, taken from the JDBC URL of the pool or else of a connection.
+     * @throws IllegalStateException if no connection can be opened to read the URL; pass the dialect explicitly
+     *                               to create the ORM Manager while the database is down.
+     */
+    static Dialect fromDataSource(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource hikariDataSource && hikariDataSource.getJdbcUrl() != null) {
+            return fromJdbcUrl(hikariDataSource.getJdbcUrl());
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            return fromJdbcUrl(connection.getMetaData().getURL());
+        } catch (SQLException e) {
+            throw new IllegalStateException("Can't read the JDBC URL to choose the SQL dialect from", e);
+        }
+    }
+
+    String sqlCreateTableStatement(Class<?> clss);
+
+    /**
+     * @param idField The @Id field.
+     * @return type and constraints of the ID column, which the DB generates on insert unless the ID has another
+     * {@link org.example.persistence.annotations.GenerationType}.
+     */
+    String idColumnDefinition(Field idField);
+
+    /**
+     * @param field Entity field stored in a column.
+     * @return the column type used in CREATE TABLE, with a leading space.
+     */
+    String columnType(Field field);
+
+    /**
+     * @return whether foreign keys can be added to an existing table; if not, CREATE TABLE declares them.
+     */
+    boolean supportsAddForeignKey();
+
+    /**
+     * @param clss Class.
+     * @return INSERT statement for all columns except the generated ID; an ID the ORM assigns itself comes first.
+     */
+    String sqlInsertStatement(Class<?> clss);
+
+    /**
+     * @param clss Class.
+     * @param rows Number of rows.
+     * @return INSERT statement with a VALUES list per row, each with the placeholders of {@link #sqlInsertStatement(Class)}.
+     */
+    String sqlMultiRowInsertStatement(Class<?> clss, int rows);
+
+    String sqlSelectStatement(Class<?> clss);
+
+    /**
+     * @param clss       Class.
+     * @param columnName Column compared with the IN list.
+     * @param count      Number of placeholders in the IN list.
+     * @return SELECT statement for the rows whose column value is one of the bound values.
+     */
+    String sqlSelectWhereInStatement(Class<?> clss, String columnName, int count);
+
+    String sqlSelectAllStatement(Class<?> clss);
+
+    /**
+     * @param clss        Class.
+     * @param columnNames Selected columns.
+     * @return SELECT statement for the given columns of all rows.
+     */
+    String sqlSelectColumnsStatement(Class<?> clss, List<String> columnNames);
+
+    /**
+     * @param clss       Class.
+     * @param columnName Column compared with the bound value.
+     * @return SELECT statement for the rows whose column value is greater than the bound one.
+     */
+    String sqlSelectGreaterThanStatement(Class<?> clss, String columnName);
+
+    /**
+     * @param clss       Class.
+     * @param columnName Column.
+     * @return SELECT statement for the largest value of the column, NULL for an empty table.
+     */
+    String sqlMaxStatement(Class<?> clss, String columnName);
+
+    /**
+     * @param clss       Class.
+     * @param columnName Column.
+     * @return SELECT statement for the smallest and the largest value of the column, NULLs for an empty table.
+     */
+    String sqlMinMaxStatement(Class<?> clss, String columnName);
+
+    /**
+     * @param clss       Class.
+     * @param columnName Column compared with the bound values.
+     * @return SELECT statement for the rows whose column value is at least the first bound value and less than
+     * the second one, ordered by the column.
+     */
+    String sqlSelectRangeStatement(Class<?> clss, String columnName);
+
+    String sqlUpdateStatement(Class<?> clss);
+
+    String sqlDeleteStatement(Class<?> clss);
+
+    String sqlCountStatement(Class<?> clss);
+
+    /**
+     * Inserts a row or updates the one with the same key column value.
+     * Placeholders: the ID first, then the same columns as in the INSERT statement.
+     *
+     * @param clss     Class.
+     * @param keyField The @Id field or a unique @Column field.
+     * @return upsert statement.
+     */
+    String sqlUpsertStatement(Class<?> clss, Field keyField);
+
+    /**
+     * @param selectStatement SELECT statement with a deterministic order.
+     * @return the statement limited to one page, with the placeholders for the page size and then the offset.
+     */
+    String sqlPageStatement(String selectStatement);
+
+    /**
+     * Makes the DB generate the IDs of one shard out of several, so that IDs are unique across the shards:
+     * shard k of n generates k + 1, k + 1 + n, k + 1 + 2n and so on.
+     *
+     * @param clss   Class.
+     * @param shard  Index of the shard, from 0.
+     * @param shards Number of shards.
+     * @return statement changing the ID generation of the empty table, or null if the DB can't.
+     */
+    String sqlShardIdentityStatement(Class<?> clss, int shard, int shards);
+
+    /**
+     * @param clss   Class.
+     * @param shard  Index of the shard, from 0.
+     * @param shards Number of shards.
+     * @return SELECT statement counting the rows whose IDs the shard doesn't generate.
+     */
+    String sqlCountForeignShardIdsStatement(Class<?> clss, int shard, int shards);
+
+    /**
+     * @param clss           Class with a {@link org.example.persistence.annotations.GenerationType#SEQUENCE} ID.
+     * @param allocationSize Increment of the sequence.
+     * @return statement creating the ID sequence of the class if it doesn't exist, or null if the DB has no sequences.
+     */
+    String sqlCreateSequenceStatement(Class<?> clss, int allocationSize);
+
+    /**
+     * @param clss Class with a {@link org.example.persistence.annotations.GenerationType#SEQUENCE} ID.
+     * @return SELECT statement for the next value of the ID sequence of the class.
+     */
+    String sqlNextSequenceValueStatement(Class<?> clss);
+
+    /**
+     * @param owningField The @ManyToMany field on the owning side.
+     * @return CREATE TABLE statement of its join table, with the pair of IDs as primary key and foreign keys
+     * deleting the links together with either entity.
+     */
+    String sqlCreateJoinTableStatement(Field owningField);
+
+    /**
+     * @param owningField The @ManyToMany field on the owning side.
+     * @return statement creating the index of the join table on the IDs of the list elements, which reads and
+     * deletes from the other side use.
+     */
+    String sqlCreateJoinIndexStatement(Field owningField);
+
+    /**
+     * @param owningField The @ManyToMany field on the owning side.
+     * @return INSERT statement of one link, with the placeholders for the owner ID and then the element ID.
+     */
+    String sqlInsertLinkStatement(Field owningField);
+
+    /**
+     * @param owningField The @ManyToMany field on the owning side.
+     * @return DELETE statement of one link, with the placeholders for the owner ID and then the element ID.
+     */
+    String sqlDeleteLinkStatement(Field owningField);
+
+    /**
+     * @param owningField The @ManyToMany field on the owning side.
+     * @param count       Number of placeholders in the IN list of owner IDs.
+     * @return SELECT statement for the owner ID and element ID of every link of the owners.
+     */
+    String sqlSelectLinksStatement(Field owningField, int count);
+
+    /**
+     * @param field A @ManyToMany field, on either side.
+     * @param count Number of placeholders in the IN list of owner IDs.
+     * @return SELECT statement for all columns of the list elements of the owners, followed by the owner ID
+     * labelled {@link #LINK_OWNER_COLUMN}, ordered by owner and element ID.
+     */
+    String sqlSelectLinkedStatement(Field field, int count);
+
+    /**
+     * @param aggregation Groups, aggregates and filters over the table of an entity.
+     * @return SELECT statement for the group columns, labelled with their field names, and the aggregates,
+     * labelled with their labels, grouped and ordered by the group columns, nulls first on every database.
+     * Placeholders: the filter values, see {@link Aggregation#parameters()}.
+     */
+    String sqlAggregateStatement(Aggregation aggregation);
+
+    /**
+     * @return the most placeholders put into one statement; longer IN lists are split into several statements.
+     */
+    int maxParameters();
+
+    /**
+     * @return the fastest way of inserting many rows.
+     */
+    BulkLoadStrategy bulkLoadStrategy();
+
+    /**
+     * @param clss        Class.
+     * @param columnNames Columns in the CSV file, which has them as header.
+     * @param fileName    Absolute path of the CSV file.
+     * @return statement inserting all records of the CSV file, or null if the DB can't read CSV files itself.
+     */
+    String sqlCsvImportStatement(Class<?> clss, List<String> columnNames, String fileName);
+}
@@ -0,0 +1,84 @@
+package org.example.persistence.sql;
+
+import org.example.persistence.utilities.AnnotationUtils;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+public class H2Dialect extends SQLDialect {
+    private static final String AUTO_INCREMENT = " GENERATED ALWAYS AS IDENTITY";
+
+    @Override
+    public String idColumnDefinition(Field idField) {
+        if (AnnotationUtils.isIdAssigned(idField.getDeclaringClass())) {
+            return columnType(idField) + PRIMARY_KEY;
+        }
+        return columnType(idField) + AUTO_INCREMENT + PRIMARY_KEY;
+    }
+
+    /**
+     * A MERGE with the ID and the column values as source row, matched on the key column.
+     * A matched row gets all columns except the ID updated, otherwise a row with a generated ID is inserted,
+     * or with the bound one if the ORM assigns the IDs.
+     */
+    @Override
+    public String sqlUpsertStatement(Class<?> clss, Field keyField) {
+        String tableName = AnnotationUtils.getTableName(clss);
+        List<String> sourceColumns = new ArrayList<>(List.of(getIdColumnName(clss)));
+        List<String> typedPlaceholders = new ArrayList<>(List.of("CAST(? AS" + LONG + ")"));
+        List<String> columnNames = new ArrayList<>();
+        List<String> insertedColumnNames = new ArrayList<>();
+        if (AnnotationUtils.isIdAssigned(clss)) {
+            insertedColumnNames.add(getIdColumnName(clss));
+        }
+        for (Field field : upsertedFields(clss)) {
+            String columnName = AnnotationUtils.getColumnName(field);
+            columnNames.add(columnName);
+            insertedColumnNames.add(columnName);
+            sourceColumns.add(columnName);
+            typedPlaceholders.add("CAST(? AS" + columnType(field) + ")");
+        }
+        return String.format("MERGE INTO %s AS target USING (VALUES (%s)) AS source(%s) ON target.%s = source.%4$s " +
+                        "WHEN MATCHED THEN UPDATE SET %s " +
+                        "WHEN NOT MATCHED THEN INSERT (%s) VALUES (%s)",
+                tableName, String.join(", ", typedPlaceholders), String.join(", ", sourceColumns),
+                AnnotationUtils.getColumnName(keyField),
+                String.join(", ", columnNames.stream().map(c -> c + " = source." + c).toList()),
+                String.join(", ", insertedColumnNames),
+                String.join(", ", insertedColumnNames.stream().map(c -> "source." + c).toList()));
+    }
+
+    /**
+     * CSVREAD reads the file with the header as column names. The file is read by the DB, so it must be
+     * on the machine of the DB. The file name is a literal because H2 reads the header when preparing the statement.
+     */
+    @Override
+    public String sqlCsvImportStatement(Class<?> clss, List<String> columnNames, String fileName) {
+        String columns = String.join(", ", columnNames);
+        return String.format("INSERT INTO %s (%s) SELECT %2$s FROM CSVREAD('%s', NULL, 'charset=UTF-8')",
+                AnnotationUtils.getTableName(clss), columns, fileName.replace("'", "''"));
+    }
+
+    @Override
+    public String sqlShardIdentityStatement(Class<?> clss, int shard, int shards) {
+        return String.format("ALTER TABLE %s ALTER COLUMN %s RESTART WITH %d SET INCREMENT BY %d",
+                AnnotationUtils.getTableName(clss), getIdColumnName(clss), shard + 1, shards);
+    }
+
+    /**
+     * H2 has no limit of its own; longer IN lists only make the statements harder to cache.
+     */
+    @Override
+    public int maxParameters() {
+        return 1000;
+    }
+
+    /**
+     * The database runs in the same process, so a JDBC batch costs no round trips.
+     */
+    @Override
+    public BulkLoadStrategy bulkLoadStrategy() {
+        return BulkLoadStrategy.JDBC_BATCH;
+    }
+}
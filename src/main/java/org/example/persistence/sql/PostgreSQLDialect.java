@@ -0,0 +1,69 @@
+package org.example.persistence.sql;
+
+import org.example.persistence.utilities.AnnotationUtils;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class PostgreSQLDialect extends SQLDialect {
+
+    @Override
+    public String idColumnDefinition(Field idField) {
+        if (AnnotationUtils.isIdAssigned(idField.getDeclaringClass())) {
+            return columnType(idField) + PRIMARY_KEY;
+        }
+        return (LONG.equals(columnType(idField)) ? " BIGSERIAL" : " SERIAL") + PRIMARY_KEY;
+    }
+
+    /**
+     * INSERT ... ON CONFLICT (key) DO UPDATE. A missing ID takes the next value of the serial sequence.
+     */
+    @Override
+    public String sqlUpsertStatement(Class<?> clss, Field keyField) {
+        String tableName = AnnotationUtils.getTableName(clss);
+        String idColumn = getIdColumnName(clss);
+        List<String> columnNames = new ArrayList<>();
+        for (Field field : upsertedFields(clss)) {
+            columnNames.add(AnnotationUtils.getColumnName(field));
+        }
+        return String.format("INSERT INTO %s (%s, %s) VALUES (COALESCE(?, nextval(pg_get_serial_sequence('%1$s', '%2$s'))), %s) " +
+                        "ON CONFLICT (%s) DO UPDATE SET %s",
+                tableName, idColumn, String.join(", ", columnNames),
+                String.join(", ", Collections.nCopies(columnNames.size(), "?")),
+                AnnotationUtils.getColumnName(keyField),
+                String.join(", ", columnNames.stream().map(c -> c + " = EXCLUDED." + c).toList()));
+    }
+
+    /**
+     * A SERIAL column takes its values from the sequence PostgreSQL named after the table and the column.
+     */
+    @Override
+    public String sqlShardIdentityStatement(Class<?> clss, int shard, int shards) {
+        String tableName = AnnotationUtils.getTableName(clss);
+        return String.format("ALTER SEQUENCE %s_%s_seq INCREMENT BY %d RESTART WITH %d",
+                tableName, getIdColumnName(clss), shards, shard + 1);
+    }
+
+    @Override
+    public String sqlNextSequenceValueStatement(Class<?> clss) {
+        return String.format("SELECT nextval('%s')", sequenceName(clss));
+    }
+
+    /**
+     * The wire protocol numbers the parameters of a statement with a 16 bit integer.
+     */
+    @Override
+    public int maxParameters() {
+        return 32767;
+    }
+
+    /**
+     * The driver sends every statement of a JDBC batch on its own, one multi row INSERT is a single round trip.
+     */
+    @Override
+    public BulkLoadStrategy bulkLoadStrategy() {
+        return BulkLoadStrategy.MULTI_ROW_INSERT;
+    }
+}
@@ -2,80 +2,334 @@ package org.example.persistence.sql;
 
 import org.example.persistence.annotations.Id;
 import org.example.persistence.annotations.ManyToOne;
-import org.example.persistence.annotations.OneToMany;
+import org.example.persistence.query.Aggregation;
 import org.example.persistence.utilities.AnnotationUtils;
 
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
-public class SQLDialect {
+/**
+ * The statements and column types all supported databases share. Dialects override what their database does differently.
+ */
+public abstract class SQLDialect implements Dialect {
     public static final String SQL_CREATE_TABLE = "CREATE TABLE IF NOT EXISTS";
     public static final String PRIMARY_KEY = " PRIMARY KEY";
-    public static final String STRING = " VARCHAR(255)";
-    public static final String LOCAL_DATE = " DATE";
-    public static final String INTEGER = " INT";
-    public static final String LONG = " BIGINT";
-    public static final String DOUBLE = " DOUBLE PRECISION";
-    public static final String BOOLEAN = " BOOLEAN";
-    public static final String AUTO_INCREMENT_H2 = " GENERATED ALWAYS AS IDENTITY";
-    public static final String AUTO_INCREMENT_POSTGRE = " SERIAL";
+    protected static final String STRING = " VARCHAR(255)";
+    protected static final String LOCAL_DATE = " DATE";
+    protected static final String INTEGER = " INT";
+    protected static final String LONG = " BIGINT";
+    protected static final String DOUBLE = " DOUBLE PRECISION";
+    protected static final String BOOLEAN = " BOOLEAN";
+    protected static final String LOCAL_DATE_TIME = " TIMESTAMP";
 
-    private SQLDialect() {
+    @Override
+    public String sqlCreateTableStatement(Class<?> clss) {
+        List<String> columnDefinitions = AnnotationUtils.declareColumnNamesFromEntityFields(clss, this);
+        if (!supportsAddForeignKey()) {
+            for (Field declaredField : clss.getDeclaredFields()) {
+                if (declaredField.isAnnotationPresent(ManyToOne.class)) {
+                    columnDefinitions.add(String.format("FOREIGN KEY (%s) REFERENCES %s(id) ON DELETE SET NULL ON UPDATE CASCADE",
+                            AnnotationUtils.getColumnName(declaredField), AnnotationUtils.getTableName(declaredField.getType())));
+                }
+            }
+        }
+        return String.format("%s %s%n(%n%s%n)", SQL_CREATE_TABLE, AnnotationUtils.getTableName(clss),
+                String.join(",\n", columnDefinitions));
+    }
+
+    @Override
+    public String columnType(Field field) {
+        if (field.isAnnotationPresent(ManyToOne.class)) {
+            return LONG;
+        }
+        return switch (field.getType().getSimpleName()) {
+            case "String" -> STRING;
+            case "Long", "long" -> LONG;
+            case "int", "Integer" -> INTEGER;
+            case "LocalDate" -> LOCAL_DATE;
+            case "Boolean", "boolean" -> BOOLEAN;
+            case "Double", "double" -> DOUBLE;
+            case "LocalDateTime" -> LOCAL_DATE_TIME;
+            default -> throw new IllegalArgumentException("No column type for field " + field);
+        };
     }
 
-    public static String sqlDeleteStatement(Class<?> clss) {
+    @Override
+    public boolean supportsAddForeignKey() {
+        return true;
+    }
+
+    @Override
+    public String sqlDeleteStatement(Class<?> clss) {
         String tableName = AnnotationUtils.getTableName(clss);
-        return String.format("DELETE FROM %s WHERE id = ?", tableName);
+        return String.format("DELETE FROM %s WHERE id = ?%s", tableName, versionCondition(clss));
     }
 
-    public static String sqlInsertStatement(Class<?> clss) {
-        Field[] declaredFields = clss.getDeclaredFields();
+    @Override
+    public String sqlInsertStatement(Class<?> clss) {
+        return String.format("INSERT INTO %s (%s) values(%s)", AnnotationUtils.getTableName(clss),
+                String.join(", ", insertedColumnNames(clss)), insertPlaceholders(clss));
+    }
+
+    @Override
+    public String sqlMultiRowInsertStatement(Class<?> clss, int rows) {
+        return String.format("INSERT INTO %s (%s) VALUES %s", AnnotationUtils.getTableName(clss),
+                String.join(", ", insertedColumnNames(clss)),
+                String.join(", ", Collections.nCopies(rows, "(" + insertPlaceholders(clss) + ")")));
+    }
+
+    private static List<String> insertedColumnNames(Class<?> clss) {
         List<String> columnNames = new ArrayList<>();
-        List<String> placeholders = new ArrayList<>();
-        for (Field declaredField : declaredFields) {
+        if (AnnotationUtils.isIdAssigned(clss)) {
+            columnNames.add(getIdColumnName(clss));
+        }
+        for (Field declaredField : clss.getDeclaredFields()) {
             if (declaredField.isAnnotationPresent(ManyToOne.class)) {
                 columnNames.add(AnnotationUtils.getColumnNameFromManyToOne(declaredField));
-                placeholders.add("?");
-            } else if (!declaredField.isAnnotationPresent(Id.class) && !declaredField.isAnnotationPresent(OneToMany.class) ) {
+            } else if (!declaredField.isAnnotationPresent(Id.class) && !AnnotationUtils.isCollection(declaredField)) {
                 columnNames.add(AnnotationUtils.getColumnName(declaredField));
-                placeholders.add("?");
             }
         }
-        String tableName = AnnotationUtils.getTableName(clss);
+        return columnNames;
+    }
+
+    private static String insertPlaceholders(Class<?> clss) {
+        return String.join(", ", Collections.nCopies(insertedColumnNames(clss).size(), "?"));
+    }
+
+    /**
+     * @param clss Class.
+     * @return the fields written by upserts: all columns except the ID.
+     */
+    protected static List<Field> upsertedFields(Class<?> clss) {
+        List<Field> fields = new ArrayList<>();
+        for (Field declaredField : clss.getDeclaredFields()) {
+            if (!declaredField.isAnnotationPresent(Id.class) && !AnnotationUtils.isCollection(declaredField)) {
+                fields.add(declaredField);
+            }
+        }
+        return fields;
+    }
 
-        return String.format("INSERT INTO %s (%s) values(%s)"
-                , tableName, String.join(", ", columnNames)
-                , String.join(", ", placeholders));
+    protected static String getIdColumnName(Class<?> clss) {
+        for (Field declaredField : clss.getDeclaredFields()) {
+            if (declaredField.isAnnotationPresent(Id.class)) {
+                return AnnotationUtils.getColumnName(declaredField);
+            }
+        }
+        return "id";
     }
 
-    public static String sqlSelectStatement(Class<?> clss) {
+    @Override
+    public String sqlSelectStatement(Class<?> clss) {
         String tableName = AnnotationUtils.getTableName(clss);
         return String.format("SELECT * FROM %s WHERE id=?", tableName);
     }
 
-    public static String sqlUpdateStatement(Class<?> clss) {
+    @Override
+    public String sqlUpdateStatement(Class<?> clss) {
         Field[] declaredFields = clss.getDeclaredFields();
         List<String> columnNamesAndPlaceholders = new ArrayList<>();
         String placeholder = " = ?";
         for (Field declaredField : declaredFields) {
-            if (!declaredField.isAnnotationPresent(Id.class)) {
+            if (!declaredField.isAnnotationPresent(Id.class) && !AnnotationUtils.isCollection(declaredField)) {
                 columnNamesAndPlaceholders.add(AnnotationUtils.getColumnName(declaredField) + placeholder);
             }
         }
         String tableName = AnnotationUtils.getTableName(clss);
 
-        return String.format("UPDATE %s SET %s WHERE id = ?",
-                tableName, String.join(", ", columnNamesAndPlaceholders));
+        return String.format("UPDATE %s SET %s WHERE id = ?%s",
+                tableName, String.join(", ", columnNamesAndPlaceholders), versionCondition(clss));
+    }
+
+    /**
+     * @param clss Class.
+     * @return the condition on the @Version column appended to the WHERE clause of UPDATE and DELETE,
+     * or an empty string if the entity has no version.
+     */
+    private static String versionCondition(Class<?> clss) {
+        Field versionField = AnnotationUtils.getVersionField(clss);
+        return versionField == null ? "" : " AND " + AnnotationUtils.getColumnName(versionField) + " = ?";
     }
 
-    public static String sqlSelectAllStatement(Class<?> clss) {
+    @Override
+    public String sqlSelectWhereInStatement(Class<?> clss, String columnName, int count) {
+        String tableName = AnnotationUtils.getTableName(clss);
+        return String.format("SELECT * FROM %s WHERE %s IN (%s)",
+                tableName, columnName, String.join(", ", Collections.nCopies(count, "?")));
+    }
+
+    @Override
+    public String sqlSelectAllStatement(Class<?> clss) {
         String tableName = AnnotationUtils.getTableName(clss);
         return String.format("SELECT * FROM %s", tableName);
     }
 
-    public static String sqlCountStatement(Class<?> clss) {
+    @Override
+    public String sqlSelectColumnsStatement(Class<?> clss, List<String> columnNames) {
+        String tableName = AnnotationUtils.getTableName(clss);
+        return String.format("SELECT %s FROM %s", String.join(", ", columnNames), tableName);
+    }
+
+    @Override
+    public String sqlSelectGreaterThanStatement(Class<?> clss, String columnName) {
+        String tableName = AnnotationUtils.getTableName(clss);
+        return String.format("SELECT * FROM %s WHERE %s > ?", tableName, columnName);
+    }
+
+    @Override
+    public String sqlMaxStatement(Class<?> clss, String columnName) {
+        String tableName = AnnotationUtils.getTableName(clss);
+        return String.format("SELECT MAX(%s) FROM %s", columnName, tableName);
+    }
+
+    @Override
+    public String sqlMinMaxStatement(Class<?> clss, String columnName) {
+        String tableName = AnnotationUtils.getTableName(clss);
+        return String.format("SELECT MIN(%s), MAX(%s) FROM %s", columnName, columnName, tableName);
+    }
+
+    @Override
+    public String sqlSelectRangeStatement(Class<?> clss, String columnName) {
+        String tableName = AnnotationUtils.getTableName(clss);
+        return String.format("SELECT * FROM %s WHERE %s >= ? AND %s < ? ORDER BY %s",
+                tableName, columnName, columnName, columnName);
+    }
+
+    @Override
+    public String sqlCountStatement(Class<?> clss) {
         String tableName = AnnotationUtils.getTableName(clss);
         return String.format("SELECT COUNT(*) FROM %s", tableName);
     }
-}
\ No newline at end of file
+
+    @Override
+    public String sqlCsvImportStatement(Class<?> clss, List<String> columnNames, String fileName) {
+        return null;
+    }
+
+    @Override
+    public String sqlShardIdentityStatement(Class<?> clss, int shard, int shards) {
+        return null;
+    }
+
+    @Override
+    public String sqlCountForeignShardIdsStatement(Class<?> clss, int shard, int shards) {
+        return String.format("SELECT COUNT(*) FROM %s WHERE MOD(%s - 1, %d) <> %d",
+                AnnotationUtils.getTableName(clss), getIdColumnName(clss), shards, shard);
+    }
+
+    @Override
+    public String sqlCreateSequenceStatement(Class<?> clss, int allocationSize) {
+        return String.format("CREATE SEQUENCE IF NOT EXISTS %s START WITH 1 INCREMENT BY %d", sequenceName(clss), allocationSize);
+    }
+
+    @Override
+    public String sqlNextSequenceValueStatement(Class<?> clss) {
+        return String.format("SELECT NEXT VALUE FOR %s", sequenceName(clss));
+    }
+
+    protected static String sequenceName(Class<?> clss) {
+        return AnnotationUtils.getTableName(clss) + "_" + getIdColumnName(clss) + "_seq";
+    }
+
+    @Override
+    public String sqlCreateJoinTableStatement(Field owningField) {
+        String joinColumn = AnnotationUtils.getJoinColumnName(owningField);
+        String inverseJoinColumn = AnnotationUtils.getInverseJoinColumnName(owningField);
+        return String.format("%s %s%n(%n%s%s NOT NULL,%n%s%s NOT NULL,%nPRIMARY KEY (%s, %s),%n" +
+                        "FOREIGN KEY (%s) REFERENCES %s(id) ON DELETE CASCADE,%nFOREIGN KEY (%s) REFERENCES %s(id) ON DELETE CASCADE%n)",
+                SQL_CREATE_TABLE, AnnotationUtils.getJoinTableName(owningField), joinColumn, LONG, inverseJoinColumn, LONG,
+                joinColumn, inverseJoinColumn, joinColumn, AnnotationUtils.getTableName(owningField.getDeclaringClass()),
+                inverseJoinColumn, AnnotationUtils.getTableName(AnnotationUtils.getListType(owningField)));
+    }
+
+    @Override
+    public String sqlCreateJoinIndexStatement(Field owningField) {
+        String joinTable = AnnotationUtils.getJoinTableName(owningField);
+        String inverseJoinColumn = AnnotationUtils.getInverseJoinColumnName(owningField);
+        return String.format("CREATE INDEX IF NOT EXISTS %s_%s_idx ON %1$s (%2$s)", joinTable, inverseJoinColumn);
+    }
+
+    @Override
+    public String sqlInsertLinkStatement(Field owningField) {
+        return String.format("INSERT INTO %s (%s, %s) VALUES (?, ?)", AnnotationUtils.getJoinTableName(owningField),
+                AnnotationUtils.getJoinColumnName(owningField), AnnotationUtils.getInverseJoinColumnName(owningField));
+    }
+
+    @Override
+    public String sqlDeleteLinkStatement(Field owningField) {
+        return String.format("DELETE FROM %s WHERE %s = ? AND %s = ?", AnnotationUtils.getJoinTableName(owningField),
+                AnnotationUtils.getJoinColumnName(owningField), AnnotationUtils.getInverseJoinColumnName(owningField));
+    }
+
+    @Override
+    public String sqlSelectLinksStatement(Field owningField, int count) {
+        String joinColumn = AnnotationUtils.getJoinColumnName(owningField);
+        return String.format("SELECT %s, %s FROM %s WHERE %1$s IN (%s)", joinColumn,
+                AnnotationUtils.getInverseJoinColumnName(owningField), AnnotationUtils.getJoinTableName(owningField),
+                String.join(", ", Collections.nCopies(count, "?")));
+    }
+
+    /**
+     * The element columns come first, so that they are read like the columns of SELECT * from the element table.
+     */
+    @Override
+    public String sqlSelectLinkedStatement(Field field, int count) {
+        Field owningField = AnnotationUtils.getOwningManyToManyField(field);
+        String ownerColumn = AnnotationUtils.getJoinColumnName(owningField);
+        String elementColumn = AnnotationUtils.getInverseJoinColumnName(owningField);
+        if (owningField != field) {
+            ownerColumn = elementColumn;
+            elementColumn = AnnotationUtils.getJoinColumnName(owningField);
+        }
+        Class<?> elementClass = AnnotationUtils.getListType(field);
+        String elementIdColumn = getIdColumnName(elementClass);
+        return String.format("SELECT e.*, j.%s AS %s FROM %s e JOIN %s j ON e.%s = j.%s WHERE j.%1$s IN (%s) ORDER BY j.%1$s, e.%5$s",
+                ownerColumn, LINK_OWNER_COLUMN, AnnotationUtils.getTableName(elementClass),
+                AnnotationUtils.getJoinTableName(owningField), elementIdColumn, elementColumn,
+                String.join(", ", Collections.nCopies(count, "?")));
+    }
+
+    /**
+     * AVG reads its column as DOUBLE PRECISION, as some databases average integers to an integer. The groups are
+     * ordered with explicit NULLS FIRST, as PostgreSQL otherwise puts nulls last and H2 and SQLite first.
+     */
+    @Override
+    public String sqlAggregateStatement(Aggregation aggregation) {
+        List<String> selected = new ArrayList<>();
+        List<String> groupColumns = new ArrayList<>();
+        for (String group : aggregation.groupBy()) {
+            String column = AnnotationUtils.getColumnName(aggregation.field(group));
+            selected.add(column + " AS " + group);
+            groupColumns.add(column);
+        }
+        for (Aggregation.Aggregate aggregate : aggregation.aggregates()) {
+            String column = aggregate.field() == null ? "*" : AnnotationUtils.getColumnName(aggregation.field(aggregate.field()));
+            if (aggregate.function() == Aggregation.Function.AVG) {
+                column = "CAST(" + column + " AS" + DOUBLE + ")";
+            }
+            selected.add(aggregate.function() + "(" + column + ") AS " + aggregate.label());
+        }
+        StringBuilder sql = new StringBuilder("SELECT ").append(String.join(", ", selected))
+                .append(" FROM ").append(AnnotationUtils.getTableName(aggregation.entityClass()));
+        List<String> conditions = new ArrayList<>();
+        for (Aggregation.Filter filter : aggregation.filters()) {
+            conditions.add(AnnotationUtils.getColumnName(aggregation.field(filter.field())) + " " + filter.operator().sql() + " ?");
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        if (!groupColumns.isEmpty()) {
+            sql.append(" GROUP BY ").append(String.join(", ", groupColumns))
+                    .append(" ORDER BY ").append(String.join(", ", groupColumns.stream().map(c -> c + " NULLS FIRST").toList()));
+        }
+        return sql.toString();
+    }
+
+    @Override
+    public String sqlPageStatement(String selectStatement) {
+        return selectStatement + " LIMIT ? OFFSET ?";
+    }
+}
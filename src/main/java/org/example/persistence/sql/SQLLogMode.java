@@ -0,0 +1,19 @@
+package org.example.persistence.sql;
+
+/**
+ * How much of the executed SQL the ORM Manager writes to the log.
+ */
+public enum SQLLogMode {
+    /**
+     * Nothing is logged.
+     */
+    OFF,
+    /**
+     * One out of every N statements is logged, regardless of how long it took.
+     */
+    SAMPLED,
+    /**
+     * Only statements that took at least the configured threshold are logged.
+     */
+    SLOW
+}
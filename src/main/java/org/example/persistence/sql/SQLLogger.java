@@ -0,0 +1,149 @@
+package org.example.persistence.sql;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which executed statements are worth logging and writes them from a background thread.
+ * The calling thread only takes a timestamp and, for a chosen statement, hands over the SQL and the bound values;
+ * rendering the message and the appender I/O happen on the logging thread, one daemon thread shared by all loggers
+ * which stops when idle. Failed statements are always logged, unless logging is off.
+ * When the hand-over queue is full the record is dropped and counted instead of blocking the caller.
+ */
+@Slf4j
+public class SQLLogger {
+    public static final long DEFAULT_SLOW_THRESHOLD_MS = 200;
+    public static final int DEFAULT_SAMPLE_RATE = 100;
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final ThreadPoolExecutor WRITER = writer();
+
+    private final SQLLogMode mode;
+    private final int sampleRate;
+    private final long slowThresholdNanos;
+    private final AtomicLong dropped = new AtomicLong();
+
+    public SQLLogger(SQLLogMode mode, int sampleRate, long slowThresholdMillis) {
+        this.mode = mode;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+    }
+
+    private static ThreadPoolExecutor writer() {
+        // the single thread is only started with the first logged record, and ends after a minute without one
+        ThreadPoolExecutor writer = new ThreadPoolExecutor(1, 1, 1, TimeUnit.MINUTES,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "orm-sql-logger");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        writer.allowCoreThreadTimeOut(true);
+        return writer;
+    }
+
+    /**
+     * @return logger for statements slower than {@link #DEFAULT_SLOW_THRESHOLD_MS}.
+     */
+    public static SQLLogger defaultLogger() {
+        return new SQLLogger(SQLLogMode.SLOW, DEFAULT_SAMPLE_RATE, DEFAULT_SLOW_THRESHOLD_MS);
+    }
+
+    public static SQLLogger off() {
+        return new SQLLogger(SQLLogMode.OFF, DEFAULT_SAMPLE_RATE, DEFAULT_SLOW_THRESHOLD_MS);
+    }
+
+    /**
+     * Reads the optional keys sql-log-mode (off, sampled, slow), sql-log-sample-rate and sql-log-slow-threshold-ms.
+     *
+     * @param properties the ORM Manager configuration.
+     * @return logger configured from the properties, or the default one for the missing keys.
+     */
+    public static SQLLogger fromProperties(Properties properties) {
+        SQLLogMode mode = SQLLogMode.valueOf(properties.getProperty("sql-log-mode", SQLLogMode.SLOW.name())
+                .trim().toUpperCase(Locale.ROOT));
+        int sampleRate = Integer.parseInt(properties.getProperty("sql-log-sample-rate",
+                String.valueOf(DEFAULT_SAMPLE_RATE)).trim());
+        long threshold = Long.parseLong(properties.getProperty("sql-log-slow-threshold-ms",
+                String.valueOf(DEFAULT_SLOW_THRESHOLD_MS)).trim());
+        return new SQLLogger(mode, sampleRate, threshold);
+    }
+
+    public SQLLogMode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the number of records thrown away because the logging thread fell behind.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return start timestamp to pass to {@link #log}, or 0 when nothing is logged.
+     */
+    public long start() {
+        return mode == SQLLogMode.OFF ? 0 : System.nanoTime();
+    }
+
+    /**
+     * @param sql        The executed statement.
+     * @param params     The values bound to its placeholders, in order.
+     * @param rows       Rows returned by a query or affected by an update.
+     * @param startNanos The value returned by {@link #start()} before the statement was executed.
+     */
+    public void log(String sql, Object[] params, long rows, long startNanos) {
+        if (mode == SQLLogMode.OFF) {
+            return;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        boolean chosen = mode == SQLLogMode.SLOW ?
+                elapsed >= slowThresholdNanos :
+                sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+        if (chosen) {
+            submit(sql, params, rows, elapsed);
+        }
+    }
+
+    /**
+     * Logs a statement that failed, whatever its duration or the sample rate.
+     *
+     * @param sql        The statement.
+     * @param params     The values bound to its placeholders, in order.
+     * @param startNanos The value returned by {@link #start()} before the statement was executed.
+     * @param e          The failure.
+     */
+    public void logFailure(String sql, Object[] params, long startNanos, SQLException e) {
+        if (mode == SQLLogMode.OFF) {
+            return;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        submit(() -> log.atWarn().log("{} ms, failed with {}: {} {}",
+                String.format(Locale.ROOT, "%.3f", elapsed / 1_000_000.0), e.getMessage(), sql,
+                params.length == 0 ? "" : Arrays.toString(params)));
+    }
+
+    private void submit(String sql, Object[] params, long rows, long elapsedNanos) {
+        submit(() -> log.atInfo().log("{} ms, {} rows: {} {}",
+                String.format(Locale.ROOT, "%.3f", elapsedNanos / 1_000_000.0), rows, sql,
+                params.length == 0 ? "" : Arrays.toString(params)));
+    }
+
+    private void submit(Runnable record) {
+        try {
+            WRITER.execute(record);
+        } catch (RejectedExecutionException e) {
+            dropped.incrementAndGet();
+        }
+    }
+}
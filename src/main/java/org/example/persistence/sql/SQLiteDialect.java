@@ -0,0 +1,90 @@
+package org.example.persistence.sql;
+
+import org.example.persistence.annotations.ManyToOne;
+import org.example.persistence.utilities.AnnotationUtils;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class SQLiteDialect extends SQLDialect {
+
+    /**
+     * Only a column declared exactly as INTEGER PRIMARY KEY becomes the row ID, generated if not inserted.
+     */
+    @Override
+    public String idColumnDefinition(Field idField) {
+        if (AnnotationUtils.isIdAssigned(idField.getDeclaringClass())) {
+            return " INTEGER" + PRIMARY_KEY;
+        }
+        return " INTEGER" + PRIMARY_KEY + " AUTOINCREMENT";
+    }
+
+    /**
+     * SQLite has no sequences.
+     */
+    @Override
+    public String sqlCreateSequenceStatement(Class<?> clss, int allocationSize) {
+        return null;
+    }
+
+    @Override
+    public String sqlNextSequenceValueStatement(Class<?> clss) {
+        return null;
+    }
+
+    @Override
+    public String columnType(Field field) {
+        if (field.isAnnotationPresent(ManyToOne.class)) {
+            return " INTEGER";
+        }
+        return switch (field.getType().getSimpleName()) {
+            case "String" -> " TEXT";
+            case "Long", "long", "int", "Integer" -> " INTEGER";
+            case "Double", "double" -> " REAL";
+            default -> super.columnType(field);
+        };
+    }
+
+    /**
+     * ALTER TABLE can't add constraints, so CREATE TABLE declares the foreign keys.
+     */
+    @Override
+    public boolean supportsAddForeignKey() {
+        return false;
+    }
+
+    /**
+     * INSERT ... ON CONFLICT (key) DO UPDATE. A missing ID makes SQLite generate one.
+     */
+    @Override
+    public String sqlUpsertStatement(Class<?> clss, Field keyField) {
+        String tableName = AnnotationUtils.getTableName(clss);
+        List<String> columnNames = new ArrayList<>();
+        for (Field field : upsertedFields(clss)) {
+            columnNames.add(AnnotationUtils.getColumnName(field));
+        }
+        return String.format("INSERT INTO %s (%s, %s) VALUES (%s) ON CONFLICT (%s) DO UPDATE SET %s",
+                tableName, getIdColumnName(clss), String.join(", ", columnNames),
+                String.join(", ", Collections.nCopies(columnNames.size() + 1, "?")),
+                AnnotationUtils.getColumnName(keyField),
+                String.join(", ", columnNames.stream().map(c -> c + " = excluded." + c).toList()));
+    }
+
+    /**
+     * The default SQLITE_MAX_VARIABLE_NUMBER of SQLite before 3.32.
+     */
+    @Override
+    public int maxParameters() {
+        return 999;
+    }
+
+    /**
+     * The database runs in the same process, so a JDBC batch costs no round trips.
+     */
+    @Override
+    public BulkLoadStrategy bulkLoadStrategy() {
+        return BulkLoadStrategy.JDBC_BATCH;
+    }
+}
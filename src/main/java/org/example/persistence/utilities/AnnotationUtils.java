@@ -3,6 +3,7 @@ package org.example.persistence.utilities;
 import lombok.extern.slf4j.Slf4j;
 import org.example.exceptionhandler.IdAnnotationNotFoundException;
 import org.example.persistence.annotations.*;
+import org.example.persistence.sql.Dialect;
 import org.example.persistence.sql.SQLDialect;
 
 import java.lang.reflect.Field;
@@ -22,33 +23,28 @@ public class AnnotationUtils {
     }
 
     /**
-     * @param clss Class.
+     * @param clss    Class.
+     * @param dialect Dialect of the DB the table is created in.
      * @return Collection of strings which contains the names of the columns (taken from the entity's fields)
      * needed for CREATE TABLE sql statement.
      */
-    public static List<String> declareColumnNamesFromEntityFields(Class<?> clss) {
+    public static List<String> declareColumnNamesFromEntityFields(Class<?> clss, Dialect dialect) {
         List<String> columnNames = new ArrayList<>();
-        List<String> keys = new ArrayList<>();
         if (idAnnotationIsPresent(clss)) {
             for (Field declaredField : clss.getDeclaredFields()) {
-                String fieldTypeName = declaredField.getType().getSimpleName();
+                if (isCollection(declaredField)) {
+                    continue;
+                }
                 String columnName = getColumnName(declaredField);
-                String autoIdAndPKTags = autoIncAndPKTags(declaredField);
                 String constraints = (isUnique(declaredField) ? " UNIQUE " : "") +
                         (canBeNull(declaredField) ? "" : " NOT NULL");
                 if (declaredField.isAnnotationPresent(ManyToOne.class)) {
-                    fieldTypeName = "manyToOne";
-                    columnName = declaredField.getAnnotation(ManyToOne.class).name();
                     constraints = (canBeNullForManyToOne(declaredField) ? "" : " NOT NULL");
                 }
-                switch (fieldTypeName) {
-                    case "String" -> columnNames.add(columnName + SQLDialect.STRING + constraints);
-                    case "Long", "long" -> columnNames.add(columnName + SQLDialect.LONG + autoIdAndPKTags + constraints);
-                    case "int", "Integer" -> columnNames.add(columnName + SQLDialect.INTEGER + autoIdAndPKTags + constraints);
-                    case "LocalDate" -> columnNames.add(columnName + SQLDialect.LOCAL_DATE + constraints);
-                    case "Boolean", "boolean" -> columnNames.add(columnName + SQLDialect.BOOLEAN + constraints);
-                    case "Double", "double" -> columnNames.add(columnName + SQLDialect.DOUBLE + constraints);
-                    case "manyToOne" -> columnNames.add(columnName + SQLDialect.LONG + constraints);
+                if (declaredField.isAnnotationPresent(Id.class)) {
+                    columnNames.add(columnName + idColumnDefinition(declaredField, dialect) + constraints);
+                } else {
+                    columnNames.add(columnName + dialect.columnType(declaredField) + constraints);
                 }
             }
         } else {
@@ -62,6 +58,28 @@ public class AnnotationUtils {
                 .anyMatch(f -> f.isAnnotationPresent(Id.class));
     }
 
+    /**
+     * @param clss Entity class.
+     * @return the @Id of the class.
+     * @throws IdAnnotationNotFoundException if it has none.
+     */
+    public static Id getIdAnnotation(Class<?> clss) {
+        for (Field declaredField : clss.getDeclaredFields()) {
+            if (declaredField.isAnnotationPresent(Id.class)) {
+                return declaredField.getAnnotation(Id.class);
+            }
+        }
+        throw new IdAnnotationNotFoundException(clss);
+    }
+
+    /**
+     * @param clss Entity class.
+     * @return whether the ORM assigns the IDs of new entities itself instead of the DB generating them.
+     */
+    public static boolean isIdAssigned(Class<?> clss) {
+        return getIdAnnotation(clss).strategy() != GenerationType.IDENTITY;
+    }
+
     public static String getColumnName(Field field) {
         String fieldName = "";
         if (field.isAnnotationPresent(ManyToOne.class)) {
@@ -74,25 +92,56 @@ public class AnnotationUtils {
     }
 
     /**
-     * @param declaredField needed to check its annotations.
-     * @return String containing SQL statement for autoincrement ID and primary key.
+     * @param idField The @Id field.
+     * @param dialect Dialect of the DB the table is created in.
+     * @return the columnDefinition of its @Column as primary key, or else the generated ID column of the dialect.
      */
-    private static String autoIncAndPKTags(Field declaredField) {
+    private static String idColumnDefinition(Field idField, Dialect dialect) {
         String columnDefinition = "";
-        if (declaredField.isAnnotationPresent(Column.class)) {
-            columnDefinition = declaredField.getAnnotation(Column.class).columnDefinition();
+        if (idField.isAnnotationPresent(Column.class)) {
+            columnDefinition = idField.getAnnotation(Column.class).columnDefinition();
         }
-        String autoincrementTag = columnDefinition.equals("serial") ?
-                SQLDialect.AUTO_INCREMENT_POSTGRE + SQLDialect.PRIMARY_KEY :
-                SQLDialect.AUTO_INCREMENT_H2 + SQLDialect.PRIMARY_KEY;
-
-        return declaredField.isAnnotationPresent(Id.class) ? autoincrementTag : "";
+        return columnDefinition.isEmpty() ? dialect.idColumnDefinition(idField) : " " + columnDefinition + SQLDialect.PRIMARY_KEY;
     }
 
     public static boolean isUnique(Field field) {
         return field.isAnnotationPresent(Column.class) && field.getAnnotation(Column.class).unique();
     }
 
+    /**
+     * @param clss Entity class.
+     * @return the first unique @Column field other than the @Id, or the @Id field if there is none.
+     * Upserts find the existing row by this field.
+     */
+    public static Field getUpsertKeyField(Class<?> clss) {
+        Field idField = null;
+        for (Field declaredField : clss.getDeclaredFields()) {
+            if (declaredField.isAnnotationPresent(Id.class)) {
+                idField = declaredField;
+            } else if (isUnique(declaredField)) {
+                return declaredField;
+            }
+        }
+        if (idField == null) {
+            throw new IdAnnotationNotFoundException(clss);
+        }
+        return idField;
+    }
+
+    /**
+     * @param clss Entity class.
+     * @return the @Version field, accessible, or null if the entity isn't versioned.
+     */
+    public static Field getVersionField(Class<?> clss) {
+        for (Field declaredField : clss.getDeclaredFields()) {
+            if (declaredField.isAnnotationPresent(Version.class)) {
+                declaredField.setAccessible(true);
+                return declaredField;
+            }
+        }
+        return null;
+    }
+
     public static boolean canBeNull(Field field) {
         return field.isAnnotationPresent(Column.class) && field.getAnnotation(Column.class).nullable();
     }
@@ -129,13 +178,83 @@ public class AnnotationUtils {
         return null;
     }
 
-    private static <T> Class<?> getListType(Field field) {
+    /**
+     * @param field Entity field.
+     * @return whether the field is a list of associated entities, stored in other tables than the entity's own.
+     */
+    public static boolean isCollection(Field field) {
+        return field.isAnnotationPresent(OneToMany.class) || field.isAnnotationPresent(ManyToMany.class);
+    }
+
+    /**
+     * @param field A @ManyToMany field, on either side.
+     * @return the @ManyToMany field on the owning side, the one without mappedBy, which names the join table.
+     */
+    public static Field getOwningManyToManyField(Field field) {
+        String mappedBy = field.getAnnotation(ManyToMany.class).mappedBy();
+        if (mappedBy.isEmpty()) {
+            return field;
+        }
+        try {
+            return getListType(field).getDeclaredField(mappedBy);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalArgumentException("No field " + mappedBy + " in " + getListType(field).getName() + " for " + field);
+        }
+    }
+
+    /**
+     * @param owningField The @ManyToMany field on the owning side.
+     * @return its joinTable, or the table names of both sides joined by an underscore.
+     */
+    public static String getJoinTableName(Field owningField) {
+        String joinTable = owningField.getAnnotation(ManyToMany.class).joinTable();
+        return joinTable.isEmpty() ? getTableName(owningField.getDeclaringClass()) + "_" + getTableName(getListType(owningField)) : joinTable;
+    }
+
+    /**
+     * @param owningField The @ManyToMany field on the owning side.
+     * @return the join table column with the ID of the owning entity: its joinColumn, or the class name and "_id".
+     */
+    public static String getJoinColumnName(Field owningField) {
+        String joinColumn = owningField.getAnnotation(ManyToMany.class).joinColumn();
+        return joinColumn.isEmpty() ? owningField.getDeclaringClass().getSimpleName().toLowerCase() + "_id" : joinColumn;
+    }
+
+    /**
+     * @param owningField The @ManyToMany field on the owning side.
+     * @return the join table column with the ID of the list element: its inverseJoinColumn, or the class name and "_id".
+     */
+    public static String getInverseJoinColumnName(Field owningField) {
+        String inverseJoinColumn = owningField.getAnnotation(ManyToMany.class).inverseJoinColumn();
+        return inverseJoinColumn.isEmpty() ? getListType(owningField).getSimpleName().toLowerCase() + "_id" : inverseJoinColumn;
+    }
+
+    /**
+     * @param field Field of type List with one type argument, e.g. a @OneToMany field.
+     * @return the class of the list elements.
+     */
+    public static <T> Class<?> getListType(Field field) {
         ParameterizedType stringListType = (ParameterizedType) field.getGenericType();
         Class<?> stringListClass = (Class<?>) stringListType.getActualTypeArguments()[0];
 
         return stringListClass;
     }
 
+    /**
+     * @param cls             Entity class on the many side.
+     * @param referencedClass Entity class on the one side.
+     * @return the @ManyToOne field of cls which references referencedClass, or null if there is none.
+     */
+    public static Field getManyToOneFieldReferencing(Class<?> cls, Class<?> referencedClass) {
+        for (Field declaredField : cls.getDeclaredFields()) {
+            if (declaredField.isAnnotationPresent(ManyToOne.class) && declaredField.getType().equals(referencedClass)) {
+                declaredField.setAccessible(true);
+                return declaredField;
+            }
+        }
+        return null;
+    }
+
     private static String getColumnNameFromManyToOne(Class<?> cls) {
         for (Field declaredField : cls.getDeclaredFields()) {
             if (declaredField.isAnnotationPresent(ManyToOne.class)) {
@@ -0,0 +1,11 @@
+package org.example.persistence.utilities;
+
+/**
+ * Action on a mapping of a {@link LongObjectMap}, taking the key as a primitive long.
+ *
+ * @param <V> Value type.
+ */
+@FunctionalInterface
+public interface LongObjectConsumer<V> {
+    void accept(long key, V value);
+}
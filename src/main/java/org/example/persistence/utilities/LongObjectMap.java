@@ -0,0 +1,169 @@
+package org.example.persistence.utilities;
+
+import java.util.Arrays;
+import java.util.function.LongFunction;
+
+/**
+ * Map from primitive long keys to non-null values, with open addressing and linear probing in two arrays.
+ * Unlike a {@code HashMap<Long, V>} it boxes no key and allocates no entry per mapping.
+ * Not thread-safe.
+ *
+ * @param <V> Value type.
+ */
+public class LongObjectMap<V> {
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+
+    public LongObjectMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize Mappings the map holds without growing.
+     */
+    public LongObjectMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return the value of the key, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        for (int i = slot(key); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @param value Value, not null.
+     * @return the previous value of the key, or null.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("LongObjectMap values can't be null");
+        }
+        int i = slot(key);
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > keys.length * LOAD_FACTOR) {
+            resize(keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * @return the value of the key, computed and put first if there is none.
+     */
+    public V computeIfAbsent(long key, LongFunction<? extends V> mapping) {
+        V value = get(key);
+        if (value == null) {
+            value = mapping.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * @return the removed value, or null if the key had none.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        for (int i = slot(key); values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V removed = (V) values[i];
+                shiftBack(i);
+                size--;
+                return removed;
+            }
+        }
+        return null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Calls the action for every mapping, in no particular order, without boxing the keys; the map must not change
+     * meanwhile.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(LongObjectConsumer<? super V> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) {
+                action.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    /**
+     * Closes the gap at the slot by moving back the following entries of the probe sequence whose home slot
+     * isn't between the gap and them, so that no lookup stops early at the gap.
+     */
+    private void shiftBack(int gap) {
+        for (int i = (gap + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+            int home = slot(keys[i]);
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        values[gap] = null;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                int j = slot(oldKeys[i]);
+                while (values[j] != null) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -2,48 +2,222 @@ package org.example.persistence.utilities;
 
 import lombok.extern.slf4j.Slf4j;
 import org.example.exceptionhandler.ExceptionHandler;
+import org.example.persistence.codec.BinaryWriter;
+import org.example.persistence.codec.EntityCodec;
+import org.example.persistence.log.FramedLogReader;
+import org.example.persistence.log.FramedLogWriter;
+import org.example.persistence.log.FsyncPolicy;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Serializes objects into append-only framed logs ({@link FramedLogWriter}), one record per object,
+ * so writing an object costs the same however many were written before.
+ * A file is started afresh by the first object serialized into it in this JVM, and appended to after that.
+ * The methods taking an {@link EntityCodec} write and read the compact binary form of entities instead of
+ * Java serialization; a file must be written and read in one of the two forms.
+ */
 @Slf4j
 public class SerializationUtil {
-    private static final List<Object> serializedData = new ArrayList<>();
-    private static String fullFileName;
     private static final String SUFFIX = "_serialization.ser";
+    private static final Map<String, FramedLogWriter> writers = new ConcurrentHashMap<>();
+    private static final ThreadLocal<BinaryWriter> encoders = ThreadLocal.withInitial(BinaryWriter::new);
+    private static volatile FsyncPolicy fsyncPolicy = FsyncPolicy.never();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(SerializationUtil::closeAll, "serialization-log-close"));
+    }
 
     private SerializationUtil() {
     }
 
+    /**
+     * @param policy When serialized objects are forced to the disk, for the files started after this call.
+     */
+    public static void setFsyncPolicy(FsyncPolicy policy) {
+        fsyncPolicy = policy;
+    }
+
     public static <T> void serialize(T obj, String simpleFileName) {
-        fullFileName = simpleFileName + SUFFIX;
-        serializeIntoList(obj, fullFileName);
+        String fullFileName = fullFileName(simpleFileName);
+        try {
+            writer(fullFileName).append(toBytes(obj));
+        } catch (IOException | UncheckedIOException e) {
+            ExceptionHandler.inputOutput(e instanceof UncheckedIOException unchecked ? unchecked.getCause() : (IOException) e);
+        }
+    }
+
+    /**
+     * Appends the binary form of the entity, encoded into a buffer reused by the calling thread.
+     *
+     * @param obj            Entity.
+     * @param simpleFileName File name with or without the serialization suffix.
+     * @param codec          Codec of the entity class.
+     */
+    public static <T> void serialize(T obj, String simpleFileName, EntityCodec<T> codec) {
+        String fullFileName = fullFileName(simpleFileName);
+        BinaryWriter encoder = encoders.get().reset();
+        codec.encode(obj, encoder);
+        try {
+            writer(fullFileName).append(encoder.buffer());
+        } catch (IOException | UncheckedIOException e) {
+            ExceptionHandler.inputOutput(e instanceof UncheckedIOException unchecked ? unchecked.getCause() : (IOException) e);
+        }
+    }
+
+    public static <T> List<T> deserialize(String simpleFileName, EntityCodec<T> codec) {
+        try (Stream<T> objects = streamMapped(simpleFileName, codec)) {
+            return objects.collect(Collectors.toCollection(ArrayList::new));
+        }
     }
 
-    // serialize the given object and save it to file
-    private static <T> void serializeIntoList(T obj, String fullFileName) {
-        serializedData.add(obj);
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(fullFileName))) {
-            out.writeObject(serializedData);
+    /**
+     * Decodes the entities straight from a memory mapping of the file.
+     *
+     * @param simpleFileName File name with or without the serialization suffix.
+     * @param codec          Codec of the entity class.
+     * @return the entities in the order they were serialized, or an empty stream if the file can't be mapped.
+     */
+    public static <T> Stream<T> streamMapped(String simpleFileName, EntityCodec<T> codec) {
+        Path file = Path.of(fullFileName(simpleFileName));
+        try {
+            flush(file.toString());
+            return FramedLogReader.mappedRecords(file).map(codec::decode);
         } catch (IOException e) {
-            ExceptionHandler.inputOutput(e);
+            log.error(e.getMessage());
+            return Stream.empty();
         }
     }
 
     public static <T> List<T> deserialize(String simpleFileName) {
-        return simpleFileName.equals(fullFileName) ?
-                deserializeList(simpleFileName) : deserializeList(simpleFileName + SUFFIX);
+        try (Stream<T> objects = stream(simpleFileName)) {
+            return objects.collect(Collectors.toCollection(ArrayList::new));
+        }
     }
 
-    // deserialize to Objects from given file
-    private static <T> List<T> deserializeList(String fileName) {
-        List<T> deserializedData = new ArrayList<>();
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(fileName))) {
-            deserializedData = (List<T>) in.readObject();
-        } catch (IOException | ClassNotFoundException e) {
+    /**
+     * Reads the objects one after the other, so that only the current one is in memory. The stream must be closed.
+     *
+     * @param simpleFileName File name with or without the serialization suffix.
+     * @return the objects in the order they were serialized, or an empty stream if the file can't be read.
+     */
+    public static <T> Stream<T> stream(String simpleFileName) {
+        Path file = Path.of(fullFileName(simpleFileName));
+        try {
+            flush(file.toString());
+            return FramedLogReader.records(file).map(bytes -> fromBytes(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
             log.error(e.getMessage());
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * Reads the objects from a memory mapping of the file instead of through a buffer.
+     *
+     * @param simpleFileName File name with or without the serialization suffix.
+     * @return the objects in the order they were serialized, or an empty stream if the file can't be mapped.
+     */
+    public static <T> Stream<T> streamMapped(String simpleFileName) {
+        Path file = Path.of(fullFileName(simpleFileName));
+        try {
+            flush(file.toString());
+            return FramedLogReader.mappedRecords(file).map(buffer -> fromBytes(new ByteBufferInputStream(buffer)));
+        } catch (IOException e) {
+            log.error(e.getMessage());
+            return Stream.empty();
+        }
+    }
+
+    /**
+     * Writes the buffered objects of all files and closes them; the next serialize appends to the file again.
+     */
+    public static void closeAll() {
+        for (Map.Entry<String, FramedLogWriter> entry : writers.entrySet()) {
+            try {
+                entry.getValue().close();
+            } catch (IOException e) {
+                ExceptionHandler.inputOutput(e);
+            }
+        }
+    }
+
+    private static String fullFileName(String simpleFileName) {
+        return simpleFileName.endsWith(SUFFIX) ? simpleFileName : simpleFileName + SUFFIX;
+    }
+
+    private static FramedLogWriter writer(String fullFileName) {
+        return writers.compute(fullFileName, (fileName, current) -> {
+            try {
+                if (current == null) {
+                    return FramedLogWriter.create(Path.of(fileName), fsyncPolicy);
+                }
+                if (!current.isOpen()) {
+                    return FramedLogWriter.open(Path.of(fileName), fsyncPolicy);
+                }
+                return current;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static void flush(String fullFileName) throws IOException {
+        FramedLogWriter writer = writers.get(fullFileName);
+        if (writer != null && writer.isOpen()) {
+            writer.flush();
+        }
+    }
+
+    private static byte[] toBytes(Object obj) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(obj);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static <T> T fromBytes(InputStream bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(bytes)) {
+            return (T) in.readObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads a record of a memory mapped log without copying it to the heap first.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
         }
-        return deserializedData;
     }
 }
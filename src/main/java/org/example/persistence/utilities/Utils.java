@@ -6,6 +6,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.example.exceptionhandler.ExceptionHandler;
 import org.example.persistence.ormanager.ORManager;
 import org.example.persistence.ormanager.ORManagerImpl;
+import org.example.persistence.ormanager.ShardedORManager;
+import org.example.persistence.routing.ReplicaRouting;
+import org.example.persistence.sql.Dialect;
+import org.example.persistence.sql.SQLLogger;
 
 import javax.sql.DataSource;
 import java.io.IOException;
@@ -13,6 +17,8 @@ import java.io.InputStream;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 @Slf4j
@@ -30,7 +36,18 @@ public class Utils {
         String jdbcUser = properties.getProperty("jdbc-username", "");
         String jdbcPass = properties.getProperty("jdbc-pass", "");
 
-        return new ORManagerImpl(createDataSource(jdbcUrl, jdbcUser, jdbcPass));
+        dataSource = createDataSource(jdbcUrl, jdbcUser, jdbcPass);
+        List<DataSource> replicas = new ArrayList<>();
+        for (String replicaUrl : properties.getProperty("jdbc-replica-urls", "").split(",")) {
+            if (!replicaUrl.isBlank()) {
+                replicas.add(createDataSource(replicaUrl.trim(), jdbcUser, jdbcPass));
+            }
+        }
+        ORManagerImpl manager = new ORManagerImpl(new ReplicaRouting(dataSource, replicas),
+                SQLLogger.fromProperties(properties), Dialect.fromJdbcUrl(jdbcUrl));
+        manager.setIdNode(Integer.parseInt(properties.getProperty("id-node", "0")),
+                Integer.parseInt(properties.getProperty("id-nodes", "1")));
+        return manager;
     }
 
     private static Properties readProperties(Path file) {
@@ -44,13 +61,12 @@ public class Utils {
         return result;
     }
 
-    private static DataSource createDataSource(String url, String user, String password) {
+    private static HikariDataSource createDataSource(String url, String user, String password) {
         HikariConfig config = new HikariConfig();
         config.setJdbcUrl(url);
         config.setUsername(user);
         config.setPassword(password);
-        dataSource = new HikariDataSource(config);
-        return dataSource;
+        return new HikariDataSource(config);
     }
 
     /**
@@ -65,4 +81,32 @@ public class Utils {
     public static ORManager withDataSource(DataSource dataSource) {
         return new ORManagerImpl(dataSource);
     }
-}
\ No newline at end of file
+
+    public static ORManager withDataSource(DataSource dataSource, SQLLogger sqlLogger) {
+        return new ORManagerImpl(dataSource, sqlLogger);
+    }
+
+    public static ORManager withDataSource(DataSource dataSource, SQLLogger sqlLogger, Dialect dialect) {
+        return new ORManagerImpl(dataSource, sqlLogger, dialect);
+    }
+
+    /**
+     * @param routing Primary DB for the writes and replicas for the reads.
+     * @return ORM Manager with the dialect of the primary DB.
+     */
+    public static ORManager withRouting(ReplicaRouting routing) {
+        return withRouting(routing, SQLLogger.defaultLogger());
+    }
+
+    public static ORManager withRouting(ReplicaRouting routing, SQLLogger sqlLogger) {
+        return new ORManagerImpl(routing, sqlLogger, Dialect.fromDataSource(routing.primary()));
+    }
+
+    /**
+     * @param shards One data source per shard, always in the same order.
+     * @return ORM Manager spreading the rows of every table over the shards, to be closed when no longer used.
+     */
+    public static ShardedORManager withShards(List<DataSource> shards) {
+        return new ShardedORManager(shards);
+    }
+}
@@ -0,0 +1,12 @@
+package org.example.persistence.writebehind;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Upserts entities of any classes in JDBC batches, all or none.
+ */
+@FunctionalInterface
+public interface EntityBatchWriter {
+    void write(List<Object> entities) throws SQLException;
+}
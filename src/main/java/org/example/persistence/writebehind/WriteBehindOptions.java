@@ -0,0 +1,50 @@
+package org.example.persistence.writebehind;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * Settings of a write-behind writer.
+ *
+ * @param queueCapacity   Distinct entities waiting to be written; a full queue makes save wait.
+ * @param batchSize       Entities written in one JDBC batch; this many waiting entities start a flush at once.
+ * @param flushInterval   Longest time an entity waits before it is written.
+ * @param offerTimeout    How long save waits for room in a full queue before it fails.
+ * @param failureListener Gets the entities of a batch the DB rejected; they are not written again.
+ */
+public record WriteBehindOptions(int queueCapacity, int batchSize, Duration flushInterval, Duration offerTimeout,
+                                 Consumer<WriteFailure> failureListener) {
+
+    public WriteBehindOptions {
+        if (queueCapacity < 1 || batchSize < 1 || flushInterval.isNegative() || flushInterval.isZero() ||
+                offerTimeout.isNegative()) {
+            throw new IllegalArgumentException("Write-behind queue capacity, batch size and flush interval " +
+                    "must be positive");
+        }
+    }
+
+    public static WriteBehindOptions defaults() {
+        return new WriteBehindOptions(10_000, 500, Duration.ofMillis(100), Duration.ofSeconds(10), failure -> {
+        });
+    }
+
+    public WriteBehindOptions withQueueCapacity(int queueCapacity) {
+        return new WriteBehindOptions(queueCapacity, batchSize, flushInterval, offerTimeout, failureListener);
+    }
+
+    public WriteBehindOptions withBatchSize(int batchSize) {
+        return new WriteBehindOptions(queueCapacity, batchSize, flushInterval, offerTimeout, failureListener);
+    }
+
+    public WriteBehindOptions withFlushInterval(Duration flushInterval) {
+        return new WriteBehindOptions(queueCapacity, batchSize, flushInterval, offerTimeout, failureListener);
+    }
+
+    public WriteBehindOptions withOfferTimeout(Duration offerTimeout) {
+        return new WriteBehindOptions(queueCapacity, batchSize, flushInterval, offerTimeout, failureListener);
+    }
+
+    public WriteBehindOptions withFailureListener(Consumer<WriteFailure> failureListener) {
+        return new WriteBehindOptions(queueCapacity, batchSize, flushInterval, offerTimeout, failureListener);
+    }
+}
@@ -0,0 +1,224 @@
+package org.example.persistence.writebehind;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.exceptionhandler.ExceptionHandler;
+import org.example.exceptionhandler.WriteBehindQueueFullException;
+import org.example.persistence.ormanager.ORManager;
+
+import java.lang.reflect.Field;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.example.persistence.proxy.EntityProxyFactory.getEntityClass;
+import static org.example.persistence.utilities.AnnotationUtils.getUpsertKeyField;
+
+/**
+ * Saves entities after the call instead of during it. The waiting entities are kept per class and upsert key
+ * (the ID or a unique column), so saving the same entity many times before the next flush writes it once,
+ * in its latest state. A background thread writes them in JDBC batches every flush interval, or as soon as
+ * a batch is full.
+ * <p>
+ * An entity saved here is only in memory until its batch is written: a crash loses up to a flush interval of writes,
+ * and a rejected batch is reported to the failure listener instead of to the caller. New entities without
+ * an upsert key are saved at once, as they get their ID from the DB. The writer is flushed and closed
+ * when the JVM shuts down normally.
+ */
+@Slf4j
+public class WriteBehindWriter implements AutoCloseable {
+    private final ORManager manager;
+    private final EntityBatchWriter batchWriter;
+    private final WriteBehindOptions options;
+    private final Map<Key, Object> pending = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Key> order = new ConcurrentLinkedQueue<>();
+    /**
+     * One permit per distinct waiting entity: a full queue makes save wait.
+     */
+    private final Semaphore room;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+    private final Thread shutdownHook;
+
+    /**
+     * @param manager     Saves the new entities.
+     * @param batchWriter Writes the waiting entities.
+     * @param options     Queue capacity, batch size, flush interval and failure listener.
+     */
+    public WriteBehindWriter(ORManager manager, EntityBatchWriter batchWriter, WriteBehindOptions options) {
+        this.manager = manager;
+        this.batchWriter = batchWriter;
+        this.options = options;
+        this.room = new Semaphore(options.queueCapacity());
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "orm-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = options.flushInterval().toNanos();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+        this.shutdownHook = new Thread(this::close, "orm-write-behind-close");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Queues the entity to be written with the next flush, replacing its earlier queued state.
+     *
+     * @param o Entity.
+     * @return the entity.
+     * @throws WriteBehindQueueFullException if the queue stayed full for the offer timeout.
+     * @throws IllegalStateException         if the writer is closed.
+     */
+    public <T> T save(T o) {
+        if (closed.get()) {
+            throw new IllegalStateException("The write-behind writer is closed");
+        }
+        Object keyValue = keyValue(o);
+        if (keyValue == null) {
+            return manager.save(o);
+        }
+        Key key = new Key(getEntityClass(o), keyValue);
+        if (pending.computeIfPresent(key, (k, queued) -> o) != null) {
+            return o;
+        }
+        acquireRoom();
+        if (pending.putIfAbsent(key, o) == null) {
+            order.add(key);
+            if (pending.size() >= options.batchSize() && flushRequested.compareAndSet(false, true)) {
+                try {
+                    flusher.execute(this::flushQuietly);
+                } catch (RejectedExecutionException e) {
+                    // closing, which flushes
+                }
+            }
+        } else {
+            // another thread queued the key meanwhile
+            pending.put(key, o);
+            room.release();
+        }
+        return o;
+    }
+
+    /**
+     * @return the number of distinct entities waiting to be written.
+     */
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Writes all waiting entities on the calling thread.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushRequested.set(false);
+            List<Object> batch = new ArrayList<>(options.batchSize());
+            Key key;
+            while ((key = order.poll()) != null) {
+                Object entity = pending.remove(key);
+                if (entity != null) {
+                    batch.add(entity);
+                }
+                if (batch.size() == options.batchSize()) {
+                    write(batch);
+                    batch = new ArrayList<>(options.batchSize());
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Stops the flusher and writes the waiting entities.
+     */
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(1, TimeUnit.MINUTES)) {
+                log.atWarn().log("The write-behind flusher didn't stop within a minute");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // the JVM is shutting down already
+            }
+        }
+    }
+
+    private void write(List<Object> batch) {
+        try {
+            batchWriter.write(batch);
+        } catch (SQLException | RuntimeException e) {
+            log.atWarn().log("A write-behind batch of {} entities failed: {}", batch.size(), e.getMessage());
+            notifyFailure(new WriteFailure(List.copyOf(batch), e));
+        } finally {
+            room.release(batch.size());
+        }
+    }
+
+    private void notifyFailure(WriteFailure failure) {
+        try {
+            options.failureListener().accept(failure);
+        } catch (RuntimeException e) {
+            log.atError().log("The write-behind failure listener failed", e);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.atError().log("Write-behind flush failed", e);
+        }
+    }
+
+    private void acquireRoom() {
+        try {
+            if (!room.tryAcquire(options.offerTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+                throw new WriteBehindQueueFullException(options.queueCapacity(), options.offerTimeout());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for room in the write-behind queue", e);
+        }
+    }
+
+    private static Object keyValue(Object o) {
+        Field keyField = getUpsertKeyField(getEntityClass(o));
+        try {
+            keyField.setAccessible(true);
+            return keyField.get(o);
+        } catch (IllegalAccessException e) {
+            ExceptionHandler.illegalAccess(e);
+        }
+        return null;
+    }
+
+    private record Key(Class<?> cls, Object value) {
+    }
+}
@@ -0,0 +1,12 @@
+package org.example.persistence.writebehind;
+
+import java.util.List;
+
+/**
+ * A batch of a write-behind writer the DB rejected.
+ *
+ * @param entities Entities of the batch, in their state when the batch was written.
+ * @param cause    Why the batch failed.
+ */
+public record WriteFailure(List<Object> entities, Exception cause) {
+}
@@ -0,0 +1,31 @@
+package org.example.persistence.bulk;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CsvReaderTest {
+
+    @Test
+    void WhenFieldsAreQuotedThenTheyMayContainCommasQuotesAndLineBreaks() {
+        CsvReader csvReader = new CsvReader(new StringReader("name,motto\r\n\"Kurt, Jr.\",\"So it \"\"goes\"\"\nand goes\"\r\n"));
+
+        assertThat(csvReader.getHeader()).containsExactly("name", "motto");
+        assertThat(csvReader.next()).containsExactly("Kurt, Jr.", "So it \"goes\"\nand goes");
+        assertThat(csvReader.hasNext()).isFalse();
+    }
+
+    @Test
+    void WhenFieldIsEmptyThenItIsNullUnlessQuoted() {
+        CsvReader csvReader = new CsvReader(new StringReader("a,b,c\n,\"\",x\n\n1,2,"));
+        List<List<String>> records = new ArrayList<>();
+        csvReader.forEachRemaining(records::add);
+
+        assertThat(records).containsExactly(Arrays.asList(null, "", "x"), Arrays.asList("1", "2", null));
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.persistence.cache;
+
+import org.example.domain.model.Academy;
+import org.example.domain.model.Student;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapEntityCacheTest {
+
+    @Test
+    void WhenRowsArePutThenTheyAreReadBackPerClassAndId() {
+        OffHeapEntityCache cache = new OffHeapEntityCache(1 << 20);
+        for (int id = 1; id <= 1000; id++) {
+            cache.put(Academy.class, id, row(id, 10 + id % 200));
+            cache.put(Student.class, id, row(-id, 5));
+        }
+        cache.put(Academy.class, 7, row(70, 300));
+        cache.evict(Academy.class, 8);
+
+        assertThat(cache.get(Academy.class, 1)).isEqualTo(row(1, 11));
+        assertThat(cache.get(Academy.class, 7)).isEqualTo(row(70, 300));
+        assertThat(cache.get(Student.class, 7)).isEqualTo(row(-7, 5));
+        assertThat(cache.get(Academy.class, 8)).isNull();
+        assertThat(cache.size(Academy.class)).isEqualTo(999);
+        cache.clear(Student.class);
+        assertThat(cache.size(Student.class)).isZero();
+        assertThat(cache.get(Student.class, 1)).isNull();
+
+        OffHeapCacheStats stats = cache.stats();
+        assertThat(stats.entries()).isEqualTo(999);
+        assertThat(stats.hits()).isEqualTo(3);
+        assertThat(stats.misses()).isEqualTo(2);
+        assertThat(stats.hitRate()).isEqualTo(0.6);
+        assertThat(stats.usedBytes()).isLessThanOrEqualTo(stats.capacityBytes());
+    }
+
+    @Test
+    void WhenCacheIsFullThenTheClockEvictsRowsNotReadRecently() {
+        // 8 chunks of 8 KiB: 128 rows of one 64 byte slot per chunk
+        OffHeapEntityCache cache = new OffHeapEntityCache(64 * 1024);
+        int rows = 8 * 128;
+        for (int id = 0; id < rows; id++) {
+            cache.put(Academy.class, id, row(id, 40));
+        }
+        for (int id = 0; id < rows / 2; id++) {
+            cache.get(Academy.class, id);
+        }
+
+        for (int id = rows; id < rows + 100; id++) {
+            cache.put(Academy.class, id, row(id, 40));
+        }
+
+        OffHeapCacheStats stats = cache.stats();
+        assertThat(stats.evictions()).isEqualTo(100);
+        assertThat(stats.entries()).isEqualTo(rows);
+        assertThat(stats.usedBytes()).isEqualTo(64 * 1024);
+        for (int id = 0; id < rows / 2; id++) {
+            assertThat(cache.get(Academy.class, id)).isEqualTo(row(id, 40));
+        }
+        assertThat(cache.get(Academy.class, rows + 99)).isEqualTo(row(rows + 99, 40));
+        cache.put(Academy.class, -1, new byte[100_000]);
+        assertThat(cache.stats().rejected()).isEqualTo(1);
+    }
+
+    private static byte[] row(int seed, int length) {
+        byte[] row = new byte[length];
+        Arrays.fill(row, (byte) seed);
+        row[0] = (byte) (seed >> 8);
+        return row;
+    }
+}
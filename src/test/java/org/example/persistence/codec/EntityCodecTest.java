@@ -0,0 +1,92 @@
+package org.example.persistence.codec;
+
+import org.example.domain.model.Academy;
+import org.example.domain.model.Student;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EntityCodecTest {
+
+    @Test
+    void WhenEntityIsEncodedAndDecodedThenItHasTheSameFieldsAndItsReferenceOnlyHasTheId() {
+        Academy academy = new Academy("Sofia Academy");
+        academy.setId(7L);
+        Student student = new Student("Jack", "Black", 53, LocalDate.of(1999, 12, 31));
+        student.setId(248L);
+        student.setAcademy(academy);
+
+        Student decoded = EntityCodec.of(Student.class).decode(EntityCodec.of(Student.class).encode(student));
+
+        assertThat(decoded).usingRecursiveComparison().ignoringFields("academy").isEqualTo(student);
+        assertThat(decoded.getAcademy().getId()).isEqualTo(7L);
+        assertThat(decoded.getAcademy().getName()).isNull();
+    }
+
+    @Test
+    void WhenFieldsAreNullThenTheyStayNullAndTheReusedWriterEncodesTheNextEntity() {
+        EntityCodec<Student> codec = EntityCodec.of(Student.class);
+        BinaryWriter writer = new BinaryWriter(16);
+        Student withNulls = new Student("Kyle", null, 62, null);
+        Student full = new Student("Kyle", "Gass", 62, LocalDate.of(2020, 1, 1));
+        full.setId(1L);
+
+        codec.encode(withNulls, writer);
+        codec.encode(full, writer);
+        ByteBuffer buffer = writer.buffer();
+
+        assertThat(codec.decode(buffer)).isEqualTo(withNulls);
+        assertThat(codec.decode(buffer)).isEqualTo(full);
+        assertThat(buffer.hasRemaining()).isFalse();
+        assertThat(writer.reset().size()).isZero();
+    }
+
+    @Test
+    void WhenEntityIsEncodedThenItIsSmallerThanWithJavaSerialization() throws IOException {
+        Student student = new Student("Jack", "Black", 53, LocalDate.now());
+        student.setId(33L);
+        ByteArrayOutputStream javaSerialized = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(javaSerialized)) {
+            out.writeObject(student);
+        }
+
+        assertThat(EntityCodec.of(Student.class).encode(student).length * 5).isLessThan(javaSerialized.size());
+    }
+
+    @Test
+    void WhenVarintsAreWrittenThenTheExtremesAreReadBack() {
+        BinaryWriter writer = new BinaryWriter();
+        long[] longs = {0, -1, 1, Long.MIN_VALUE, Long.MAX_VALUE};
+        int[] ints = {0, -1, 63, -64, Integer.MIN_VALUE, Integer.MAX_VALUE};
+        for (long value : longs) {
+            writer.writeVarLong(value);
+        }
+        for (int value : ints) {
+            writer.writeVarInt(value);
+        }
+        writer.writeString("žълт");
+
+        BinaryReader reader = new BinaryReader(writer.buffer());
+        for (long value : longs) {
+            assertThat(reader.readVarLong()).isEqualTo(value);
+        }
+        for (int value : ints) {
+            assertThat(reader.readVarInt()).isEqualTo(value);
+        }
+        assertThat(reader.readString()).isEqualTo("žълт");
+    }
+
+    @Test
+    void WhenEncodedFieldCountDiffersThenThrowException() {
+        byte[] academy = EntityCodec.of(Academy.class).encode(new Academy("name"));
+
+        assertThrows(IllegalArgumentException.class, () -> EntityCodec.of(Student.class).decode(academy));
+    }
+}
@@ -0,0 +1,28 @@
+package org.example.persistence.idgen;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimeOrderedIdGeneratorTest {
+
+    @Test
+    void WhenClockStandsStillThenIdsStillIncreaseAndKeepTheirNode() {
+        Clock clock = Clock.fixed(Instant.parse("2025-06-01T00:00:00Z"), ZoneOffset.UTC);
+        TimeOrderedIdGenerator node2 = new TimeOrderedIdGenerator(clock, 2, 3);
+
+        long previous = 0;
+        for (int i = 0; i < 10_000; i++) {
+            long id = node2.nextId();
+            assertThat(id).isGreaterThan(previous);
+            assertThat(Math.floorMod(id - 1, 3)).isEqualTo(2);
+            previous = id;
+        }
+        TimeOrderedIdGenerator later = new TimeOrderedIdGenerator(Clock.offset(clock, java.time.Duration.ofSeconds(1)), 2, 3);
+        assertThat(later.nextId()).isGreaterThan(previous);
+    }
+}
@@ -0,0 +1,97 @@
+package org.example.persistence.log;
+
+import org.example.exceptionhandler.CorruptLogException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FramedLogTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void WhenRecordsAreAppendedThenBothReadersReturnThemInOrder() throws IOException {
+        Path file = tempDir.resolve("records.log");
+        try (FramedLogWriter writer = FramedLogWriter.create(file, FsyncPolicy.group(2, Duration.ofMillis(10)))) {
+            writer.append(bytes("first"));
+            writer.append(bytes("second"));
+        }
+        try (FramedLogWriter writer = FramedLogWriter.open(file, FsyncPolicy.always())) {
+            writer.append(bytes("third"));
+        }
+
+        try (Stream<byte[]> records = FramedLogReader.records(file)) {
+            assertThat(records.map(FramedLogTest::string)).containsExactly("first", "second", "third");
+        }
+        try (Stream<ByteBuffer> records = FramedLogReader.mappedRecords(file)) {
+            assertThat(records.map(StandardCharsets.UTF_8::decode).map(CharSequence::toString))
+                    .containsExactly("first", "second", "third");
+        }
+    }
+
+    @Test
+    void WhenTheLastRecordIsTornThenItIsDroppedAndOverwrittenOnOpen() throws IOException {
+        Path file = tempDir.resolve("torn.log");
+        long tornOffset;
+        try (FramedLogWriter writer = FramedLogWriter.create(file, FsyncPolicy.never())) {
+            writer.append(bytes("kept"));
+            tornOffset = writer.append(bytes("torn record"));
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(tornOffset + 10);
+        }
+
+        try (Stream<byte[]> records = FramedLogReader.records(file)) {
+            assertThat(records.map(FramedLogTest::string)).containsExactly("kept");
+        }
+        try (FramedLogWriter writer = FramedLogWriter.open(file, FsyncPolicy.never())) {
+            assertThat(writer.append(bytes("appended"))).isEqualTo(tornOffset);
+        }
+        try (Stream<byte[]> records = FramedLogReader.records(file)) {
+            assertThat(records.map(FramedLogTest::string)).containsExactly("kept", "appended");
+        }
+    }
+
+    @Test
+    void WhenARecordBeforeTheLastIsDamagedThenThrowException() throws IOException {
+        Path file = tempDir.resolve("corrupt.log");
+        long damagedOffset;
+        try (FramedLogWriter writer = FramedLogWriter.create(file, FsyncPolicy.never())) {
+            damagedOffset = writer.append(bytes("damaged"));
+            writer.append(bytes("last"));
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(damagedOffset + 8);
+            raf.write('X');
+        }
+
+        assertThrows(CorruptLogException.class, () -> {
+            try (Stream<byte[]> records = FramedLogReader.records(file)) {
+                records.toList();
+            }
+        });
+        long damagedSize = Files.size(file);
+        assertThrows(CorruptLogException.class, () -> FramedLogWriter.open(file, FsyncPolicy.never()).close());
+        assertThat(Files.size(file)).isEqualTo(damagedSize);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
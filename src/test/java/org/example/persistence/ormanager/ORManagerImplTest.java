@@ -2,6 +2,8 @@ package org.example.persistence.ormanager;
 
 import com.zaxxer.hikari.HikariDataSource;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.assertj.db.type.DateValue;
 import org.assertj.db.type.Table;
@@ -10,21 +12,53 @@ import org.example.domain.model.Student;
 import org.example.exceptionhandler.EntityAnnotationNotFoundException;
 import org.example.exceptionhandler.EntityNotFoundException;
 import org.example.exceptionhandler.IdAnnotationNotFoundException;
+import org.example.exceptionhandler.OptimisticLockException;
+import org.example.persistence.annotations.CascadeType;
 import org.example.persistence.annotations.Column;
 import org.example.persistence.annotations.Entity;
+import org.example.persistence.annotations.GenerationType;
 import org.example.persistence.annotations.Id;
+import org.example.persistence.annotations.ManyToMany;
+import org.example.persistence.annotations.ManyToOne;
+import org.example.persistence.annotations.OneToMany;
+import org.example.persistence.annotations.Version;
+import org.example.persistence.bulk.ExportFormat;
+import org.example.persistence.bulk.ExportOptions;
+import org.example.persistence.bulk.ImportOptions;
+import org.example.persistence.bulk.ImportReport;
+import org.example.persistence.cache.MapEntityCache;
+import org.example.persistence.cache.OffHeapEntityCache;
+import org.example.persistence.cache.SnapshotReport;
+import org.example.persistence.idgen.TimeOrderedIdGenerator;
+import org.example.persistence.proxy.EntityProxyFactory;
+import org.example.persistence.proxy.PersistentList;
+import org.example.persistence.query.Aggregation;
 import org.example.persistence.utilities.Utils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.Month;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.zip.GZIPInputStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.db.api.Assertions.assertThat;
@@ -43,10 +77,32 @@ class ORManagerImplTest {
 
     @AfterEach
     void tearDown() throws SQLException {
+        pstmt = connection.prepareStatement("DROP TABLE IF EXISTS courses_tags");
+        pstmt.executeUpdate();
+        pstmt = connection.prepareStatement("DROP TABLE IF EXISTS courses");
+        pstmt.executeUpdate();
+        pstmt = connection.prepareStatement("DROP TABLE IF EXISTS tags");
+        pstmt.executeUpdate();
         pstmt = connection.prepareStatement("DROP TABLE IF EXISTS students");
         pstmt.executeUpdate();
         pstmt = connection.prepareStatement("DROP TABLE IF EXISTS academies");
         pstmt.executeUpdate();
+        pstmt = connection.prepareStatement("DROP TABLE IF EXISTS members");
+        pstmt.executeUpdate();
+        pstmt = connection.prepareStatement("DROP TABLE IF EXISTS accounts");
+        pstmt.executeUpdate();
+        pstmt = connection.prepareStatement("DROP TABLE IF EXISTS tickets");
+        pstmt.executeUpdate();
+        pstmt = connection.prepareStatement("DROP TABLE IF EXISTS invoices");
+        pstmt.executeUpdate();
+        pstmt = connection.prepareStatement("DROP SEQUENCE IF EXISTS invoices_id_seq");
+        pstmt.executeUpdate();
+        pstmt = connection.prepareStatement("DROP TABLE IF EXISTS readings");
+        pstmt.executeUpdate();
+        pstmt = connection.prepareStatement("DROP TABLE IF EXISTS players");
+        pstmt.executeUpdate();
+        pstmt = connection.prepareStatement("DROP TABLE IF EXISTS teams");
+        pstmt.executeUpdate();
 
         if (connection != null) {
             connection.close();
@@ -177,6 +233,68 @@ class ORManagerImplTest {
         assertThat(foundStudent.getId()).isEqualTo(1);
     }
 
+    @Test
+    void WhenStudentIsFoundThenItsAcademyIsLoadedOnlyWhenUsed() {
+        Academy academy = new Academy("SoftServe");
+        manager.save(academy);
+        student1.setAcademy(academy);
+        manager.save(student1);
+
+        Student foundStudent = manager.findById(student1.getId(), Student.class).get();
+
+        assertThat(foundStudent.getAcademy().getId()).isEqualTo(academy.getId());
+        assertTrue(EntityProxyFactory.isUninitializedProxy(foundStudent.getAcademy()));
+        assertThat(foundStudent.getAcademy().getName()).isEqualTo("SoftServe");
+        assertFalse(EntityProxyFactory.isUninitializedProxy(foundStudent.getAcademy()));
+    }
+
+    @Test
+    void WhenAcademyIsFoundThenItsStudentsAreReadFromDB() {
+        Academy academy = manager.save(new Academy("Khan"));
+        student1.setAcademy(academy);
+        manager.save(student1);
+        Student student2 = new Student("Dale", "", 66, LocalDate.now());
+        student2.setAcademy(academy);
+        manager.save(student2);
+
+        Academy foundAcademy = manager.findById(academy.getId(), Academy.class).get();
+
+        assertThat(foundAcademy.getStudents()).extracting(Student::getFirstName).containsExactly("Bob", "Dale");
+        assertThat(foundAcademy.getStudents().get(0).getAcademy()).isSameAs(foundAcademy);
+    }
+
+    @Test
+    void WhenFindAllAcademiesThenTheirStudentsAreLoadedTogetherOnFirstAccess() {
+        Academy khan = manager.save(new Academy("Khan"));
+        Academy atlas = manager.save(new Academy("Atlas"));
+        manager.save(new Academy("Empty"));
+        student1.setAcademy(khan);
+        manager.save(student1);
+        Student student2 = new Student("Dale", "", 66, LocalDate.now());
+        student2.setAcademy(atlas);
+        manager.save(student2);
+
+        List<Academy> academies = manager.findAll(Academy.class);
+        PersistentList<Student> atlasStudents = (PersistentList<Student>) academies.get(1).getStudents();
+
+        assertFalse(atlasStudents.isInitialized());
+        assertThat(academies.get(0).getStudents()).hasSize(1);
+        assertTrue(atlasStudents.isInitialized());
+        assertThat(atlasStudents).extracting(Student::getFirstName).containsExactly("Dale");
+        assertThat(academies.get(2).getStudents()).isEmpty();
+    }
+
+    @Test
+    void WhenLoadedAcademyIsUpdatedThenRecordIsChanged() {
+        Academy academy = manager.save(new Academy("Khan"));
+        Academy foundAcademy = manager.findById(academy.getId(), Academy.class).get();
+
+        foundAcademy.setName("Khan Academy");
+        manager.update(foundAcademy);
+
+        assertThat(createdAcademiesTable).column(1).value().isEqualTo("Khan Academy");
+    }
+
     @Test
     void WhenIdDoesntExistsThenReturnEmptyOptional() {
         Optional<Student> studentToBeFound = manager.findById(-1L, Student.class);
@@ -215,6 +333,50 @@ class ORManagerImplTest {
         assertThat(allStudents).hasSize(4);
     }
 
+    @Test
+    void WhenFindAllByIdThenReturnFoundStudentsInRequestedOrder() {
+        Student un = manager.save(new Student("Un", "", 1, LocalDate.now()));
+        Student dos = manager.save(new Student("Dos", "", 2, LocalDate.now()));
+        Student tres = manager.save(new Student("Tres", "", 3, LocalDate.now()));
+
+        List<Student> found = manager.findAllById(List.of(tres.getId(), -1L, un.getId(), dos.getId()), Student.class);
+
+        assertThat(found).extracting(Student::getFirstName).containsExactly("Tres", "Un", "Dos");
+    }
+
+    @Test
+    void WhenParallelFindAllThenAllRowsAreReadInIdOrderDespiteGaps() {
+        List<Academy> academies = manager.saveAll(IntStream.range(0, 200).mapToObj(i -> new Academy("Academy " + i)).toList());
+        manager.delete(academies.subList(20, 120).toArray());
+        Student student = new Student("Ref", "", 20, LocalDate.now());
+        student.setAcademy(academies.get(150));
+        manager.save(student);
+
+        List<Academy> found = manager.parallelFindAll(Academy.class, 4);
+
+        assertThat(found).extracting(Academy::getId)
+                .containsExactlyElementsOf(manager.findAll(Academy.class).stream().map(Academy::getId).sorted().toList());
+        assertThat(manager.parallelFindAll(Student.class, 4)).singleElement()
+                .extracting(s -> s.getAcademy().getName()).isEqualTo("Academy 150");
+        try (var scan = manager.parallelScan(Academy.class, 3)) {
+            assertThat(scan.limit(5)).extracting(Academy::getName)
+                    .containsExactly("Academy 0", "Academy 1", "Academy 2", "Academy 3", "Academy 4");
+        }
+    }
+
+    @Test
+    void WhenFindAllByIdWithMoreIdsThanOneQueryTakesThenReturnAllOfThem() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 1205; i++) {
+            ids.add(manager.save(new Student("Student" + i, "", 20, LocalDate.now())).getId());
+        }
+        Collections.reverse(ids);
+
+        List<Student> found = manager.findAllById(ids, Student.class);
+
+        assertThat(found).extracting(Student::getId).containsExactlyElementsOf(ids);
+    }
+
     @Test
     void WhenInsertingIntoDBThenFindAllReturnsCorrectRecordsCount() throws SQLException {
         String dbInsertedStudent = """
@@ -235,6 +397,569 @@ class ORManagerImplTest {
         output(createdStudentsTable).toFile("tableFromTest.txt");
     }
 
+    @Test
+    void WhenUpsertNewStudentThenInsertItAndAssignId() {
+        Student upserted = manager.upsert(student1);
+
+        assertThat(upserted.getId()).isPositive();
+        assertThat(createdStudentsTable).hasNumberOfRows(1);
+    }
+
+    @Test
+    void WhenUpsertExistingStudentThenUpdateItsRow() {
+        manager.save(student1);
+        Long id = student1.getId();
+        student1.setSecondName("Dylan");
+
+        manager.upsert(student1);
+
+        assertThat(student1.getId()).isEqualTo(id);
+        assertThat(createdStudentsTable).hasNumberOfRows(1)
+                .row(0).value("second_name").isEqualTo("Dylan");
+    }
+
+    @Test
+    void WhenUpsertByUniqueColumnThenDetachedEntityUpdatesTheRowWithTheSameKey() {
+        Table createdMembersTable = new Table(dataSource, "members");
+        manager.register(Member.class);
+        Member member = manager.upsert(new Member("dude@example.org", "Dude"));
+
+        Member fromExternalSource = new Member("dude@example.org", "The Dude");
+        manager.upsert(fromExternalSource);
+
+        assertThat(fromExternalSource.getId()).isEqualTo(member.getId());
+        assertThat(createdMembersTable).hasNumberOfRows(1)
+                .row(0).value("nickname").isEqualTo("The Dude");
+    }
+
+    @Test
+    void WhenSaveAllThenInsertNewAndUpdateExistingEntitiesInOneCall() {
+        manager.save(student1);
+        student1.setAge(67);
+        List<Student> students = new ArrayList<>(List.of(student1));
+        for (int i = 0; i < 600; i++) {
+            students.add(new Student("Student" + i, "", 20, LocalDate.now()));
+        }
+
+        manager.saveAll(students);
+
+        assertThat(students).extracting(Student::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(manager.recordsCount(Student.class)).isEqualTo(601);
+        assertThat(manager.findById(student1.getId(), Student.class).get().getAge()).isEqualTo(67);
+    }
+
+    @Test
+    void WhenIdsComeFromASequenceThenEveryCallOfItReservesABlockOfIds() throws SQLException {
+        manager.register(Invoice.class);
+        manager.persist(new Invoice("I-0"));
+        List<Invoice> invoices = IntStream.range(1, 25).mapToObj(i -> new Invoice("I-" + i)).toList();
+        manager.saveAll(invoices);
+        manager.importStream(Invoice.class, IntStream.range(25, 40).mapToObj(i -> new Invoice("I-" + i)));
+
+        Invoice fromExternalSource = manager.upsert(new Invoice("I-3"));
+
+        assertThat(invoices).extracting(Invoice::getId).containsExactlyElementsOf(LongStream.range(2, 26).boxed().toList());
+        assertThat(fromExternalSource.getId()).isEqualTo(4);
+        assertThat(manager.recordsCount(Invoice.class)).isEqualTo(40);
+        try (ResultSet rs = connection.createStatement().executeQuery("SELECT MAX(id) FROM invoices")) {
+            rs.next();
+            assertThat(rs.getLong(1)).isEqualTo(40);
+        }
+        // blocks of ten IDs from 1, 11, 21, 31, and 41 for the upsert, which then found the row of I-3
+        try (ResultSet rs = connection.createStatement().executeQuery("SELECT NEXT VALUE FOR invoices_id_seq")) {
+            rs.next();
+            assertThat(rs.getLong(1)).isEqualTo(51);
+        }
+    }
+
+    @Test
+    void WhenIdsAreTimeOrderedThenTheyIncreaseInInsertOrder() {
+        manager.register(Reading.class);
+        List<Reading> readings = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            readings.add(manager.save(new Reading(i * 0.5)));
+        }
+
+        assertThat(readings).extracting(Reading::getId).isSorted().doesNotHaveDuplicates();
+        Reading last = readings.get(99);
+        assertThat(manager.findById(last.getId(), Reading.class)).get().extracting(Reading::getCelsius).isEqualTo(49.5);
+    }
+
+    @Test
+    void WhenManagersHaveTheirOwnIdNodeThenTheirTimeOrderedIdsDontCollide() {
+        ORManagerImpl first = new ORManagerImpl(dataSource);
+        ORManagerImpl second = new ORManagerImpl(dataSource);
+        first.setIdNode(0, 2);
+        second.setIdNode(1, 2);
+        first.register(Reading.class);
+        List<Reading> readings = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            readings.add(first.save(new Reading(i * 1.0)));
+            readings.add(second.save(new Reading(i * -1.0)));
+        }
+
+        assertThat(readings).extracting(Reading::getId).doesNotHaveDuplicates();
+        assertThat(manager.recordsCount(Reading.class)).isEqualTo(200);
+        assertThrows(IllegalArgumentException.class, () -> first.setIdNode(2, 2));
+        assertThrows(IllegalArgumentException.class, () -> first.setIdNode(0, TimeOrderedIdGenerator.MAX_NODES + 1));
+    }
+
+    @Test
+    void WhenSavingAGraphThenNewEntitiesAreInsertedParentsFirstAndExistingOnesUpdated() throws SQLException {
+        manager.register(Team.class, Player.class);
+        Team team = new Team("Blue");
+        for (int i = 0; i < 500; i++) {
+            team.getPlayers().add(new Player("Player" + i, null));
+        }
+
+        manager.save(team);
+
+        assertThat(team.getId()).isNotNull();
+        assertThat(team.getPlayers()).allMatch(player -> player.getId() != null && player.getTeam() == team);
+        assertThat(playersOfTeam(team.getId())).isEqualTo(500);
+
+        team.setName("Red");
+        team.getPlayers().get(0).setName("Captain");
+        team.getPlayers().add(new Player("Rookie", team));
+        manager.save(team);
+
+        assertThat(manager.findById(team.getId(), Team.class).get().getName()).isEqualTo("Red");
+        assertThat(manager.findById(team.getPlayers().get(0).getId(), Player.class).get().getName()).isEqualTo("Captain");
+        assertThat(playersOfTeam(team.getId())).isEqualTo(501);
+    }
+
+    @Test
+    void WhenPersistingAnEntityReferencingANewOneThenBothAreInsertedAndTheListHasItOnce() throws SQLException {
+        manager.register(Team.class, Player.class);
+        Team team = new Team("Green");
+        Player player = new Player("Solo", team);
+
+        manager.persist(player);
+
+        assertThat(team.getId()).isNotNull();
+        assertThat(team.getPlayers()).containsExactly(player);
+        assertThat(playersOfTeam(team.getId())).isEqualTo(1);
+    }
+
+    @Test
+    void WhenUpsertingACascadingEntityWithAnExistingUniqueKeyThenItsRowIsUpdatedAndItsListInserted() throws SQLException {
+        manager.register(Team.class, Player.class, Member.class);
+        Team team = new Team("Orange");
+        team.getPlayers().add(new Player("One", null));
+        manager.saveAll(List.of(team, new Member("dude@example.org", "Dude")));
+
+        Team fromExternalSource = new Team("Orange");
+        fromExternalSource.getPlayers().add(new Player("Two", null));
+        Member member = new Member("dude@example.org", "The Dude");
+        manager.saveAll(List.of(fromExternalSource, member));
+
+        assertThat(fromExternalSource.getId()).isEqualTo(team.getId());
+        assertThat(manager.recordsCount(Team.class)).isEqualTo(1);
+        assertThat(playersOfTeam(team.getId())).isEqualTo(2);
+        assertThat(manager.recordsCount(Member.class)).isEqualTo(1);
+        assertThat(manager.findById(member.getId(), Member.class).get().getNickname()).isEqualTo("The Dude");
+    }
+
+    @Test
+    void WhenDeletingWithCascadeRemoveThenTheListElementsAreDeletedBeforeTheirOwner() {
+        manager.register(Team.class, Player.class);
+        Team team = new Team("Yellow");
+        team.getPlayers().add(new Player("One", null));
+        team.getPlayers().add(new Player("Two", null));
+        manager.save(team);
+        Team fromDb = manager.findById(team.getId(), Team.class).get();
+
+        assertTrue(manager.delete(fromDb));
+
+        assertThat(fromDb.getId()).isNull();
+        assertThat(manager.recordsCount(Player.class)).isZero();
+        assertThat(manager.recordsCount(Team.class)).isZero();
+    }
+
+    @Test
+    void WhenUpdatingAManyToManyListThenOnlyTheChangedLinksAreWritten() throws SQLException {
+        manager.register(Course.class, Tag.class);
+        List<Tag> tags = manager.saveAll(List.of(new Tag("java"), new Tag("sql"), new Tag("jdbc")));
+        Course course = new Course("Persistence");
+        course.getTags().addAll(tags.subList(0, 2));
+
+        manager.persist(course);
+
+        assertThat(tagsOfCourse(course.getId())).containsExactly(tags.get(0).getId(), tags.get(1).getId());
+
+        Course fromDb = manager.findById(course.getId(), Course.class).get();
+        fromDb.getTags().remove(0);
+        fromDb.getTags().add(tags.get(2));
+        manager.update(fromDb);
+
+        assertThat(tagsOfCourse(course.getId())).containsExactly(tags.get(1).getId(), tags.get(2).getId());
+        course.getTags().clear();
+        manager.update(course);
+        assertThat(tagsOfCourse(course.getId())).isEmpty();
+        assertThrows(IllegalStateException.class, () -> {
+            course.getTags().add(new Tag("unsaved"));
+            manager.update(course);
+        });
+    }
+
+    @Test
+    void WhenWritingTheLinksFailsThenTheRowIsNotWrittenEither() throws SQLException {
+        manager.register(Course.class, Tag.class);
+        Tag java = manager.save(new Tag("java"));
+        Course course = new Course("Persistence");
+        course.getTags().add(java);
+        manager.persist(course);
+
+        course.setName("Databases");
+        course.getTags().add(new Tag("unsaved"));
+        assertThrows(IllegalStateException.class, () -> manager.update(course));
+
+        Course fromDb = manager.findById(course.getId(), Course.class).get();
+        assertThat(fromDb.getName()).isEqualTo("Persistence");
+        assertThat(tagsOfCourse(course.getId())).containsExactly(java.getId());
+
+        Course unsavedTags = new Course("Unsaved tags");
+        unsavedTags.getTags().add(new Tag("unsaved"));
+        assertThrows(IllegalStateException.class, () -> manager.persist(unsavedTags));
+
+        assertThat(unsavedTags.getId()).isNull();
+        assertThat(manager.recordsCount(Course.class)).isEqualTo(1);
+    }
+
+    @Test
+    void WhenUpsertingANewEntityWithAnExistingUniqueKeyThenItsLinksAreDiffed() throws SQLException {
+        manager.register(Course.class, Tag.class);
+        List<Tag> tags = manager.saveAll(List.of(new Tag("java"), new Tag("sql"), new Tag("jdbc")));
+        Course course = new Course("Persistence");
+        course.getTags().addAll(tags.subList(0, 2));
+        manager.upsert(course);
+
+        Course fromExternalSource = new Course("Persistence");
+        fromExternalSource.getTags().addAll(tags.subList(1, 3));
+        manager.upsert(fromExternalSource);
+
+        assertThat(fromExternalSource.getId()).isEqualTo(course.getId());
+        assertThat(manager.recordsCount(Course.class)).isEqualTo(1);
+        assertThat(tagsOfCourse(course.getId())).containsExactly(tags.get(1).getId(), tags.get(2).getId());
+    }
+
+    @Test
+    void WhenReadingManyToManyListsThenTheListsOfAllOwnersAreLoadedTogether() {
+        manager.register(Course.class, Tag.class);
+        List<Tag> tags = manager.saveAll(List.of(new Tag("java"), new Tag("sql")));
+        List<Course> courses = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Course course = new Course("Course" + i);
+            course.getTags().addAll(i == 0 ? tags.subList(0, 1) : tags);
+            courses.add(course);
+        }
+        manager.saveAll(courses);
+
+        List<Course> fromDb = manager.findAll(Course.class);
+
+        assertThat(fromDb.get(0).getTags()).extracting(Tag::getName).containsExactly("java");
+        assertThat(fromDb).allMatch(course -> ((PersistentList<?>) course.getTags()).isInitialized());
+        assertThat(fromDb.get(2).getTags()).extracting(Tag::getName).containsExactly("java", "sql");
+        assertThat(fromDb.get(1).getTags().get(1)).isSameAs(fromDb.get(2).getTags().get(1));
+        Tag sql = manager.findById(tags.get(1).getId(), Tag.class).get();
+        assertThat(sql.getCourses()).extracting(Course::getName).containsExactly("Course1", "Course2");
+    }
+
+    @Test
+    void WhenRunningNativeSqlThenRowsAreMappedByColumnLabel() {
+        Academy academy = manager.save(new Academy("Sofia"));
+        for (int age = 20; age <= 40; age += 10) {
+            Student student = new Student("Age" + age, "", age, null);
+            student.setAcademy(academy);
+            manager.save(student);
+        }
+
+        List<Student> students = manager.nativeQuery("SELECT * FROM students WHERE age > ? ORDER BY age DESC", Student.class, 25);
+        List<AgeRank> ranks = manager.nativeQuery("SELECT first_name, age, RANK() OVER (ORDER BY age DESC) AS ageRank " +
+                "FROM students ORDER BY ageRank", AgeRank.class);
+
+        assertThat(students).extracting(Student::getFirstName).containsExactly("Age40", "Age30");
+        assertThat(students.get(0).getAcademy().getName()).isEqualTo("Sofia");
+        assertThat(ranks).containsExactly(new AgeRank("Age40", 1), new AgeRank("Age30", 2), new AgeRank("Age20", 3));
+        assertThat(manager.nativeQuery("SELECT AVG(CAST(age AS DOUBLE)) FROM students", Double.class)).containsExactly(30.0);
+        Academy fromSql = manager.nativeQuery("SELECT * FROM academies", Academy.class).get(0);
+        assertThat(fromSql.getStudents()).hasSize(3);
+    }
+
+    record AgeRank(@Column(name = "first_name") String firstName, long ageRank) {
+    }
+
+    @Test
+    void WhenAggregatingThenTheDatabaseComputesTheValuesPerGroup() {
+        Academy sofia = manager.save(new Academy("Sofia"));
+        Academy varna = manager.save(new Academy("Varna"));
+        int[] ages = {18, 21, 30, 45};
+        for (int i = 0; i < ages.length; i++) {
+            Student student = new Student("Student" + i, "", ages[i], null);
+            student.setAcademy(i < 3 ? sofia : varna);
+            manager.save(student);
+        }
+
+        List<AgeByAcademy> byAcademy = manager.aggregate(Aggregation.of(Student.class)
+                .groupBy("academy").count().avg("age").as("averageAge").max("age"), AgeByAcademy.class);
+        List<Long> adults = manager.aggregate(Aggregation.of(Student.class)
+                .count().where("age", Aggregation.Operator.GREATER_OR_EQUAL, 21), Long.class);
+
+        assertThat(byAcademy).extracting(AgeByAcademy::academy).extracting(Academy::getName).containsExactly("Sofia", "Varna");
+        assertThat(byAcademy.get(0)).extracting(AgeByAcademy::count, AgeByAcademy::averageAge, AgeByAcademy::maxAge)
+                .containsExactly(3L, 23.0, 30);
+        assertThat(byAcademy.get(1).averageAge()).isEqualTo(45.0);
+        assertThat(adults).containsExactly(3L);
+        assertThrows(IllegalArgumentException.class, () -> Aggregation.of(Student.class).sum("height"));
+    }
+
+    record AgeByAcademy(Academy academy, long count, Double averageAge, Integer maxAge) {
+    }
+
+    private List<Long> tagsOfCourse(Long courseId) throws SQLException {
+        List<Long> tagIds = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement("SELECT tag_id FROM courses_tags WHERE course_id = ? ORDER BY tag_id")) {
+            ps.setLong(1, courseId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    tagIds.add(rs.getLong(1));
+                }
+            }
+        }
+        return tagIds;
+    }
+
+    private int playersOfTeam(Long teamId) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("SELECT COUNT(*) FROM players WHERE team_id = ?")) {
+            ps.setLong(1, teamId);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    @Test
+    void WhenImportingStreamThenInsertAllEntitiesAndReportProgress() {
+        List<ImportReport> progress = Collections.synchronizedList(new ArrayList<>());
+        ImportOptions options = ImportOptions.defaults()
+                .withBatchSize(100)
+                .withCommitEveryBatches(3)
+                .withThreads(2, 2)
+                .withProgressListener(1000, progress::add);
+
+        ImportReport report = manager.importStream(Student.class, IntStream.range(0, 2500)
+                .mapToObj(i -> new Student("Student" + i, "", 20, LocalDate.now())).iterator(), options);
+
+        assertThat(report.complete()).isTrue();
+        assertThat(report.rowsRead()).isEqualTo(2500);
+        assertThat(report.rowsImported()).isEqualTo(2500);
+        assertThat(report.failedRows()).isZero();
+        assertThat(manager.recordsCount(Student.class)).isEqualTo(2500);
+        assertThat(progress).hasSize(2).allMatch(p -> !p.complete());
+    }
+
+    @Test
+    void WhenImportingCsvThenImportValidRowsAndReportTheOthers(@TempDir Path tempDir) throws IOException {
+        Path csvFile = tempDir.resolve("students.csv");
+        Files.writeString(csvFile, """
+                first_name,second_name,age,graduate_academy
+                Don,DeLillo,86,1989-04-24
+                "Vonnegut, Kurt","",100,
+                Mel,Gibson,sixty,2021-05-05
+                ,Nameless,30,2000-01-01
+                Emma,Thompson,63,2001-01-01
+                """);
+
+        ImportReport report = manager.importCsv(Student.class, csvFile, ImportOptions.defaults().withBatchSize(2));
+
+        assertThat(report.rowsRead()).isEqualTo(5);
+        assertThat(report.rowsImported()).isEqualTo(3);
+        assertThat(report.errors()).extracting(ImportReport.RowError::rowNumber).containsExactly(3L, 4L);
+        assertThat(manager.findAll(Student.class)).extracting(Student::getFirstName)
+                .containsExactlyInAnyOrder("Don", "Vonnegut, Kurt", "Emma");
+    }
+
+    @Test
+    void WhenImportingCsvNativelyThenTheDBReadsTheFile(@TempDir Path tempDir) throws IOException {
+        Path csvFile = tempDir.resolve("students.csv");
+        Files.writeString(csvFile, """
+                first_name,second_name,age,graduate_academy
+                Don,DeLillo,86,1989-04-24
+                Kurt,Vonnegut,100,1995-12-13
+                """);
+
+        ImportReport report = manager.importCsv(Student.class, csvFile, ImportOptions.defaults().withNativeCsv(true));
+
+        assertThat(report.rowsImported()).isEqualTo(2);
+        assertThat(createdStudentsTable).row(1)
+                .value("first_name").isEqualTo("Kurt")
+                .value("age").isEqualTo(100)
+                .value("graduate_academy").isEqualTo(DateValue.of(1995, 12, 13));
+    }
+
+    @Test
+    void WhenExportingToCsvThenWriteHeaderAndOneLinePerRow() {
+        Academy academy = manager.save(new Academy("SoftServe"));
+        Student student = new Student("Kurt, Jr.", "", 100, LocalDate.of(1995, Month.DECEMBER, 13));
+        student.setAcademy(academy);
+        manager.save(student);
+        manager.save(new Student("Don", "DeLillo", 86, null));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = manager.export(Student.class, out, ExportFormat.CSV);
+
+        assertThat(rows).isEqualTo(2);
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("""
+                id,first_name,second_name,age,graduate_academy,academy_id
+                1,"Kurt, Jr.","",100,1995-12-13,1
+                2,Don,DeLillo,86,,
+                """);
+    }
+
+    @Test
+    void WhenExportingProjectedColumnsWithGzipThenWriteCompressedJsonLines() throws IOException {
+        manager.save(new Student("Don", "DeLillo", 86, null));
+        manager.save(new Student("Emma \"Tea\"", "Thompson", 63, null));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        manager.export(Student.class, out, ExportFormat.JSON_LINES,
+                ExportOptions.defaults().withColumns("first_name", "age").withGzip(true));
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("""
+                    {"first_name":"Don","age":86}
+                    {"first_name":"Emma \\"Tea\\"","age":63}
+                    """);
+        }
+    }
+
+    @Test
+    void WhenExportingMaterializedEntitiesThenWriteTheirFieldValues() {
+        Academy academy = manager.save(new Academy("SoftServe"));
+        student1.setAcademy(academy);
+        manager.save(student1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        manager.export(Student.class, out, ExportFormat.CSV,
+                ExportOptions.defaults().withMaterializedEntities(true).withColumns("academy_id", "first_name"));
+
+        assertThat(out.toString(StandardCharsets.UTF_8)).isEqualTo("academy_id,first_name\n1,Bob\n");
+    }
+
+    @Test
+    void WhenEntityCacheIsSetThenFindByIdReadsTheCachedEntityUntilItIsUpdated() throws SQLException {
+        manager.setEntityCache(new MapEntityCache());
+        Academy academy = manager.save(new Academy("SoftServe"));
+        student1.setAcademy(academy);
+        manager.save(student1);
+        manager.findById(student1.getId(), Student.class);
+        connection.prepareStatement("UPDATE students SET age = 1").executeUpdate();
+
+        Student cached = manager.findById(student1.getId(), Student.class).get();
+        cached.setAge(40);
+        manager.update(cached);
+        Student updated = manager.findById(student1.getId(), Student.class).get();
+
+        assertThat(cached.getFirstName()).isEqualTo("Bob");
+        assertThat(cached.getAcademy().getName()).isEqualTo("SoftServe");
+        assertThat(updated.getAge()).isEqualTo(40);
+    }
+
+    @Test
+    void WhenOffHeapCacheIsSetThenFindByIdDecodesTheOffHeapRow() throws SQLException {
+        OffHeapEntityCache cache = new OffHeapEntityCache(1 << 20);
+        manager.setEntityCache(cache);
+        Student saved = manager.save(student1);
+        manager.findById(saved.getId(), Student.class);
+        connection.prepareStatement("UPDATE students SET first_name = 'Changed'").executeUpdate();
+
+        Student cached = manager.findById(saved.getId(), Student.class).get();
+
+        assertThat(cached.getFirstName()).isEqualTo("Bob");
+        assertThat(cache.stats().hits()).isEqualTo(1);
+        assertThat(cache.stats().entries()).isEqualTo(1);
+    }
+
+    @Test
+    void WhenWarmingUpFromSnapshotThenOnlyRowsAddedSinceAreReadFromTheDb(@TempDir Path tempDir) {
+        Academy academy = manager.save(new Academy("SoftServe"));
+        IntStream.range(0, 3).forEach(i -> {
+            Student student = new Student("Student" + i, "S", 20 + i, LocalDate.of(2020, 1, 1));
+            student.setAcademy(academy);
+            manager.save(student);
+        });
+        SnapshotReport written = manager.snapshot(Student.class, tempDir);
+        manager.save(new Student("Late", "L", 30, null));
+        MapEntityCache cache = new MapEntityCache();
+        manager.setEntityCache(cache);
+
+        List<SnapshotReport> loaded = manager.warmUp(tempDir, Student.class, Academy.class);
+
+        assertThat(written.rows()).isEqualTo(3);
+        assertThat(loaded.get(0).rows()).isEqualTo(3);
+        assertThat(loaded.get(0).caughtUpRows()).isEqualTo(1);
+        assertThat(loaded.get(1).caughtUpRows()).isEqualTo(1);
+        assertThat(cache.size(Student.class)).isEqualTo(4);
+        assertThat(manager.findById(1L, Student.class).get().getAcademy().getName()).isEqualTo("SoftServe");
+    }
+
+    @Test
+    void WhenVersionedEntityIsPersistedAndUpdatedThenVersionIsIncremented() {
+        manager.register(Account.class);
+        Account account = new Account("Checking", 100.0);
+
+        manager.persist(account);
+        long firstVersion = account.getVersion();
+        account.setBalance(50.0);
+        manager.update(account);
+
+        assertThat(firstVersion).isZero();
+        assertThat(account.getVersion()).isEqualTo(1);
+        assertThat(manager.findById(account.getId(), Account.class).get().getVersion()).isEqualTo(1);
+    }
+
+    @Test
+    void WhenUpdatingStaleVersionThenThrowExceptionAndKeepTheOtherWrite() {
+        manager.register(Account.class);
+        Account account = manager.save(new Account("Checking", 100.0));
+        Account firstReader = manager.findById(account.getId(), Account.class).get();
+        Account secondReader = manager.findById(account.getId(), Account.class).get();
+
+        firstReader.setBalance(70.0);
+        manager.update(firstReader);
+        secondReader.setBalance(10.0);
+
+        assertThrows(OptimisticLockException.class, () -> manager.update(secondReader));
+        assertThat(secondReader.getVersion()).isZero();
+        assertThat(manager.findById(account.getId(), Account.class).get().getBalance()).isEqualTo(70.0);
+    }
+
+    @Test
+    void WhenDeletingStaleVersionThenThrowExceptionAndKeepTheRow() {
+        manager.register(Account.class);
+        Account account = manager.save(new Account("Checking", 100.0));
+        Account stale = manager.findById(account.getId(), Account.class).get();
+        account.setBalance(1.0);
+        manager.update(account);
+
+        assertThrows(OptimisticLockException.class, () -> manager.delete(stale));
+        assertThat(manager.recordsCount(Account.class)).isEqualTo(1);
+    }
+
+    @Test
+    void WhenVersionIsTimestampThenEveryUpdateMovesItForward() {
+        manager.register(Ticket.class);
+        Ticket ticket = manager.save(new Ticket("open"));
+        LocalDateTime firstVersion = ticket.getModified();
+
+        ticket.setStatus("closed");
+        manager.update(ticket);
+
+        assertThat(ticket.getModified()).isAfter(firstVersion);
+        assertThat(manager.findById(ticket.getId(), Ticket.class).get().getModified()).isEqualTo(ticket.getModified());
+    }
+
     @Test
     void WhenRegisterAnEntityThenReturnATableWithColumnNamesMatchingItsFields() {
         Table createdDudesTable = new Table(dataSource, "dudes");
@@ -458,4 +1183,164 @@ class ORManagerImplTest {
         Dude() {
         }
     }
+
+    @Data
+    @Entity
+    static class Member {
+        @Id
+        private Long id;
+        @Column(name = "email", unique = true, nullable = false)
+        private String email;
+        private String nickname;
+
+        Member(String email, String nickname) {
+            this.email = email;
+            this.nickname = nickname;
+        }
+
+        Member() {
+        }
+    }
+
+    @Data
+    @Entity
+    static class Account {
+        @Id
+        private Long id;
+        private String name;
+        private Double balance;
+        @Version
+        private Long version;
+
+        Account(String name, Double balance) {
+            this.name = name;
+            this.balance = balance;
+        }
+
+        Account() {
+        }
+    }
+
+    @Data
+    @Entity
+    static class Invoice {
+        @Id(strategy = GenerationType.SEQUENCE, allocationSize = 10)
+        private Long id;
+        @Column(name = "invoice_number", unique = true, nullable = false)
+        private String number;
+
+        Invoice(String number) {
+            this.number = number;
+        }
+
+        Invoice() {
+        }
+    }
+
+    @Data
+    @Entity
+    static class Reading {
+        @Id(strategy = GenerationType.TIME_ORDERED)
+        private Long id;
+        private Double celsius;
+
+        Reading(Double celsius) {
+            this.celsius = celsius;
+        }
+
+        Reading() {
+        }
+    }
+
+    @Getter
+    @Setter
+    @Entity
+    static class Team {
+        @Id
+        private Long id;
+        @Column(unique = true)
+        private String name;
+        @OneToMany(mappedBy = "teams", cascade = CascadeType.ALL)
+        private List<Player> players = new ArrayList<>();
+
+        Team(String name) {
+            this.name = name;
+        }
+
+        Team() {
+        }
+    }
+
+    @Getter
+    @Setter
+    @Entity
+    static class Player {
+        @Id
+        private Long id;
+        private String name;
+        @ManyToOne(name = "team_id", cascade = CascadeType.PERSIST)
+        private Team team;
+
+        Player(String name, Team team) {
+            this.name = name;
+            this.team = team;
+        }
+
+        Player() {
+        }
+    }
+
+    @Getter
+    @Setter
+    @Entity
+    static class Course {
+        @Id
+        private Long id;
+        @Column(unique = true)
+        private String name;
+        @ManyToMany
+        private List<Tag> tags = new ArrayList<>();
+
+        Course(String name) {
+            this.name = name;
+        }
+
+        Course() {
+        }
+    }
+
+    @Getter
+    @Setter
+    @Entity
+    static class Tag {
+        @Id
+        private Long id;
+        private String name;
+        @ManyToMany(mappedBy = "tags")
+        private List<Course> courses = new ArrayList<>();
+
+        Tag(String name) {
+            this.name = name;
+        }
+
+        Tag() {
+        }
+    }
+
+    @Data
+    @Entity
+    static class Ticket {
+        @Id
+        private Long id;
+        private String status;
+        @Version
+        private LocalDateTime modified;
+
+        Ticket(String status) {
+            this.status = status;
+        }
+
+        Ticket() {
+        }
+    }
 }
\ No newline at end of file
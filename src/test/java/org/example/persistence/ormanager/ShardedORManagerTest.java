@@ -0,0 +1,226 @@
+package org.example.persistence.ormanager;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Data;
+import org.example.domain.model.Academy;
+import org.example.domain.model.Student;
+import org.example.persistence.annotations.Column;
+import org.example.persistence.annotations.Entity;
+import org.example.persistence.annotations.GenerationType;
+import org.example.persistence.annotations.Id;
+import org.example.persistence.annotations.ShardKey;
+import org.example.persistence.bulk.ExportFormat;
+import org.example.persistence.query.Aggregation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ShardedORManagerTest {
+    List<HikariDataSource> dataSources;
+    ShardedORManager manager;
+
+    @BeforeEach
+    void setUp() {
+        dataSources = List.of(dataSource("jdbc:h2:mem:shard0"), dataSource("jdbc:h2:mem:shard1"),
+                dataSource("jdbc:h2:mem:shard2"));
+        manager = new ShardedORManager(new ArrayList<>(dataSources));
+        manager.register(Academy.class, Student.class, Purchase.class, Visit.class, Coupon.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        manager.close();
+        dataSources.forEach(HikariDataSource::close);
+    }
+
+    @Test
+    void WhenSavingToShardsThenIdsAreUniqueAndReadsAreMerged() {
+        List<Academy> academies = IntStream.range(0, 10).mapToObj(i -> new Academy("Academy " + i)).toList();
+        manager.saveAll(academies);
+
+        assertThat(academies).extracting(Academy::getId).doesNotHaveDuplicates();
+        assertThat(manager.recordsCount(Academy.class)).isEqualTo(10);
+        for (int shard = 0; shard < 3; shard++) {
+            assertThat(manager.getShard(shard).recordsCount(Academy.class)).isPositive();
+        }
+        assertThat(manager.findAll(Academy.class)).extracting(Academy::getId).isSorted().hasSize(10);
+        Academy academy = academies.get(7);
+        assertThat(manager.findById(academy.getId(), Academy.class)).get()
+                .extracting(Academy::getName).isEqualTo("Academy 7");
+        assertThat(manager.getShard(manager.shardOf(academy.getId())).findById(academy.getId(), Academy.class)).isPresent();
+        assertThat(manager.findAllById(List.of(academies.get(3).getId(), academies.get(1).getId()), Academy.class))
+                .extracting(Academy::getName).containsExactly("Academy 3", "Academy 1");
+    }
+
+    @Test
+    void WhenEntityReferencesAnotherThenItIsSavedOnTheSameShard() {
+        List<Academy> academies = IntStream.range(0, 3).mapToObj(i -> manager.save(new Academy("Academy " + i))).toList();
+        for (Academy academy : academies) {
+            Student student = new Student("First", "Second", 20, LocalDate.of(2020, 1, 1));
+            student.setAcademy(academy);
+            manager.save(student);
+
+            assertThat(manager.shardOf(student.getId())).isEqualTo(manager.shardOf(academy.getId()));
+            assertThat(manager.findById(student.getId(), Student.class).get().getAcademy().getName())
+                    .isEqualTo(academy.getName());
+        }
+    }
+
+    @Test
+    void WhenEntityHasShardKeyThenEqualKeysShareTheShardAndExportHasOneHeader() {
+        List<Purchase> purchases = IntStream.range(0, 12).mapToObj(i -> new Purchase("customer" + i % 4)).toList();
+        manager.saveAll(purchases);
+
+        for (Purchase purchase : purchases) {
+            assertThat(manager.shardOf(purchase.getId())).isEqualTo(manager.shardOfKey(purchase.getCustomer()));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertThat(manager.export(Purchase.class, out, ExportFormat.CSV)).isEqualTo(12);
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertThat(csv.lines()).hasSize(13);
+        assertThat(csv.lines().filter(line -> line.startsWith("id"))).hasSize(1);
+        assertThat(manager.nativeQuery("SELECT COUNT(*) FROM purchases WHERE customer = ?", Long.class, "customer1"))
+                .hasSize(3).containsOnlyOnce(3L);
+    }
+
+    @Test
+    void WhenAggregatingOnShardsThenTheGroupsAreMerged() {
+        List<Purchase> purchases = IntStream.range(0, 12).mapToObj(i -> new Purchase("customer" + i % 4)).toList();
+        manager.saveAll(purchases);
+
+        List<PurchasesPerCustomer> perCustomer = manager.aggregate(Aggregation.of(Purchase.class)
+                .groupBy("customer").count().min("id").as("firstId"), PurchasesPerCustomer.class);
+        Double averageId = manager.aggregate(Aggregation.of(Purchase.class).avg("id"), Double.class).get(0);
+
+        assertThat(perCustomer).extracting(PurchasesPerCustomer::customer)
+                .containsExactly("customer0", "customer1", "customer2", "customer3");
+        assertThat(perCustomer).allMatch(row -> row.count() == 3);
+        assertThat(perCustomer.get(0).firstId()).isEqualTo(purchases.get(0).getId());
+        assertThat(averageId).isEqualTo(purchases.stream().mapToLong(Purchase::getId).average().getAsDouble());
+    }
+
+    record PurchasesPerCustomer(String customer, long count, Long firstId) {
+    }
+
+    @Test
+    void WhenUpsertingTheSameUniqueKeyTwiceThenOneRowIsKept() {
+        for (int discount = 10; discount <= 40; discount += 10) {
+            manager.upsert(new Coupon("SPRING", discount));
+        }
+        manager.saveAll(List.of(new Coupon("SUMMER", 5), new Coupon("SUMMER", 15)));
+
+        assertThat(manager.recordsCount(Coupon.class)).isEqualTo(2);
+        assertThat(manager.findAll(Coupon.class)).extracting(Coupon::getCode, Coupon::getDiscount)
+                .containsExactlyInAnyOrder(tuple("SPRING", 40), tuple("SUMMER", 15));
+    }
+
+    @Test
+    void WhenIdsAreTimeOrderedThenEveryShardMakesIdsOfItsOwn() {
+        List<Visit> visits = IntStream.range(0, 30).mapToObj(i -> new Visit("page" + i % 5)).toList();
+        manager.saveAll(visits);
+
+        assertThat(visits).extracting(Visit::getId).doesNotHaveDuplicates();
+        for (Visit visit : visits) {
+            assertThat(manager.shardOf(visit.getId())).isEqualTo(manager.shardOfKey(visit.getPage()));
+            assertThat(manager.findById(visit.getId(), Visit.class)).get().isEqualTo(visit);
+        }
+    }
+
+    @Test
+    void WhenShardsWithRowsAreRegisteredAgainThenTheirIdsStayUnique() {
+        manager.saveAll(IntStream.range(0, 6).mapToObj(i -> new Academy("Academy " + i)).toList());
+        manager.close();
+
+        manager = new ShardedORManager(new ArrayList<>(dataSources));
+        manager.register(Academy.class);
+        manager.saveAll(IntStream.range(6, 12).mapToObj(i -> new Academy("Academy " + i)).toList());
+
+        assertThat(manager.findAll(Academy.class)).extracting(Academy::getId).doesNotHaveDuplicates().hasSize(12);
+    }
+
+    @Test
+    void WhenATableHasRowsFromBeforeShardingThenRegisteringFails() {
+        List<HikariDataSource> legacy = List.of(dataSource("jdbc:h2:mem:legacy0"), dataSource("jdbc:h2:mem:legacy1"));
+        try {
+            ORManager unsharded = new ORManagerImpl(legacy.get(1));
+            unsharded.register(Academy.class);
+            unsharded.save(new Academy("Academy 1"));
+            unsharded.save(new Academy("Academy 2"));
+
+            try (ShardedORManager sharded = new ShardedORManager(new ArrayList<>(legacy))) {
+                IllegalStateException e = assertThrows(IllegalStateException.class,
+                        () -> sharded.register(Academy.class));
+                assertThat(e).hasMessageContaining("shard 1");
+            }
+        } finally {
+            legacy.forEach(HikariDataSource::close);
+        }
+    }
+
+    private static HikariDataSource dataSource(String jdbcUrl) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(jdbcUrl);
+        return dataSource;
+    }
+
+    @Data
+    @Entity
+    static class Purchase {
+        @Id
+        private Long id;
+        @ShardKey
+        private String customer;
+
+        Purchase(String customer) {
+            this.customer = customer;
+        }
+
+        Purchase() {
+        }
+    }
+
+    @Data
+    @Entity
+    static class Coupon {
+        @Id
+        private Long id;
+        @Column(unique = true)
+        private String code;
+        private Integer discount;
+
+        Coupon(String code, Integer discount) {
+            this.code = code;
+            this.discount = discount;
+        }
+
+        Coupon() {
+        }
+    }
+
+    @Data
+    @Entity
+    static class Visit {
+        @Id(strategy = GenerationType.TIME_ORDERED)
+        private Long id;
+        @ShardKey
+        private String page;
+
+        Visit(String page) {
+            this.page = page;
+        }
+
+        Visit() {
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.persistence.proxy;
+
+import org.example.domain.model.Academy;
+import org.example.exceptionhandler.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class EntityProxyFactoryTest {
+    AtomicInteger loads;
+    Academy proxy;
+
+    @BeforeEach
+    void setUp() {
+        loads = new AtomicInteger();
+        proxy = EntityProxyFactory.createProxy(Academy.class, 7L, id -> {
+            loads.incrementAndGet();
+            Academy academy = new Academy("Khan");
+            academy.setId((Long) id);
+            return Optional.of(academy);
+        });
+    }
+
+    @Test
+    void WhenOnlyIdIsReadThenEntityIsNotLoaded() {
+        Long id = proxy.getId();
+
+        assertThat(id).isEqualTo(7L);
+        assertThat(loads).hasValue(0);
+        assertThat(EntityProxyFactory.isUninitializedProxy(proxy)).isTrue();
+    }
+
+    @Test
+    void WhenAnyOtherMethodIsCalledThenEntityIsLoadedOnce() {
+        String name = proxy.getName();
+        proxy.getStudents();
+        proxy.toString();
+
+        assertThat(name).isEqualTo("Khan");
+        assertThat(loads).hasValue(1);
+        assertThat(EntityProxyFactory.isUninitializedProxy(proxy)).isFalse();
+    }
+
+    @Test
+    void WhenProxyIsComparedToLoadedEntityThenTheyAreEqual() {
+        Academy academy = new Academy("Khan");
+        academy.setId(7L);
+
+        assertThat(proxy).isEqualTo(academy);
+        assertThat(EntityProxyFactory.getEntityClass(proxy)).isEqualTo(Academy.class);
+    }
+
+    @Test
+    void WhenReferencedRowDoesntExistThenThrowExceptionOnFirstUse() {
+        Academy missing = EntityProxyFactory.createProxy(Academy.class, 8L, id -> Optional.empty());
+
+        assertThrows(EntityNotFoundException.class, missing::getName);
+    }
+
+    @Test
+    void WhenProxyIsSerializedThenPlainEntityIsWritten() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(proxy);
+        }
+        Object read;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            read = in.readObject();
+        }
+
+        assertThat(read.getClass()).isEqualTo(Academy.class);
+        assertThat(((Academy) read).getName()).isEqualTo("Khan");
+    }
+}
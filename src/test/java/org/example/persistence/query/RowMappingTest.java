@@ -0,0 +1,51 @@
+package org.example.persistence.query;
+
+import org.example.persistence.annotations.Column;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RowMappingTest {
+    private static final String SQL = "SELECT 7 AS id, 'Ada' AS full_name, 3 AS not_mapped";
+
+    @Test
+    void WhenQueryRunsAgainThenItsPlanIsReusedWithoutReadingTheMetadata() throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:rowmapping");
+             Statement statement = connection.createStatement()) {
+            RowMapping<Person> plan;
+            try (ResultSet rs = statement.executeQuery(SQL)) {
+                rs.next();
+                plan = RowMapping.of(SQL, Person.class, rs);
+                Person person = plan.map(rs, (field, id) -> null);
+                assertThat(person.id).isEqualTo(7L);
+                assertThat(person.name).isEqualTo("Ada");
+            }
+
+            assertThat(plan.getColumns()).containsExactly(1, 2);
+            assertThat(RowMapping.of(SQL, Person.class, (ResultSet) null)).isSameAs(plan);
+            try (ResultSet rs = statement.executeQuery(SQL)) {
+                rs.next();
+                assertThat(RowMapping.of(SQL, Initials.class, rs).map(rs, (field, id) -> null))
+                        .isEqualTo(new Initials("Ada", 0));
+            }
+        }
+    }
+
+    static class Person {
+        private Long id;
+        @Column(name = "full_name")
+        private String name;
+
+        Person() {
+        }
+    }
+
+    record Initials(@Column(name = "full_name") String name, int missing) {
+    }
+}
@@ -0,0 +1,114 @@
+package org.example.persistence.routing;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.example.domain.model.Academy;
+import org.example.persistence.cache.MapEntityCache;
+import org.example.persistence.ormanager.ORManager;
+import org.example.persistence.utilities.Utils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaRoutingTest {
+    HikariDataSource primary;
+    HikariDataSource replica1;
+    HikariDataSource replica2;
+    ReplicaRouting routing;
+    ORManager manager;
+
+    @BeforeEach
+    void setUp() {
+        primary = dataSource("jdbc:h2:mem:primary");
+        replica1 = dataSource("jdbc:h2:mem:replica1");
+        replica2 = dataSource("jdbc:h2:mem:replica2");
+        for (HikariDataSource dataSource : List.of(primary, replica1, replica2)) {
+            Utils.withDataSource(dataSource).register(Academy.class);
+        }
+        // the replicas aren't replicated, so their rows tell which DB was read
+        Utils.withDataSource(replica1).save(new Academy("replica1"));
+        Utils.withDataSource(replica2).save(new Academy("replica2"));
+        routing = new ReplicaRouting(primary, List.of(replica1, replica2));
+        manager = Utils.withRouting(routing);
+    }
+
+    @AfterEach
+    void tearDown() {
+        primary.close();
+        replica1.close();
+        replica2.close();
+    }
+
+    @Test
+    void WhenReadingOutsideASessionThenTheReplicasAreReadInTurnsAndWritesGoToThePrimary() {
+        manager.save(new Academy("primary"));
+        manager.save(new Academy("primary2"));
+
+        List<String> names = List.of(
+                manager.findById(1L, Academy.class).get().getName(),
+                manager.findById(1L, Academy.class).get().getName(),
+                manager.findById(1L, Academy.class).get().getName());
+
+        assertThat(names).containsExactly("replica1", "replica2", "replica1");
+        assertThat(manager.recordsCount(Academy.class)).isEqualTo(1);
+        assertThat(Utils.withDataSource(primary).recordsCount(Academy.class)).isEqualTo(2);
+    }
+
+    @Test
+    void WhenSessionWroteThenItReadsFromThePrimary() {
+        try (RoutingSession session = routing.openSession()) {
+            assertThat(manager.findAll(Academy.class)).extracting(Academy::getName).containsExactly("replica1");
+            manager.save(new Academy("written"));
+
+            assertThat(session.readsFromPrimary()).isTrue();
+            assertThat(manager.findAll(Academy.class)).extracting(Academy::getName).containsExactly("written");
+        }
+        assertThat(manager.findAll(Academy.class)).extracting(Academy::getName).containsExactly("replica2");
+    }
+
+    @Test
+    void WhenSessionIsNestedInOneThatWroteThenItReadsFromThePrimary() {
+        try (RoutingSession ignored = routing.openSession()) {
+            manager.save(new Academy("written"));
+
+            try (RoutingSession nested = routing.openSession()) {
+                assertThat(nested.readsFromPrimary()).isTrue();
+                assertThat(manager.findAll(Academy.class)).extracting(Academy::getName).containsExactly("written");
+            }
+        }
+    }
+
+    @Test
+    void WhenEntityIsReadFromAReplicaThenItIsNotCached() {
+        MapEntityCache cache = new MapEntityCache();
+        manager.setEntityCache(cache);
+        Utils.withDataSource(primary).save(new Academy("primary"));
+
+        assertThat(manager.findById(1L, Academy.class).get().getName()).isEqualTo("replica1");
+        assertThat(cache.size(Academy.class)).isZero();
+        try (RoutingSession ignored = routing.openPrimarySession()) {
+            assertThat(manager.findById(1L, Academy.class).get().getName()).isEqualTo("primary");
+        }
+        assertThat(cache.size(Academy.class)).isEqualTo(1);
+        assertThat(manager.findById(1L, Academy.class).get().getName()).isEqualTo("primary");
+    }
+
+    @Test
+    void WhenPrimarySessionIsOpenThenEveryReadGoesToThePrimary() {
+        Utils.withDataSource(primary).save(new Academy("primary"));
+
+        try (RoutingSession ignored = routing.openPrimarySession()) {
+            assertThat(manager.findById(1L, Academy.class).get().getName()).isEqualTo("primary");
+            assertThat(manager.findById(1L, Academy.class).get().getName()).isEqualTo("primary");
+        }
+    }
+
+    private static HikariDataSource dataSource(String jdbcUrl) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(jdbcUrl);
+        return dataSource;
+    }
+}
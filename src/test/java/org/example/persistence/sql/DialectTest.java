@@ -0,0 +1,146 @@
+package org.example.persistence.sql;
+
+import org.example.domain.model.Academy;
+import org.example.domain.model.Student;
+import org.example.persistence.annotations.Entity;
+import org.example.persistence.annotations.GenerationType;
+import org.example.persistence.annotations.Id;
+import org.example.persistence.annotations.ManyToMany;
+import org.example.persistence.query.Aggregation;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DialectTest {
+
+    @Test
+    void WhenJdbcUrlIsGivenThenTheDialectOfItsDatabaseIsChosen() {
+        assertThat(Dialect.fromJdbcUrl("jdbc:h2:mem:test")).isInstanceOf(H2Dialect.class);
+        assertThat(Dialect.fromJdbcUrl("jdbc:postgresql://localhost:5432/testDB")).isInstanceOf(PostgreSQLDialect.class);
+        assertThat(Dialect.fromJdbcUrl("jdbc:sqlite:/src/database/testDB")).isInstanceOf(SQLiteDialect.class);
+    }
+
+    @Test
+    void WhenDataSourceCantConnectThenNoDialectIsGuessed() {
+        JdbcDataSource unreachable = new JdbcDataSource();
+        unreachable.setURL("jdbc:postgresql://localhost:1/down");
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> Dialect.fromDataSource(unreachable));
+        assertThat(e).hasCauseInstanceOf(SQLException.class);
+    }
+
+    @Test
+    void WhenJdbcUrlIsUnknownThenThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> Dialect.fromJdbcUrl("jdbc:oracle:thin:@localhost:1521:xe"));
+    }
+
+    @Test
+    void WhenCreatingTableThenEveryDialectDeclaresItsOwnGeneratedId() {
+        assertThat(new H2Dialect().sqlCreateTableStatement(Academy.class))
+                .contains("id BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY");
+        assertThat(new PostgreSQLDialect().sqlCreateTableStatement(Academy.class))
+                .contains("id BIGSERIAL PRIMARY KEY");
+        assertThat(new SQLiteDialect().sqlCreateTableStatement(Academy.class))
+                .contains("id INTEGER PRIMARY KEY AUTOINCREMENT")
+                .contains("name TEXT NOT NULL");
+    }
+
+    @Test
+    void WhenDatabaseCantAddForeignKeysLaterThenCreateTableDeclaresThem() {
+        assertThat(new SQLiteDialect().sqlCreateTableStatement(Student.class))
+                .contains("FOREIGN KEY (academy_id) REFERENCES academies(id)");
+        assertThat(new H2Dialect().sqlCreateTableStatement(Student.class))
+                .doesNotContain("FOREIGN KEY");
+    }
+
+    @Test
+    void WhenInsertingManyRowsThenEveryRowHasItsPlaceholders() {
+        assertThat(new PostgreSQLDialect().sqlMultiRowInsertStatement(Academy.class, 2))
+                .isEqualTo("INSERT INTO academies (name) VALUES (?), (?)");
+    }
+
+    @Test
+    void WhenUpsertingThenEveryDialectUsesItsOwnSyntax() throws NoSuchFieldException {
+        var idField = Academy.class.getDeclaredField("id");
+
+        assertThat(new H2Dialect().sqlUpsertStatement(Academy.class, idField)).startsWith("MERGE INTO academies");
+        assertThat(new PostgreSQLDialect().sqlUpsertStatement(Academy.class, idField)).contains("ON CONFLICT (id)");
+        assertThat(new SQLiteDialect().sqlUpsertStatement(Academy.class, idField))
+                .isEqualTo("INSERT INTO academies (id, name) VALUES (?, ?) ON CONFLICT (id) DO UPDATE SET name = excluded.name");
+    }
+
+    @Test
+    void WhenIdsComeFromASequenceThenTheIdColumnIsPlainAndInsertedWithTheRow() {
+        assertThat(new H2Dialect().sqlCreateTableStatement(Invoice.class)).contains("id BIGINT PRIMARY KEY");
+        assertThat(new PostgreSQLDialect().sqlCreateTableStatement(Invoice.class)).contains("id BIGINT PRIMARY KEY");
+        assertThat(new H2Dialect().sqlInsertStatement(Invoice.class))
+                .isEqualTo("INSERT INTO invoices (id, total) values(?, ?)");
+        assertThat(new H2Dialect().sqlCreateSequenceStatement(Invoice.class, 50))
+                .isEqualTo("CREATE SEQUENCE IF NOT EXISTS invoices_id_seq START WITH 1 INCREMENT BY 50");
+        assertThat(new H2Dialect().sqlNextSequenceValueStatement(Invoice.class))
+                .isEqualTo("SELECT NEXT VALUE FOR invoices_id_seq");
+        assertThat(new PostgreSQLDialect().sqlNextSequenceValueStatement(Invoice.class))
+                .isEqualTo("SELECT nextval('invoices_id_seq')");
+        assertThat(new SQLiteDialect().sqlCreateSequenceStatement(Invoice.class, 50)).isNull();
+    }
+
+    @Test
+    void WhenListsAreManyToManyThenTheJoinTableIsReadFromEitherSide() throws NoSuchFieldException {
+        var tags = Post.class.getDeclaredField("tags");
+        var posts = Tag.class.getDeclaredField("posts");
+
+        assertThat(new H2Dialect().sqlCreateTableStatement(Post.class)).doesNotContain("tags");
+        assertThat(new PostgreSQLDialect().sqlCreateJoinTableStatement(tags))
+                .contains("PRIMARY KEY (post_id, tag_id)")
+                .contains("FOREIGN KEY (tag_id) REFERENCES tags(id) ON DELETE CASCADE");
+        assertThat(new H2Dialect().sqlSelectLinkedStatement(tags, 2))
+                .isEqualTo("SELECT e.*, j.post_id AS orm_owner_id FROM tags e JOIN posts_tags j ON e.id = j.tag_id " +
+                        "WHERE j.post_id IN (?, ?) ORDER BY j.post_id, e.id");
+        assertThat(new H2Dialect().sqlSelectLinkedStatement(posts, 1))
+                .isEqualTo("SELECT e.*, j.tag_id AS orm_owner_id FROM posts e JOIN posts_tags j ON e.id = j.post_id " +
+                        "WHERE j.tag_id IN (?) ORDER BY j.tag_id, e.id");
+    }
+
+    @Test
+    void WhenAggregatingThenFieldsAreReadFromTheirColumns() {
+        Aggregation aggregation = Aggregation.of(Student.class).groupBy("academy").avg("age")
+                .where("firstName", Aggregation.Operator.LIKE, "A%");
+
+        assertThat(new H2Dialect().sqlAggregateStatement(aggregation))
+                .isEqualTo("SELECT academy_id AS academy, AVG(CAST(age AS DOUBLE PRECISION)) AS avgAge FROM students " +
+                        "WHERE first_name LIKE ? GROUP BY academy_id ORDER BY academy_id NULLS FIRST");
+        assertThat(aggregation.parameters()).containsExactly("A%");
+        assertThrows(IllegalArgumentException.class, () -> aggregation.as("avg FROM students; --"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new Aggregation.Aggregate(Aggregation.Function.COUNT, null, "count FROM students; --"));
+    }
+
+    @Entity
+    static class Post {
+        @Id
+        private Long id;
+        private String title;
+        @ManyToMany
+        private List<Tag> tags;
+    }
+
+    @Entity
+    static class Tag {
+        @Id
+        private Long id;
+        @ManyToMany(mappedBy = "tags")
+        private List<Post> posts;
+    }
+
+    @Entity
+    static class Invoice {
+        @Id(strategy = GenerationType.SEQUENCE)
+        private Long id;
+        private Double total;
+    }
+}
@@ -0,0 +1,111 @@
+package org.example.persistence.sql;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SQLLoggerTest {
+    Logger logger;
+    ListAppender<ILoggingEvent> appender;
+
+    @BeforeEach
+    void setUp() {
+        logger = (Logger) LoggerFactory.getLogger(SQLLogger.class);
+        appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        logger.detachAppender(appender);
+    }
+
+    @Test
+    void WhenPropertiesAreMissingThenLogOnlySlowStatements() {
+        SQLLogger sqlLogger = SQLLogger.fromProperties(new Properties());
+
+        assertThat(sqlLogger.getMode()).isEqualTo(SQLLogMode.SLOW);
+    }
+
+    @Test
+    void WhenModeIsReadFromPropertiesThenCaseDoesntMatter() {
+        Properties properties = new Properties();
+        properties.setProperty("sql-log-mode", "Sampled");
+
+        SQLLogger sqlLogger = SQLLogger.fromProperties(properties);
+
+        assertThat(sqlLogger.getMode()).isEqualTo(SQLLogMode.SAMPLED);
+    }
+
+    @Test
+    void WhenModeIsOffThenNothingIsLogged() throws InterruptedException {
+        SQLLogger sqlLogger = SQLLogger.off();
+
+        sqlLogger.log("SELECT 1", new Object[0], 1, sqlLogger.start());
+        Thread.sleep(100);
+
+        assertThat(sqlLogger.start()).isZero();
+        assertThat(appender.list).isEmpty();
+    }
+
+    @Test
+    void WhenEveryStatementIsSampledThenLogSqlParametersAndRowCount() throws InterruptedException {
+        SQLLogger sqlLogger = new SQLLogger(SQLLogMode.SAMPLED, 1, 0);
+
+        sqlLogger.log("SELECT * FROM students WHERE id=?", new Object[]{7L}, 1, sqlLogger.start());
+
+        assertThat(awaitFirstMessage()).contains("1 rows", "SELECT * FROM students WHERE id=?", "[7]");
+    }
+
+    @Test
+    void WhenStatementIsFasterThanThresholdThenItIsNotLogged() throws InterruptedException {
+        SQLLogger slowOnly = new SQLLogger(SQLLogMode.SLOW, 1, 60_000);
+        SQLLogger everything = new SQLLogger(SQLLogMode.SLOW, 1, 0);
+
+        slowOnly.log("SELECT 1", new Object[0], 1, slowOnly.start());
+        everything.log("SELECT 2", new Object[0], 1, everything.start());
+
+        assertThat(awaitFirstMessage()).contains("SELECT 2");
+        assertThat(appender.list).hasSize(1);
+    }
+
+    @Test
+    void WhenStatementFailsThenItIsLoggedWhateverTheThreshold() throws InterruptedException {
+        SQLLogger slowOnly = new SQLLogger(SQLLogMode.SLOW, 1, 60_000);
+
+        slowOnly.logFailure("SELECT * FROM missing", new Object[]{1L}, slowOnly.start(), new SQLException("Table not found"));
+
+        assertThat(awaitFirstMessage()).contains("failed with Table not found", "SELECT * FROM missing", "[1]");
+        assertThat(appender.list.get(0).getLevel()).isEqualTo(Level.WARN);
+    }
+
+    @Test
+    void WhenManyLoggersLogThenTheyShareOneThread() throws InterruptedException {
+        for (int i = 0; i < 20; i++) {
+            SQLLogger sqlLogger = new SQLLogger(SQLLogMode.SAMPLED, 1, 0);
+            sqlLogger.log("SELECT " + i, new Object[0], 1, sqlLogger.start());
+        }
+        awaitFirstMessage();
+
+        assertThat(Thread.getAllStackTraces().keySet()).filteredOn(thread -> thread.getName().equals("orm-sql-logger"))
+                .hasSizeLessThanOrEqualTo(1);
+    }
+
+    private String awaitFirstMessage() throws InterruptedException {
+        for (int i = 0; i < 50 && appender.list.isEmpty(); i++) {
+            Thread.sleep(20);
+        }
+        return appender.list.get(0).getFormattedMessage();
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.persistence.utilities;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LongObjectMapTest {
+
+    @Test
+    void WhenPuttingAndRemovingRandomKeysThenTheMapMatchesAHashMap() {
+        LongObjectMap<String> map = new LongObjectMap<>(4);
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            // a small key range makes collisions, overwrites and removals of present keys frequent
+            long key = random.nextInt(2_000) - 1_000L;
+            if (random.nextInt(3) == 0) {
+                assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+            } else {
+                assertThat(map.put(key, "v" + i)).isEqualTo(expected.put(key, "v" + i));
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (long key = -1_000; key < 1_000; key++) {
+            assertThat(map.get(key)).isEqualTo(expected.get(key));
+        }
+        Map<Long, String> iterated = new HashMap<>();
+        map.forEach(iterated::put);
+        assertThat(iterated).isEqualTo(expected);
+    }
+
+    @Test
+    void WhenKeysAreExtremeThenTheyAreStoredLikeAnyOther() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        map.put(0, "zero");
+        map.put(Long.MIN_VALUE, "min");
+        map.put(Long.MAX_VALUE, "max");
+
+        assertThat(map.get(0)).isEqualTo("zero");
+        assertThat(map.get(Long.MIN_VALUE)).isEqualTo("min");
+        assertThat(map.computeIfAbsent(Long.MAX_VALUE, key -> "other")).isEqualTo("max");
+        assertThat(map.remove(0)).isEqualTo("zero");
+        assertThat(map.containsKey(0)).isFalse();
+        map.clear();
+        assertThat(map.isEmpty()).isTrue();
+        assertThat(map.get(Long.MIN_VALUE)).isNull();
+    }
+}
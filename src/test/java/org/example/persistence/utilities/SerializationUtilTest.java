@@ -2,6 +2,7 @@ package org.example.persistence.utilities;
 
 import lombok.extern.slf4j.Slf4j;
 import org.example.domain.model.Student;
+import org.example.persistence.codec.EntityCodec;
 import org.junit.jupiter.api.RepeatedTest;
 import org.junit.jupiter.api.Test;
 
@@ -55,4 +56,17 @@ class SerializationUtilTest {
         log.atDebug().log("{}", deserializedStudents);
     }
 
-}
\ No newline at end of file
+    @Test
+    void WhenSerializedWithCodecThenDeserializeReturnsTheEntitiesInOrder() {
+        Student student = new Student("Jack", "Black", 53, LocalDate.now());
+        student.setId(33L);
+        Student student2 = new Student("Kyle", "Gass", 62, null);
+        student2.setId(248L);
+
+        SerializationUtil.serialize(student, "codec_tests", EntityCodec.of(Student.class));
+        SerializationUtil.serialize(student2, "codec_tests", EntityCodec.of(Student.class));
+        List<Student> deserializedStudents = SerializationUtil.deserialize("codec_tests", EntityCodec.of(Student.class));
+
+        assertThat(deserializedStudents).containsExactly(student, student2);
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.persistence.writebehind;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.example.domain.model.Academy;
+import org.example.exceptionhandler.WriteBehindQueueFullException;
+import org.example.persistence.ormanager.ORManager;
+import org.example.persistence.utilities.Utils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WriteBehindWriterTest {
+    HikariDataSource dataSource;
+    ORManager manager;
+    WriteBehindOptions options = WriteBehindOptions.defaults().withFlushInterval(Duration.ofHours(1));
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:writebehind");
+        manager = Utils.withDataSource(dataSource);
+        manager.register(Academy.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    void WhenEntityIsSavedManyTimesThenOnlyItsLatestStateIsWrittenOnce() {
+        Academy academy = manager.save(new Academy("v0"));
+        List<List<Object>> batches = new CopyOnWriteArrayList<>();
+
+        try (WriteBehindWriter writer = new WriteBehindWriter(manager, entities -> {
+            batches.add(entities);
+            manager.saveAll(entities);
+        }, options)) {
+            for (int i = 1; i <= 100; i++) {
+                Academy copy = new Academy("v" + i);
+                copy.setId(academy.getId());
+                writer.save(copy);
+            }
+            writer.save(new Academy("new"));
+
+            assertThat(writer.pendingCount()).isEqualTo(1);
+            assertThat(manager.recordsCount(Academy.class)).isEqualTo(2);
+        }
+
+        assertThat(batches).singleElement().asList().hasSize(1);
+        assertThat(manager.findById(academy.getId(), Academy.class).get().getName()).isEqualTo("v100");
+    }
+
+    @Test
+    void WhenBatchFailsThenTheListenerGetsItsEntities() {
+        List<WriteFailure> failures = new CopyOnWriteArrayList<>();
+        Academy academy = manager.save(new Academy("saved"));
+
+        try (WriteBehindWriter writer = new WriteBehindWriter(manager, entities -> {
+            throw new SQLException("rejected");
+        }, options.withFailureListener(failures::add))) {
+            writer.save(academy);
+            writer.flush();
+
+            assertThat(writer.pendingCount()).isZero();
+        }
+
+        assertThat(failures).singleElement().satisfies(failure -> {
+            assertThat(failure.entities()).containsExactly(academy);
+            assertThat(failure.cause()).hasMessage("rejected");
+        });
+    }
+
+    @Test
+    void WhenQueueIsFullThenSaveWaitsAndFails() {
+        try (WriteBehindWriter writer = manager.writeBehind(options.withQueueCapacity(2).withOfferTimeout(Duration.ofMillis(50)))) {
+            List<Academy> academies = manager.saveAll(List.of(new Academy("a"), new Academy("b"), new Academy("c")));
+            writer.save(academies.get(0));
+            writer.save(academies.get(1));
+            writer.save(academies.get(1));
+
+            assertThatThrownBy(() -> writer.save(academies.get(2))).isInstanceOf(WriteBehindQueueFullException.class);
+            writer.flush();
+            writer.save(academies.get(2));
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package org.example.soak;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Runs a workload on a number of threads for a while and measures it: throughput, latency percentiles
+ * of the operations and how long the threads waited for a pool connection.
+ * <p>
+ * The threads come from a {@link ThreadFactory}, so that a JDK with virtual threads can run the same workload
+ * on them ({@code Thread.ofVirtual().factory()}); this build targets Java 19, where they are a preview feature.
+ */
+class LoadHarness {
+
+    /**
+     * One step of a workload, run over and over by every thread.
+     */
+    @FunctionalInterface
+    interface Operation {
+        /**
+         * @param thread    Index of the running thread, from 0.
+         * @param iteration Number of earlier runs on the thread.
+         */
+        void run(int thread, long iteration) throws Exception;
+    }
+
+    /**
+     * @param threads        Threads running the workload.
+     * @param operations     Operations finished without an exception.
+     * @param errors         Operations which threw.
+     * @param throughput     Operations per second.
+     * @param p50Micros      Median latency.
+     * @param p99Micros      99th percentile latency.
+     * @param maxMicros      Slowest operation.
+     * @param poolWaitMicros Average time getConnection took.
+     */
+    record Result(int threads, long operations, long errors, double throughput, long p50Micros, long p99Micros,
+                  long maxMicros, long poolWaitMicros) {
+
+        @Override
+        public String toString() {
+            return String.format("%3d threads %10.0f ops/s  p50 %6d us  p99 %7d us  max %8d us  pool wait %5d us  errors %d",
+                    threads, throughput, p50Micros, p99Micros, maxMicros, poolWaitMicros, errors);
+        }
+    }
+
+    private final ThreadFactory threadFactory;
+
+    LoadHarness(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * @param threads   Threads running the operation.
+     * @param duration  How long they run it.
+     * @param pool      The data source the operation uses, to measure its connection waits.
+     * @param operation Workload.
+     * @return the measurements.
+     */
+    Result run(int threads, Duration duration, TimedDataSource pool, Operation operation) throws InterruptedException {
+        long[][] latencies = new long[threads][];
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long[] endNanos = new long[1];
+        List<Thread> workers = new ArrayList<>();
+        pool.reset();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers.add(threadFactory.newThread(() -> {
+                LongList threadLatencies = new LongList();
+                try {
+                    start.await();
+                    for (long i = 0; System.nanoTime() < endNanos[0]; i++) {
+                        long opStart = System.nanoTime();
+                        try {
+                            operation.run(thread, i);
+                            threadLatencies.add(System.nanoTime() - opStart);
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    latencies[thread] = threadLatencies.toArray();
+                    done.countDown();
+                }
+            }));
+        }
+        workers.forEach(Thread::start);
+        long startNanos = System.nanoTime();
+        endNanos[0] = startNanos + duration.toNanos();
+        start.countDown();
+        done.await();
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        return new Result(threads, all.length, errors.get(), all.length * 1e9 / elapsedNanos,
+                percentile(all, 0.50) / 1000, percentile(all, 0.99) / 1000,
+                all.length == 0 ? 0 : all[all.length - 1] / 1000, pool.averageWaitNanos() / 1000);
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1)];
+    }
+
+    static ThreadFactory platformThreads(String namePrefix) {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        return runnable -> new Thread(runnable, namePrefix + threadNumber.getAndIncrement());
+    }
+
+    private static class LongList {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * Measures how long getConnection takes, which is mostly the wait for a free pool connection.
+     */
+    static class TimedDataSource implements DataSource {
+        private final DataSource target;
+        private final AtomicLong waits = new AtomicLong();
+        private final AtomicLong waitNanos = new AtomicLong();
+
+        TimedDataSource(DataSource target) {
+            this.target = target;
+        }
+
+        void reset() {
+            waits.set(0);
+            waitNanos.set(0);
+        }
+
+        long averageWaitNanos() {
+            long count = waits.get();
+            return count == 0 ? 0 : waitNanos.get() / count;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            long start = System.nanoTime();
+            try {
+                return target.getConnection();
+            } finally {
+                waitNanos.addAndGet(System.nanoTime() - start);
+                waits.incrementAndGet();
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return target.getConnection(username, password);
+        }
+
+        @Override
+        public PrintWriter getLogWriter() throws SQLException {
+            return target.getLogWriter();
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) throws SQLException {
+            target.setLogWriter(out);
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) throws SQLException {
+            target.setLoginTimeout(seconds);
+        }
+
+        @Override
+        public int getLoginTimeout() throws SQLException {
+            return target.getLoginTimeout();
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            return target.getParentLogger();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            return iface.isInstance(this) ? iface.cast(this) : target.unwrap(iface);
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) throws SQLException {
+            return iface.isInstance(this) || target.isWrapperFor(iface);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package org.example.soak;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.example.domain.model.Academy;
+import org.example.exceptionhandler.OptimisticLockException;
+import org.example.persistence.annotations.Entity;
+import org.example.persistence.annotations.Id;
+import org.example.persistence.annotations.Version;
+import org.example.persistence.ormanager.ORManager;
+import org.example.persistence.ormanager.ORManagerImpl;
+import org.example.persistence.sql.Dialect;
+import org.example.persistence.sql.SQLLogger;
+import org.example.persistence.utilities.SerializationUtil;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Mixed CRUD from 1, 2, 4, ... threads against one ORM Manager, checking after every step that no write was lost,
+ * no connection leaked and no operation failed. All threads increment the same few @Version counters, retrying on
+ * optimistic lock conflicts, so a lost update shows as a counter behind its successful increments.
+ * The default run is a short smoke test; a real soak is {@code mvn -Psoak test}, or
+ * {@code -Dsoak.durationMillis=60000 -Dsoak.maxThreads=64} with any run.
+ */
+@Slf4j
+class SoakTest {
+    private static final Duration STEP = Duration.ofMillis(Long.getLong("soak.durationMillis", 300));
+    private static final int MAX_THREADS = Integer.getInteger("soak.maxThreads", 4);
+    private static final int SHARED_COUNTERS = 2;
+
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"mem", "file"})
+    void WhenThreadsRunMixedCrudThenNoWriteIsLostAndNoConnectionLeaks(String storage) throws InterruptedException {
+        String jdbcUrl = storage.equals("mem") ? "jdbc:h2:mem:soak" : "jdbc:h2:file:" + tempDir.resolve("soak");
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(jdbcUrl);
+        dataSource.setMaximumPoolSize(Math.max(2, MAX_THREADS / 2));
+        LoadHarness.TimedDataSource pool = new LoadHarness.TimedDataSource(dataSource);
+        ORManager manager = new ORManagerImpl(pool, SQLLogger.off(), Dialect.fromJdbcUrl(jdbcUrl));
+        manager.register(Academy.class, Counter.class);
+        String serializationFile = tempDir.resolve("soak-" + storage).toString();
+
+        List<Deque<Academy>> academies = new ArrayList<>();
+        for (int t = 0; t < MAX_THREADS; t++) {
+            academies.add(new ArrayDeque<>());
+        }
+        List<Long> counterIds = new ArrayList<>();
+        List<AtomicLong> increments = new ArrayList<>();
+        for (int c = 0; c < SHARED_COUNTERS; c++) {
+            counterIds.add(manager.save(new Counter("shared " + c)).getId());
+            increments.add(new AtomicLong());
+        }
+        AtomicLong conflicts = new AtomicLong();
+        AtomicLong created = new AtomicLong();
+        AtomicLong deleted = new AtomicLong();
+        AtomicLong serialized = new AtomicLong();
+        LoadHarness harness = new LoadHarness(LoadHarness.platformThreads("soak-" + storage + "-"));
+        try {
+            for (int threads = 1; threads <= MAX_THREADS; threads *= 2) {
+                LoadHarness.Result result = harness.run(threads, STEP, pool, (thread, i) -> {
+                    Deque<Academy> own = academies.get(thread);
+                    switch ((int) (i % 4)) {
+                        case 0 -> {
+                            own.addLast(manager.save(new Academy("soak " + thread + " " + i)));
+                            created.incrementAndGet();
+                        }
+                        case 1 -> {
+                            if (!own.isEmpty()) {
+                                assertThat(manager.findById(own.peekLast().getId(), Academy.class)).isPresent();
+                            }
+                        }
+                        case 2 -> {
+                            int c = (int) (i / 4 % SHARED_COUNTERS);
+                            conflicts.addAndGet(increment(manager, counterIds.get(c)));
+                            increments.get(c).incrementAndGet();
+                        }
+                        default -> {
+                            if (own.size() > 1 && manager.delete(own.removeFirst())) {
+                                deleted.incrementAndGet();
+                            }
+                        }
+                    }
+                    if (i % 16 == 0 && !own.isEmpty()) {
+                        SerializationUtil.serialize(own.peekLast(), serializationFile);
+                        serialized.incrementAndGet();
+                    }
+                });
+                log.atInfo().log("{} H2: {}, {} counter conflicts retried", storage, result, conflicts.get());
+
+                assertThat(result.errors()).isZero();
+                assertThat(result.operations()).isPositive();
+                assertThat(dataSource.getHikariPoolMXBean().getActiveConnections()).isZero();
+                assertThat(manager.recordsCount(Academy.class)).isEqualTo(created.get() - deleted.get());
+                for (int c = 0; c < SHARED_COUNTERS; c++) {
+                    assertThat(manager.findById(counterIds.get(c), Counter.class).get().getHits())
+                            .isEqualTo(increments.get(c).get());
+                }
+                assertThat(SerializationUtil.<Academy>deserialize(serializationFile)).hasSize((int) serialized.get());
+            }
+        } finally {
+            SerializationUtil.closeAll();
+            dataSource.close();
+        }
+    }
+
+    /**
+     * Adds one hit to the counter, reading it again after every conflicting update.
+     *
+     * @return the number of conflicts.
+     */
+    private static long increment(ORManager manager, long counterId) {
+        for (long conflicts = 0; ; conflicts++) {
+            Counter counter = manager.findById(counterId, Counter.class).get();
+            counter.setHits(counter.getHits() + 1);
+            try {
+                manager.update(counter);
+                return conflicts;
+            } catch (OptimisticLockException e) {
+                // another thread updated it in between
+            }
+        }
+    }
+
+    @Data
+    @Entity
+    static class Counter {
+        @Id
+        private Long id;
+        private String owner;
+        private Long hits = 0L;
+        @Version
+        private Long version;
+
+        Counter(String owner) {
+            this.owner = owner;
+        }
+
+        Counter() {
+        }
+    }
+}